@@ -11,7 +11,9 @@ import com.ulyp.storage.writer.ResetRequest;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 public class AgentApiImpl extends AgentApiGrpc.AgentApiImplBase {
@@ -21,13 +23,22 @@ public class AgentApiImpl extends AgentApiGrpc.AgentApiImplBase {
     private final TypeResolver typeResolver;
     private final RecordingDataWriter recordingDataWriter;
     private final ProcessMetadata processMetadata;
+    @Nullable
+    private final Function<String, String> dumpRecordings;
 
-    public AgentApiImpl(Consumer<Boolean> startRecordingRunnable, MethodRepository methodRepository, TypeResolver typeResolver, RecordingDataWriter recordingDataWriter, ProcessMetadata processMetadata) {
+    public AgentApiImpl(
+            Consumer<Boolean> startRecordingRunnable,
+            MethodRepository methodRepository,
+            TypeResolver typeResolver,
+            RecordingDataWriter recordingDataWriter,
+            ProcessMetadata processMetadata,
+            @Nullable Function<String, String> dumpRecordings) {
         this.startRecordingRunnable = startRecordingRunnable;
         this.methodRepository = methodRepository;
         this.typeResolver = typeResolver;
         this.recordingDataWriter = recordingDataWriter;
         this.processMetadata = processMetadata;
+        this.dumpRecordings = dumpRecordings;
         ApiHolder.instance = this;
     }
 
@@ -80,4 +91,19 @@ public class AgentApiImpl extends AgentApiGrpc.AgentApiImplBase {
             responseObserver.onError(err);
         }
     }
+
+    @Override
+    public void dumpRecordings(DumpRecordingsRequest request, StreamObserver<DumpRecordingsResponse> responseObserver) {
+        try {
+            if (dumpRecordings == null) {
+                throw new ApiException("Recordings can only be dumped if flight recorder is enabled with -Dulyp.flight-recorder");
+            }
+            String path = dumpRecordings.apply(request.getPath());
+
+            responseObserver.onNext(DumpRecordingsResponse.newBuilder().setPath(path).build());
+            responseObserver.onCompleted();
+        } catch (Exception err) {
+            responseObserver.onError(err);
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.ulyp.agent;
 
+import com.ulyp.agent.api.DumpRecordingsRequest;
 import com.ulyp.agent.api.RecordingEnabled;
 import com.ulyp.agent.api.ResetRecordingFileRequest;
 
@@ -15,6 +16,16 @@ public class Api {
         );
     }
 
+    /**
+     * Dumps recordings which flight recorder keeps in memory to the file next to the recording file
+     */
+    public static void dumpRecordings() {
+        ApiHolder.instance.dumpRecordings(
+                DumpRecordingsRequest.newBuilder().build(),
+                new NoopStreamObserver<>()
+        );
+    }
+
     public static void startRecording() {
         ApiHolder.instance.setRecording(
                 RecordingEnabled.newBuilder().setValue(true).build(),
@@ -4,6 +4,10 @@ import com.ulyp.core.exception.UlypException;
 
 public class ApiException extends UlypException {
 
+    public ApiException(String message) {
+        super(message);
+    }
+
     public ApiException(Throwable cause) {
         super(cause);
     }
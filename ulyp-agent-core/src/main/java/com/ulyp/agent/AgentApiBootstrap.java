@@ -6,10 +6,12 @@ import com.ulyp.core.TypeResolver;
 import com.ulyp.core.exception.AgentConfigurationException;
 import com.ulyp.storage.writer.RecordingDataWriter;
 import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Bootstraps GRPC api for the agent using reflection. This is done since agent might be built without api included.
@@ -23,6 +25,7 @@ public class AgentApiBootstrap {
             TypeResolver typeResolver,
             RecordingDataWriter recordingDataWriter,
             ProcessMetadata processMetadata,
+            @Nullable Function<String, String> dumpRecordings,
             int listenPort) {
         try {
             Class<?> apiImplClass = Class.forName("com.ulyp.agent.AgentApiImpl");
@@ -32,7 +35,8 @@ public class AgentApiBootstrap {
                     methodRepository,
                     typeResolver,
                     recordingDataWriter,
-                    processMetadata
+                    processMetadata,
+                    dumpRecordings
             );
 
             Class<?> grpcServerClass = Class.forName("com.ulyp.agent.AgentApiGrpcServer");
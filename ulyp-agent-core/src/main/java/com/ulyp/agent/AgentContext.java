@@ -6,12 +6,15 @@ import com.ulyp.agent.policy.OverridableRecordingPolicy;
 import com.ulyp.agent.queue.RecordingEventQueue;
 import com.ulyp.agent.util.MetricDumper;
 import com.ulyp.core.*;
+import com.ulyp.core.mem.DirectBufMemPageAllocator;
+import com.ulyp.core.mem.PageConstants;
 import com.ulyp.core.metrics.Metrics;
 import com.ulyp.core.metrics.MetricsImpl;
 import com.ulyp.core.metrics.NullMetrics;
 import com.ulyp.core.util.Classpath;
 import com.ulyp.core.util.ReflectionBasedTypeResolver;
 import com.ulyp.storage.writer.RecordingDataWriter;
+import com.ulyp.storage.writer.RingRecordingDataWriter;
 import lombok.Getter;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
@@ -48,6 +51,9 @@ public class AgentContext {
     @Nullable
     private final MetricDumper metricDumper;
     private final RecorderContext recorderContext;
+    @Getter
+    @Nullable
+    private final FlightRecorder flightRecorder;
 
     private AgentContext(AgentContextBootstrap bootstrap) {
         this.options = new AgentOptions();
@@ -61,7 +67,15 @@ public class AgentContext {
         this.recorderContext = new RecorderContext(options);
         this.recorderContext.init();
         this.startRecordingPolicy = options.getStartRecordingPolicy().get();
-        this.recordingDataWriter = new RecordingDataWriterFactory().build(options.getRecordingDataFilePath().get(), metrics);
+        RingRecordingDataWriter ring = null;
+        if (options.isFlightRecorderEnabled()) {
+            // Nothing is written to the file until dumped, so there is no async writer
+            long ringBytes = options.getFlightRecorderSizeMb() * 1024L * 1024L;
+            ring = new RingRecordingDataWriter(new DirectBufMemPageAllocator(), (int) Math.max(1L, ringBytes / PageConstants.PAGE_SIZE));
+            this.recordingDataWriter = RecordingDataWriter.statsRecording(metrics, ring);
+        } else {
+            this.recordingDataWriter = new RecordingDataWriterFactory().build(options.getRecordingDataFilePath().get(), metrics);
+        }
         this.methodRepository = new MethodRepository();
         this.processMetadata = ProcessMetadata.builder()
                 .mainClassName(ProcessMetadata.getMainClassNameFromProp())
@@ -71,8 +85,14 @@ public class AgentContext {
         this.typeConverter = bootstrap.getTypeConverter();
         this.methodResolver = bootstrap.getMethodConverter();
         this.typeResolver = new ReflectionBasedTypeResolver();
-        this.recordingEventQueue = new RecordingEventQueue(typeResolver, new AgentDataWriter(recordingDataWriter, methodRepository), metrics);
-        this.recorder = new Recorder(options, typeResolver, methodRepository, startRecordingPolicy, recordingEventQueue, metrics);
+        this.recordingEventQueue = new RecordingEventQueue(
+                typeResolver,
+                new AgentDataWriter(recordingDataWriter, methodRepository),
+                metrics,
+                options.isCallIndexEnabled()
+        );
+        this.flightRecorder = ring != null ? new FlightRecorder(ring, recordingEventQueue, options) : null;
+        this.recorder = new Recorder(options, typeResolver, methodRepository, startRecordingPolicy, recordingEventQueue, metrics, flightRecorder);
 
         if (options.getBindNetworkAddress() != null) {
             apiServer = AgentApiBootstrap.bootstrap(
@@ -81,6 +101,7 @@ public class AgentContext {
                     typeResolver,
                     recordingDataWriter,
                     processMetadata,
+                    flightRecorder != null ? path -> this.flightRecorder.dump(path, "API request").getPath() : null,
                     Integer.parseInt(options.getBindNetworkAddress())
             );
         } else {
@@ -98,6 +119,9 @@ public class AgentContext {
             Runtime.getRuntime().addShutdownHook(shutdown);
 
             ctx.getRecordingEventQueue().start();
+            if (ctx.getFlightRecorder() != null) {
+                ctx.getFlightRecorder().start();
+            }
         }
         agentLoaded = true;
     }
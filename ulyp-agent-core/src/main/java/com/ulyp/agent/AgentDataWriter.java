@@ -1,6 +1,8 @@
 package com.ulyp.agent;
 
 import com.ulyp.core.*;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
 import com.ulyp.core.mem.SerializedMethodList;
 import com.ulyp.core.mem.SerializedRecordedMethodCallList;
 import com.ulyp.core.mem.SerializedTypeList;
@@ -26,7 +28,41 @@ public class AgentDataWriter {
     }
 
     public void write(TypeResolver typeResolver, RecordingMetadata recordingMetadata, SerializedRecordedMethodCallList recordedCalls) {
+        write(typeResolver, recordingMetadata, recordedCalls, null);
+    }
+
+    /**
+     * Writes recorded calls and the call index of them. Index is always written right after the calls, so that readers
+     * could match them
+     */
+    public void write(
+            TypeResolver typeResolver,
+            RecordingMetadata recordingMetadata,
+            SerializedRecordedMethodCallList recordedCalls,
+            SerializedCallIndexList callIndex) {
+
+        writeMethodsAndTypes(typeResolver);
+
+        recordingDataWriter.write(recordingMetadata);
+        if (recordedCalls != null) {
+            recordingDataWriter.write(recordedCalls);
+        }
+        if (callIndex != null) {
+            recordingDataWriter.write(callIndex);
+        }
+    }
 
+    /**
+     * Writes calling context tree of the recording, which is written instead of recorded calls if calls are aggregated
+     */
+    public void write(TypeResolver typeResolver, RecordingMetadata recordingMetadata, SerializedCallTreeList callTree) {
+        writeMethodsAndTypes(typeResolver);
+
+        recordingDataWriter.write(recordingMetadata);
+        recordingDataWriter.write(callTree);
+    }
+
+    private void writeMethodsAndTypes(TypeResolver typeResolver) {
         SerializedMethodList methodsList = new SerializedMethodList();
 
         ConcurrentArrayList<Method> methods = methodRepository.getMethods();
@@ -77,10 +113,5 @@ public class AgentDataWriter {
                 }
             }
         }
-
-        recordingDataWriter.write(recordingMetadata);
-        if (recordedCalls != null) {
-            recordingDataWriter.write(recordedCalls);
-        }
     }
 }
@@ -30,6 +30,11 @@ public class AgentShutdownHook implements Runnable {
         }
         recordingEventQueue.close();
 
+        FlightRecorder flightRecorder = ctx.getFlightRecorder();
+        if (flightRecorder != null) {
+            flightRecorder.close();
+        }
+
         RecordingDataWriter storageWriter = ctx.getStorageWriter();
         try {
             storageWriter.sync(Duration.ofSeconds(30));
@@ -0,0 +1,161 @@
+package com.ulyp.agent;
+
+import com.ulyp.agent.queue.events.CallTreeSnapshotEvent;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import org.agrona.collections.Long2LongHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * Calling context tree of a recording which is kept if calls are aggregated instead of being recorded one by one.
+ * Every node is a distinct call path and has call count, total and self time of calls on the path. Only the thread
+ * of the recording updates the tree, so no synchronization is needed.
+ * <p>
+ * The tree is periodically snapshotted. A snapshot has nodes which changed since the previous one along with
+ * aggregates accumulated since then, which are then reset. This keeps snapshots small, and the thread of the recording
+ * only copies a few arrays while the background thread serializes them, see {@link SerializedCallTreeList}.
+ */
+@NotThreadSafe
+public class CallContextTree {
+
+    private static final int NO_NODE = -1;
+
+    private final long snapshotIntervalNanos;
+    // Child node by parent node and method id
+    private final Long2LongHashMap children = new Long2LongHashMap(NO_NODE);
+    private int size = 0;
+    private int[] parents = new int[64];
+    private int[] methodIds = new int[64];
+    private long[] callCounts = new long[64];
+    private long[] totalNanos = new long[64];
+    private long[] selfNanos = new long[64];
+    private boolean[] changed = new boolean[64];
+    private int[] changedNodes = new int[64];
+    private int changedCount = 0;
+    // Nodes with greater indices are not snapshotted yet
+    private int snapshotSize = 0;
+    private long lastSnapshotNanoTime;
+
+    private int depth = 0;
+    private int[] stackNodes = new int[64];
+    private long[] enterNanoTimes = new long[64];
+    // Sum of durations of the children of every call on the stack
+    private long[] childrenNanos = new long[64];
+
+    public CallContextTree(long snapshotIntervalNanos, long nanoTime) {
+        this.snapshotIntervalNanos = snapshotIntervalNanos;
+        this.lastSnapshotNanoTime = nanoTime;
+    }
+
+    /**
+     * @return depth of the call (starting from 1) which should be passed back to {@link #onExit}
+     */
+    public int onEnter(int methodId, long nanoTime) {
+        int parent = depth > 0 ? stackNodes[depth - 1] : SerializedCallTreeList.NO_PARENT;
+        long key = ((long) parent << 32) | (methodId & 0xFFFFFFFFL);
+        int node = (int) children.get(key);
+        if (node == NO_NODE) {
+            node = addNode(parent, methodId);
+            children.put(key, node);
+        }
+
+        if (depth == stackNodes.length) {
+            stackNodes = Arrays.copyOf(stackNodes, depth * 2);
+            enterNanoTimes = Arrays.copyOf(enterNanoTimes, depth * 2);
+            childrenNanos = Arrays.copyOf(childrenNanos, depth * 2);
+        }
+        stackNodes[depth] = node;
+        enterNanoTimes[depth] = nanoTime;
+        childrenNanos[depth] = 0L;
+        return ++depth;
+    }
+
+    /**
+     * @param callDepth depth which is returned by {@link #onEnter} for the call
+     */
+    public void onExit(int callDepth, long nanoTime) {
+        if (callDepth < 1 || callDepth > depth) {
+            return;
+        }
+        // Calls above are never exited (e.g. if an exception is thrown from a constructor), they are dropped
+        depth = callDepth - 1;
+
+        int node = stackNodes[depth];
+        long durationNanos = Math.max(0L, nanoTime - enterNanoTimes[depth]);
+        callCounts[node]++;
+        totalNanos[node] += durationNanos;
+        selfNanos[node] += Math.max(0L, durationNanos - childrenNanos[depth]);
+        if (depth > 0) {
+            childrenNanos[depth - 1] += durationNanos;
+        }
+        if (!changed[node] && node < snapshotSize) {
+            changed[node] = true;
+            if (changedCount == changedNodes.length) {
+                changedNodes = Arrays.copyOf(changedNodes, changedCount * 2);
+            }
+            changedNodes[changedCount++] = node;
+        }
+    }
+
+    public boolean isSnapshotDue(long nanoTime) {
+        return nanoTime - lastSnapshotNanoTime >= snapshotIntervalNanos;
+    }
+
+    /**
+     * @return nodes which changed since the previous snapshot or null if there are none. Nodes which are added since
+     * then go last in the index order
+     */
+    @Nullable
+    public CallTreeSnapshotEvent snapshot(long nanoTime) {
+        lastSnapshotNanoTime = nanoTime;
+        int count = changedCount + (size - snapshotSize);
+        if (count == 0) {
+            return null;
+        }
+
+        int[] nodes = new int[count];
+        int[] snapshotParents = new int[count];
+        int[] snapshotMethodIds = new int[count];
+        long[] snapshotCallCounts = new long[count];
+        long[] snapshotTotalNanos = new long[count];
+        long[] snapshotSelfNanos = new long[count];
+        for (int i = 0; i < count; i++) {
+            int node = i < changedCount ? changedNodes[i] : snapshotSize + (i - changedCount);
+            nodes[i] = node;
+            snapshotParents[i] = parents[node];
+            snapshotMethodIds[i] = methodIds[node];
+            snapshotCallCounts[i] = callCounts[node];
+            snapshotTotalNanos[i] = totalNanos[node];
+            snapshotSelfNanos[i] = selfNanos[node];
+
+            changed[node] = false;
+            callCounts[node] = 0L;
+            totalNanos[node] = 0L;
+            selfNanos[node] = 0L;
+        }
+        changedCount = 0;
+        snapshotSize = size;
+        return new CallTreeSnapshotEvent(count, nodes, snapshotParents, snapshotMethodIds, snapshotCallCounts, snapshotTotalNanos, snapshotSelfNanos);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int addNode(int parent, int methodId) {
+        if (size == parents.length) {
+            int capacity = size * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            methodIds = Arrays.copyOf(methodIds, capacity);
+            callCounts = Arrays.copyOf(callCounts, capacity);
+            totalNanos = Arrays.copyOf(totalNanos, capacity);
+            selfNanos = Arrays.copyOf(selfNanos, capacity);
+            changed = Arrays.copyOf(changed, capacity);
+        }
+        parents[size] = parent;
+        methodIds[size] = methodId;
+        return size++;
+    }
+}
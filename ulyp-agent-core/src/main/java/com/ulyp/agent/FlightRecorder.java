@@ -0,0 +1,133 @@
+package com.ulyp.agent;
+
+import com.ulyp.agent.options.AgentOptions;
+import com.ulyp.agent.queue.RecordingEventQueue;
+import com.ulyp.core.util.NamedThreadFactory;
+import com.ulyp.storage.writer.RingRecordingDataWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Dumps recordings which are kept in memory (see {@link RingRecordingDataWriter}) to files once requested.
+ * Dumps are requested via API, once some recording completes with exception, or once the trigger file is created.
+ * All dumps except for API ones are written by the background thread, which also watches the trigger file.
+ */
+@Slf4j
+@ThreadSafe
+public class FlightRecorder implements AutoCloseable {
+
+    private static final Duration SYNC_TIMEOUT = Duration.ofSeconds(10);
+    private static final long TRIGGER_FILE_CHECK_INTERVAL_MILLIS = 1000L;
+    private static final String DEFAULT_DUMP_FILE_NAME = "ulyp-flight-recorder.dat";
+
+    private final RingRecordingDataWriter ring;
+    private final RecordingEventQueue recordingEventQueue;
+    private final File dumpFileTemplate;
+    @Nullable
+    private final File triggerFile;
+    private final ScheduledExecutorService executorService;
+    private final AtomicBoolean dumpPending = new AtomicBoolean(false);
+
+    public FlightRecorder(RingRecordingDataWriter ring, RecordingEventQueue recordingEventQueue, AgentOptions options) {
+        this.ring = ring;
+        this.recordingEventQueue = recordingEventQueue;
+        String filePath = options.getRecordingDataFilePath().get();
+        this.dumpFileTemplate = filePath != null && !filePath.isEmpty()
+            ? new File(filePath)
+            : new File(System.getProperty("java.io.tmpdir"), DEFAULT_DUMP_FILE_NAME);
+        String triggerFilePath = options.getFlightRecorderTriggerFile();
+        this.triggerFile = triggerFilePath != null && !triggerFilePath.isEmpty() ? new File(triggerFilePath) : null;
+        this.executorService = Executors.newSingleThreadScheduledExecutor(
+            NamedThreadFactory.builder().name("ulyp-flight-recorder").daemon(true).build()
+        );
+    }
+
+    public void start() {
+        if (triggerFile != null) {
+            log.info("Flight recorder will dump recordings once {} is created", triggerFile);
+            executorService.scheduleWithFixedDelay(
+                this::checkTriggerFile,
+                TRIGGER_FILE_CHECK_INTERVAL_MILLIS,
+                TRIGGER_FILE_CHECK_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    /**
+     * Requests a dump which is written in the background. Requests which come while some dump is pending are merged,
+     * so that many recordings failing at once result in a single dump
+     */
+    public void requestDump(String reason) {
+        if (dumpPending.compareAndSet(false, true)) {
+            executorService.execute(() -> {
+                dumpPending.set(false);
+                try {
+                    dump(null, reason);
+                } catch (Exception e) {
+                    log.error("Could not dump flight recorder", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes all recordings which are currently in memory to the file. Recording data which is still in the recording
+     * queue is processed first, so that the dump has everything recorded up to the moment of the call
+     *
+     * @param path path of the file to dump to. If not set, then the file is placed next to the configured recording file
+     *             and is named after it with the current time appended
+     * @return the file the dump is written to
+     */
+    public synchronized File dump(@Nullable String path, String reason) {
+        try {
+            recordingEventQueue.sync(SYNC_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            log.warn("Recording queue is not processed in time, the dump may miss the latest recording data");
+        }
+
+        File file = path != null && !path.isEmpty() ? new File(path) : nextDumpFile();
+        log.info("Dumping flight recorder to {}, reason: {}", file, reason);
+        ring.dump(file);
+        return file;
+    }
+
+    private File nextDumpFile() {
+        String name = dumpFileTemplate.getName();
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        int extensionIndex = name.lastIndexOf('.');
+        String dumpName = extensionIndex > 0
+            ? name.substring(0, extensionIndex) + "-" + timestamp + name.substring(extensionIndex)
+            : name + "-" + timestamp;
+        return new File(dumpFileTemplate.getAbsoluteFile().getParentFile(), dumpName);
+    }
+
+    private void checkTriggerFile() {
+        try {
+            // The file is deleted before the dump, so that it can be created again while the dump is written
+            if (triggerFile.exists() && triggerFile.delete()) {
+                dump(null, "trigger file " + triggerFile + " is created");
+            }
+        } catch (Exception e) {
+            log.error("Could not dump flight recorder", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+    }
+}
@@ -3,6 +3,7 @@ package com.ulyp.agent;
 import com.ulyp.agent.options.AgentOptions;
 import com.ulyp.agent.policy.StartRecordingPolicy;
 import com.ulyp.agent.queue.RecordingEventQueue;
+import com.ulyp.agent.queue.events.CallTreeSnapshotEvent;
 import com.ulyp.agent.util.RecordingContextStore;
 import com.ulyp.core.Method;
 import com.ulyp.core.MethodRepository;
@@ -20,6 +21,7 @@ import org.jetbrains.annotations.TestOnly;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -47,6 +49,8 @@ public class Recorder {
     @Getter
     private final RecordingEventQueue recordingEventQueue;
     private final Counter recordingsCounter;
+    @Nullable
+    private final FlightRecorder flightRecorder;
 
     public Recorder(
             AgentOptions options,
@@ -55,12 +59,28 @@ public class Recorder {
             StartRecordingPolicy startRecordingPolicy,
             RecordingEventQueue recordingEventQueue,
             Metrics metrics) {
+        this(options, typeResolver, methodRepository, startRecordingPolicy, recordingEventQueue, metrics, null);
+    }
+
+    /**
+     * @param flightRecorder flight recorder which is requested to dump once some recording completes with exception,
+     *                       null if recordings are written to the file
+     */
+    public Recorder(
+            AgentOptions options,
+            TypeResolver typeResolver,
+            MethodRepository methodRepository,
+            StartRecordingPolicy startRecordingPolicy,
+            RecordingEventQueue recordingEventQueue,
+            Metrics metrics,
+            @Nullable FlightRecorder flightRecorder) {
         this.options = options;
         this.typeResolver = typeResolver;
         this.methodRepository = methodRepository;
         this.recordingEventQueue = recordingEventQueue;
         this.startRecordingPolicy = startRecordingPolicy;
         this.recordingsCounter = metrics.getOrCreateCounter("recorder.count");
+        this.flightRecorder = flightRecorder;
     }
 
     public RecordingThreadLocalContext getCtx() {
@@ -143,6 +163,10 @@ public class Recorder {
             threadLocalRecordingCtx.set(recordingCtx);
             RecordingEventBuffer recordingEventBuffer = new RecordingEventBuffer(recordingMetadata.getId());
             recordingCtx.setEventBuffer(recordingEventBuffer);
+            if (options.isAggregateCallsEnabled()) {
+                long snapshotIntervalNanos = TimeUnit.MILLISECONDS.toNanos(options.getAggregateIntervalMillis());
+                recordingCtx.setCallTree(new CallContextTree(snapshotIntervalNanos, System.nanoTime()));
+            }
 
             currentRecordingSessionCount.incrementAndGet();
             if (LoggingSettings.DEBUG_ENABLED) {
@@ -176,6 +200,9 @@ public class Recorder {
             if (ctx == null || !ctx.isEnabled()) {
                 return -1;
             }
+            if (ctx.getCallTree() != null) {
+                return onAggregatedMethodEnter(ctx, methodId);
+            }
 
             try {
                 ctx.setEnabled(false);
@@ -218,6 +245,9 @@ public class Recorder {
             if (ctx == null || !ctx.isEnabled()) {
                 return -1;
             }
+            if (ctx.getCallTree() != null) {
+                return onAggregatedMethodEnter(ctx, methodId);
+            }
 
             try {
                 ctx.setEnabled(false);
@@ -260,6 +290,9 @@ public class Recorder {
             if (ctx == null || !ctx.isEnabled()) {
                 return -1;
             }
+            if (ctx.getCallTree() != null) {
+                return onAggregatedMethodEnter(ctx, methodId);
+            }
 
             try {
                 ctx.setEnabled(false);
@@ -304,6 +337,9 @@ public class Recorder {
             if (ctx == null || !ctx.isEnabled()) {
                 return -1;
             }
+            if (ctx.getCallTree() != null) {
+                return onAggregatedMethodEnter(ctx, methodId);
+            }
 
             try {
                 ctx.setEnabled(false);
@@ -350,6 +386,9 @@ public class Recorder {
             if (ctx == null || !ctx.isEnabled()) {
                 return -1;
             }
+            if (ctx.getCallTree() != null) {
+                return onAggregatedMethodEnter(ctx, methodId);
+            }
 
             try {
                 ctx.setEnabled(false);
@@ -397,6 +436,12 @@ public class Recorder {
             try {
                 ctx.setEnabled(false);
 
+                CallContextTree callTree = ctx.getCallTree();
+                if (callTree != null) {
+                    onAggregatedMethodExit(ctx, callTree, methodId, thrown, callId);
+                    return;
+                }
+
                 ObjectRecordingConverter objectConverter = ctx.getRecordingObjectConverter();
                 RecordingEventBuffer eventBuffer = ctx.getEventBuffer();
                 if (AgentOptions.TIMESTAMPS_ENABLED) {
@@ -415,19 +460,7 @@ public class Recorder {
                 }
 
                 if (callId == RecordingThreadLocalContext.ROOT_CALL_RECORDING_ID) {
-                    eventBuffer.appendRecordingFinishedEvent(System.currentTimeMillis());
-                    recordingEventQueue.enqueue(eventBuffer);
-                    recordingContextStore.remove(recordingId);
-                    threadLocalRecordingCtx.remove();
-                    currentRecordingSessionCount.decrementAndGet();
-                    if (LoggingSettings.DEBUG_ENABLED) {
-                        Method method = methodRepository.get(methodId);
-                        log.debug("Finished recording {} at method {}, recorded {} calls",
-                            ctx.getRecordingMetadata(),
-                            method.toShortString(),
-                            ctx.getCallId()
-                        );
-                    }
+                    finishRecording(ctx, methodId, eventBuffer, thrown);
                 } else {
                     dropIfFull(eventBuffer);
                 }
@@ -439,6 +472,65 @@ public class Recorder {
         }
     }
 
+    /**
+     * Aggregates the call to the calling context tree of the recording. Nothing is passed to the background thread,
+     * since neither arguments nor callee are recorded
+     *
+     * @return call token which has the depth of the call in place of call id
+     */
+    private long onAggregatedMethodEnter(RecordingThreadLocalContext ctx, int methodId) {
+        int callDepth = ctx.getCallTree().onEnter(methodId, System.nanoTime());
+        return BitUtil.longFromInts(ctx.getRecordingId(), callDepth);
+    }
+
+    private void onAggregatedMethodExit(RecordingThreadLocalContext ctx, CallContextTree callTree, int methodId, @Nullable Throwable thrown, int callDepth) {
+        long nanoTime = System.nanoTime();
+        callTree.onExit(callDepth, nanoTime);
+
+        RecordingEventBuffer eventBuffer = ctx.getEventBuffer();
+        if (callDepth == RecordingThreadLocalContext.ROOT_CALL_RECORDING_ID) {
+            CallTreeSnapshotEvent snapshot = callTree.snapshot(nanoTime);
+            if (snapshot != null) {
+                eventBuffer.add(snapshot);
+            }
+            finishRecording(ctx, methodId, eventBuffer, thrown);
+        } else if (callTree.isSnapshotDue(nanoTime)) {
+            CallTreeSnapshotEvent snapshot = callTree.snapshot(nanoTime);
+            if (snapshot != null) {
+                eventBuffer.add(snapshot);
+                recordingEventQueue.enqueue(eventBuffer);
+                eventBuffer.reset();
+            }
+        }
+    }
+
+    private void finishRecording(RecordingThreadLocalContext ctx, int methodId, RecordingEventBuffer eventBuffer, @Nullable Throwable thrown) {
+        eventBuffer.appendRecordingFinishedEvent(System.currentTimeMillis());
+        recordingEventQueue.enqueue(eventBuffer);
+        recordingContextStore.remove(ctx.getRecordingId());
+        threadLocalRecordingCtx.remove();
+        currentRecordingSessionCount.decrementAndGet();
+        if (LoggingSettings.DEBUG_ENABLED) {
+            Method method = methodRepository.get(methodId);
+            if (ctx.getCallTree() != null) {
+                log.debug("Finished recording {} at method {}, aggregated {} call paths",
+                    ctx.getRecordingMetadata(),
+                    method.toShortString(),
+                    ctx.getCallTree().size()
+                );
+            } else {
+                log.debug("Finished recording {} at method {}, recorded {} calls",
+                    ctx.getRecordingMetadata(),
+                    method.toShortString(),
+                    ctx.getCallId()
+                );
+            }
+        }
+        if (thrown != null && flightRecorder != null && options.isFlightRecorderDumpOnExceptionEnabled()) {
+            flightRecorder.requestDump("recording " + ctx.getRecordingId() + " completed with " + thrown.getClass().getName());
+        }
+    }
+
     private void dropIfFull(RecordingEventBuffer eventBuffer) {
         if (eventBuffer.isFull()) {
             recordingEventQueue.enqueue(eventBuffer);
@@ -34,6 +34,12 @@ public class RecordingThreadLocalContext {
     @Getter
     @Setter
     private RecordingEventBuffer eventBuffer;
+    /**
+     * Calling context tree of the recording if calls are aggregated instead of being recorded
+     */
+    @Nullable
+    @Setter
+    private CallContextTree callTree;
 
 
     public RecordingThreadLocalContext(AgentOptions options, TypeResolver typeResolver) {
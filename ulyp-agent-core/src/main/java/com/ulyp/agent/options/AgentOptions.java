@@ -46,6 +46,13 @@ public class AgentOptions {
     public static final String TYPE_VALIDATION_ENABLED_PROPERTY = "ulyp.type-validation";
     public static final String AGENT_DISABLED_PROPERTY = "ulyp.off";
     public static final String METRICS_ENABLED_PROPERTY = "ulyp.metrics";
+    public static final String CALL_INDEX_ENABLED_PROPERTY = "ulyp.record-call-index";
+    public static final String AGGREGATE_CALLS_PROPERTY = "ulyp.aggregate";
+    public static final String AGGREGATE_INTERVAL_PROPERTY = "ulyp.aggregate.interval-ms";
+    public static final String FLIGHT_RECORDER_PROPERTY = "ulyp.flight-recorder";
+    public static final String FLIGHT_RECORDER_SIZE_PROPERTY = "ulyp.flight-recorder.size-mb";
+    public static final String FLIGHT_RECORDER_TRIGGER_FILE_PROPERTY = "ulyp.flight-recorder.trigger-file";
+    public static final String FLIGHT_RECORDER_DUMP_ON_EXCEPTION_PROPERTY = "ulyp.flight-recorder.dump-on-exception";
 
     static {
         // make 'static final'. bytecode will be thrown off if the feature is disabled
@@ -183,6 +190,58 @@ public class AgentOptions {
             new ToggleParser(),
             "Byte-buddy type validation flag. Correct values: 'true', 'false'. Defaults to 'false'"
     );
+    private final AgentOption<Boolean> callIndexEnabled = new AgentOption<>(
+            CALL_INDEX_ENABLED_PROPERTY,
+            false,
+            new ToggleParser(),
+            "(Experimental) Writes call tree index along with recorded calls, so that the UI doesn't need to decode every call " +
+                    "to build the call tree. Recording files written with the option can't be opened by older versions of the UI. " +
+                    "Correct values: 'true', 'false'. Defaults to 'false'"
+    );
+
+    private final AgentOption<Boolean> aggregateCallsOption = new AgentOption<>(
+            AGGREGATE_CALLS_PROPERTY,
+            false,
+            new ToggleParser(),
+            "(Experimental) Aggregates calls instead of recording every call. Every recording thread keeps a calling context tree " +
+                    "(call count, total and self time of every call path) and periodically writes changes of the tree. " +
+                    "Arguments and return values are not recorded. Correct values: 'true', 'false'. Defaults to 'false'"
+    );
+    private final AgentOption<Integer> aggregateIntervalMillisOption = new AgentOption<>(
+            AGGREGATE_INTERVAL_PROPERTY,
+            1000,
+            Integer::valueOf,
+            "How often (in milliseconds) calling context trees are written if calls are aggregated. Defaults to 1000"
+    );
+    private final AgentOption<Boolean> flightRecorderOption = new AgentOption<>(
+            FLIGHT_RECORDER_PROPERTY,
+            false,
+            new ToggleParser(),
+            "(Experimental) Keeps recordings in a fixed size in-memory ring instead of writing them to the file. The oldest recordings " +
+                    "are evicted once the ring is full. Recordings are only written to disk when dumped, i.e. via API, " +
+                    "once some recording completes with exception or once the trigger file is created. " +
+                    "Dumps are written next to the file specified by '" + FILE_PATH_PROPERTY + "'. " +
+                    "Correct values: 'true', 'false'. Defaults to 'false'"
+    );
+    private final AgentOption<Integer> flightRecorderSizeMbOption = new AgentOption<>(
+            FLIGHT_RECORDER_SIZE_PROPERTY,
+            64,
+            Integer::valueOf,
+            "Size (in megabytes) of the off-heap memory which flight recorder keeps recordings in. Defaults to 64"
+    );
+    private final AgentOption<String> flightRecorderTriggerFileOption = new AgentOption<>(
+            FLIGHT_RECORDER_TRIGGER_FILE_PROPERTY,
+            text -> text,
+            "Path to the file which triggers the flight recorder dump once created (e.g. with 'touch'). The file is deleted once " +
+                    "the dump is written, so it can be created again for the next dump"
+    );
+    private final AgentOption<Boolean> flightRecorderDumpOnExceptionOption = new AgentOption<>(
+            FLIGHT_RECORDER_DUMP_ON_EXCEPTION_PROPERTY,
+            true,
+            new ToggleParser(),
+            "Dumps flight recorder once some recording completes with exception, i.e. the method recording started at throws. " +
+                    "Correct values: 'true', 'false'. Defaults to 'true'"
+    );
 
     @Nullable
     public String getBindNetworkAddress() {
@@ -218,4 +277,33 @@ public class AgentOptions {
     public boolean isTypeValidationEnabled() {
         return typeValidationEnabled.get();
     }
+
+    public boolean isCallIndexEnabled() {
+        return callIndexEnabled.get();
+    }
+
+    public boolean isAggregateCallsEnabled() {
+        return aggregateCallsOption.get();
+    }
+
+    public int getAggregateIntervalMillis() {
+        return aggregateIntervalMillisOption.get();
+    }
+
+    public boolean isFlightRecorderEnabled() {
+        return flightRecorderOption.get();
+    }
+
+    public int getFlightRecorderSizeMb() {
+        return flightRecorderSizeMbOption.get();
+    }
+
+    @Nullable
+    public String getFlightRecorderTriggerFile() {
+        return flightRecorderTriggerFileOption.get();
+    }
+
+    public boolean isFlightRecorderDumpOnExceptionEnabled() {
+        return flightRecorderDumpOnExceptionOption.get();
+    }
 }
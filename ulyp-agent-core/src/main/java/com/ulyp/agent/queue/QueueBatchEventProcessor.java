@@ -19,6 +19,7 @@ public final class QueueBatchEventProcessor implements EventProcessor {
 
     private final TypeResolver typeResolver;
     private final AgentDataWriter agentDataWriter;
+    private final boolean callIndexEnabled;
     private final Map<Integer, RecordingEventProcessor> recordingQueueProcessors = new HashMap<>();
     private final AtomicInteger status = new AtomicInteger(IDLE);
     private final DataProvider<RecordingEventDisruptorEntry> dataProvider;
@@ -29,11 +30,13 @@ public final class QueueBatchEventProcessor implements EventProcessor {
             DataProvider<RecordingEventDisruptorEntry> dataProvider,
             SequenceBarrier sequenceBarrier,
             TypeResolver typeResolver,
-            AgentDataWriter agentDataWriter) {
+            AgentDataWriter agentDataWriter,
+            boolean callIndexEnabled) {
         this.dataProvider = dataProvider;
         this.sequenceBarrier = sequenceBarrier;
         this.typeResolver = typeResolver;
         this.agentDataWriter = agentDataWriter;
+        this.callIndexEnabled = callIndexEnabled;
     }
 
     @Override
@@ -104,7 +107,7 @@ public final class QueueBatchEventProcessor implements EventProcessor {
             int recordingId = batch.getRecordingId();
             RecordingEventProcessor processor = recordingQueueProcessors.get(batch.getRecordingId());
             if (processor == null) {
-                processor = new RecordingEventProcessor(typeResolver, agentDataWriter);
+                processor = new RecordingEventProcessor(typeResolver, agentDataWriter, callIndexEnabled);
                 recordingQueueProcessors.put(recordingId, processor);
             }
             for (RecordingEvent event : batch.getEvents()) {
@@ -124,6 +127,8 @@ public final class QueueBatchEventProcessor implements EventProcessor {
                     processor.onRecordingStarted((RecordingStartedEvent) event);
                 } else if (event instanceof RecordingFinishedEvent) {
                     processor.onRecordingFinished((RecordingFinishedEvent) event);
+                } else if (event instanceof CallTreeSnapshotEvent) {
+                    processor.onCallTreeSnapshot(recordingId, (CallTreeSnapshotEvent) event);
                 }
                 if (LoggingSettings.TRACE_ENABLED) {
                     log.trace("Event processed {} at seq {}", event, sequence);
@@ -13,12 +13,14 @@ public class QueueBatchEventProcessorFactory implements EventProcessorFactory<Re
 
     private final TypeResolver typeResolver;
     private final AgentDataWriter agentDataWriter;
+    private final boolean callIndexEnabled;
     @Getter
     private volatile QueueBatchEventProcessor eventProcessor;
 
-    public QueueBatchEventProcessorFactory(TypeResolver typeResolver, AgentDataWriter agentDataWriter) {
+    public QueueBatchEventProcessorFactory(TypeResolver typeResolver, AgentDataWriter agentDataWriter, boolean callIndexEnabled) {
         this.typeResolver = typeResolver;
         this.agentDataWriter = agentDataWriter;
+        this.callIndexEnabled = callIndexEnabled;
     }
 
     @Override
@@ -27,7 +29,7 @@ public class QueueBatchEventProcessorFactory implements EventProcessorFactory<Re
             return eventProcessor;
         }
         SequenceBarrier sequenceBarrier = ringBuffer.newBarrier(barrierSequences);
-        eventProcessor = new QueueBatchEventProcessor(ringBuffer, sequenceBarrier, typeResolver, agentDataWriter);
+        eventProcessor = new QueueBatchEventProcessor(ringBuffer, sequenceBarrier, typeResolver, agentDataWriter, callIndexEnabled);
         return eventProcessor;
     }
 }
@@ -7,15 +7,23 @@ import com.ulyp.core.RecordingMetadata;
 import com.ulyp.core.TypeResolver;
 import com.ulyp.core.mem.DirectBufMemPageAllocator;
 import com.ulyp.core.mem.MemPageAllocator;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
 import com.ulyp.core.mem.SerializedRecordedMethodCallList;
 import com.ulyp.core.util.SystemPropertyUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.LongArrayList;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * Processes all events for a certain recording session. All events are serialized in a flat byte buffer and at some point
  * dropped to {@link AgentDataWriter}
+ * <p>
+ * If call index is enabled, the processor also tracks the call stack of the recording and writes
+ * {@link SerializedCallIndexList} along with every recorded calls list (chunk). The index is built here since call ids,
+ * subtree sizes and offsets of calls are all known at this point.
  */
 @Slf4j
 @NotThreadSafe
@@ -25,6 +33,7 @@ public class RecordingEventProcessor {
 
     private final TypeResolver typeResolver;
     private final AgentDataWriter agentDataWriter;
+    private final boolean callIndexEnabled;
     private int recordingId;
     private RecordingMetadata recordingMetadata;
     private MemPageAllocator pageAllocator;
@@ -32,15 +41,26 @@ public class RecordingEventProcessor {
     private Object[] oneArgArrayCache = new Object[1];
     private Object[] twoArgsArrayCache = new Object[2];
     private Object[] threeArgsArrayCache = new Object[3];
+    private SerializedCallIndexList callIndex;
+    // Ordinal of the chunk which is currently written, i.e. the count of recorded calls lists already written for the recording
+    private int chunkOrdinal = 0;
+    private int nextCallId = RecordingThreadLocalContext.ROOT_CALL_RECORDING_ID;
+    // Calls which are not completed yet and their enter positions (chunk ordinal and offset packed into a long)
+    private final IntArrayList openCallIds = new IntArrayList();
+    private final LongArrayList openCallEnterPositions = new LongArrayList();
 
-    public RecordingEventProcessor(TypeResolver typeResolver, AgentDataWriter agentDataWriter) {
+    public RecordingEventProcessor(TypeResolver typeResolver, AgentDataWriter agentDataWriter, boolean callIndexEnabled) {
         this.typeResolver = typeResolver;
         this.agentDataWriter = agentDataWriter;
+        this.callIndexEnabled = callIndexEnabled;
         this.pageAllocator = new DirectBufMemPageAllocator();
     }
 
     void onRecordingStarted(RecordingStartedEvent update) {
         recordingMetadata = update.getRecordingMetadata();
+        if (callIndexEnabled) {
+            recordingMetadata.setCallIndexed(true);
+        }
     }
 
     void onEnterCallRecord(int recordingId, EnterMethodRecordingEvent enterRecord) {
@@ -54,6 +74,7 @@ public class RecordingEventProcessor {
                 enterRecord.getArgs(),
                 nanoTime
         );
+        indexEnterCall();
     }
 
     void onEnterCallRecord(int recordingId, EnterMethodOneArgRecordingEvent enterRecord) {
@@ -68,6 +89,7 @@ public class RecordingEventProcessor {
                 oneArgArrayCache,
                 nanoTime
         );
+        indexEnterCall();
         oneArgArrayCache[0] = null;
     }
 
@@ -84,6 +106,7 @@ public class RecordingEventProcessor {
                 twoArgsArrayCache,
                 nanoTime
         );
+        indexEnterCall();
         twoArgsArrayCache[0] = null;
         twoArgsArrayCache[1] = null;
     }
@@ -102,6 +125,7 @@ public class RecordingEventProcessor {
                 threeArgsArrayCache,
                 nanoTime
         );
+        indexEnterCall();
         threeArgsArrayCache[0] = null;
         threeArgsArrayCache[1] = null;
         threeArgsArrayCache[2] = null;
@@ -118,14 +142,30 @@ public class RecordingEventProcessor {
                 null,
                 nanoTime
         );
+        indexEnterCall();
     }
 
     public void onRecordingFinished(RecordingFinishedEvent event) {
         recordingMetadata = recordingMetadata.withCompleteTime(event.getFinishTimeMillis());
-        agentDataWriter.write(typeResolver, recordingMetadata, output);
+        write(output);
         this.output = null;
     }
 
+    void onCallTreeSnapshot(int recordingId, CallTreeSnapshotEvent snapshot) {
+        SerializedCallTreeList callTree = new SerializedCallTreeList(recordingId);
+        for (int i = 0; i < snapshot.getSize(); i++) {
+            callTree.add(
+                    snapshot.getNodes()[i],
+                    snapshot.getParents()[i],
+                    snapshot.getMethodIds()[i],
+                    snapshot.getCallCounts()[i],
+                    snapshot.getTotalNanos()[i],
+                    snapshot.getSelfNanos()[i]
+            );
+        }
+        agentDataWriter.write(typeResolver, recordingMetadata, callTree);
+    }
+
     void onExitCallRecord(int recordingId, ExitMethodRecordingEvent exitRecord) {
         SerializedRecordedMethodCallList recordedCalls = this.output;
         if (recordedCalls == null) {
@@ -139,6 +179,7 @@ public class RecordingEventProcessor {
         } else {
             recordedCalls.addExitMethodCall(callId, typeResolver, exitRecord.getReturnValue(), nanoTime);
         }
+        indexExitCall(callId);
 
         writeOutputIfNeeded(recordedCalls, callId);
     }
@@ -147,7 +188,68 @@ public class RecordingEventProcessor {
         if (output == null) {
             this.recordingId = recordingId;
             output = new SerializedRecordedMethodCallList(recordingId, pageAllocator);
+            if (callIndexEnabled && callIndex == null) {
+                callIndex = new SerializedCallIndexList(recordingId);
+            }
+        }
+    }
+
+    private void indexEnterCall() {
+        if (callIndex == null) {
+            return;
+        }
+        openCallIds.addInt(nextCallId++);
+        openCallEnterPositions.addLong(((long) chunkOrdinal << 32) | output.lastCallOffset());
+    }
+
+    private void indexExitCall(int callId) {
+        if (callIndex == null) {
+            return;
         }
+        int depth = openCallIds.size() - 1;
+        while (depth >= 0 && openCallIds.getInt(depth) != callId) {
+            depth--;
+        }
+        if (depth < 0) {
+            return;
+        }
+        long enterPosition = openCallEnterPositions.getLong(depth);
+        // Calls above the exited one never complete (which may happen if constructors are recorded), they are dropped
+        while (openCallIds.size() > depth) {
+            openCallIds.popInt();
+            openCallEnterPositions.popLong();
+        }
+        callIndex.addCompletedCall(
+                callId,
+                depth > 0 ? openCallIds.getInt(depth - 1) : 0,
+                nextCallId - callId,
+                (int) (enterPosition >>> 32),
+                (int) enterPosition,
+                chunkOrdinal,
+                output.lastCallOffset()
+        );
+    }
+
+    private void write(SerializedRecordedMethodCallList recordedCalls) {
+        if (callIndex == null || recordedCalls == null) {
+            agentDataWriter.write(typeResolver, recordingMetadata, recordedCalls);
+            return;
+        }
+
+        for (int i = 0; i < openCallIds.size(); i++) {
+            int callId = openCallIds.getInt(i);
+            long enterPosition = openCallEnterPositions.getLong(i);
+            callIndex.addOpenCall(
+                    callId,
+                    i > 0 ? openCallIds.getInt(i - 1) : 0,
+                    nextCallId - callId,
+                    (int) (enterPosition >>> 32),
+                    (int) enterPosition
+            );
+        }
+        agentDataWriter.write(typeResolver, recordingMetadata, recordedCalls, callIndex);
+        callIndex = new SerializedCallIndexList(recordingId);
+        chunkOrdinal++;
     }
 
     private void writeOutputIfNeeded(SerializedRecordedMethodCallList recordedCalls, int callId) {
@@ -157,7 +259,7 @@ public class RecordingEventProcessor {
                 this.output = new SerializedRecordedMethodCallList(this.recordingId, pageAllocator);
             }
 
-            agentDataWriter.write(typeResolver, recordingMetadata, recordedCalls);
+            write(recordedCalls);
 
             if (callId == RecordingThreadLocalContext.ROOT_CALL_RECORDING_ID) {
                 this.output = null;
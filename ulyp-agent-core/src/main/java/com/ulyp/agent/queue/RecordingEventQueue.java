@@ -33,6 +33,10 @@ public class RecordingEventQueue implements AutoCloseable {
     private final QueueBatchEventProcessorFactory eventProcessorFactory;
 
     public RecordingEventQueue(TypeResolver typeResolver, AgentDataWriter agentDataWriter, Metrics metrics) {
+        this(typeResolver, agentDataWriter, metrics, false);
+    }
+
+    public RecordingEventQueue(TypeResolver typeResolver, AgentDataWriter agentDataWriter, Metrics metrics, boolean callIndexEnabled) {
         this.disruptor = new RecordingQueueDisruptor(
                 RecordingEventDisruptorEntry::new,
                 RECORDING_QUEUE_SIZE,
@@ -40,7 +44,7 @@ public class RecordingEventQueue implements AutoCloseable {
                 new SleepingWaitStrategy(3, TimeUnit.MILLISECONDS.toNanos(1)),
                 metrics
         );
-        this.eventProcessorFactory = new QueueBatchEventProcessorFactory(typeResolver, agentDataWriter);
+        this.eventProcessorFactory = new QueueBatchEventProcessorFactory(typeResolver, agentDataWriter, callIndexEnabled);
         this.scheduledExecutorService = Executors.newScheduledThreadPool(
             1,
             NamedThreadFactory.builder().name("ulyp-recorder-queue-stats-reporter").daemon(true).build()
@@ -0,0 +1,21 @@
+package com.ulyp.agent.queue.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Nodes of the calling context tree of the recording which changed since the previous snapshot along with
+ * aggregates accumulated since then, see {@link com.ulyp.agent.CallContextTree}
+ */
+@Getter
+@AllArgsConstructor
+public class CallTreeSnapshotEvent implements RecordingEvent {
+
+    private final int size;
+    private final int[] nodes;
+    private final int[] parents;
+    private final int[] methodIds;
+    private final long[] callCounts;
+    private final long[] totalNanos;
+    private final long[] selfNanos;
+}
@@ -0,0 +1,94 @@
+package com.ulyp.agent;
+
+import com.ulyp.agent.queue.events.CallTreeSnapshotEvent;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallContextTreeTest {
+
+    private static final int A = 1;
+    private static final int B = 2;
+    private static final int C = 3;
+
+    @Test
+    void testAggregatesCallPaths() {
+        CallContextTree tree = new CallContextTree(1000L, 0L);
+
+        int a = tree.onEnter(A, 0L);
+        tree.onExit(tree.onEnter(B, 10L), 20L);
+        tree.onExit(tree.onEnter(B, 30L), 40L);
+        tree.onExit(tree.onEnter(C, 50L), 55L);
+        tree.onExit(a, 100L);
+
+        assertEquals(1, a);
+        assertEquals(3, tree.size());
+
+        CallTreeSnapshotEvent snapshot = tree.snapshot(100L);
+        assertEquals(3, snapshot.getSize());
+        assertArrayEquals(new int[]{0, 1, 2}, snapshot.getNodes());
+        assertArrayEquals(new int[]{SerializedCallTreeList.NO_PARENT, 0, 0}, snapshot.getParents());
+        assertArrayEquals(new int[]{A, B, C}, snapshot.getMethodIds());
+        assertArrayEquals(new long[]{1L, 2L, 1L}, snapshot.getCallCounts());
+        assertArrayEquals(new long[]{100L, 20L, 5L}, snapshot.getTotalNanos());
+        assertArrayEquals(new long[]{75L, 20L, 5L}, snapshot.getSelfNanos());
+
+        assertNull(tree.snapshot(200L));
+    }
+
+    @Test
+    void testSnapshotHasOnlyChangesSincePreviousOne() {
+        CallContextTree tree = new CallContextTree(1000L, 0L);
+
+        int a = tree.onEnter(A, 0L);
+        tree.onExit(tree.onEnter(B, 10L), 20L);
+
+        // The root call is not completed yet, but it's listed since it's new
+        CallTreeSnapshotEvent snapshot = tree.snapshot(25L);
+        assertArrayEquals(new int[]{0, 1}, snapshot.getNodes());
+        assertArrayEquals(new long[]{0L, 1L}, snapshot.getCallCounts());
+        assertArrayEquals(new long[]{0L, 10L}, snapshot.getTotalNanos());
+
+        tree.onExit(tree.onEnter(B, 30L), 35L);
+        tree.onExit(tree.onEnter(C, 40L), 42L);
+        tree.onExit(a, 50L);
+
+        snapshot = tree.snapshot(50L);
+        assertArrayEquals(new int[]{1, 0, 2}, snapshot.getNodes());
+        assertArrayEquals(new int[]{0, SerializedCallTreeList.NO_PARENT, 0}, snapshot.getParents());
+        assertArrayEquals(new long[]{1L, 1L, 1L}, snapshot.getCallCounts());
+        assertArrayEquals(new long[]{5L, 50L, 2L}, snapshot.getTotalNanos());
+        // Children completed before the previous snapshot are still subtracted from the self time
+        assertArrayEquals(new long[]{5L, 33L, 2L}, snapshot.getSelfNanos());
+    }
+
+    @Test
+    void testCallsWhichAreNotExitedAreDropped() {
+        CallContextTree tree = new CallContextTree(1000L, 0L);
+
+        int a = tree.onEnter(A, 0L);
+        tree.onEnter(B, 10L);
+        tree.onExit(a, 30L);
+        tree.onExit(tree.onEnter(C, 40L), 50L);
+
+        CallTreeSnapshotEvent snapshot = tree.snapshot(50L);
+        assertArrayEquals(new int[]{A, B, C}, snapshot.getMethodIds());
+        assertArrayEquals(new int[]{SerializedCallTreeList.NO_PARENT, 0, SerializedCallTreeList.NO_PARENT}, snapshot.getParents());
+        assertArrayEquals(new long[]{1L, 0L, 1L}, snapshot.getCallCounts());
+        assertArrayEquals(new long[]{30L, 0L, 10L}, snapshot.getSelfNanos());
+    }
+
+    @Test
+    void testSnapshotInterval() {
+        CallContextTree tree = new CallContextTree(100L, 0L);
+
+        assertFalse(tree.isSnapshotDue(99L));
+        assertTrue(tree.isSnapshotDue(100L));
+
+        tree.snapshot(100L);
+
+        assertFalse(tree.isSnapshotDue(150L));
+        assertTrue(tree.isSnapshotDue(200L));
+    }
+}
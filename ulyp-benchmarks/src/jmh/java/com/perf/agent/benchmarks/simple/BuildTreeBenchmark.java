@@ -1,54 +1,152 @@
-/*
 package com.perf.agent.benchmarks.simple;
 
+import com.perf.agent.benchmarks.util.BenchmarkConstants;
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.DirectBufMemPageAllocator;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.util.FileUtil;
+import com.ulyp.core.util.ReflectionBasedTypeResolver;
+import com.ulyp.storage.tree.*;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
-import com.perf.agent.benchmarks.BenchmarkScenarioBuilder;
-import com.perf.agent.benchmarks.proc.BenchmarkProcessRunner;
-import com.perf.agent.benchmarks.proc.OutputFile;
-import com.perf.agent.benchmarks.libs.SpringHibernateMediumBenchmark;
-import com.ulyp.core.util.ByteSize;
-import com.ulyp.core.util.MethodMatcher;
-import com.ulyp.storage.reader.FileRecordingDataReader;
-import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
-import com.ulyp.storage.tree.CallRecordTree;
-import com.ulyp.storage.tree.CallRecordTreeBuilder;
-import com.ulyp.storage.tree.RocksdbIndex;
-
+/**
+ * Measures how long it takes to build the call tree (i.e. the index) of a recording file. The recording file
+ * is generated once per trial and contains a single recording with a wide and deep call tree
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
 public class BuildTreeBenchmark {
 
-    public static void main(String[] args) throws Exception {
+    private static final int FLUSH_THRESHOLD_BYTES = 256 * 1024;
 
-        OutputFile recordingFile = new OutputFile("ulyp-benchmark", "dat");
-        System.out.println("Recording output file is " + recordingFile);
+    public enum IndexType {
+        IN_MEMORY,
+        ROCKSDB,
+        ROCKSDB_BULK_LOAD
+    }
 
-        BenchmarkProcessRunner.runClassInSeparateJavaProcess(
-            SpringHibernateMediumBenchmark.class,
-            new BenchmarkScenarioBuilder()
-                .withMethodToRecord(new MethodMatcher(SpringHibernateMediumBenchmark.class, "main"))
-                .withOutputFile(recordingFile)
-                .build()
-        );
+    @Param({"1000000"})
+    private int callCount;
+    @Param({"IN_MEMORY", "ROCKSDB", "ROCKSDB_BULK_LOAD"})
+    private IndexType indexType;
 
-        System.out.println("Size of recording file is " + new ByteSize(recordingFile.size()));
+    private File recordingFile;
+    private Path indexDirectory;
 
-        RocksdbIndex rocksdbIndex = new RocksdbIndex(Files.createTempDirectory("ulyp-bench-index"));
+    public static class X {
+        public String foo(String in) {
+            return in;
+        }
+    }
 
-        long startTime = System.currentTimeMillis();
-        CallRecordTree callRecordTree;
-        try (FileRecordingDataReader reader = new FileRecordingDataReaderBuilder(recordingFile.getFile().toFile()).build()) {
-            callRecordTree = new CallRecordTreeBuilder(reader)
-                .setIndexSupplier(() -> rocksdbIndex)
-                .setReadInfinitely(false)
+    @Setup(Level.Trial)
+    public void writeRecording() throws Exception {
+        recordingFile = Files.createTempFile("ulyp-build-tree-benchmark", ".dat").toFile();
+
+        TypeResolver typeResolver = new ReflectionBasedTypeResolver();
+        Type type = typeResolver.get(X.class);
+        Method method = Method.builder()
+                .type(type)
+                .name("foo")
+                .id(1)
+                .constructor(false)
+                .isStatic(false)
+                .returnsSomething(true)
                 .build();
-            callRecordTree.getCompleteFuture().get(120, TimeUnit.SECONDS);
+        SerializedTypeList types = new SerializedTypeList();
+        types.add(type);
+        SerializedMethodList methods = new SerializedMethodList();
+        methods.add(method);
+
+        X callee = new X();
+        Object[] args = new Object[]{"ABC"};
+        DirectBufMemPageAllocator pageAllocator = new DirectBufMemPageAllocator();
+
+        try (FileRecordingDataWriter writer = new FileRecordingDataWriter(recordingFile)) {
+            writer.write(RecordingMetadata.builder().id(1).build());
+            writer.write(types);
+            writer.write(methods);
+
+            // Every root child has a chain of nested calls, so the tree is both wide and deep
+            int depth = 10;
+            int callId = 1;
+            SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(1, pageAllocator);
+            calls.addEnterMethodCall(method.getId(), typeResolver, callee, args, System.nanoTime());
+            int rootCallId = callId++;
+
+            for (int i = 0; i < callCount / depth; i++) {
+                int firstCallId = callId;
+                for (int d = 0; d < depth; d++) {
+                    calls.addEnterMethodCall(method.getId(), typeResolver, callee, args, System.nanoTime());
+                    callId++;
+                }
+                for (int d = depth - 1; d >= 0; d--) {
+                    calls.addExitMethodCall(firstCallId + d, typeResolver, "CDE", System.nanoTime());
+                }
 
-            long elapsed = System.currentTimeMillis() - startTime;
-            System.out.println(callRecordTree.getRecordings().size());
-            System.out.println("Took " + elapsed / 1000 + " sec");
+                if (calls.bytesWritten() > FLUSH_THRESHOLD_BYTES) {
+                    writer.write(calls);
+                    calls = new SerializedRecordedMethodCallList(1, pageAllocator);
+                }
+            }
+
+            calls.addExitMethodCall(rootCallId, typeResolver, "CDE", System.nanoTime());
+            writer.write(calls);
         }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteRecording() {
+        recordingFile.delete();
+    }
 
+    @Setup(Level.Invocation)
+    public void createIndexDirectory() throws Exception {
+        indexDirectory = Files.createTempDirectory("ulyp-build-tree-benchmark-index");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteIndexDirectory() throws Exception {
+        FileUtil.deleteDirectory(indexDirectory);
+    }
+
+    @Fork(value = BenchmarkConstants.FORKS)
+    @Benchmark
+    public int buildTree() throws Exception {
+        try (CallRecordTree tree = new CallRecordTreeBuilder(new FileRecordingDataReaderBuilder(recordingFile).build())
+                .setIndexSupplier(this::buildIndex)
+                .setReadInfinitely(false)
+                .build()) {
+            tree.getCompleteFuture().get(5, TimeUnit.MINUTES);
+            return tree.getRecordings().get(0).getRoot().getSubtreeSize();
+        }
+    }
+
+    private Index buildIndex() {
+        switch (indexType) {
+            case IN_MEMORY:
+                return new InMemoryIndex();
+            case ROCKSDB:
+                return new RocksdbIndex(indexDirectory);
+            case ROCKSDB_BULK_LOAD:
+                return new RocksdbIndex(indexDirectory, true);
+            default:
+                throw new IllegalArgumentException("Unsupported index type " + indexType);
+        }
     }
 }
-*/
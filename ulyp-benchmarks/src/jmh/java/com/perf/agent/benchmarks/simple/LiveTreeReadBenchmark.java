@@ -0,0 +1,141 @@
+package com.perf.agent.benchmarks.simple;
+
+import com.perf.agent.benchmarks.util.BenchmarkConstants;
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.DirectBufMemPageAllocator;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.util.ReflectionBasedTypeResolver;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.tree.CallRecord;
+import com.ulyp.storage.tree.CallRecordTree;
+import com.ulyp.storage.tree.CallRecordTreeBuilder;
+import com.ulyp.storage.tree.InMemoryIndex;
+import com.ulyp.storage.tree.Recording;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures latency of reads which UI makes while a live recording is written at a high rate and the call tree
+ * is built at the same time. The recording has a single root call which is never completed, so that it keeps
+ * getting new children
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LiveTreeReadBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    // Every call takes memory of the in-memory index, so the rate is limited to keep the benchmark within the heap
+    @Param({"50000"})
+    private int callsPerSecond;
+
+    private File recordingFile;
+    private FileRecordingDataWriter writer;
+    private CallRecordTree tree;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    public static class X {
+        public String foo(String in) {
+            return in;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void startRecording() throws Exception {
+        recordingFile = Files.createTempFile("ulyp-live-tree-read-benchmark", ".dat").toFile();
+
+        TypeResolver typeResolver = new ReflectionBasedTypeResolver();
+        Type type = typeResolver.get(X.class);
+        Method method = Method.builder()
+                .type(type)
+                .name("foo")
+                .id(1)
+                .constructor(false)
+                .isStatic(false)
+                .returnsSomething(true)
+                .build();
+        SerializedTypeList types = new SerializedTypeList();
+        types.add(type);
+        SerializedMethodList methods = new SerializedMethodList();
+        methods.add(method);
+
+        X callee = new X();
+        Object[] args = new Object[]{"ABC"};
+        DirectBufMemPageAllocator pageAllocator = new DirectBufMemPageAllocator();
+
+        writer = new FileRecordingDataWriter(recordingFile);
+        writer.write(RecordingMetadata.builder().id(1).build());
+        writer.write(types);
+        writer.write(methods);
+        SerializedRecordedMethodCallList rootCall = new SerializedRecordedMethodCallList(1, pageAllocator);
+        rootCall.addEnterMethodCall(method.getId(), typeResolver, callee, args, System.nanoTime());
+        writer.write(rootCall);
+
+        tree = new CallRecordTreeBuilder(new FileRecordingDataReaderBuilder(recordingFile).build())
+                .setIndexSupplier(InMemoryIndex::new)
+                .setReadInfinitely(true)
+                .build();
+
+        running = true;
+        long batchIntervalNanos = TimeUnit.SECONDS.toNanos(1) * BATCH_SIZE / callsPerSecond;
+        writerThread = new Thread(() -> {
+            int callId = 2;
+            while (running) {
+                long batchStartNanos = System.nanoTime();
+                SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(1, pageAllocator);
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    calls.addEnterMethodCall(method.getId(), typeResolver, callee, args, System.nanoTime());
+                    calls.addExitMethodCall(callId++, typeResolver, "CDE", System.nanoTime());
+                }
+                writer.write(calls);
+                LockSupport.parkNanos(batchIntervalNanos - (System.nanoTime() - batchStartNanos));
+            }
+        }, "ulyp-live-tree-read-benchmark-writer");
+        writerThread.start();
+
+        while (tree.getRecordings().isEmpty()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopRecording() throws Exception {
+        running = false;
+        writerThread.join();
+        tree.close();
+        writer.close();
+        recordingFile.delete();
+    }
+
+    @Fork(value = BenchmarkConstants.FORKS)
+    @Benchmark
+    public int readRoot() {
+        Recording recording = tree.getRecordings().get(0);
+        return recording.callCount() + recording.getRoot().getChildrenCount();
+    }
+
+    @Fork(value = BenchmarkConstants.FORKS)
+    @Benchmark
+    public CallRecord readLastChild() {
+        Recording recording = tree.getRecordings().get(0);
+        long rootId = recording.getRoot().getId();
+        int childrenCount = recording.getChildrenCount(rootId);
+        List<CallRecord> children = recording.getCallRecords(recording.getChildrenCallIds(rootId, childrenCount - 1, childrenCount));
+        return children.isEmpty() ? null : children.get(0);
+    }
+}
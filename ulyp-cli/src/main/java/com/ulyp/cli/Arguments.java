@@ -0,0 +1,181 @@
+package com.ulyp.cli;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parsed arguments of a command. Options start with {@code --} and have a value unless they are flags,
+ * all other arguments are positional
+ */
+public class Arguments {
+
+    private final List<String> positional = new ArrayList<>();
+    private final Map<String, String> options = new HashMap<>();
+    private final Set<String> flags = new HashSet<>();
+
+    public Arguments(String[] args, String... flagNames) {
+        Set<String> knownFlags = new HashSet<>(Arrays.asList(flagNames));
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            String name = arg.substring(2);
+            if (knownFlags.contains(name)) {
+                flags.add(name);
+            } else {
+                if (i + 1 >= args.length) {
+                    throw new UsageException("Option " + arg + " requires a value");
+                }
+                options.put(name, args[++i]);
+            }
+        }
+    }
+
+    public String positional(int index, String name) {
+        if (index >= positional.size()) {
+            throw new UsageException("Missing argument " + name);
+        }
+        return positional.get(index);
+    }
+
+    public File file(int index, String name) {
+        return new File(positional(index, name));
+    }
+
+    public File inputFile(int index) {
+        File file = file(index, "<input>");
+        if (!file.isFile()) {
+            throw new UsageException("Recording file " + file + " does not exist");
+        }
+        return file;
+    }
+
+    public boolean hasFlag(String name) {
+        return flags.contains(name);
+    }
+
+    public boolean hasOption(String name) {
+        return options.containsKey(name);
+    }
+
+    public String getString(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new UsageException("Option --" + name + " must be an integer, but was " + value);
+        }
+    }
+
+    public Set<Integer> getIntSet(String name) {
+        Set<Integer> values = new LinkedHashSet<>();
+        String value = options.get(name);
+        if (value == null) {
+            return values;
+        }
+        for (String item : value.split(",")) {
+            try {
+                values.add(Integer.parseInt(item.trim()));
+            } catch (NumberFormatException e) {
+                throw new UsageException("Option --" + name + " must be a comma separated list of integers, but was " + value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Parses epoch millis or ISO-8601 instant, e.g. {@code 2024-01-31T10:15:30Z}
+     */
+    public long getEpochMillis(String name, long defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                return Instant.parse(value).toEpochMilli();
+            } catch (DateTimeParseException e2) {
+                throw new UsageException("Option --" + name + " must be epoch millis or ISO-8601 instant, but was " + value);
+            }
+        }
+    }
+
+    /**
+     * Parses duration with a unit suffix, e.g. {@code 250ms}, {@code 10s}, {@code 5m}. Millis are assumed
+     * if no suffix is provided
+     */
+    public Duration getDuration(String name, Duration defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        String lower = value.trim().toLowerCase();
+        try {
+            if (lower.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(lower.substring(0, lower.length() - 2)));
+            } else if (lower.endsWith("s")) {
+                return Duration.ofSeconds(Long.parseLong(lower.substring(0, lower.length() - 1)));
+            } else if (lower.endsWith("m")) {
+                return Duration.ofMinutes(Long.parseLong(lower.substring(0, lower.length() - 1)));
+            } else if (lower.endsWith("h")) {
+                return Duration.ofHours(Long.parseLong(lower.substring(0, lower.length() - 1)));
+            } else {
+                return Duration.ofMillis(Long.parseLong(lower));
+            }
+        } catch (NumberFormatException e) {
+            throw new UsageException("Option --" + name + " must be a duration like 250ms, 10s or 5m, but was " + value);
+        }
+    }
+
+    /**
+     * Parses size with an optional unit suffix, e.g. {@code 512k}, {@code 100m}, {@code 2g}
+     */
+    public long getBytes(String name, long defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        String lower = value.trim().toLowerCase();
+        long multiplier = 1L;
+        if (lower.endsWith("k")) {
+            multiplier = 1024L;
+        } else if (lower.endsWith("m")) {
+            multiplier = 1024L * 1024L;
+        } else if (lower.endsWith("g")) {
+            multiplier = 1024L * 1024L * 1024L;
+        }
+        if (multiplier != 1L) {
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        try {
+            long bytes = Long.parseLong(lower) * multiplier;
+            if (bytes <= 0) {
+                throw new UsageException("Option --" + name + " must be positive, but was " + value);
+            }
+            return bytes;
+        } catch (NumberFormatException e) {
+            throw new UsageException("Option --" + name + " must be a size like 512k, 100m or 2g, but was " + value);
+        }
+    }
+}
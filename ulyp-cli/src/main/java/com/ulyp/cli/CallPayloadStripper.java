@@ -0,0 +1,110 @@
+package com.ulyp.cli;
+
+import com.ulyp.core.ByIdTypeResolver;
+import com.ulyp.core.Type;
+import com.ulyp.core.bytes.BufferBytesOut;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.bytes.BytesOut;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.OutputBytesList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.recorders.ObjectRecorderRegistry;
+import com.ulyp.core.serializers.RecordedEnterMethodCallSerializer;
+import com.ulyp.core.serializers.RecordedExitMethodCallSerializer;
+import com.ulyp.core.serializers.TypeSerializer;
+import org.agrona.ExpandableDirectByteBuffer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Rewrites recorded calls, so that arguments and return values only keep their types. Every recorded value (except
+ * for nulls and values which are already recorded by identity) is replaced by the identity record of the same type,
+ * so that the call tree, method names, timings and thrown exception types are kept. Values are skipped without
+ * decoding them if possible.
+ */
+class CallPayloadStripper {
+
+    private static final byte IDENTITY_RECORDER_ID = ObjectRecorderRegistry.IDENTITY_RECORDER.getInstance().getId();
+    private static final byte NULL_RECORDER_ID = ObjectRecorderRegistry.NULL_RECORDER.getInstance().getId();
+
+    private final Map<Integer, Type> types = new HashMap<>();
+    // Chunks are written one by one, so the buffer is reused
+    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer();
+    // Values which are not length prefixed are decoded in order to skip them, which may need their types
+    private final ByIdTypeResolver typeResolver = id -> types.getOrDefault(id, Type.unknown());
+
+    void onTypes(InputBytesList list) {
+        for (BytesIn item : list) {
+            Type type = TypeSerializer.instance.deserialize(item);
+            types.put(type.getId(), type);
+        }
+    }
+
+    /**
+     * @return stripped calls which must be written before the next call of this method
+     */
+    OutputBytesList strip(InputBytesList calls) {
+        OutputBytesList out = new OutputBytesList(SerializedRecordedMethodCallList.WIRE_ID, new BufferBytesOut(buffer));
+        Iterator<BytesIn> iterator = calls.iterator();
+        int recordingId = iterator.next().readInt();
+        out.add(bytes -> bytes.write(recordingId));
+
+        while (iterator.hasNext()) {
+            BytesIn call = iterator.next();
+            out.add(bytes -> {
+                if (call.readByte() == RecordedEnterMethodCallSerializer.ENTER_METHOD_CALL_ID) {
+                    stripEnterCall(call, bytes);
+                } else {
+                    stripExitCall(call, bytes);
+                }
+            });
+        }
+        return out;
+    }
+
+    private void stripEnterCall(BytesIn in, BytesOut out) {
+        in.readVarInt();
+        in.readLong();
+        int argsCount = in.readVarInt();
+        // Kind, method id, nano time and args count are kept as is
+        copy(in, 0, in.getPosition(), out);
+        for (int i = 0; i < argsCount; i++) {
+            stripValue(in, out);
+        }
+        // Callee is always recorded by identity
+        copy(in, in.getPosition(), in.available(), out);
+    }
+
+    private void stripExitCall(BytesIn in, BytesOut out) {
+        in.readVarInt();
+        in.readBoolean();
+        in.readLong();
+        copy(in, 0, in.getPosition(), out);
+        stripValue(in, out);
+    }
+
+    private void stripValue(BytesIn in, BytesOut out) {
+        int start = in.getPosition();
+        int typeId = in.readVarInt();
+        byte recorderId = in.readByte();
+        in.moveTo(start);
+        in.skipObject(typeResolver);
+
+        if (recorderId == IDENTITY_RECORDER_ID || recorderId == NULL_RECORDER_ID) {
+            copy(in, start, in.getPosition(), out);
+        } else {
+            out.writeVarInt(typeId);
+            out.write(IDENTITY_RECORDER_ID);
+            // Identity hash code is not known
+            out.write(0);
+        }
+    }
+
+    private static void copy(BytesIn in, int from, int to, BytesOut out) {
+        for (int i = from; i < to; i++) {
+            out.write(in.readByteAt(i));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ulyp.cli;
+
+import java.io.PrintStream;
+
+/**
+ * A command which processes recording files. Commands read files sequentially, so that memory doesn't depend
+ * on the size of the file
+ */
+public interface Command {
+
+    String name();
+
+    /**
+     * @return arguments of the command, e.g. {@code <input> <output> [--flag]}
+     */
+    String usage();
+
+    String description();
+
+    /**
+     * @return names of options which don't have any value
+     */
+    default String[] flags() {
+        return new String[0];
+    }
+
+    void run(Arguments arguments, PrintStream out) throws Exception;
+}
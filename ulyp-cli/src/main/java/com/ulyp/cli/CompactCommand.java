@@ -0,0 +1,50 @@
+package com.ulyp.cli;
+
+import com.ulyp.storage.compaction.CompactionResult;
+import com.ulyp.storage.compaction.RecordingFileCompactorBuilder;
+
+import java.io.File;
+import java.io.PrintStream;
+
+/**
+ * Rewrites the file so that lists of every recording are located contiguously, see
+ * {@link com.ulyp.storage.compaction.RecordingFileCompactor}
+ */
+public class CompactCommand implements Command {
+
+    @Override
+    public String name() {
+        return "compact";
+    }
+
+    @Override
+    public String usage() {
+        return "<input> <output> [--no-toc] [--index]";
+    }
+
+    @Override
+    public String description() {
+        return "Rewrite a complete file with chunks of every recording grouped together";
+    }
+
+    @Override
+    public String[] flags() {
+        return new String[]{"no-toc", "index"};
+    }
+
+    @Override
+    public void run(Arguments arguments, PrintStream out) throws Exception {
+        File input = arguments.inputFile(0);
+        File output = arguments.file(1, "<output>");
+
+        CompactionResult result = new RecordingFileCompactorBuilder(input, output)
+            .setTableOfContents(!arguments.hasFlag("no-toc"))
+            .setPersistedIndex(arguments.hasFlag("index"))
+            .build()
+            .compact();
+
+        out.println("Compacted " + result.getRecordings() + " recordings (" + result.getChunks() + " chunks) from " +
+            Formats.bytes(result.getInputBytes()) + " to " + Formats.bytes(result.getOutputBytes()) + " in " +
+            result.getDurationMillis() + " ms");
+    }
+}
@@ -0,0 +1,95 @@
+package com.ulyp.cli;
+
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.serializers.RecordingMetadataSerializer;
+import com.ulyp.storage.toc.RecordingContents;
+import com.ulyp.storage.toc.TableOfContents;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Copies selected recordings to a new file. Lists are copied as is, without decoding them
+ */
+public class ExtractCommand implements Command {
+
+    @Override
+    public String name() {
+        return "extract";
+    }
+
+    @Override
+    public String usage() {
+        return "<input> <output> " + RecordingFilter.usage();
+    }
+
+    @Override
+    public String description() {
+        return "Copy recordings selected by id, thread name, time range or duration to a new file";
+    }
+
+    @Override
+    public void run(Arguments arguments, PrintStream out) throws Exception {
+        File input = arguments.inputFile(0);
+        File output = arguments.file(1, "<output>");
+        RecordingFilter filter = RecordingFilter.parse(arguments);
+
+        // Recordings are selected by the latest metadata, which is only known once the whole file is read
+        Set<Integer> selected = filter.isByIdOnly() ? null : selectRecordings(input, filter);
+        Set<Integer> copied = new HashSet<>();
+
+        try (RecordingFileOutput fileOutput = new RecordingFileOutput(output)) {
+            boolean complete = RecordingFileScanner.scan(input, (address, list, content) -> {
+                if (RecordingFileScanner.isShared(list)) {
+                    fileOutput.copy(content);
+                    return;
+                }
+                int recordingId = RecordingFileScanner.recordingIdOf(list);
+                if (recordingId >= 0 && (selected != null ? selected.contains(recordingId) : filter.matchesId(recordingId))) {
+                    fileOutput.copy(content);
+                    copied.add(recordingId);
+                }
+            });
+            if (!complete) {
+                out.println("Warning: " + input + " is not complete, only recordings written so far are extracted");
+            }
+            out.println("Extracted " + copied.size() + " recordings to " + output + " (" + Formats.bytes(fileOutput.bytesWritten()) + ")");
+        }
+    }
+
+    /**
+     * @return ids of recordings which match the filter. The table of contents is used if the file has it,
+     * otherwise the file is read
+     */
+    static Set<Integer> selectRecordings(File input, RecordingFilter filter) throws IOException {
+        Map<Integer, RecordingMetadata> metadata = new TreeMap<>();
+        TableOfContents toc = TableOfContents.read(input);
+        if (toc != null) {
+            for (RecordingContents contents : toc.getRecordings()) {
+                if (contents.getMetadata() != null) {
+                    metadata.put(contents.getRecordingId(), contents.getMetadata());
+                }
+            }
+        } else {
+            RecordingFileScanner.scan(input, (address, list, content) -> {
+                if (list.id() == RecordingMetadata.WIRE_ID) {
+                    RecordingMetadata recordingMetadata = RecordingMetadataSerializer.instance.deserialize(list.iterator().next());
+                    metadata.put(recordingMetadata.getId(), recordingMetadata);
+                }
+            });
+        }
+
+        Set<Integer> selected = new HashSet<>();
+        for (RecordingMetadata recordingMetadata : metadata.values()) {
+            if (filter.matches(recordingMetadata)) {
+                selected.add(recordingMetadata.getId());
+            }
+        }
+        return selected;
+    }
+}
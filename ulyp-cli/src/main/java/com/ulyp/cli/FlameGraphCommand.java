@@ -0,0 +1,59 @@
+package com.ulyp.cli;
+
+import com.ulyp.storage.export.CollapsedStacksExporterBuilder;
+import com.ulyp.storage.export.ExportResult;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes call stacks in the collapsed format, see {@link com.ulyp.storage.export.CollapsedStacksExporter}
+ */
+public class FlameGraphCommand implements Command {
+
+    @Override
+    public String name() {
+        return "flamegraph";
+    }
+
+    @Override
+    public String usage() {
+        return "<input> <output> [--recording <id>] [--no-thread-frames]";
+    }
+
+    @Override
+    public String description() {
+        return "Write collapsed call stacks for flamegraph.pl or speedscope";
+    }
+
+    @Override
+    public String[] flags() {
+        return new String[]{"no-thread-frames"};
+    }
+
+    @Override
+    public void run(Arguments arguments, PrintStream out) throws Exception {
+        File input = arguments.inputFile(0);
+        File output = arguments.file(1, "<output>");
+
+        ExportResult result;
+        try (RecordingDataReader reader = new FileRecordingDataReaderBuilder(input).build();
+             Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(output.toPath()), StandardCharsets.UTF_8))) {
+            result = new CollapsedStacksExporterBuilder(reader)
+                .setRecordingId(arguments.getInt("recording", -1))
+                .setThreadFrames(!arguments.hasFlag("no-thread-frames"))
+                .build()
+                .export(writer);
+        }
+
+        out.println("Exported " + result.getCalls() + " calls as " + result.getRecords() + " stacks weighted by " +
+            (result.isTimed() ? "self time in nanoseconds" : "call count"));
+    }
+}
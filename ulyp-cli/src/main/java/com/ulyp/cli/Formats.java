@@ -0,0 +1,56 @@
+package com.ulyp.cli;
+
+import com.ulyp.core.ProcessMetadata;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.storage.toc.TocFrame;
+
+import java.time.Instant;
+
+class Formats {
+
+    static String bytes(long bytes) {
+        if (bytes < 1024L) {
+            return bytes + " B";
+        }
+        double value = bytes;
+        String[] units = {"KB", "MB", "GB", "TB"};
+        int unit = -1;
+        while (value >= 1024.0 && unit < units.length - 1) {
+            value /= 1024.0;
+            unit++;
+        }
+        return String.format("%.1f %s", value, units[unit]);
+    }
+
+    static String millis(long epochMillis) {
+        return epochMillis > 0 ? Instant.ofEpochMilli(epochMillis).toString() : "-";
+    }
+
+    static String listKind(int wireId) {
+        switch (wireId) {
+            case ProcessMetadata.WIRE_ID:
+                return "process metadata";
+            case SerializedTypeList.WIRE_ID:
+                return "types";
+            case SerializedMethodList.WIRE_ID:
+                return "methods";
+            case RecordingMetadata.WIRE_ID:
+                return "recording metadata";
+            case SerializedRecordedMethodCallList.WIRE_ID:
+                return "recorded calls";
+            case SerializedCallIndexList.WIRE_ID:
+                return "call index";
+            case SerializedCallTreeList.WIRE_ID:
+                return "call tree";
+            case TocFrame.WIRE_ID:
+                return "table of contents";
+            default:
+                return "unknown (" + wireId + ")";
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.ulyp.cli;
+
+import com.ulyp.core.ProcessMetadata;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.serializers.ProcessMetadataSerializer;
+import com.ulyp.core.serializers.RecordedEnterMethodCallSerializer;
+import com.ulyp.core.serializers.RecordingMetadataSerializer;
+import com.ulyp.storage.toc.TableOfContents;
+import com.ulyp.storage.util.BinaryListFileReader;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prints a summary of the recording file: recordings with their call counts and how many bytes every kind of list takes
+ */
+public class InfoCommand implements Command {
+
+    private static final int DEFAULT_LIMIT = 100;
+
+    @Override
+    public String name() {
+        return "info";
+    }
+
+    @Override
+    public String usage() {
+        return "<input> [--limit <recordings to print>]";
+    }
+
+    @Override
+    public String description() {
+        return "Print recordings, call counts and bytes per list kind";
+    }
+
+    @Override
+    public void run(Arguments arguments, PrintStream out) throws Exception {
+        File input = arguments.inputFile(0);
+        int limit = arguments.getInt("limit", DEFAULT_LIMIT);
+
+        Summary summary = new Summary();
+        boolean complete = RecordingFileScanner.scan(input, summary);
+
+        out.println("File: " + input + " (" + Formats.bytes(input.length()) + ")");
+        out.println("Complete: " + (complete ? "yes" : "no, the file is still written or was not closed properly"));
+        out.println("Table of contents: " + (complete && TableOfContents.read(input) != null ? "yes" : "no"));
+        if (summary.processMetadata != null) {
+            out.println("Main class: " + summary.processMetadata.getMainClassName() + ", pid: " + summary.processMetadata.getPid());
+        }
+        out.println("Types: " + summary.types + ", methods: " + summary.methods);
+
+        out.println();
+        out.println(String.format("%-20s %12s %12s", "List", "Count", "Bytes"));
+        for (Map.Entry<Integer, ListStats> entry : summary.lists.entrySet()) {
+            out.println(String.format("%-20s %12d %12s", Formats.listKind(entry.getKey()), entry.getValue().count, Formats.bytes(entry.getValue().bytes)));
+        }
+
+        out.println();
+        out.println("Recordings: " + summary.recordings.size());
+        out.println(String.format("%8s  %-30s %-24s %12s %8s %12s %12s", "Id", "Thread", "Started", "Duration, ms", "Chunks", "Calls", "Bytes"));
+        int printed = 0;
+        for (Map.Entry<Integer, RecordingStats> entry : summary.recordings.entrySet()) {
+            if (printed++ >= limit) {
+                out.println("... " + (summary.recordings.size() - limit) + " more");
+                break;
+            }
+            RecordingStats stats = entry.getValue();
+            RecordingMetadata metadata = stats.metadata;
+            String thread = metadata != null && metadata.getThreadName() != null ? metadata.getThreadName() : "-";
+            String started = metadata != null ? Formats.millis(metadata.getRecordingStartedMillis()) : "-";
+            String duration = metadata != null && metadata.getRecordingFinishedMillis() > 0 ?
+                String.valueOf(metadata.getRecordingFinishedMillis() - metadata.getRecordingStartedMillis()) :
+                "-";
+            out.println(String.format("%8d  %-30s %-24s %12s %8d %12d %12s", entry.getKey(), thread, started, duration, stats.chunks, stats.calls, Formats.bytes(stats.bytes)));
+        }
+    }
+
+    /**
+     * Every recorded call has an enter item, so calls are counted without decoding them
+     */
+    private static long countCalls(InputBytesList list) {
+        long calls = 0;
+        Iterator<BytesIn> iterator = list.iterator();
+        // Skip recording id
+        iterator.next();
+        while (iterator.hasNext()) {
+            if (iterator.next().readByteAt(0) == RecordedEnterMethodCallSerializer.ENTER_METHOD_CALL_ID) {
+                calls++;
+            }
+        }
+        return calls;
+    }
+
+    private static class Summary implements RecordingFileScanner.ListHandler {
+
+        private final Map<Integer, ListStats> lists = new TreeMap<>();
+        private final Map<Integer, RecordingStats> recordings = new TreeMap<>();
+        private ProcessMetadata processMetadata;
+        private long types;
+        private long methods;
+
+        @Override
+        public void onList(long address, InputBytesList list, byte[] content) {
+            ListStats listStats = lists.computeIfAbsent(list.id(), id -> new ListStats());
+            listStats.count++;
+            listStats.bytes += content.length + BinaryListFileReader.HEADER_SIZE;
+
+            switch (list.id()) {
+                case ProcessMetadata.WIRE_ID:
+                    processMetadata = ProcessMetadataSerializer.instance.deserialize(list.iterator().next());
+                    break;
+                case SerializedTypeList.WIRE_ID:
+                    types += list.size();
+                    break;
+                case SerializedMethodList.WIRE_ID:
+                    methods += list.size();
+                    break;
+                case RecordingMetadata.WIRE_ID:
+                    RecordingMetadata metadata = RecordingMetadataSerializer.instance.deserialize(list.iterator().next());
+                    RecordingStats metadataStats = recordings.computeIfAbsent(metadata.getId(), id -> new RecordingStats());
+                    metadataStats.metadata = metadata;
+                    metadataStats.bytes += content.length;
+                    break;
+                default:
+                    int recordingId = RecordingFileScanner.recordingIdOf(list);
+                    if (recordingId < 0) {
+                        break;
+                    }
+                    RecordingStats recordingStats = recordings.computeIfAbsent(recordingId, id -> new RecordingStats());
+                    recordingStats.bytes += content.length;
+                    if (list.id() == SerializedRecordedMethodCallList.WIRE_ID) {
+                        recordingStats.chunks++;
+                        recordingStats.calls += countCalls(list);
+                    }
+            }
+        }
+    }
+
+    private static class ListStats {
+
+        private long count;
+        private long bytes;
+    }
+
+    private static class RecordingStats {
+
+        private RecordingMetadata metadata;
+        private long chunks;
+        private long calls;
+        private long bytes;
+    }
+}
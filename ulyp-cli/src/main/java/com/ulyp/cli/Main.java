@@ -0,0 +1,73 @@
+package com.ulyp.cli;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line tool which processes recording files without UI, e.g. on the server where the file was recorded.
+ * Every command reads files sequentially, so files of any size are processed with constant memory
+ */
+public class Main {
+
+    private static final Map<String, Command> commands = new LinkedHashMap<>();
+
+    static {
+        register(new InfoCommand());
+        register(new ExtractCommand());
+        register(new SplitCommand());
+        register(new StripCommand());
+        register(new CompactCommand());
+        register(new FlameGraphCommand());
+        register(new TraceCommand());
+    }
+
+    private static void register(Command command) {
+        commands.put(command.name(), command);
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * @return exit code
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length == 0 || args[0].equals("help") || args[0].equals("--help")) {
+            printUsage(out);
+            return args.length == 0 ? 1 : 0;
+        }
+
+        Command command = commands.get(args[0]);
+        if (command == null) {
+            err.println("Unknown command " + args[0]);
+            printUsage(err);
+            return 1;
+        }
+
+        try {
+            command.run(new Arguments(Arrays.copyOfRange(args, 1, args.length), command.flags()), out);
+            return 0;
+        } catch (UsageException e) {
+            err.println(e.getMessage());
+            err.println("Usage: ulyp-cli " + command.name() + " " + command.usage());
+            return 1;
+        } catch (Exception e) {
+            err.println("Command " + command.name() + " failed: " + e.getMessage());
+            e.printStackTrace(err);
+            return 2;
+        }
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: ulyp-cli <command> [arguments]");
+        out.println();
+        out.println("Commands:");
+        for (Command command : commands.values()) {
+            out.println("  " + command.name() + " " + command.usage());
+            out.println("      " + command.description());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.ulyp.cli;
+
+import com.ulyp.core.RecordingCompleteMark;
+import com.ulyp.core.bytes.BufferBytesOut;
+import com.ulyp.core.mem.OutputBytesList;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.util.BinaryListFileWriter;
+import lombok.Getter;
+import org.agrona.ExpandableDirectByteBuffer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A recording file written by a command. The file is marked complete once it's closed
+ */
+public class RecordingFileOutput implements AutoCloseable {
+
+    @Getter
+    private final File file;
+    private final BinaryListFileWriter writer;
+    @Getter
+    private long listsWritten = 0;
+
+    public RecordingFileOutput(File file) throws IOException {
+        this.file = file;
+        this.writer = new BinaryListFileWriter(file);
+    }
+
+    /**
+     * Copies the list read by {@link RecordingFileScanner} as is
+     */
+    public void copy(byte[] content) throws StorageException {
+        writer.write(content);
+        listsWritten++;
+    }
+
+    public void write(OutputBytesList list) throws StorageException {
+        writer.write(list);
+        listsWritten++;
+    }
+
+    public long bytesWritten() {
+        return writer.address();
+    }
+
+    @Override
+    public void close() throws StorageException {
+        try (OutputBytesList completeMark = new OutputBytesList(RecordingCompleteMark.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()))) {
+            writer.write(completeMark);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ulyp.cli;
+
+import com.ulyp.core.ProcessMetadata;
+import com.ulyp.core.RecordingCompleteMark;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.bytes.DirectBytesIn;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.serializers.RecordingMetadataSerializer;
+import com.ulyp.storage.util.BinaryListFileReader;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads all binary lists of a recording file in the file order. Only a single list is held in memory at a time
+ */
+public class RecordingFileScanner {
+
+    public interface ListHandler {
+
+        /**
+         * @param address offset of the list in the file
+         * @param list    decoded list
+         * @param content the list as is, so that it can be copied to another file without encoding it again
+         */
+        void onList(long address, InputBytesList list, byte[] content) throws IOException;
+    }
+
+    /**
+     * @return true if the file is complete, i.e. all lists up to the recording complete mark are read. Otherwise,
+     * the file is still written or the process which recorded it did not exit properly
+     */
+    public static boolean scan(File file, ListHandler handler) throws IOException {
+        try (BinaryListFileReader reader = new BinaryListFileReader(file)) {
+            while (true) {
+                long address = reader.address();
+                byte[] content = reader.readContent();
+                if (content == null) {
+                    return false;
+                }
+                InputBytesList list = new InputBytesList(new DirectBytesIn(new UnsafeBuffer(content)));
+                if (list.id() == RecordingCompleteMark.WIRE_ID) {
+                    return true;
+                }
+                handler.onList(address, list, content);
+            }
+        }
+    }
+
+    /**
+     * @return true if the list is needed to read any recording of the file, i.e. process metadata, types and methods
+     */
+    public static boolean isShared(InputBytesList list) {
+        switch (list.id()) {
+            case ProcessMetadata.WIRE_ID:
+            case SerializedTypeList.WIRE_ID:
+            case SerializedMethodList.WIRE_ID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return id of the recording the list belongs to or -1 if the list doesn't belong to any recording
+     */
+    public static int recordingIdOf(InputBytesList list) {
+        switch (list.id()) {
+            case SerializedRecordedMethodCallList.WIRE_ID:
+            case SerializedCallIndexList.WIRE_ID:
+            case SerializedCallTreeList.WIRE_ID:
+                // Recording id is the first item of chunks, call index and call tree lists
+                return list.iterator().next().readInt();
+            case RecordingMetadata.WIRE_ID:
+                return RecordingMetadataSerializer.instance.deserialize(list.iterator().next()).getId();
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.ulyp.cli;
+
+import com.ulyp.core.RecordingMetadata;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Selects recordings by their metadata. All conditions which are set must match
+ */
+public class RecordingFilter {
+
+    private final Set<Integer> recordingIds;
+    private final Pattern threadName;
+    private final long fromMillis;
+    private final long toMillis;
+    private final Duration minDuration;
+
+    public RecordingFilter(Set<Integer> recordingIds, Pattern threadName, long fromMillis, long toMillis, Duration minDuration) {
+        this.recordingIds = recordingIds;
+        this.threadName = threadName;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.minDuration = minDuration;
+    }
+
+    public static String usage() {
+        return "[--id <id,...>] [--thread <regex>] [--from <millis|instant>] [--to <millis|instant>] [--min-duration <duration>]";
+    }
+
+    public static RecordingFilter parse(Arguments arguments) {
+        String threadName = arguments.getString("thread", null);
+        return new RecordingFilter(
+            arguments.getIntSet("id"),
+            threadName != null ? Pattern.compile(threadName) : null,
+            arguments.getEpochMillis("from", Long.MIN_VALUE),
+            arguments.getEpochMillis("to", Long.MAX_VALUE),
+            arguments.getDuration("min-duration", Duration.ZERO)
+        );
+    }
+
+    /**
+     * @return true if recordings are only selected by id, so metadata is not needed to filter them
+     */
+    public boolean isByIdOnly() {
+        return !recordingIds.isEmpty() && threadName == null && fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE && minDuration.isZero();
+    }
+
+    public boolean matchesId(int recordingId) {
+        return recordingIds.isEmpty() || recordingIds.contains(recordingId);
+    }
+
+    /**
+     * @param metadata the latest metadata of the recording
+     */
+    public boolean matches(RecordingMetadata metadata) {
+        if (!matchesId(metadata.getId())) {
+            return false;
+        }
+        if (threadName != null && (metadata.getThreadName() == null || !threadName.matcher(metadata.getThreadName()).matches())) {
+            return false;
+        }
+        boolean finished = metadata.getRecordingFinishedMillis() > 0;
+        long finishedMillis = finished ? metadata.getRecordingFinishedMillis() : metadata.getRecordingStartedMillis();
+        if (metadata.getRecordingStartedMillis() > toMillis || finishedMillis < fromMillis) {
+            return false;
+        }
+        if (!minDuration.isZero()) {
+            // Duration of a recording which was not finished is unknown
+            return finished && finishedMillis - metadata.getRecordingStartedMillis() >= minDuration.toMillis();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package com.ulyp.cli;
+
+import com.ulyp.storage.util.BinaryListFileReader;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the recording file into several files, every one of which can be opened on its own. A recording is never
+ * split between files, so recordings are assigned to files in the order they started at. Process metadata, types and
+ * methods are copied to every file
+ */
+public class SplitCommand implements Command {
+
+    private static final long DEFAULT_MAX_SIZE = 1024L * 1024L * 1024L;
+
+    @Override
+    public String name() {
+        return "split";
+    }
+
+    @Override
+    public String usage() {
+        return "<input> <output directory> [--max-size <size>]";
+    }
+
+    @Override
+    public String description() {
+        return "Split a file into files of the given size (1g by default), keeping every recording in a single file";
+    }
+
+    @Override
+    public void run(Arguments arguments, PrintStream out) throws Exception {
+        File input = arguments.inputFile(0);
+        File outputDirectory = arguments.file(1, "<output directory>");
+        long maxSize = arguments.getBytes("max-size", DEFAULT_MAX_SIZE);
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new UsageException("Could not create directory " + outputDirectory);
+        }
+
+        // Size of every recording in the order of the first list, as well as size of lists copied to every file
+        Map<Integer, Long> recordingBytes = new LinkedHashMap<>();
+        long[] sharedBytes = new long[1];
+        RecordingFileScanner.scan(input, (address, list, content) -> {
+            long bytes = content.length + BinaryListFileReader.HEADER_SIZE;
+            if (RecordingFileScanner.isShared(list)) {
+                sharedBytes[0] += bytes;
+                return;
+            }
+            int recordingId = RecordingFileScanner.recordingIdOf(list);
+            if (recordingId >= 0) {
+                recordingBytes.merge(recordingId, bytes, Long::sum);
+            }
+        });
+
+        Map<Integer, Integer> partOfRecording = new HashMap<>();
+        List<Integer> recordingsPerPart = new ArrayList<>();
+        long partBytes = 0;
+        for (Map.Entry<Integer, Long> entry : recordingBytes.entrySet()) {
+            // A recording which is larger than the max size gets a file of its own
+            if (recordingsPerPart.isEmpty() || (partBytes > 0 && sharedBytes[0] + partBytes + entry.getValue() > maxSize)) {
+                recordingsPerPart.add(0);
+                partBytes = 0;
+            }
+            int part = recordingsPerPart.size() - 1;
+            partOfRecording.put(entry.getKey(), part);
+            recordingsPerPart.set(part, recordingsPerPart.get(part) + 1);
+            partBytes += entry.getValue();
+        }
+        if (recordingsPerPart.isEmpty()) {
+            out.println("No recordings found in " + input);
+            return;
+        }
+
+        List<RecordingFileOutput> outputs = new ArrayList<>();
+        try {
+            for (int part = 0; part < recordingsPerPart.size(); part++) {
+                outputs.add(new RecordingFileOutput(new File(outputDirectory, partFileName(input, part))));
+            }
+            RecordingFileScanner.scan(input, (address, list, content) -> {
+                if (RecordingFileScanner.isShared(list)) {
+                    for (RecordingFileOutput output : outputs) {
+                        output.copy(content);
+                    }
+                    return;
+                }
+                Integer part = partOfRecording.get(RecordingFileScanner.recordingIdOf(list));
+                if (part != null) {
+                    outputs.get(part).copy(content);
+                }
+            });
+        } finally {
+            for (RecordingFileOutput output : outputs) {
+                output.close();
+            }
+        }
+
+        for (int part = 0; part < outputs.size(); part++) {
+            RecordingFileOutput output = outputs.get(part);
+            out.println(output.getFile() + ": " + recordingsPerPart.get(part) + " recordings, " + Formats.bytes(output.getFile().length()));
+        }
+    }
+
+    static String partFileName(File input, int part) {
+        String name = input.getName();
+        int extension = name.lastIndexOf('.');
+        if (extension > 0) {
+            return name.substring(0, extension) + "-" + (part + 1) + name.substring(extension);
+        } else {
+            return name + "-" + (part + 1);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.ulyp.cli;
+
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.bytes.BufferBytesOut;
+import com.ulyp.core.mem.OutputBytesList;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.serializers.RecordingMetadataSerializer;
+import org.agrona.ExpandableDirectByteBuffer;
+
+import java.io.File;
+import java.io.PrintStream;
+
+/**
+ * Copies the file without argument and return values, so that only the structure of call trees is kept. Such a copy
+ * is much smaller and doesn't contain any data of the recorded application
+ */
+public class StripCommand implements Command {
+
+    @Override
+    public String name() {
+        return "strip";
+    }
+
+    @Override
+    public String usage() {
+        return "<input> <output>";
+    }
+
+    @Override
+    public String description() {
+        return "Copy a file without argument and return values, keeping call trees, methods and timings";
+    }
+
+    @Override
+    public void run(Arguments arguments, PrintStream out) throws Exception {
+        File input = arguments.inputFile(0);
+        File output = arguments.file(1, "<output>");
+
+        CallPayloadStripper stripper = new CallPayloadStripper();
+        try (RecordingFileOutput fileOutput = new RecordingFileOutput(output)) {
+            boolean complete = RecordingFileScanner.scan(input, (address, list, content) -> {
+                switch (list.id()) {
+                    case SerializedTypeList.WIRE_ID:
+                        stripper.onTypes(list);
+                        fileOutput.copy(content);
+                        break;
+                    case SerializedRecordedMethodCallList.WIRE_ID:
+                        try (OutputBytesList stripped = stripper.strip(list)) {
+                            fileOutput.write(stripped);
+                        }
+                        break;
+                    case SerializedCallIndexList.WIRE_ID:
+                        // Index refers to offsets of calls in chunks, which are different once values are stripped
+                        break;
+                    case SerializedCallTreeList.WIRE_ID:
+                        // Aggregated calls have no values
+                        fileOutput.copy(content);
+                        break;
+                    case RecordingMetadata.WIRE_ID:
+                        RecordingMetadata metadata = RecordingMetadataSerializer.instance.deserialize(list.iterator().next());
+                        metadata.setCallIndexed(false);
+                        try (OutputBytesList bytes = new OutputBytesList(RecordingMetadata.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()))) {
+                            bytes.add(bytesOut -> RecordingMetadataSerializer.instance.serialize(bytesOut, metadata));
+                            fileOutput.write(bytes);
+                        }
+                        break;
+                    default:
+                        if (RecordingFileScanner.isShared(list)) {
+                            fileOutput.copy(content);
+                        }
+                }
+            });
+            if (!complete) {
+                out.println("Warning: " + input + " is not complete, only recordings written so far are copied");
+            }
+            out.println("Stripped " + input + " (" + Formats.bytes(input.length()) + ") to " + output +
+                " (" + Formats.bytes(fileOutput.bytesWritten()) + ")");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.ulyp.cli;
+
+import com.ulyp.storage.export.ChromeTraceExporterBuilder;
+import com.ulyp.storage.export.ExportResult;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+
+/**
+ * Writes calls as a Chrome trace, see {@link com.ulyp.storage.export.ChromeTraceExporter}
+ */
+public class TraceCommand implements Command {
+
+    @Override
+    public String name() {
+        return "trace";
+    }
+
+    @Override
+    public String usage() {
+        return "<input> <output> [--recording <id>] [--min-duration <duration>]";
+    }
+
+    @Override
+    public String description() {
+        return "Write calls in Chrome trace format for Perfetto or chrome://tracing";
+    }
+
+    @Override
+    public void run(Arguments arguments, PrintStream out) throws Exception {
+        File input = arguments.inputFile(0);
+        File output = arguments.file(1, "<output>");
+
+        ExportResult result;
+        try (RecordingDataReader reader = new FileRecordingDataReaderBuilder(input).build();
+             Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(output.toPath()), StandardCharsets.UTF_8))) {
+            result = new ChromeTraceExporterBuilder(reader)
+                .setRecordingId(arguments.getInt("recording", -1))
+                .setMinDuration(arguments.getDuration("min-duration", Duration.ZERO))
+                .build()
+                .export(writer);
+        }
+
+        out.println("Exported " + result.getRecords() + " events of " + result.getCalls() + " calls" +
+            (result.isTimed() ? "" : ", timestamps were not recorded so the clock is the call count"));
+    }
+}
@@ -0,0 +1,11 @@
+package com.ulyp.cli;
+
+/**
+ * Thrown if command line arguments are wrong. Usage of the command is printed along with the message
+ */
+public class UsageException extends RuntimeException {
+
+    public UsageException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,208 @@
+package com.ulyp.cli;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.recorders.IdentityObjectRecord;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.tree.CallRecord;
+import com.ulyp.storage.tree.CallRecordTree;
+import com.ulyp.storage.tree.CallRecordTreeBuilder;
+import com.ulyp.storage.tree.InMemoryIndex;
+import com.ulyp.storage.tree.Recording;
+import com.ulyp.storage.util.TestRecordingFile;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandsTest {
+
+    private File directory;
+    private File input;
+    private String output;
+    private TestRecordingFile recordingFile;
+    private Type type;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory(CommandsTest.class.getSimpleName()).toFile();
+        input = new File(directory, "recording.dat");
+        output = new File(directory, "output.dat").getPath();
+
+        recordingFile = new TestRecordingFile(input);
+        type = recordingFile.getType();
+        TypeResolver typeResolver = recordingFile.getTypeResolver();
+        Method method = recordingFile.method(1000, "run");
+        Object obj = recordingFile.getCallee();
+        FileRecordingDataWriter writer = new FileRecordingDataWriter(input);
+        recordingFile.writeTypesAndMethods(writer, String.class);
+
+        // Two recordings with calls a -> b, chunks of which are interleaved
+        for (int recordingId = 1; recordingId <= 2; recordingId++) {
+            writer.write(RecordingMetadata.builder()
+                .id(recordingId)
+                .threadName(recordingId == 1 ? "main" : "worker-1")
+                .recordingStartedMillis(1000L * recordingId)
+                .recordingFinishedMillis(1000L * recordingId + 100L * recordingId)
+                .build());
+            SerializedRecordedMethodCallList calls = recordingFile.calls(recordingId);
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"argument"});
+            writer.write(calls);
+        }
+        for (int recordingId = 1; recordingId <= 2; recordingId++) {
+            SerializedRecordedMethodCallList calls = recordingFile.calls(recordingId);
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"child argument"});
+            calls.addExitMethodCall(2, typeResolver, "child result");
+            calls.addExitMethodCall(1, typeResolver, "result");
+            writer.write(calls);
+        }
+        writer.close();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private String run(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = Main.run(args, new PrintStream(out, true), new PrintStream(err, true));
+        assertEquals(0, exitCode, err.toString());
+        return out.toString();
+    }
+
+    private interface RecordingsAssertion {
+
+        void check(List<Recording> recordings) throws Exception;
+    }
+
+    /**
+     * Call records are read lazily, so recordings are checked while the file is open
+     */
+    private void assertRecordings(File file, RecordingsAssertion assertion) throws Exception {
+        try (RecordingDataReader reader = new FileRecordingDataReaderBuilder(file).build();
+             CallRecordTree tree = new CallRecordTreeBuilder(reader)
+                 .setIndexSupplier(InMemoryIndex::new)
+                 .setReadInfinitely(false)
+                 .build()) {
+            tree.getCompleteFuture().get();
+            assertion.check(tree.getRecordings());
+        }
+    }
+
+    @Test
+    void testInfo() {
+        String info = run("info", input.getPath());
+
+        assertTrue(info.contains("Complete: yes"));
+        assertTrue(info.contains("Recordings: 2"));
+        assertTrue(info.contains("worker-1"));
+    }
+
+    @Test
+    void testExtractById() throws Exception {
+        run("extract", input.getPath(), output, "--id", "2");
+
+        assertRecordings(new File(output), recordings -> {
+            assertEquals(1, recordings.size());
+            assertEquals(2, recordings.get(0).getId());
+            assertEquals(2, recordings.get(0).callCount());
+        });
+    }
+
+    @Test
+    void testExtractByThreadAndDuration() throws Exception {
+        run("extract", input.getPath(), output, "--thread", "worker-.*", "--min-duration", "150ms");
+
+        assertRecordings(new File(output), recordings -> {
+            assertEquals(1, recordings.size());
+            assertEquals("worker-1", recordings.get(0).getMetadata().getThreadName());
+        });
+
+        run("extract", input.getPath(), output, "--min-duration", "1s");
+        assertRecordings(new File(output), recordings -> assertTrue(recordings.isEmpty()));
+    }
+
+    @Test
+    void testSplit() throws Exception {
+        File splitDirectory = new File(directory, "split");
+        run("split", input.getPath(), splitDirectory.getPath(), "--max-size", "1");
+
+        File first = new File(splitDirectory, "recording-1.dat");
+        File second = new File(splitDirectory, "recording-2.dat");
+        assertRecordings(first, recordings -> assertEquals(1, recordings.get(0).getId()));
+        assertRecordings(second, recordings -> assertEquals(2, recordings.get(0).getId()));
+
+        first.delete();
+        second.delete();
+        splitDirectory.delete();
+    }
+
+    @Test
+    void testStrip() throws Exception {
+        run("strip", input.getPath(), output);
+
+        assertRecordings(new File(output), recordings -> {
+            assertEquals(2, recordings.size());
+            for (Recording recording : recordings) {
+                CallRecord root = recording.getRoot();
+                assertEquals(2, recording.callCount());
+                assertEquals("run", root.getMethod().getName());
+                assertInstanceOf(IdentityObjectRecord.class, root.getArgs().get(0));
+                assertInstanceOf(IdentityObjectRecord.class, root.getReturnValue());
+                assertInstanceOf(IdentityObjectRecord.class, root.getChildren().get(0).getReturnValue());
+            }
+        });
+        assertTrue(new File(output).length() < input.length());
+    }
+
+    @Test
+    void testFlameGraph() throws Exception {
+        String summary = run("flamegraph", input.getPath(), output, "--recording", "2");
+
+        String frame = type.getName() + ".run";
+        List<String> lines = Files.readAllLines(new File(output).toPath());
+        assertEquals(2, lines.size());
+        assertTrue(lines.contains("worker-1;" + frame + " 1"));
+        assertTrue(lines.contains("worker-1;" + frame + ";" + frame + " 1"));
+        assertTrue(summary.contains("call count"));
+    }
+
+    @Test
+    void testTrace() throws Exception {
+        run("trace", input.getPath(), output);
+
+        String trace = new String(Files.readAllBytes(new File(output).toPath()), StandardCharsets.UTF_8);
+        assertTrue(trace.startsWith("{\"traceEvents\":["));
+        assertTrue(trace.contains("\"tid\":1,\"ts\":0,\"dur\":2}"));
+        assertTrue(trace.contains("\"tid\":2,\"ts\":1,\"dur\":1}"));
+    }
+
+    @Test
+    void testUnknownCommand() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(1, Main.run(new String[]{"unknown"}, new PrintStream(new ByteArrayOutputStream()), new PrintStream(err, true)));
+        assertTrue(err.toString().contains("Unknown command"));
+    }
+}
@@ -0,0 +1,33 @@
+package com.ulyp.core;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Index entry of a single recorded call which is written by the agent, see {@link com.ulyp.core.mem.SerializedCallIndexList}.
+ * Calls are located by the ordinal of the recorded calls list (chunk) of the recording and the offset of the call in it.
+ */
+@Getter
+@Builder
+@ToString
+public class CallIndexEntry {
+
+    private final int callId;
+    /**
+     * Call id of the parent call or 0 for the root call
+     */
+    private final int parentCallId;
+    private final int subtreeSize;
+    private final int enterChunk;
+    private final int enterOffset;
+    /**
+     * Chunk of exit method call or -1 if the call is not completed yet
+     */
+    private final int exitChunk;
+    private final int exitOffset;
+
+    public boolean isCompleted() {
+        return exitChunk >= 0;
+    }
+}
@@ -23,6 +23,10 @@ public class RecordingMetadata {
     private long recordingFinishedMillis;
     @Builder.Default @ToString.Exclude
     private List<String> stackTraceElements = Collections.emptyList();
+    /**
+     * If call index is written by the agent for the recording, see {@link com.ulyp.core.mem.SerializedCallIndexList}
+     */
+    private boolean callIndexed;
 
     public RecordingMetadata withCompleteTime(long recordingFinishedMillis) {
         return RecordingMetadata.builder()
@@ -32,6 +36,7 @@ public class RecordingMetadata {
             .recordingStartedMillis(recordingStartedMillis)
             .recordingFinishedMillis(recordingFinishedMillis)
             .stackTraceElements(stackTraceElements)
+            .callIndexed(callIndexed)
             .build();
     }
 }
@@ -60,8 +60,7 @@ public abstract class AbstractBytesOut implements AutoCloseable, BytesOut {
             } else {
                 recorder = ObjectRecorderRegistry.NULL_RECORDER.getInstance();
             }
-            write(recorder.getId());
-            recorder.write(object, nestedOut, typeResolver);
+            recorder.writeWithId(object, nestedOut, typeResolver);
         }
     }
 
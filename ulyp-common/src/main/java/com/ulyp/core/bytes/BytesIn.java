@@ -1,6 +1,7 @@
 package com.ulyp.core.bytes;
 
 import com.ulyp.core.ByIdTypeResolver;
+import com.ulyp.core.recorders.LazyObjectRecord;
 import com.ulyp.core.recorders.ObjectRecord;
 import org.jetbrains.annotations.TestOnly;
 
@@ -35,10 +36,22 @@ public interface BytesIn {
 
     ObjectRecord readObject(ByIdTypeResolver typeResolver);
 
+    /**
+     * Reads the object, but keeps length prefixed values as raw bytes until they are requested
+     */
+    LazyObjectRecord readLazyObject(ByIdTypeResolver typeResolver);
+
+    /**
+     * Moves past the object. Length prefixed values are skipped without decoding
+     */
+    void skipObject(ByIdTypeResolver typeResolver);
+
     String readString();
 
     int readIntAt(int offset);
 
+    byte readByteAt(int offset);
+
     @TestOnly
     byte[] toByteArray();
 }
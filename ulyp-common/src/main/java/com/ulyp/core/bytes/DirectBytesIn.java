@@ -2,6 +2,7 @@ package com.ulyp.core.bytes;
 
 import com.ulyp.core.ByIdTypeResolver;
 import com.ulyp.core.Type;
+import com.ulyp.core.recorders.LazyObjectRecord;
 import com.ulyp.core.recorders.ObjectRecord;
 import com.ulyp.core.recorders.ObjectRecorder;
 import com.ulyp.core.recorders.ObjectRecorderRegistry;
@@ -120,10 +121,49 @@ public class DirectBytesIn implements BytesIn {
     @Override
     public ObjectRecord readObject(ByIdTypeResolver typeResolver) {
         Type itemClassType = typeResolver.getType(readVarInt());
-        ObjectRecorder recorder = ObjectRecorderRegistry.recorderForId(readByte());
+        byte recorderId = readByte();
+        if (ObjectRecorderRegistry.isLengthPrefixed(recorderId)) {
+            pos += Integer.BYTES;
+        }
+        ObjectRecorder recorder = ObjectRecorderRegistry.recorderForId(recorderId);
         return recorder.read(itemClassType, this, typeResolver);
     }
 
+    @Override
+    public LazyObjectRecord readLazyObject(ByIdTypeResolver typeResolver) {
+        int start = pos;
+        int typeId = readVarInt();
+        byte recorderId = readByte();
+        if (!ObjectRecorderRegistry.isLengthPrefixed(recorderId)) {
+            pos = start;
+            return LazyObjectRecord.of(readObject(typeResolver));
+        }
+        byte[] value = new byte[readInt()];
+        buffer.getBytes(pos, value);
+        pos += value.length;
+        // Bytes are copied, so that the whole buffer is not retained by the record
+        return new LazyObjectRecord(
+                typeResolver.getType(typeId),
+                ObjectRecorderRegistry.recorderForId(recorderId),
+                new DirectBytesIn(value),
+                typeResolver
+        );
+    }
+
+    @Override
+    public void skipObject(ByIdTypeResolver typeResolver) {
+        int start = pos;
+        readVarInt();
+        byte recorderId = readByte();
+        if (ObjectRecorderRegistry.isLengthPrefixed(recorderId)) {
+            int length = readInt();
+            pos += length;
+        } else {
+            pos = start;
+            readObject(typeResolver);
+        }
+    }
+
     @Override
     public int getPosition() {
         return pos;
@@ -139,6 +179,11 @@ public class DirectBytesIn implements BytesIn {
         return buffer.getInt(offset);
     }
 
+    @Override
+    public byte readByteAt(int offset) {
+        return buffer.getByte(offset);
+    }
+
     @Override
     public String readString() {
         int length = readVarInt();
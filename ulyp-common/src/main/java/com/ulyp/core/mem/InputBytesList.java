@@ -12,7 +12,7 @@ public class InputBytesList implements Iterable<BytesIn> {
     private static final int SIZE_OFFSET = Integer.BYTES;
     private static final int ID_OFFSET = SIZE_OFFSET + Integer.BYTES;
     public static final int HEADER_LENGTH = ID_OFFSET + Integer.BYTES;
-    private static final int RECORD_HEADER_LENGTH = Integer.BYTES;
+    public static final int RECORD_HEADER_LENGTH = Integer.BYTES;
 
     private final BytesIn bytesIn;
 
@@ -44,8 +44,17 @@ public class InputBytesList implements Iterable<BytesIn> {
         return size() == 0;
     }
 
+    /**
+     * @return view of the whole list (including the header) which has its own position, so that the list
+     * can be read by several threads at the same time
+     */
+    public BytesIn view() {
+        return bytesIn.readBytes(0, bytesIn.available());
+    }
+
     private class Iterator implements AddressableItemIterator<BytesIn> {
 
+        private final BytesIn bytesIn = view();
         private int nextRecordAddress = HEADER_LENGTH;
         private int currentRecordAddress = -1;
 
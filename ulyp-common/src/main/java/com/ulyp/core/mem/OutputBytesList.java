@@ -22,6 +22,7 @@ public class OutputBytesList implements AutoCloseable {
     private final BytesOut bytesOut;
     private final Writer writer = new Writer();
     private int size = 0;
+    private int lastItemPosition = -1;
 
     public OutputBytesList(int id, BytesOut bytesOut) {
         this.bytesOut = bytesOut;
@@ -33,12 +34,14 @@ public class OutputBytesList implements AutoCloseable {
     public Writer writer() {
         writer.position = bytesOut.position();
         bytesOut.write(0);
+        lastItemPosition = bytesOut.position();
         return writer;
     }
 
     public void add(Consumer<BytesOut> writeCallback) {
         int position = bytesOut.position();
         bytesOut.write(0);
+        lastItemPosition = bytesOut.position();
         writeCallback.accept(bytesOut);
         int bytesWritten = bytesOut.bytesWritten(position) - Integer.BYTES; // TODO check initial int span multiple pages
         bytesOut.writeAt(position, bytesWritten);
@@ -62,6 +65,18 @@ public class OutputBytesList implements AutoCloseable {
         return bytesOut.position();
     }
 
+    /**
+     * @return offset of the last added item content from the beginning of the list. The offset is exactly the same
+     * as the item address provided by {@link InputBytesList} iterator once the list is written and read back
+     */
+    public int lastItemOffset() {
+        if (lastItemPosition < 0) {
+            throw new IllegalStateException("No item has been added yet");
+        }
+        // Position may differ from offset in case of paged output, since the unused tails of pages are not written
+        return bytesOut.bytesWritten(0) - bytesOut.bytesWritten(lastItemPosition);
+    }
+
     public boolean isEmpty() {
         return size == 0;
     }
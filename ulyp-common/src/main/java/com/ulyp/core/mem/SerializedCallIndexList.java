@@ -0,0 +1,55 @@
+package com.ulyp.core.mem;
+
+import com.ulyp.core.bytes.BufferBytesOut;
+import com.ulyp.core.serializers.CallIndexEntrySerializer;
+import org.agrona.ExpandableDirectByteBuffer;
+
+/**
+ * A list of call index entries written by the agent right after the recorded calls list (chunk) of the recording.
+ * The list contains entries for all calls completed in the chunk followed by entries for calls which are still open
+ * at the end of the chunk (from the bottom to the top of the call stack). The first item is the recording id.
+ * <p>
+ * Index allows readers to build call tree without decoding every recorded call, see {@link com.ulyp.core.CallIndexEntry}
+ */
+public class SerializedCallIndexList {
+
+    public static final int WIRE_ID = 4;
+
+    private final int recordingId;
+    private final OutputBytesList out;
+
+    public SerializedCallIndexList(int recordingId) {
+        this.recordingId = recordingId;
+        this.out = new OutputBytesList(WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()));
+
+        out.add(out -> out.write(recordingId));
+    }
+
+    public void addCompletedCall(int callId, int parentCallId, int subtreeSize, int enterChunk, int enterOffset, int exitChunk, int exitOffset) {
+        OutputBytesList.Writer writer = out.writer();
+        CallIndexEntrySerializer.instance.serialize(writer, callId, parentCallId, subtreeSize, enterChunk, enterOffset, exitChunk, exitOffset);
+        writer.commit();
+    }
+
+    public void addOpenCall(int callId, int parentCallId, int subtreeSize, int enterChunk, int enterOffset) {
+        OutputBytesList.Writer writer = out.writer();
+        CallIndexEntrySerializer.instance.serialize(writer, callId, parentCallId, subtreeSize, enterChunk, enterOffset, -1, 0);
+        writer.commit();
+    }
+
+    public int getRecordingId() {
+        return recordingId;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        return out.size() - 1;
+    }
+
+    public OutputBytesList toBytes() {
+        return out;
+    }
+}
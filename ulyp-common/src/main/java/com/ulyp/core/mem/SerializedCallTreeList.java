@@ -0,0 +1,60 @@
+package com.ulyp.core.mem;
+
+import com.ulyp.core.bytes.BufferBytesOut;
+import org.agrona.ExpandableDirectByteBuffer;
+
+/**
+ * Calling context tree of a recording which is written by the agent if calls are aggregated instead of being recorded
+ * one by one. Every node of the tree is a distinct call path, i.e. a method called from the parent node, and has call
+ * count, total and self time of calls on the path.
+ * <p>
+ * The agent writes the tree periodically and every list only has nodes which changed since the previous list of the
+ * recording, with aggregates accumulated since then. Nodes are identified by their index in the tree. New nodes
+ * go in the index order after nodes which are already known, so the parent of every node is known before the node
+ * itself. Readers sum up aggregates of all lists of the recording. The first item is the recording id.
+ */
+public class SerializedCallTreeList {
+
+    public static final int WIRE_ID = 8;
+    public static final int NO_PARENT = -1;
+
+    private final int recordingId;
+    private final OutputBytesList out;
+
+    public SerializedCallTreeList(int recordingId) {
+        this.recordingId = recordingId;
+        this.out = new OutputBytesList(WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()));
+
+        out.add(out -> out.write(recordingId));
+    }
+
+    /**
+     * @param parent index of the parent node or {@link #NO_PARENT} if the method is called at the bottom of the stack
+     */
+    public void add(int node, int parent, int methodId, long callCount, long totalNanos, long selfNanos) {
+        OutputBytesList.Writer writer = out.writer();
+        writer.write(node);
+        writer.write(parent);
+        writer.write(methodId);
+        writer.write(callCount);
+        writer.write(totalNanos);
+        writer.write(selfNanos);
+        writer.commit();
+    }
+
+    public int getRecordingId() {
+        return recordingId;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        return out.size() - 1;
+    }
+
+    public OutputBytesList toBytes() {
+        return out;
+    }
+}
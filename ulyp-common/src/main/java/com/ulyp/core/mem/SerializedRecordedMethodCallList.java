@@ -15,16 +15,19 @@ public class SerializedRecordedMethodCallList {
     public static final byte ENTER_METHOD_CALL_ID = 1;
     public static final int WIRE_ID = 2;
 
+    private final int recordingId;
     private final OutputBytesList out;
 
     @TestOnly
     public SerializedRecordedMethodCallList(int recordingId, OutputBytesList writeBinaryList) {
+        this.recordingId = recordingId;
         this.out = writeBinaryList;
 
         writeBinaryList.add(out -> out.write(recordingId));
     }
 
     public SerializedRecordedMethodCallList(int recordingId, MemPageAllocator pageAllocator) {
+        this.recordingId = recordingId;
         this.out = new OutputBytesList(WIRE_ID, new PagedMemBytesOut(pageAllocator));
 
         out.add(out -> out.write(recordingId));
@@ -58,6 +61,10 @@ public class SerializedRecordedMethodCallList {
         writer.commit();
     }
 
+    public int getRecordingId() {
+        return recordingId;
+    }
+
     public boolean isEmpty() {
         return size() == 0;
     }
@@ -70,6 +77,13 @@ public class SerializedRecordedMethodCallList {
         return out.bytesWritten();
     }
 
+    /**
+     * @return offset of the last added call from the beginning of the list, see {@link OutputBytesList#lastItemOffset()}
+     */
+    public int lastCallOffset() {
+        return out.lastItemOffset();
+    }
+
     public OutputBytesList toBytes() {
         return out;
     }
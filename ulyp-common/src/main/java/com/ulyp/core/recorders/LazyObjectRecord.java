@@ -0,0 +1,87 @@
+package com.ulyp.core.recorders;
+
+import com.ulyp.core.ByIdTypeResolver;
+import com.ulyp.core.Type;
+import com.ulyp.core.bytes.BytesIn;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Recorded object which is kept as raw bytes and only decoded once it's requested. Only values of composite recorders
+ * are kept as bytes (see {@link ObjectRecorder#isComposite()}), since only they are prefixed with their length and
+ * they are usually the ones which are expensive to decode. All other values are decoded right away.
+ */
+public class LazyObjectRecord {
+
+    private final Type type;
+    private final ObjectRecorder recorder;
+    private final BytesIn bytes;
+    private final ByIdTypeResolver typeResolver;
+    private volatile ObjectRecord record;
+
+    public LazyObjectRecord(@NotNull Type type, ObjectRecorder recorder, BytesIn bytes, ByIdTypeResolver typeResolver) {
+        this.type = type;
+        this.recorder = recorder;
+        this.bytes = bytes;
+        this.typeResolver = typeResolver;
+    }
+
+    private LazyObjectRecord(ObjectRecord record) {
+        this.type = record.getType();
+        this.recorder = null;
+        this.bytes = null;
+        this.typeResolver = null;
+        this.record = record;
+    }
+
+    public static LazyObjectRecord of(ObjectRecord record) {
+        return new LazyObjectRecord(record);
+    }
+
+    /**
+     * @return list which decodes objects once they are accessed
+     */
+    public static List<ObjectRecord> decodingList(List<LazyObjectRecord> records) {
+        return new AbstractList<ObjectRecord>() {
+            @Override
+            public ObjectRecord get(int index) {
+                return records.get(index).get();
+            }
+
+            @Override
+            public int size() {
+                return records.size();
+            }
+        };
+    }
+
+    @NotNull
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isDecoded() {
+        return record != null;
+    }
+
+    public ObjectRecord get() {
+        ObjectRecord result = record;
+        if (result == null) {
+            synchronized (this) {
+                result = record;
+                if (result == null) {
+                    bytes.moveTo(0);
+                    record = result = recorder.read(type, bytes, typeResolver);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return get().toString();
+    }
+}
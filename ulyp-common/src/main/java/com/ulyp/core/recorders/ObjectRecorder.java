@@ -43,10 +43,35 @@ public abstract class ObjectRecorder {
         return false;
     }
 
+    /**
+     * @return true if the recorder writes nested objects, so that the recorded value may be arbitrary large. Such values
+     * are prefixed with their length, which allows readers to skip them or keep them as raw bytes without decoding
+     */
+    public boolean isComposite() {
+        return false;
+    }
+
     public abstract ObjectRecord read(@NotNull Type objectType, BytesIn input, ByIdTypeResolver typeResolver);
 
     public abstract void write(Object object, BytesOut out, TypeResolver typeResolver) throws Exception;
 
+    /**
+     * Writes the id of the recorder followed by the recorded value, which is prefixed with its length if the recorder
+     * is composite. Objects written this way are read with {@link BytesIn#readObject}
+     */
+    public final void writeWithId(Object object, BytesOut out, TypeResolver typeResolver) throws Exception {
+        if (isComposite()) {
+            out.write((byte) (id | ObjectRecorderRegistry.LENGTH_PREFIXED_FLAG));
+            int lengthPosition = out.position();
+            out.write(0);
+            write(object, out, typeResolver);
+            out.writeAt(lengthPosition, out.bytesWritten(lengthPosition) - Integer.BYTES);
+        } else {
+            out.write(id);
+            write(object, out, typeResolver);
+        }
+    }
+
     @Override
     public String toString() {
         return simpleClassName + "{}";
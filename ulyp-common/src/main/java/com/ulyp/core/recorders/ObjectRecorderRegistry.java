@@ -60,6 +60,12 @@ public enum ObjectRecorderRegistry {
     // Null recorder is only used manually, so it has max available order
     NULL_RECORDER(new NullObjectRecorder((byte) 9), Integer.MAX_VALUE);
 
+    /**
+     * Recorder id is written with this bit set if the recorded value is prefixed with its length,
+     * see {@link ObjectRecorder#isComposite()}
+     */
+    public static final byte LENGTH_PREFIXED_FLAG = (byte) 0x80;
+
     public static final ObjectRecorder[] recorderInstances = new ObjectRecorder[256];
 
     static {
@@ -80,7 +86,11 @@ public enum ObjectRecorderRegistry {
     }
 
     public static ObjectRecorder recorderForId(byte id) {
-        return recorderInstances[id];
+        return recorderInstances[id & ~LENGTH_PREFIXED_FLAG];
+    }
+
+    public static boolean isLengthPrefixed(byte id) {
+        return (id & LENGTH_PREFIXED_FLAG) != 0;
     }
 
     public ObjectRecorder getInstance() {
@@ -32,6 +32,11 @@ public class ObjectArrayRecorder extends ObjectRecorder {
         return enabled && Object[].class.isAssignableFrom(type);
     }
 
+    @Override
+    public boolean isComposite() {
+        return true;
+    }
+
     @Override
     public ArrayRecord read(@NotNull Type type, BytesIn input, ByIdTypeResolver typeResolver) {
         int arrayLength = input.readVarInt();
@@ -31,6 +31,11 @@ public class OptionalRecorder extends ObjectRecorder {
         return true;
     }
 
+    @Override
+    public boolean isComposite() {
+        return true;
+    }
+
     @Override
     public OptionalRecord read(@NotNull Type type, BytesIn input, ByIdTypeResolver typeResolver) {
         boolean hasSomething = input.readBoolean();
@@ -44,6 +44,11 @@ public class CollectionRecorder extends ObjectRecorder {
         return false;
     }
 
+    @Override
+    public boolean isComposite() {
+        return true;
+    }
+
     public void setModes(List<CollectionsRecordingMode> modes) {
         this.modes = modes;
         log.info("Collection recording modes set to {}", modes);
@@ -41,6 +41,11 @@ public class MapRecorder extends ObjectRecorder {
         return false;
     }
 
+    @Override
+    public boolean isComposite() {
+        return true;
+    }
+
     @Override
     public ObjectRecord read(@NotNull Type type, BytesIn input, ByIdTypeResolver typeResolver) {
         byte recordedEntries = input.readByte();
@@ -51,6 +51,11 @@ public class KtPairRecorder extends ObjectRecorder {
         return true;
     }
 
+    @Override
+    public boolean isComposite() {
+        return true;
+    }
+
     @Override
     public ObjectRecord read(@NotNull Type objectType, BytesIn input, ByIdTypeResolver typeResolver) {
         return new KtPairRecord(
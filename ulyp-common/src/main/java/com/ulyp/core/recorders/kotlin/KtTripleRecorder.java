@@ -56,6 +56,11 @@ public class KtTripleRecorder extends ObjectRecorder {
         return false;
     }
 
+    @Override
+    public boolean isComposite() {
+        return true;
+    }
+
     @Override
     public ObjectRecord read(@NotNull Type objectType, BytesIn input, ByIdTypeResolver typeResolver) {
         return new KtTripleRecord(
@@ -0,0 +1,36 @@
+package com.ulyp.core.serializers;
+
+import com.ulyp.core.CallIndexEntry;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.bytes.BytesOut;
+
+public class CallIndexEntrySerializer {
+
+    public static final CallIndexEntrySerializer instance = new CallIndexEntrySerializer();
+
+    /**
+     * Serializes entry without allocating {@link CallIndexEntry} since it's called by the agent for every recorded call
+     */
+    public void serialize(BytesOut out, int callId, int parentCallId, int subtreeSize, int enterChunk, int enterOffset, int exitChunk, int exitOffset) {
+        out.writeVarInt(callId);
+        out.writeVarInt(parentCallId);
+        out.writeVarInt(subtreeSize);
+        out.writeVarInt(enterChunk);
+        out.writeVarInt(enterOffset);
+        // Shifted by one, so that open calls (-1) are still encoded as a var int
+        out.writeVarInt(exitChunk + 1);
+        out.writeVarInt(exitOffset);
+    }
+
+    public CallIndexEntry deserialize(BytesIn input) {
+        return CallIndexEntry.builder()
+                .callId(input.readVarInt())
+                .parentCallId(input.readVarInt())
+                .subtreeSize(input.readVarInt())
+                .enterChunk(input.readVarInt())
+                .enterOffset(input.readVarInt())
+                .exitChunk(input.readVarInt() - 1)
+                .exitOffset(input.readVarInt())
+                .build();
+    }
+}
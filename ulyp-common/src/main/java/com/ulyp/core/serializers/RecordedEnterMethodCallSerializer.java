@@ -1,5 +1,6 @@
 package com.ulyp.core.serializers;
 
+import com.ulyp.core.ByIdTypeResolver;
 import com.ulyp.core.RecordedEnterMethodCall;
 import com.ulyp.core.Type;
 import com.ulyp.core.TypeResolver;
@@ -33,18 +34,16 @@ public class RecordedEnterMethodCallSerializer {
             ObjectRecorder recorder = callee instanceof QueuedIdentityObject ? ObjectRecorderRegistry.QUEUE_IDENTITY_RECORDER.getInstance() : ObjectRecorderRegistry.IDENTITY_RECORDER.getInstance();
 
             out.writeVarInt(typeResolver.get(callee).getId());
-            out.write(recorder.getId());
             try {
-                recorder.write(callee, out, typeResolver);
+                recorder.writeWithId(callee, out, typeResolver);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         } else {
             ObjectRecorder recorder = ObjectRecorderRegistry.NULL_RECORDER.getInstance();
             out.writeVarInt(Type.unknown().getId());
-            out.write(recorder.getId());
             try {
-                recorder.write(null, out, typeResolver);
+                recorder.writeWithId(null, out, typeResolver);
             } catch (Exception e) {
                 throw new RecordingException("Error while serializing callee", e);
             }
@@ -69,45 +68,37 @@ public class RecordedEnterMethodCallSerializer {
             ObjectRecorder recorder = argValue != null ? recorderHint : ObjectRecorderRegistry.NULL_RECORDER.getInstance();
 
             out.writeVarInt(argType.getId());
-            out.write(recorder.getId());
             try {
-                recorder.write(argValue, out, typeResolver);
+                recorder.writeWithId(argValue, out, typeResolver);
             } catch (Exception e) {
                 throw new RecordingException("Error while serializing argument at index " + argIndex, e);
             }
         }
     }
 
-    private static ObjectRecord deserializeObject(BytesIn input, ReadableRepository<Integer, Type> typeResolver) {
-        int typeId = input.readVarInt();
-        byte recorderId = input.readByte();
-        Type type = Optional.ofNullable(typeResolver.get(typeId)).orElse(Type.unknown());
-        ObjectRecorder objectRecorder = ObjectRecorderRegistry.recorderForId(recorderId);
-        return objectRecorder.read(
-                type,
-                input,
-                id -> Optional.ofNullable(typeResolver.get(id)).orElse(Type.unknown())
-        );
-    }
-
+    /**
+     * Deserializes enter method call. Arguments of composite recorders (collections, maps, etc) are only decoded
+     * once they are accessed
+     */
     public static RecordedEnterMethodCall deserialize(BytesIn input, ReadableRepository<Integer, Type> typeResolver) {
         int methodId = input.readVarInt();
         long nanoTime = input.readLong();
         int argsCount = input.readVarInt();
 
-        List<ObjectRecord> arguments = new ArrayList<>(argsCount);
+        ByIdTypeResolver byIdTypeResolver = id -> Optional.ofNullable(typeResolver.get(id)).orElse(Type.unknown());
+        List<LazyObjectRecord> arguments = new ArrayList<>(argsCount);
 
         for (int i = 0; i < argsCount; i++) {
-            arguments.add(deserializeObject(input, typeResolver));
+            arguments.add(input.readLazyObject(byIdTypeResolver));
         }
 
-        ObjectRecord callee = deserializeObject(input, typeResolver);
+        ObjectRecord callee = input.readObject(byIdTypeResolver);
 
         return RecordedEnterMethodCall.builder()
                 .methodId(methodId)
                 .nanoTime(nanoTime)
                 .callee(callee)
-                .arguments(arguments)
+                .arguments(LazyObjectRecord.decodingList(arguments))
                 .build();
     }
 }
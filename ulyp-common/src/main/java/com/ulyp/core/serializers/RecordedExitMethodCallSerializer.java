@@ -38,25 +38,15 @@ public class RecordedExitMethodCallSerializer {
                 (thrown ? ObjectRecorderRegistry.THROWABLE_RECORDER.getInstance() : recorderHint) :
                 ObjectRecorderRegistry.NULL_RECORDER.getInstance();
 
-        out.write(recorder.getId());
-
         try {
-            recorder.write(returnValue, out, typeResolver);
+            recorder.writeWithId(returnValue, out, typeResolver);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
     private static ObjectRecord deserializeObject(BytesIn input, ReadableRepository<Integer, Type> typeResolver) {
-        int typeId = input.readVarInt();
-        byte recorderId = input.readByte();
-        Type type = Optional.ofNullable(typeResolver.get(typeId)).orElse(Type.unknown());
-        ObjectRecorder objectRecorder = ObjectRecorderRegistry.recorderForId(recorderId);
-        return objectRecorder.read(
-                type,
-                input,
-                id -> Optional.ofNullable(typeResolver.get(id)).orElse(Type.unknown())
-        );
+        return input.readObject(id -> Optional.ofNullable(typeResolver.get(id)).orElse(Type.unknown()));
     }
 
     public static RecordedExitMethodCall deserialize(BytesIn input, ReadableRepository<Integer, Type> typeResolver) {
@@ -24,6 +24,8 @@ public class RecordingMetadataSerializer implements Serializer<RecordingMetadata
         for (int i = 0; i < stackTraceElementsCount; i++) {
             stackTraceElements.add(input.readString());
         }
+        // The flag was added later, so it may be absent in older recording files
+        boolean callIndexed = input.getPosition() < input.available() && input.readBoolean();
 
         return RecordingMetadata.builder()
                 .recordingStartedMillis(recordingStartedEpochMillis)
@@ -32,6 +34,7 @@ public class RecordingMetadataSerializer implements Serializer<RecordingMetadata
                 .threadId(threadId)
                 .stackTraceElements(stackTraceElements)
                 .threadName(threadName)
+                .callIndexed(callIndexed)
                 .build();
     }
 
@@ -46,5 +49,6 @@ public class RecordingMetadataSerializer implements Serializer<RecordingMetadata
         for (String stackTraceElement: recordingMetadata.getStackTraceElements()) {
             out.write(stackTraceElement);
         }
+        out.write(recordingMetadata.isCallIndexed());
     }
 }
@@ -1,6 +1,14 @@
 package com.ulyp.core.util;
 
-public interface Backoff {
+public interface Backoff extends AutoCloseable {
 
     void await() throws InterruptedException;
+
+    /**
+     * Releases resources the backoff holds (if any). Must not be used once closed
+     */
+    @Override
+    default void close() {
+
+    }
 }
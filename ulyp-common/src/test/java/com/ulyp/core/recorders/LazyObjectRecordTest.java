@@ -0,0 +1,62 @@
+package com.ulyp.core.recorders;
+
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.bytes.BytesOut;
+import com.ulyp.core.recorders.basic.StringObjectRecord;
+import com.ulyp.core.recorders.collections.CollectionRecord;
+import com.ulyp.core.recorders.collections.CollectionRecorder;
+import com.ulyp.core.util.ReflectionBasedTypeResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyObjectRecordTest {
+
+    private final TypeResolver typeResolver = new ReflectionBasedTypeResolver();
+    private final CollectionRecorder collectionRecorder = new CollectionRecorder((byte) 10);
+    private final ObjectRecorder stringRecorder = ObjectRecorderRegistry.STRING_RECORDER.getInstance();
+
+    private BytesIn writeCollectionAndString() throws Exception {
+        collectionRecorder.setMaxElementsToRecord(10);
+        List<String> list = Arrays.asList("A", "B", "C");
+
+        BytesOut out = BytesOut.expandableArray();
+        out.writeVarInt(typeResolver.get(list).getId());
+        collectionRecorder.writeWithId(list, out, typeResolver);
+        out.writeVarInt(typeResolver.get("XYZ").getId());
+        stringRecorder.writeWithId("XYZ", out, typeResolver);
+        return out.flip();
+    }
+
+    @Test
+    void shouldSkipLengthPrefixedObject() throws Exception {
+        BytesIn in = writeCollectionAndString();
+
+        in.skipObject(typeResolver::getById);
+
+        StringObjectRecord record = (StringObjectRecord) in.readObject(typeResolver::getById);
+        assertEquals("XYZ", record.value());
+    }
+
+    @Test
+    void shouldDecodeLengthPrefixedObjectOnFirstAccess() throws Exception {
+        BytesIn in = writeCollectionAndString();
+
+        LazyObjectRecord lazyCollection = in.readLazyObject(typeResolver::getById);
+        LazyObjectRecord lazyString = in.readLazyObject(typeResolver::getById);
+
+        assertFalse(lazyCollection.isDecoded());
+        assertTrue(lazyString.isDecoded());
+
+        CollectionRecord collection = (CollectionRecord) lazyCollection.get();
+        assertEquals(3, collection.getSize());
+        assertEquals(3, collection.getElements().size());
+        assertEquals("B", ((StringObjectRecord) collection.getElements().get(1)).value());
+        assertSame(collection, lazyCollection.get());
+        assertEquals("XYZ", ((StringObjectRecord) lazyString.get()).value());
+    }
+}
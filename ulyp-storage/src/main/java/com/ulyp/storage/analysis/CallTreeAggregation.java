@@ -0,0 +1,184 @@
+package com.ulyp.storage.analysis;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.ProcessMetadata;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import com.ulyp.core.repository.InMemoryRepository;
+import com.ulyp.storage.reader.RecordedCallTree;
+import com.ulyp.storage.reader.RecordedMethodCalls;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.reader.RecordingDataReaderJob;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sums up calling context trees which the agent writes if calls are aggregated (see {@link SerializedCallTreeList})
+ * into a single tree per recording, see {@link CallTreeProfile}.
+ * <p>
+ * Every list only has nodes which changed since the previous list of the recording, so the file is read by a single
+ * reader job which merges lists into primitive arrays indexed by node. Node objects are only built once the file is read.
+ */
+public class CallTreeAggregation {
+
+    private final int recordingId;
+    private final InMemoryRepository<Integer, Method> methods = new InMemoryRepository<>();
+    private final Int2ObjectHashMap<RecordingMetadata> recordingMetadata = new Int2ObjectHashMap<>();
+    private final Map<Integer, MergedTree> trees = new TreeMap<>();
+    private final CompletableFuture<CallTreeProfile> completeFuture = new CompletableFuture<>();
+    private volatile boolean cancelled = false;
+
+    CallTreeAggregation(int recordingId) {
+        this.recordingId = recordingId;
+    }
+
+    void start(RecordingDataReader reader) {
+        reader.submitSharedReaderJob(new Job()).whenComplete((result, readFailure) -> {
+            if (readFailure != null) {
+                completeFuture.completeExceptionally(readFailure);
+            } else {
+                try {
+                    completeFuture.complete(buildProfile());
+                } catch (Throwable e) {
+                    completeFuture.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the aggregation, the profile then only covers the part of the file which is read
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return future which is completed with the profile once the file is read (or the aggregation is cancelled)
+     */
+    public CompletableFuture<CallTreeProfile> getCompleteFuture() {
+        return completeFuture;
+    }
+
+    private CallTreeProfile buildProfile() {
+        List<RecordingCallTree> recordings = new ArrayList<>(trees.size());
+        for (Map.Entry<Integer, MergedTree> entry : trees.entrySet()) {
+            recordings.add(entry.getValue().build(entry.getKey()));
+        }
+        return new CallTreeProfile(recordings);
+    }
+
+    /**
+     * Aggregates of all nodes of the recording tree, indexed by node
+     */
+    private class MergedTree implements RecordedCallTree.NodeVisitor {
+
+        private int size = 0;
+        private int[] parents = new int[64];
+        private int[] methodIds = new int[64];
+        private long[] callCounts = new long[64];
+        private long[] totalNanos = new long[64];
+        private long[] selfNanos = new long[64];
+
+        @Override
+        public void visit(int node, int parent, int methodId, long callCount, long totalNanos, long selfNanos) {
+            if (node == size) {
+                if (parent >= size) {
+                    // Parent must be known before its children, the list is skipped if it's not
+                    return;
+                }
+                if (size == parents.length) {
+                    int capacity = size * 2;
+                    parents = Arrays.copyOf(parents, capacity);
+                    methodIds = Arrays.copyOf(methodIds, capacity);
+                    callCounts = Arrays.copyOf(callCounts, capacity);
+                    this.totalNanos = Arrays.copyOf(this.totalNanos, capacity);
+                    this.selfNanos = Arrays.copyOf(this.selfNanos, capacity);
+                }
+                parents[node] = parent;
+                methodIds[node] = methodId;
+                size++;
+            } else if (node > size || node < 0) {
+                // Some list of the recording is missing (e.g. the file was reset)
+                return;
+            }
+            callCounts[node] += callCount;
+            this.totalNanos[node] += totalNanos;
+            this.selfNanos[node] += selfNanos;
+        }
+
+        private RecordingCallTree build(int recordingId) {
+            CallTreeNode[] nodes = new CallTreeNode[size];
+            List<CallTreeNode> roots = new ArrayList<>();
+            long callCount = 0;
+            for (int node = 0; node < size; node++) {
+                nodes[node] = new CallTreeNode(methodIds[node], methods.get(methodIds[node]), callCounts[node], totalNanos[node], selfNanos[node]);
+                callCount += callCounts[node];
+                if (parents[node] == SerializedCallTreeList.NO_PARENT) {
+                    roots.add(nodes[node]);
+                } else {
+                    nodes[parents[node]].addChild(nodes[node]);
+                }
+            }
+            for (CallTreeNode node : nodes) {
+                node.sortChildren();
+            }
+            roots.sort(CallTreeProfile.BY_WEIGHT);
+            return new RecordingCallTree(recordingId, recordingMetadata.get(recordingId), roots, callCount);
+        }
+    }
+
+    private class Job implements RecordingDataReaderJob {
+
+        @Override
+        public void onProcessMetadata(ProcessMetadata processMetadata) {
+
+        }
+
+        @Override
+        public void onRecordingMetadata(RecordingMetadata metadata) {
+            recordingMetadata.put(metadata.getId(), metadata);
+        }
+
+        @Override
+        public void onType(Type type) {
+
+        }
+
+        @Override
+        public void onMethod(Method method) {
+            methods.store(method.getId(), method);
+        }
+
+        @Override
+        public void onRecordedCalls(long address, RecordedMethodCalls recordedMethodCalls) {
+
+        }
+
+        @Override
+        public void onCallTree(long address, RecordedCallTree callTree) {
+            int recordingId = callTree.getRecordingId();
+            if (CallTreeAggregation.this.recordingId >= 0 && recordingId != CallTreeAggregation.this.recordingId) {
+                return;
+            }
+            callTree.forEachNode(trees.computeIfAbsent(recordingId, id -> new MergedTree()));
+        }
+
+        @Override
+        public boolean continueOnNoData() {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.ulyp.storage.analysis;
+
+import com.ulyp.storage.reader.RecordingDataReader;
+
+public class CallTreeAggregationBuilder {
+
+    private final RecordingDataReader reader;
+    private int recordingId = -1;
+
+    public CallTreeAggregationBuilder(RecordingDataReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Restricts the aggregation to a single recording. All recordings of the file are aggregated by default
+     */
+    public CallTreeAggregationBuilder setRecordingId(int recordingId) {
+        this.recordingId = recordingId;
+        return this;
+    }
+
+    public CallTreeAggregation start() {
+        CallTreeAggregation aggregation = new CallTreeAggregation(recordingId);
+        aggregation.start(reader);
+        return aggregation;
+    }
+}
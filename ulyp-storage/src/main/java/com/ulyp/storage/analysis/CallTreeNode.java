@@ -0,0 +1,45 @@
+package com.ulyp.storage.analysis;
+
+import com.ulyp.core.Method;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node of the calling context tree, i.e. all calls of the method made from the same call path. Children are
+ * sorted by total time (then by call count) in descending order
+ */
+@Getter
+public class CallTreeNode {
+
+    private final int methodId;
+    @Nullable
+    private final Method method;
+    private final long callCount;
+    private final long totalNanos;
+    private final long selfNanos;
+    private final List<CallTreeNode> children = new ArrayList<>();
+
+    CallTreeNode(int methodId, @Nullable Method method, long callCount, long totalNanos, long selfNanos) {
+        this.methodId = methodId;
+        this.method = method;
+        this.callCount = callCount;
+        this.totalNanos = totalNanos;
+        this.selfNanos = selfNanos;
+    }
+
+    public List<CallTreeNode> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    void addChild(CallTreeNode child) {
+        children.add(child);
+    }
+
+    void sortChildren() {
+        children.sort(CallTreeProfile.BY_WEIGHT);
+    }
+}
@@ -0,0 +1,42 @@
+package com.ulyp.storage.analysis;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Calling context trees of recordings computed by {@link CallTreeAggregation}, sorted by recording id
+ */
+public class CallTreeProfile {
+
+    public static final Comparator<CallTreeNode> BY_WEIGHT = Comparator.comparingLong(CallTreeNode::getTotalNanos)
+        .thenComparingLong(CallTreeNode::getCallCount)
+        .reversed();
+
+    private final List<RecordingCallTree> recordings;
+
+    CallTreeProfile(List<RecordingCallTree> recordings) {
+        this.recordings = Collections.unmodifiableList(new ArrayList<>(recordings));
+    }
+
+    public List<RecordingCallTree> getRecordings() {
+        return recordings;
+    }
+
+    @Nullable
+    public RecordingCallTree getRecording(int recordingId) {
+        for (RecordingCallTree recording : recordings) {
+            if (recording.getRecordingId() == recordingId) {
+                return recording;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return recordings.isEmpty();
+    }
+}
@@ -0,0 +1,181 @@
+package com.ulyp.storage.analysis;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.ProcessMetadata;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.repository.InMemoryRepository;
+import com.ulyp.storage.reader.RecordedCallStack;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
+import com.ulyp.storage.reader.RecordedMethodCalls;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.reader.RecordingDataReaderJob;
+import com.ulyp.storage.util.PartitionedExecutor;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Computes per-method aggregates (call count, total, self and max time, number of exceptions thrown) in a single pass
+ * over the recording file, see {@link HotSpotReport}.
+ * <p>
+ * The file is read by a single reader job, while lists of recorded calls are aggregated by worker threads. Lists are
+ * routed to workers by recording id, since self time of a call depends on its children. Every worker aggregates to its
+ * own primitive map, and maps are merged once the file is read. Only fixed fields of calls are read, objects
+ * are never decoded.
+ */
+public class HotSpotAnalysis {
+
+    private final int recordingId;
+    private final PartitionedExecutor executor;
+    private final InMemoryRepository<Integer, Method> methods = new InMemoryRepository<>();
+    private final Map<Integer, RecordingAggregator> recordings = new HashMap<>();
+    private final Queue<Int2ObjectHashMap<MethodStats>> partialStats = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Int2ObjectHashMap<MethodStats>> threadStats = ThreadLocal.withInitial(() -> {
+        Int2ObjectHashMap<MethodStats> stats = new Int2ObjectHashMap<>();
+        partialStats.add(stats);
+        return stats;
+    });
+    private final CompletableFuture<HotSpotReport> completeFuture = new CompletableFuture<>();
+    private volatile boolean cancelled = false;
+
+    HotSpotAnalysis(int recordingId, int threads) {
+        this.recordingId = recordingId;
+        this.executor = new PartitionedExecutor("HotSpotAnalysis", threads, threads * 4);
+    }
+
+    void start(RecordingDataReader reader) {
+        reader.submitSharedReaderJob(new Job()).whenComplete((result, readFailure) -> {
+            try {
+                executor.awaitCompletion();
+            } catch (Throwable e) {
+                if (readFailure == null) {
+                    readFailure = e;
+                }
+            } finally {
+                executor.close();
+            }
+
+            if (readFailure != null) {
+                completeFuture.completeExceptionally(readFailure);
+            } else {
+                completeFuture.complete(merge());
+            }
+        });
+    }
+
+    /**
+     * Stops the analysis, the report then only covers the part of the file which is read
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return future which is completed with the report once the file is read (or the analysis is cancelled)
+     */
+    public CompletableFuture<HotSpotReport> getCompleteFuture() {
+        return completeFuture;
+    }
+
+    private HotSpotReport merge() {
+        Int2ObjectHashMap<MethodStats> merged = new Int2ObjectHashMap<>();
+        for (Int2ObjectHashMap<MethodStats> stats : partialStats) {
+            for (MethodStats methodStats : stats.values()) {
+                MethodStats mergedStats = merged.get(methodStats.getMethodId());
+                if (mergedStats == null) {
+                    mergedStats = new MethodStats(methodStats.getMethodId());
+                    merged.put(methodStats.getMethodId(), mergedStats);
+                }
+                mergedStats.merge(methodStats);
+            }
+        }
+        for (MethodStats methodStats : merged.values()) {
+            methodStats.setMethod(methods.get(methodStats.getMethodId()));
+        }
+        return new HotSpotReport(merged.values());
+    }
+
+    /**
+     * Tracks the call stack of a single recording, so it's only used by the worker thread the recording is routed to
+     */
+    private class RecordingAggregator {
+
+        private final RecordedCallStack stack = new RecordedCallStack(true);
+
+        private void aggregate(RecordedMethodCalls recordedMethodCalls) {
+            Int2ObjectHashMap<MethodStats> stats = threadStats.get();
+            RecordedMethodCallCursor cursor = recordedMethodCalls.cursor();
+            while (cursor.hasNext() && !cancelled) {
+                cursor.next();
+                if (cursor.isEnter()) {
+                    stack.enter(cursor.methodId(), cursor.nanoTime());
+                } else if (stack.exit(cursor.callId(), cursor.nanoTime())) {
+                    onExit(cursor.thrown(), stats);
+                    stack.pop();
+                }
+            }
+        }
+
+        private void onExit(boolean thrown, Int2ObjectHashMap<MethodStats> stats) {
+            int methodId = stack.methodId();
+            MethodStats methodStats = stats.get(methodId);
+            if (methodStats == null) {
+                methodStats = new MethodStats(methodId);
+                stats.put(methodId, methodStats);
+            }
+            methodStats.onCall(stack.durationNanos(), stack.selfNanos(), stack.isOutermost(), thrown);
+        }
+    }
+
+    private class Job implements RecordingDataReaderJob {
+
+        @Override
+        public void onProcessMetadata(ProcessMetadata processMetadata) {
+
+        }
+
+        @Override
+        public void onRecordingMetadata(RecordingMetadata recordingMetadata) {
+
+        }
+
+        @Override
+        public void onType(Type type) {
+
+        }
+
+        @Override
+        public void onMethod(Method method) {
+            methods.store(method.getId(), method);
+        }
+
+        @Override
+        public void onRecordedCalls(long address, RecordedMethodCalls recordedMethodCalls) {
+            int recordingId = recordedMethodCalls.getRecordingId();
+            if (recordedMethodCalls.isEmpty() || (HotSpotAnalysis.this.recordingId >= 0 && recordingId != HotSpotAnalysis.this.recordingId)) {
+                return;
+            }
+            RecordingAggregator aggregator = recordings.computeIfAbsent(recordingId, id -> new RecordingAggregator());
+            executor.execute(recordingId, () -> aggregator.aggregate(recordedMethodCalls));
+        }
+
+        @Override
+        public boolean continueOnNoData() {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.ulyp.storage.analysis;
+
+import com.ulyp.storage.reader.RecordingDataReader;
+
+public class HotSpotAnalysisBuilder {
+
+    private final RecordingDataReader reader;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int recordingId = -1;
+
+    public HotSpotAnalysisBuilder(RecordingDataReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Sets how many threads aggregate recorded calls. Calls of the same recording are always aggregated by the same
+     * thread. If set to 1, calls are aggregated by the reader job thread
+     */
+    public HotSpotAnalysisBuilder setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Restricts the analysis to a single recording. All recordings of the file are analyzed by default
+     */
+    public HotSpotAnalysisBuilder setRecordingId(int recordingId) {
+        this.recordingId = recordingId;
+        return this;
+    }
+
+    public HotSpotAnalysis start() {
+        HotSpotAnalysis analysis = new HotSpotAnalysis(recordingId, threads);
+        analysis.start(reader);
+        return analysis;
+    }
+}
@@ -0,0 +1,61 @@
+package com.ulyp.storage.analysis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Per-method aggregates computed by {@link HotSpotAnalysis}
+ */
+public class HotSpotReport {
+
+    public static final Comparator<MethodStats> BY_SELF_TIME = Comparator.comparingLong(MethodStats::getSelfNanos);
+    public static final Comparator<MethodStats> BY_TOTAL_TIME = Comparator.comparingLong(MethodStats::getTotalNanos);
+    public static final Comparator<MethodStats> BY_MAX_TIME = Comparator.comparingLong(MethodStats::getMaxNanos);
+    public static final Comparator<MethodStats> BY_CALL_COUNT = Comparator.comparingLong(MethodStats::getCallCount);
+    public static final Comparator<MethodStats> BY_THROWN_COUNT = Comparator.comparingLong(MethodStats::getThrownCount);
+
+    private final List<MethodStats> methods;
+
+    HotSpotReport(Collection<MethodStats> methods) {
+        this.methods = Collections.unmodifiableList(new ArrayList<>(methods));
+    }
+
+    public List<MethodStats> getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return at most {@code limit} methods with the greatest value of the given comparator, in descending order
+     */
+    public List<MethodStats> top(int limit, Comparator<MethodStats> comparator) {
+        // Min-heap of the best methods seen so far, so that it takes O(n log(limit))
+        PriorityQueue<MethodStats> heap = new PriorityQueue<>(Math.max(1, Math.min(limit, methods.size())), comparator);
+        for (MethodStats stats : methods) {
+            if (heap.size() < limit) {
+                heap.add(stats);
+            } else if (limit > 0 && comparator.compare(stats, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(stats);
+            }
+        }
+        List<MethodStats> top = new ArrayList<>(heap);
+        top.sort(comparator.reversed());
+        return top;
+    }
+
+    public List<MethodStats> topBySelfTime(int limit) {
+        return top(limit, BY_SELF_TIME);
+    }
+
+    public List<MethodStats> topByTotalTime(int limit) {
+        return top(limit, BY_TOTAL_TIME);
+    }
+
+    public List<MethodStats> topByCallCount(int limit) {
+        return top(limit, BY_CALL_COUNT);
+    }
+}
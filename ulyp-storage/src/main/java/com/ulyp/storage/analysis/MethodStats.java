@@ -0,0 +1,61 @@
+package com.ulyp.storage.analysis;
+
+import com.ulyp.core.Method;
+import lombok.Getter;
+
+/**
+ * Aggregates of all completed calls of a single method. Times are only aggregated for calls which have timing
+ * recorded. Total time of recursive calls is only counted for the outermost call, so that it never exceeds
+ * the wall time
+ */
+@Getter
+public class MethodStats {
+
+    private final int methodId;
+    private Method method;
+    private long callCount;
+    private long totalNanos;
+    private long selfNanos;
+    private long maxNanos;
+    private long thrownCount;
+
+    MethodStats(int methodId) {
+        this.methodId = methodId;
+    }
+
+    void onCall(long durationNanos, long selfNanos, boolean outermost, boolean thrown) {
+        callCount++;
+        if (durationNanos >= 0) {
+            if (outermost) {
+                totalNanos += durationNanos;
+            }
+            this.selfNanos += selfNanos;
+            maxNanos = Math.max(maxNanos, durationNanos);
+        }
+        if (thrown) {
+            thrownCount++;
+        }
+    }
+
+    void merge(MethodStats other) {
+        callCount += other.callCount;
+        totalNanos += other.totalNanos;
+        selfNanos += other.selfNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+        thrownCount += other.thrownCount;
+    }
+
+    void setMethod(Method method) {
+        this.method = method;
+    }
+
+    @Override
+    public String toString() {
+        return (method != null ? method.toShortString() : String.valueOf(methodId)) +
+            ", calls: " + callCount +
+            ", total: " + totalNanos +
+            " ns, self: " + selfNanos +
+            " ns, max: " + maxNanos +
+            " ns, thrown: " + thrownCount;
+    }
+}
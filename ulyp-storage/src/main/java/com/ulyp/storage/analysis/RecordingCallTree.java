@@ -0,0 +1,30 @@
+package com.ulyp.storage.analysis;
+
+import com.ulyp.core.RecordingMetadata;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Calling context tree of a single recording. Roots are methods which are called at the bottom of the stack
+ */
+@Getter
+public class RecordingCallTree {
+
+    private final int recordingId;
+    @Nullable
+    private final RecordingMetadata metadata;
+    private final List<CallTreeNode> roots;
+    private final long callCount;
+    private final long totalNanos;
+
+    RecordingCallTree(int recordingId, @Nullable RecordingMetadata metadata, List<CallTreeNode> roots, long callCount) {
+        this.recordingId = recordingId;
+        this.metadata = metadata;
+        this.roots = Collections.unmodifiableList(roots);
+        this.callCount = callCount;
+        this.totalNanos = roots.stream().mapToLong(CallTreeNode::getTotalNanos).sum();
+    }
+}
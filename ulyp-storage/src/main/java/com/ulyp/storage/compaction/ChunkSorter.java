@@ -0,0 +1,257 @@
+package com.ulyp.storage.compaction;
+
+import com.ulyp.storage.StorageException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts addresses of chunks by recording id, while chunks of the same recording are kept in the file order. Chunks
+ * must be added in the file order.
+ * <p>
+ * Memory is bounded by the buffer size. Once the buffer is full, it's sorted and spilled to a temporary file as a sorted
+ * run. Runs are then merged, so a file of any size is sorted with two passes over the spilled data.
+ */
+class ChunkSorter implements AutoCloseable {
+
+    private static final int ENTRY_BYTES = Integer.BYTES + Long.BYTES;
+
+    private final Path tempDirectory;
+    private final int[] recordingIds;
+    private final long[] addresses;
+    private final long[] sortKeys;
+    private final List<File> runFiles = new ArrayList<>();
+    private int size = 0;
+
+    ChunkSorter(Path tempDirectory, int bufferEntries) {
+        this.tempDirectory = tempDirectory;
+        this.recordingIds = new int[bufferEntries];
+        this.addresses = new long[bufferEntries];
+        this.sortKeys = new long[bufferEntries];
+    }
+
+    void add(int recordingId, long address) throws StorageException {
+        if (size == recordingIds.length) {
+            spill();
+        }
+        recordingIds[size] = recordingId;
+        addresses[size] = address;
+        size++;
+    }
+
+    /**
+     * @return number of sorted runs which were spilled to disk
+     */
+    int getRunCount() {
+        return runFiles.size();
+    }
+
+    private void sortBuffer() {
+        // Entries are added in the file order, so sorting by (recording id, position in buffer) keeps the file order
+        // of chunks of the same recording
+        for (int i = 0; i < size; i++) {
+            sortKeys[i] = ((long) recordingIds[i] << 32) | i;
+        }
+        Arrays.sort(sortKeys, 0, size);
+    }
+
+    private void spill() throws StorageException {
+        sortBuffer();
+        try {
+            File runFile = Files.createTempFile(tempDirectory, "ulyp-compaction-run", ".tmp").toFile();
+            runFiles.add(runFile);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), 64 * 1024))) {
+                for (int i = 0; i < size; i++) {
+                    int index = (int) sortKeys[i];
+                    out.writeInt(recordingIds[index]);
+                    out.writeLong(addresses[index]);
+                }
+            }
+        } catch (IOException e) {
+            throw new StorageException("Could not spill sorted run of " + size * ENTRY_BYTES + " bytes to " + tempDirectory, e);
+        }
+        size = 0;
+    }
+
+    /**
+     * @return iterator over all chunks sorted by recording id. No chunks may be added afterwards
+     */
+    SortedChunks sorted() throws StorageException {
+        if (!runFiles.isEmpty() && size > 0) {
+            spill();
+        }
+        if (runFiles.isEmpty()) {
+            sortBuffer();
+            return new InMemoryRun();
+        }
+        try {
+            PriorityQueue<FileRun> queue = new PriorityQueue<>(runFiles.size());
+            for (File runFile : runFiles) {
+                FileRun run = new FileRun(runFile);
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            return new MergedRuns(queue);
+        } catch (IOException e) {
+            throw new StorageException("Could not read sorted runs", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (File runFile : runFiles) {
+            runFile.delete();
+        }
+    }
+
+    interface SortedChunks extends AutoCloseable {
+
+        /**
+         * Moves to the next chunk
+         *
+         * @return false if there are no chunks left
+         */
+        boolean next() throws StorageException;
+
+        int recordingId();
+
+        long address();
+
+        @Override
+        void close() throws StorageException;
+    }
+
+    private class InMemoryRun implements SortedChunks {
+
+        private int position = -1;
+
+        @Override
+        public boolean next() {
+            return ++position < size;
+        }
+
+        @Override
+        public int recordingId() {
+            return recordingIds[(int) sortKeys[position]];
+        }
+
+        @Override
+        public long address() {
+            return addresses[(int) sortKeys[position]];
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+
+    private static class FileRun implements Comparable<FileRun>, AutoCloseable {
+
+        private final DataInputStream in;
+        private int recordingId;
+        private long address;
+
+        private FileRun(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        }
+
+        private boolean next() throws IOException {
+            try {
+                recordingId = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            address = in.readLong();
+            return true;
+        }
+
+        @Override
+        public int compareTo(FileRun other) {
+            // Addresses are unique, so chunks of the same recording are ordered by address, i.e. in the file order
+            int byRecordingId = Integer.compare(recordingId, other.recordingId);
+            return byRecordingId != 0 ? byRecordingId : Long.compare(address, other.address);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static class MergedRuns implements SortedChunks {
+
+        private final PriorityQueue<FileRun> queue;
+        @Nullable
+        private FileRun current;
+        private int recordingId;
+        private long address;
+
+        private MergedRuns(PriorityQueue<FileRun> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean next() throws StorageException {
+            try {
+                if (current != null) {
+                    if (current.next()) {
+                        queue.add(current);
+                    } else {
+                        current.close();
+                    }
+                }
+                current = queue.poll();
+                if (current == null) {
+                    return false;
+                }
+                recordingId = current.recordingId;
+                address = current.address;
+                return true;
+            } catch (IOException e) {
+                throw new StorageException("Could not read sorted runs", e);
+            }
+        }
+
+        @Override
+        public int recordingId() {
+            return recordingId;
+        }
+
+        @Override
+        public long address() {
+            return address;
+        }
+
+        @Override
+        public void close() throws StorageException {
+            try {
+                if (current != null) {
+                    current.close();
+                }
+                for (FileRun run : queue) {
+                    run.close();
+                }
+            } catch (IOException e) {
+                throw new StorageException("Could not close sorted runs", e);
+            }
+        }
+    }
+}
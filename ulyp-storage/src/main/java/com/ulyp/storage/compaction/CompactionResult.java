@@ -0,0 +1,22 @@
+package com.ulyp.storage.compaction;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class CompactionResult {
+
+    int recordings;
+    /**
+     * Number of recorded call and call index lists which were copied
+     */
+    long chunks;
+    /**
+     * Number of sorted runs spilled to disk. Zero if all chunk addresses fit into the sort buffer
+     */
+    int sortedRuns;
+    long inputBytes;
+    long outputBytes;
+    long durationMillis;
+}
@@ -0,0 +1,348 @@
+package com.ulyp.storage.compaction;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.ProcessMetadata;
+import com.ulyp.core.RecordingCompleteMark;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.bytes.BufferBytesOut;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.OutputBytesList;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.serializers.MethodSerializer;
+import com.ulyp.core.serializers.ProcessMetadataSerializer;
+import com.ulyp.core.serializers.RecordingMetadataSerializer;
+import com.ulyp.core.serializers.TypeSerializer;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.reader.BinaryListWithAddress;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.toc.RecordingContents;
+import com.ulyp.storage.toc.TableOfContents;
+import com.ulyp.storage.toc.TocFrame;
+import com.ulyp.storage.tree.CallRecordTree;
+import com.ulyp.storage.tree.CallRecordTreeBuilder;
+import com.ulyp.storage.tree.IndexSidecar;
+import com.ulyp.storage.tree.RocksdbIndex;
+import com.ulyp.storage.util.BinaryListFileReader;
+import com.ulyp.storage.util.BinaryListFileWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Rewrites a complete recording file, so that lists of every recording are located contiguously. Threads record
+ * concurrently, so chunks of different recordings are interleaved in the original file and reading a single recording
+ * means reading the whole file. In the compacted file:
+ * <ul>
+ *     <li>process metadata, all types and all methods are written at the front as a single list each</li>
+ *     <li>every recording follows with its latest metadata and then its chunks (and call index lists) in the
+ *     original order</li>
+ *     <li>optionally, the table of contents is written (see {@link TableOfContents}) as well as the persisted index
+ *     (see {@link IndexSidecar}), so that the file is opened without reading it</li>
+ * </ul>
+ * The file is streamed. Only types, methods and recording metadata are kept in memory, while addresses of chunks are
+ * sorted by recording id externally (see {@link ChunkSorter}), and chunks are copied without decoding.
+ */
+@Slf4j
+public class RecordingFileCompactor {
+
+    private final File input;
+    private final File output;
+    private final Path tempDirectory;
+    private final int sortBufferEntries;
+    private final boolean tableOfContents;
+    private final long tocIntervalBytes;
+    private final boolean persistedIndex;
+
+    RecordingFileCompactor(
+            File input,
+            File output,
+            Path tempDirectory,
+            int sortBufferEntries,
+            boolean tableOfContents,
+            long tocIntervalBytes,
+            boolean persistedIndex) {
+        this.input = input;
+        this.output = output;
+        this.tempDirectory = tempDirectory;
+        this.sortBufferEntries = sortBufferEntries;
+        this.tableOfContents = tableOfContents;
+        this.tocIntervalBytes = tocIntervalBytes;
+        this.persistedIndex = persistedIndex;
+    }
+
+    public CompactionResult compact() throws StorageException {
+        long startNanos = System.nanoTime();
+        if (input.getAbsoluteFile().equals(output.getAbsoluteFile())) {
+            throw new StorageException("Can not compact " + input + " in place, output file must be different");
+        }
+        // Original write times of lists are only known from the table of contents
+        TableOfContents inputToc = TableOfContents.read(input);
+
+        try (ChunkSorter sorter = new ChunkSorter(tempDirectory, sortBufferEntries)) {
+            Contents contents = readContents(sorter);
+            CompactionResult.CompactionResultBuilder result = CompactionResult.builder()
+                .inputBytes(input.length())
+                .recordings(contents.recordingMetadata.size())
+                .chunks(contents.chunks)
+                .sortedRuns(sorter.getRunCount());
+
+            writeCompacted(contents, sorter, inputToc);
+            if (persistedIndex) {
+                buildIndex();
+            }
+
+            CompactionResult compactionResult = result
+                .outputBytes(output.length())
+                .durationMillis((System.nanoTime() - startNanos) / 1_000_000L)
+                .build();
+            log.info("Compacted {} to {}: {}", input, output, compactionResult);
+            return compactionResult;
+        } catch (IOException e) {
+            throw new StorageException("Could not compact " + input + " to " + output, e);
+        }
+    }
+
+    /**
+     * The first pass over the file. Collects everything but chunks, which are only passed to the sorter
+     */
+    private Contents readContents(ChunkSorter sorter) throws IOException {
+        Contents contents = new Contents();
+        boolean complete = false;
+        try (BinaryListFileReader reader = new BinaryListFileReader(input)) {
+            while (!complete) {
+                long address = reader.address();
+                BinaryListWithAddress data = reader.readWithAddress();
+                if (data == null) {
+                    break;
+                }
+                InputBytesList in = data.getBytes();
+                switch (in.id()) {
+                    case ProcessMetadata.WIRE_ID:
+                        // Process metadata is rewritten if the file is reset, the latest one is kept
+                        contents.processMetadata = ProcessMetadataSerializer.instance.deserialize(in.iterator().next());
+                        break;
+                    case SerializedTypeList.WIRE_ID:
+                        for (BytesIn item : in) {
+                            Type type = TypeSerializer.instance.deserialize(item);
+                            contents.types.put(type.getId(), type);
+                        }
+                        break;
+                    case SerializedMethodList.WIRE_ID:
+                        for (BytesIn item : in) {
+                            Method method = MethodSerializer.instance.deserialize(item);
+                            contents.methods.put(method.getId(), method);
+                        }
+                        break;
+                    case RecordingMetadata.WIRE_ID:
+                        RecordingMetadata metadata = RecordingMetadataSerializer.instance.deserialize(in.iterator().next());
+                        contents.recordingMetadata.put(metadata.getId(), metadata);
+                        break;
+                    case SerializedRecordedMethodCallList.WIRE_ID:
+                    case SerializedCallIndexList.WIRE_ID:
+                    case SerializedCallTreeList.WIRE_ID:
+                        // Recording id is the first item of chunks, call index and call tree lists
+                        sorter.add(in.iterator().next().readInt(), address);
+                        contents.chunks++;
+                        break;
+                    case RecordingCompleteMark.WIRE_ID:
+                        complete = true;
+                        break;
+                    default:
+                        // Table of contents is written anew
+                        break;
+                }
+            }
+        }
+        if (!complete) {
+            throw new StorageException("Recording file " + input + " is not complete, only complete files can be compacted");
+        }
+        return contents;
+    }
+
+    /**
+     * The second pass. Chunks are copied in the sorted order
+     */
+    private void writeCompacted(Contents contents, ChunkSorter sorter, @Nullable TableOfContents inputToc) throws IOException {
+        try (BinaryListFileWriter writer = new BinaryListFileWriter(output);
+             BinaryListFileReader chunkReader = new BinaryListFileReader(input);
+             ChunkSorter.SortedChunks chunks = sorter.sorted()) {
+            Toc toc = new Toc(writer);
+
+            if (contents.processMetadata != null) {
+                try (OutputBytesList bytes = new OutputBytesList(ProcessMetadata.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()))) {
+                    bytes.add(out -> ProcessMetadataSerializer.instance.serialize(out, contents.processMetadata));
+                    toc.onGlobalList(writer.address());
+                    writer.write(bytes);
+                }
+            }
+            if (!contents.types.isEmpty()) {
+                SerializedTypeList types = new SerializedTypeList();
+                contents.types.values().forEach(types::add);
+                try (OutputBytesList bytes = types.getBytes()) {
+                    toc.onGlobalList(writer.address());
+                    writer.write(bytes);
+                }
+            }
+            if (!contents.methods.isEmpty()) {
+                SerializedMethodList methods = new SerializedMethodList();
+                contents.methods.values().forEach(methods::add);
+                try (OutputBytesList bytes = methods.getBytes()) {
+                    toc.onGlobalList(writer.address());
+                    writer.write(bytes);
+                }
+            }
+
+            boolean hasRecording = false;
+            int recordingId = 0;
+            long[] writeTimeRange = null;
+            boolean firstChunk = false;
+            while (chunks.next()) {
+                if (!hasRecording || chunks.recordingId() != recordingId) {
+                    hasRecording = true;
+                    recordingId = chunks.recordingId();
+                    RecordingMetadata metadata = contents.recordingMetadata.remove(recordingId);
+                    // Chunks of recordings without metadata are never read, so they are dropped
+                    writeTimeRange = metadata != null ? writeTimeRange(metadata, inputToc) : null;
+                    if (metadata != null) {
+                        writeRecordingMetadata(writer, toc, metadata, writeTimeRange[0]);
+                    }
+                    firstChunk = true;
+                }
+                if (writeTimeRange == null) {
+                    continue;
+                }
+
+                chunkReader.moveTo(chunks.address());
+                byte[] content = chunkReader.readContent();
+                if (content == null) {
+                    throw new StorageException("No binary list at address " + chunks.address() + " of " + input);
+                }
+                long address = writer.address();
+                writer.write(content);
+                toc.onRecordingList(recordingId, address, firstChunk ? writeTimeRange[0] : writeTimeRange[1]);
+                firstChunk = false;
+            }
+            // Recordings which have no chunks
+            for (RecordingMetadata metadata : contents.recordingMetadata.values()) {
+                writeRecordingMetadata(writer, toc, metadata, writeTimeRange(metadata, inputToc)[0]);
+            }
+
+            if (tableOfContents) {
+                toc.writeFrame();
+                writer.write(TableOfContents.footer(toc.lastFrameAddress));
+            } else {
+                writer.write(new OutputBytesList(RecordingCompleteMark.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer())));
+            }
+        }
+    }
+
+    private void writeRecordingMetadata(BinaryListFileWriter writer, Toc toc, RecordingMetadata metadata, long writeMillis) {
+        try (OutputBytesList bytes = new OutputBytesList(RecordingMetadata.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()))) {
+            bytes.add(out -> RecordingMetadataSerializer.instance.serialize(out, metadata));
+            long address = writer.address();
+            writer.write(bytes);
+            toc.onRecordingMetadata(metadata, address, writeMillis);
+        }
+    }
+
+    /**
+     * @return epoch millis of the first and the last lists of the recording in the original file. If the original
+     * file has no table of contents, the recording lifetime is used instead
+     */
+    private static long[] writeTimeRange(RecordingMetadata metadata, @Nullable TableOfContents inputToc) {
+        RecordingContents contents = inputToc != null ? inputToc.getRecording(metadata.getId()) : null;
+        if (contents != null && !contents.getListAddresses().isEmpty()) {
+            return new long[]{contents.getFirstWriteMillis(), contents.getLastWriteMillis()};
+        }
+        long startedMillis = metadata.getRecordingStartedMillis();
+        return new long[]{startedMillis, Math.max(startedMillis, metadata.getRecordingFinishedMillis())};
+    }
+
+    private void buildIndex() throws StorageException {
+        IndexSidecar sidecar = IndexSidecar.open(output);
+        try (CallRecordTree tree = new CallRecordTreeBuilder(new FileRecordingDataReaderBuilder(output).build())
+                // The file is complete, so the index can be bulk loaded
+                .setIndexSupplier(() -> new RocksdbIndex(sidecar.getIndexDirectory(), true))
+                .setIndexSidecar(sidecar)
+                .setReadInfinitely(false)
+                .build()) {
+            tree.getCompleteFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while building index of " + output, e);
+        } catch (ExecutionException e) {
+            throw new StorageException("Could not build index of " + output, e.getCause());
+        } catch (Exception e) {
+            throw new StorageException("Could not build index of " + output, e);
+        }
+    }
+
+    private static class Contents {
+
+        @Nullable
+        private ProcessMetadata processMetadata;
+        private final Map<Integer, Type> types = new LinkedHashMap<>();
+        private final Map<Integer, Method> methods = new LinkedHashMap<>();
+        private final Map<Integer, RecordingMetadata> recordingMetadata = new TreeMap<>();
+        private long chunks = 0;
+    }
+
+    /**
+     * Writes frames of the table of contents, if enabled, every {@link #tocIntervalBytes}. Lists are added to the frame
+     * only after they are written, the same way {@link com.ulyp.storage.writer.FileRecordingDataWriter} does it
+     */
+    private class Toc {
+
+        private final BinaryListFileWriter writer;
+        private TocFrame frame = new TocFrame(-1L);
+        private long lastFrameAddress = -1L;
+
+        private Toc(BinaryListFileWriter writer) {
+            this.writer = writer;
+        }
+
+        private void onGlobalList(long address) {
+            frame.onGlobalList(address);
+        }
+
+        private void onRecordingList(int recordingId, long address, long writeMillis) {
+            frame.onRecordingList(recordingId, address, writeMillis);
+            writeFrameIfNeeded();
+        }
+
+        private void onRecordingMetadata(RecordingMetadata metadata, long address, long writeMillis) {
+            frame.onRecordingMetadata(metadata, address, writeMillis);
+            writeFrameIfNeeded();
+        }
+
+        private void writeFrameIfNeeded() {
+            // Called once the list is written, so that the frame never takes the address of the list
+            if (tableOfContents && writer.address() - Math.max(lastFrameAddress, 0L) >= tocIntervalBytes) {
+                writeFrame();
+            }
+        }
+
+        private void writeFrame() {
+            long address = writer.address();
+            try (OutputBytesList bytes = frame.toBytes()) {
+                writer.write(bytes);
+            }
+            lastFrameAddress = address;
+            frame = new TocFrame(address);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.ulyp.storage.compaction;
+
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+
+import java.io.File;
+import java.nio.file.Path;
+
+public class RecordingFileCompactorBuilder {
+
+    private final File input;
+    private final File output;
+    private Path tempDirectory;
+    private int sortBufferEntries = 1 << 20;
+    private boolean tableOfContents = true;
+    private long tocIntervalBytes = FileRecordingDataWriter.DEFAULT_TOC_INTERVAL_BYTES;
+    private boolean persistedIndex = false;
+
+    public RecordingFileCompactorBuilder(File input, File output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Sets the directory for sorted runs of chunk addresses. The directory of the output file is used by default
+     */
+    public RecordingFileCompactorBuilder setTempDirectory(Path tempDirectory) {
+        this.tempDirectory = tempDirectory;
+        return this;
+    }
+
+    /**
+     * Sets how many chunk addresses are sorted in memory before they're spilled to disk. Every entry takes 20 bytes
+     * of heap
+     */
+    public RecordingFileCompactorBuilder setSortBufferEntries(int sortBufferEntries) {
+        this.sortBufferEntries = sortBufferEntries;
+        return this;
+    }
+
+    /**
+     * Sets whether the table of contents is written to the compacted file. Enabled by default
+     */
+    public RecordingFileCompactorBuilder setTableOfContents(boolean tableOfContents) {
+        this.tableOfContents = tableOfContents;
+        return this;
+    }
+
+    public RecordingFileCompactorBuilder setTocIntervalBytes(long tocIntervalBytes) {
+        this.tocIntervalBytes = tocIntervalBytes;
+        return this;
+    }
+
+    /**
+     * Sets whether the index of the compacted file is built and persisted next to it (see
+     * {@link com.ulyp.storage.tree.IndexSidecar}). Disabled by default
+     */
+    public RecordingFileCompactorBuilder setPersistedIndex(boolean persistedIndex) {
+        this.persistedIndex = persistedIndex;
+        return this;
+    }
+
+    public RecordingFileCompactor build() {
+        Path temp = tempDirectory;
+        if (temp == null) {
+            File parent = output.getAbsoluteFile().getParentFile();
+            temp = parent.toPath();
+        }
+        return new RecordingFileCompactor(input, output, temp, sortBufferEntries, tableOfContents, tocIntervalBytes, persistedIndex);
+    }
+}
@@ -0,0 +1,148 @@
+package com.ulyp.storage.export;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.ProcessMetadata;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.repository.InMemoryRepository;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.reader.RecordedCallStack;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
+import com.ulyp.storage.reader.RecordedMethodCalls;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.reader.RecordingDataReaderJob;
+import com.ulyp.storage.toc.TableOfContents;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A reader job which tracks call stacks of recordings in a single pass over the file, see {@link RecordedCallStack}. Only fixed fields of calls
+ * are read, objects are never decoded. Memory is bounded by the depth of call stacks, exports only keep what they
+ * aggregate.
+ */
+abstract class CallStackExport implements RecordingDataReaderJob {
+
+    protected final InMemoryRepository<Integer, Method> methods = new InMemoryRepository<>();
+    protected final Int2ObjectHashMap<RecordingMetadata> recordingMetadata = new Int2ObjectHashMap<>();
+    protected long calls = 0;
+    private final Int2ObjectHashMap<RecordedCallStack> stacks = new Int2ObjectHashMap<>();
+    private final int recordingId;
+
+    CallStackExport(int recordingId) {
+        this.recordingId = recordingId;
+    }
+
+    /**
+     * Reads the file and waits until all calls are exported. If a single recording is exported and the file has
+     * table of contents, only lists of that recording are read
+     */
+    void run(RecordingDataReader reader) throws StorageException {
+        TableOfContents tableOfContents = recordingId >= 0 ? reader.getTableOfContents() : null;
+        CompletableFuture<Void> future = tableOfContents != null ?
+            reader.submitReaderJob(this, tableOfContents.getListAddresses(recordingId)) :
+            reader.submitSharedReaderJob(this);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while exporting", e);
+        } catch (ExecutionException e) {
+            throw new StorageException("Could not export recording", e.getCause());
+        }
+    }
+
+    protected String methodName(int methodId) {
+        Method method = methods.get(methodId);
+        return method != null ? method.toShortString() : "unknown method " + methodId;
+    }
+
+    protected String threadName(int recordingId) {
+        RecordingMetadata metadata = recordingMetadata.get(recordingId);
+        return metadata != null && metadata.getThreadName() != null ? metadata.getThreadName() : "recording-" + recordingId;
+    }
+
+    protected void onNewRecording(int recordingId, RecordedCallStack stack) {
+    }
+
+    /**
+     * Called once the call is pushed to the stack
+     */
+    protected abstract void onEnter(int recordingId, RecordedCallStack stack);
+
+    /**
+     * Called for the top call of the stack once it's exited and before it's popped
+     */
+    protected abstract void onExit(int recordingId, RecordedCallStack stack, boolean thrown);
+
+    /**
+     * Called for calls which are never exited (e.g. the recording was not finished), from the top to the bottom
+     * of the stack
+     */
+    protected abstract void onUnclosed(int recordingId, RecordedCallStack stack);
+
+    @Override
+    public void onProcessMetadata(ProcessMetadata processMetadata) {
+
+    }
+
+    @Override
+    public void onRecordingMetadata(RecordingMetadata metadata) {
+        recordingMetadata.put(metadata.getId(), metadata);
+    }
+
+    @Override
+    public void onType(Type type) {
+
+    }
+
+    @Override
+    public void onMethod(Method method) {
+        methods.store(method.getId(), method);
+    }
+
+    @Override
+    public void onRecordedCalls(long address, RecordedMethodCalls recordedMethodCalls) {
+        int recordingId = recordedMethodCalls.getRecordingId();
+        if (recordedMethodCalls.isEmpty() || (this.recordingId >= 0 && recordingId != this.recordingId)) {
+            return;
+        }
+        RecordedCallStack stack = stacks.get(recordingId);
+        if (stack == null) {
+            stack = new RecordedCallStack();
+            stacks.put(recordingId, stack);
+            onNewRecording(recordingId, stack);
+        }
+
+        RecordedMethodCallCursor cursor = recordedMethodCalls.cursor();
+        while (cursor.hasNext()) {
+            cursor.next();
+            if (cursor.isEnter()) {
+                calls++;
+                stack.enter(cursor.methodId(), cursor.nanoTime());
+                onEnter(recordingId, stack);
+            } else if (stack.exit(cursor.callId(), cursor.nanoTime())) {
+                onExit(recordingId, stack, cursor.thrown());
+                stack.pop();
+            }
+        }
+    }
+
+    @Override
+    public boolean continueOnNoData() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(boolean recordingComplete) {
+        for (Map.Entry<Integer, RecordedCallStack> entry : stacks.entrySet()) {
+            RecordedCallStack stack = entry.getValue();
+            while (stack.depth() > 0) {
+                onUnclosed(entry.getKey(), stack);
+                stack.popUnexited();
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.ulyp.storage.export;
+
+import com.ulyp.core.ProcessMetadata;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.reader.RecordedCallStack;
+import com.ulyp.storage.reader.RecordingDataReader;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Exports calls as complete events of the Chrome Trace Event format, which chrome://tracing, Perfetto and speedscope
+ * open. Every recording is a separate track named after its thread.
+ * <p>
+ * Events are written while the file is read, every call is written once it's exited, so memory only depends on the
+ * depth of call stacks. If duration of a call is not known (timestamps were not recorded), the number of calls is used
+ * as a clock: every such call takes 1 us plus time of its children.
+ */
+public class ChromeTraceExporter {
+
+    private final RecordingDataReader reader;
+    private final int recordingId;
+    private final long minDurationNanos;
+
+    ChromeTraceExporter(RecordingDataReader reader, int recordingId, long minDurationNanos) {
+        this.reader = reader;
+        this.recordingId = recordingId;
+        this.minDurationNanos = minDurationNanos;
+    }
+
+    public ExportResult export(Writer out) throws StorageException {
+        Export export = new Export(out);
+        try {
+            out.write("{\"traceEvents\":[\n");
+            export.run(reader);
+            out.write("\n],\"displayTimeUnit\":\"ns\"}\n");
+            out.flush();
+        } catch (IOException e) {
+            throw new StorageException("Could not write trace", e);
+        }
+        return ExportResult.builder()
+            .calls(export.calls)
+            .records(export.events)
+            .timed(export.timed)
+            .build();
+    }
+
+    private class Export extends CallStackExport {
+
+        private final Writer out;
+        private final StringBuilder event = new StringBuilder();
+        private final Int2ObjectHashMap<String> eventNames = new Int2ObjectHashMap<>();
+        private long pid = 1;
+        // Timestamps are relative to the first one in the file, so that they are small
+        private long baseNanoTime = -1L;
+        private long events = 0;
+        private boolean timed = false;
+
+        private Export(Writer out) {
+            super(ChromeTraceExporter.this.recordingId);
+            this.out = out;
+        }
+
+        @Override
+        public void onProcessMetadata(ProcessMetadata processMetadata) {
+            pid = processMetadata.getPid();
+        }
+
+        @Override
+        protected void onNewRecording(int recordingId, RecordedCallStack stack) {
+            event.setLength(0);
+            event.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":").append(pid)
+                .append(",\"tid\":").append(recordingId)
+                .append(",\"args\":{\"name\":");
+            appendString(threadName(recordingId) + " (recording " + recordingId + ")");
+            event.append("}}");
+            write();
+        }
+
+        @Override
+        protected void onEnter(int recordingId, RecordedCallStack stack) {
+            if (baseNanoTime < 0 && stack.enterNanoTime() > 0) {
+                baseNanoTime = stack.enterNanoTime();
+            }
+        }
+
+        @Override
+        protected void onExit(int recordingId, RecordedCallStack stack, boolean thrown) {
+            long durationNanos = stack.durationNanos();
+            if (durationNanos < 0) {
+                writeCall(recordingId, stack, thrown);
+            } else if (durationNanos >= minDurationNanos) {
+                writeTimedCall(recordingId, stack, stack.enterNanoTime() + durationNanos, thrown);
+            }
+        }
+
+        @Override
+        protected void onUnclosed(int recordingId, RecordedCallStack stack) {
+            if (stack.enterNanoTime() > 0 && stack.lastNanoTime() >= stack.enterNanoTime()) {
+                writeTimedCall(recordingId, stack, stack.lastNanoTime(), false);
+            } else {
+                writeCall(recordingId, stack, false);
+            }
+        }
+
+        private void writeTimedCall(int recordingId, RecordedCallStack stack, long exitNanoTime, boolean thrown) {
+            long enterNanoTime = stack.enterNanoTime();
+            timed = true;
+            event.setLength(0);
+            beginEvent(recordingId, stack);
+            event.append(",\"ts\":");
+            appendMicros(enterNanoTime - baseNanoTime);
+            event.append(",\"dur\":");
+            appendMicros(exitNanoTime - enterNanoTime);
+            endEvent(thrown);
+        }
+
+        /**
+         * Writes the call which duration is not known (i.e. timestamps are not recorded), the clock is the number
+         * of calls entered so far
+         */
+        private void writeCall(int recordingId, RecordedCallStack stack, boolean thrown) {
+            long enterOrdinal = stack.callId() - 1L;
+            event.setLength(0);
+            beginEvent(recordingId, stack);
+            event.append(",\"ts\":").append(enterOrdinal);
+            event.append(",\"dur\":").append(stack.callCount() - enterOrdinal);
+            endEvent(thrown);
+        }
+
+        private void beginEvent(int recordingId, RecordedCallStack stack) {
+            int methodId = stack.methodId();
+            String name = eventNames.get(methodId);
+            if (name == null) {
+                int length = event.length();
+                appendString(methodName(methodId));
+                name = event.substring(length);
+                event.setLength(length);
+                eventNames.put(methodId, name);
+            }
+            event.append("{\"name\":").append(name)
+                .append(",\"cat\":\"call\",\"ph\":\"X\",\"pid\":").append(pid)
+                .append(",\"tid\":").append(recordingId);
+        }
+
+        private void endEvent(boolean thrown) {
+            if (thrown) {
+                event.append(",\"args\":{\"thrown\":true}");
+            }
+            event.append('}');
+            write();
+        }
+
+        private void write() {
+            try {
+                if (events++ > 0) {
+                    out.write(",\n");
+                }
+                out.write(event.toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Trace event timestamps are in microseconds, fractional part keeps nanoseconds
+         */
+        private void appendMicros(long nanos) {
+            // Calls of other recordings may start before the first timestamp in the file
+            if (nanos < 0) {
+                event.append('-');
+                nanos = -nanos;
+            }
+            event.append(nanos / 1000L).append('.');
+            long fraction = nanos % 1000L;
+            if (fraction < 100L) {
+                event.append('0');
+            }
+            if (fraction < 10L) {
+                event.append('0');
+            }
+            event.append(fraction);
+        }
+
+        private void appendString(String value) {
+            event.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        event.append("\\\"");
+                        break;
+                    case '\\':
+                        event.append("\\\\");
+                        break;
+                    case '\n':
+                        event.append("\\n");
+                        break;
+                    case '\r':
+                        event.append("\\r");
+                        break;
+                    case '\t':
+                        event.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            event.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            event.append(c);
+                        }
+                }
+            }
+            event.append('"');
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.ulyp.storage.export;
+
+import com.ulyp.storage.reader.RecordingDataReader;
+
+import java.time.Duration;
+
+public class ChromeTraceExporterBuilder {
+
+    private final RecordingDataReader reader;
+    private int recordingId = -1;
+    private Duration minDuration = Duration.ZERO;
+
+    public ChromeTraceExporterBuilder(RecordingDataReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Restricts the export to a single recording. All recordings of the file are exported by default
+     */
+    public ChromeTraceExporterBuilder setRecordingId(int recordingId) {
+        this.recordingId = recordingId;
+        return this;
+    }
+
+    /**
+     * Calls which took less time are not exported, which keeps the trace small enough for the viewer. Only applies
+     * to recordings with timestamps
+     */
+    public ChromeTraceExporterBuilder setMinDuration(Duration minDuration) {
+        this.minDuration = minDuration;
+        return this;
+    }
+
+    public ChromeTraceExporter build() {
+        return new ChromeTraceExporter(reader, recordingId, minDuration.toNanos());
+    }
+}
@@ -0,0 +1,188 @@
+package com.ulyp.storage.export;
+
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.reader.RecordedCallStack;
+import com.ulyp.storage.reader.RecordingDataReader;
+import org.agrona.collections.Int2IntHashMap;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.Long2LongHashMap;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports calls in the collapsed stack format, which flame graph tools (e.g. flamegraph.pl, speedscope) accept. Every
+ * line is a stack of method names separated by {@code ;} followed by the weight of the stack, which is the time spent in
+ * the top method (excluding its children) if timestamps were recorded, or the number of calls otherwise.
+ * <p>
+ * Identical stacks are aggregated while the file is read, so memory only depends on the number of distinct stacks.
+ * Stacks are nodes of a tree, children of every node are found by a primitive map keyed by the parent node and
+ * the method id.
+ */
+public class CollapsedStacksExporter {
+
+    private final RecordingDataReader reader;
+    private final int recordingId;
+    private final boolean threadFrames;
+
+    CollapsedStacksExporter(RecordingDataReader reader, int recordingId, boolean threadFrames) {
+        this.reader = reader;
+        this.recordingId = recordingId;
+        this.threadFrames = threadFrames;
+    }
+
+    public ExportResult export(Writer out) throws StorageException {
+        Export export = new Export();
+        export.run(reader);
+        try {
+            long stacks = export.write(out);
+            out.flush();
+            return ExportResult.builder()
+                .calls(export.calls)
+                .records(stacks)
+                .timed(export.timed)
+                .build();
+        } catch (IOException e) {
+            throw new StorageException("Could not write collapsed stacks", e);
+        }
+    }
+
+    private class Export extends CallStackExport {
+
+        private static final int ROOT = 0;
+
+        // Node ids by (parent node id, frame)
+        private final Long2LongHashMap children = new Long2LongHashMap(-1L);
+        // Node of the thread frame of every recording, calls of the recording are its children
+        private final Int2IntHashMap recordingNodes = new Int2IntHashMap(ROOT);
+        // Frame of every node is a method id or a negative thread frame id
+        private int[] parents = new int[1024];
+        private int[] frames = new int[1024];
+        private long[] callCounts = new long[1024];
+        private long[] selfNanos = new long[1024];
+        private int nodeCount = 1;
+        private final Map<String, Integer> threadFrameIds = new HashMap<>();
+        private final List<String> threadFrameNames = new ArrayList<>();
+        private boolean timed = false;
+
+        private Export() {
+            super(CollapsedStacksExporter.this.recordingId);
+        }
+
+        @Override
+        protected void onNewRecording(int recordingId, RecordedCallStack stack) {
+            // Stacks of recordings of the same thread are merged
+            if (!threadFrames) {
+                return;
+            }
+            String threadName = sanitize(threadName(recordingId));
+            Integer frame = threadFrameIds.get(threadName);
+            if (frame == null) {
+                threadFrameNames.add(threadName);
+                frame = -threadFrameNames.size();
+                threadFrameIds.put(threadName, frame);
+            }
+            recordingNodes.put(recordingId, child(ROOT, frame));
+        }
+
+        @Override
+        protected void onEnter(int recordingId, RecordedCallStack stack) {
+            // Tag of every call on the stack is its node
+            int parent = stack.depth() > 1 ? (int) stack.tag(stack.depth() - 2) : recordingNodes.get(recordingId);
+            int node = child(parent, stack.methodId());
+            stack.setTag(node);
+            callCounts[node]++;
+        }
+
+        @Override
+        protected void onExit(int recordingId, RecordedCallStack stack, boolean thrown) {
+            long self = stack.selfNanos();
+            if (self >= 0) {
+                selfNanos[(int) stack.tag()] += self;
+                timed = true;
+            }
+        }
+
+        @Override
+        protected void onUnclosed(int recordingId, RecordedCallStack stack) {
+            // Self time of calls which are never exited is not known
+        }
+
+        private int child(int parent, int frame) {
+            long key = ((long) parent << 32) | (frame & 0xFFFFFFFFL);
+            long node = children.get(key);
+            if (node >= 0) {
+                return (int) node;
+            }
+            if (nodeCount == parents.length) {
+                parents = Arrays.copyOf(parents, nodeCount * 2);
+                frames = Arrays.copyOf(frames, nodeCount * 2);
+                callCounts = Arrays.copyOf(callCounts, nodeCount * 2);
+                selfNanos = Arrays.copyOf(selfNanos, nodeCount * 2);
+            }
+            int newNode = nodeCount++;
+            parents[newNode] = parent;
+            frames[newNode] = frame;
+            children.put(key, newNode);
+            return newNode;
+        }
+
+        /**
+         * @return number of written stacks
+         */
+        private long write(Writer out) throws IOException {
+            Int2ObjectHashMap<String> methodNames = new Int2ObjectHashMap<>();
+            int[] path = new int[64];
+            long written = 0;
+            StringBuilder line = new StringBuilder();
+            for (int node = 1; node < nodeCount; node++) {
+                long weight = timed ? selfNanos[node] : callCounts[node];
+                if (weight <= 0) {
+                    continue;
+                }
+                int depth = 0;
+                for (int current = node; current != ROOT; current = parents[current]) {
+                    if (depth == path.length) {
+                        path = Arrays.copyOf(path, depth * 2);
+                    }
+                    path[depth++] = current;
+                }
+
+                line.setLength(0);
+                for (int i = depth - 1; i >= 0; i--) {
+                    int frame = frames[path[i]];
+                    String name;
+                    if (frame < 0) {
+                        name = threadFrameNames.get(-frame - 1);
+                    } else {
+                        name = methodNames.get(frame);
+                        if (name == null) {
+                            name = sanitize(methodName(frame));
+                            methodNames.put(frame, name);
+                        }
+                    }
+                    if (i != depth - 1) {
+                        line.append(';');
+                    }
+                    line.append(name);
+                }
+                line.append(' ').append(weight).append('\n');
+                out.write(line.toString());
+                written++;
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Frames are separated by semicolons and the weight is separated by the last space
+     */
+    private static String sanitize(String frame) {
+        return frame.replace(';', ':').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,34 @@
+package com.ulyp.storage.export;
+
+import com.ulyp.storage.reader.RecordingDataReader;
+
+public class CollapsedStacksExporterBuilder {
+
+    private final RecordingDataReader reader;
+    private int recordingId = -1;
+    private boolean threadFrames = true;
+
+    public CollapsedStacksExporterBuilder(RecordingDataReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Restricts the export to a single recording. All recordings of the file are exported by default
+     */
+    public CollapsedStacksExporterBuilder setRecordingId(int recordingId) {
+        this.recordingId = recordingId;
+        return this;
+    }
+
+    /**
+     * Sets whether every stack starts with the name of the thread the recording was made at. Enabled by default
+     */
+    public CollapsedStacksExporterBuilder setThreadFrames(boolean threadFrames) {
+        this.threadFrames = threadFrames;
+        return this;
+    }
+
+    public CollapsedStacksExporter build() {
+        return new CollapsedStacksExporter(reader, recordingId, threadFrames);
+    }
+}
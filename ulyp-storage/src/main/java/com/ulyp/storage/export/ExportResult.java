@@ -0,0 +1,22 @@
+package com.ulyp.storage.export;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class ExportResult {
+
+    /**
+     * Number of calls read
+     */
+    long calls;
+    /**
+     * Number of records written, i.e. distinct stacks or trace events
+     */
+    long records;
+    /**
+     * If calls are weighted by recorded time. Otherwise, timestamps were not recorded and calls are weighted by count
+     */
+    boolean timed;
+}
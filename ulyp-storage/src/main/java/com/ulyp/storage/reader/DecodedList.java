@@ -0,0 +1,132 @@
+package com.ulyp.storage.reader;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.ProcessMetadata;
+import com.ulyp.core.RecordingCompleteMark;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.serializers.MethodSerializer;
+import com.ulyp.core.serializers.ProcessMetadataSerializer;
+import com.ulyp.core.serializers.RecordingMetadataSerializer;
+import com.ulyp.core.serializers.TypeSerializer;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.toc.TocFrame;
+import com.ulyp.storage.util.BinaryListFileReader;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary list which is read from the file and decoded, i.e. is ready to be passed to reader jobs
+ */
+@AllArgsConstructor
+class DecodedList {
+
+    static final DecodedList NO_DATA = new DecodedList(-1, -1L, -1L, null);
+
+    final int wireId;
+    final long address;
+    final long nextAddress;
+    final Object payload;
+
+    static DecodedList decode(BinaryListWithAddress data, long nextAddress) {
+        InputBytesList in = data.getBytes();
+        switch (in.id()) {
+            case ProcessMetadata.WIRE_ID:
+                return new DecodedList(in.id(), data.getAddress(), nextAddress, ProcessMetadataSerializer.instance.deserialize(in.iterator().next()));
+            case RecordingMetadata.WIRE_ID:
+                return new DecodedList(in.id(), data.getAddress(), nextAddress, RecordingMetadataSerializer.instance.deserialize(in.iterator().next()));
+            case SerializedTypeList.WIRE_ID:
+                List<Type> types = new ArrayList<>(in.size());
+                for (BytesIn input : in) {
+                    types.add(TypeSerializer.instance.deserialize(input));
+                }
+                return new DecodedList(in.id(), data.getAddress(), nextAddress, types);
+            case SerializedMethodList.WIRE_ID:
+                List<Method> methods = new ArrayList<>(in.size());
+                for (BytesIn input : in) {
+                    methods.add(MethodSerializer.instance.deserialize(input));
+                }
+                return new DecodedList(in.id(), data.getAddress(), nextAddress, methods);
+            case SerializedRecordedMethodCallList.WIRE_ID:
+                return new DecodedList(in.id(), data.getAddress(), nextAddress, new RecordedMethodCalls(in));
+            case SerializedCallIndexList.WIRE_ID:
+                return new DecodedList(in.id(), data.getAddress(), nextAddress, new RecordedCallIndex(in));
+            case SerializedCallTreeList.WIRE_ID:
+                return new DecodedList(in.id(), data.getAddress(), nextAddress, new RecordedCallTree(in));
+            case RecordingCompleteMark.WIRE_ID:
+            case TocFrame.WIRE_ID:
+                // Table of contents is only used to locate lists, jobs skip it
+                return new DecodedList(in.id(), data.getAddress(), nextAddress, null);
+            default:
+                throw new StorageException("Unknown binary data id " + in.id());
+        }
+    }
+
+    /**
+     * @return address in the file where the list starts (including the header)
+     */
+    long fileOffset() {
+        return address - BinaryListFileReader.HEADER_SIZE;
+    }
+
+    long length() {
+        return nextAddress - fileOffset();
+    }
+
+    /**
+     * Passes the list to the job
+     *
+     * @return if the recording file is complete and there is nothing to read anymore
+     */
+    boolean deliverTo(RecordingDataReaderJob job) {
+        switch (wireId) {
+            case ProcessMetadata.WIRE_ID:
+                job.onProcessMetadata((ProcessMetadata) payload);
+                break;
+            case RecordingMetadata.WIRE_ID:
+                // Metadata is mutable, while the same list may be delivered to several jobs
+                RecordingMetadata metadata = (RecordingMetadata) payload;
+                job.onRecordingMetadata(metadata.withCompleteTime(metadata.getRecordingFinishedMillis()));
+                break;
+            case SerializedTypeList.WIRE_ID:
+                for (Type type : castList(payload, Type.class)) {
+                    job.onType(type);
+                }
+                break;
+            case SerializedMethodList.WIRE_ID:
+                for (Method method : castList(payload, Method.class)) {
+                    job.onMethod(method);
+                }
+                break;
+            case SerializedRecordedMethodCallList.WIRE_ID:
+                job.onRecordedCalls(address, (RecordedMethodCalls) payload);
+                break;
+            case SerializedCallIndexList.WIRE_ID:
+                job.onCallIndex(address, (RecordedCallIndex) payload);
+                break;
+            case SerializedCallTreeList.WIRE_ID:
+                job.onCallTree(address, (RecordedCallTree) payload);
+                break;
+            case RecordingCompleteMark.WIRE_ID:
+                job.onListProcessed(nextAddress);
+                job.onEnd(true);
+                return true;
+        }
+        job.onListProcessed(nextAddress);
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> List<T> castList(Object payload, Class<T> itemType) {
+        return (List<T>) payload;
+    }
+}
@@ -1,36 +1,42 @@
 package com.ulyp.storage.reader;
 
 import com.ulyp.core.*;
-import com.ulyp.core.bytes.BytesIn;
 import com.ulyp.core.mem.InputBytesList;
-import com.ulyp.core.mem.SerializedMethodList;
-import com.ulyp.core.mem.SerializedRecordedMethodCallList;
-import com.ulyp.core.mem.SerializedTypeList;
 import com.ulyp.core.repository.ReadableRepository;
-import com.ulyp.core.serializers.MethodSerializer;
 import com.ulyp.core.serializers.ProcessMetadataSerializer;
-import com.ulyp.core.serializers.RecordingMetadataSerializer;
-import com.ulyp.core.serializers.TypeSerializer;
+import com.ulyp.core.util.Backoff;
 import com.ulyp.core.util.NamedThreadFactory;
 import com.ulyp.storage.StorageException;
+import com.ulyp.storage.toc.TableOfContents;
 import com.ulyp.storage.util.BinaryListFileReader;
+import com.ulyp.storage.util.FileTailBackoff;
 import lombok.SneakyThrows;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
+/**
+ * Reads recording file for reader jobs. Every job is run by a separate thread which reads the file
+ * sequentially starting from {@link RecordingDataReaderJob#startAddress()}.
+ * <p>
+ * If read-ahead is enabled, reading is pipelined. Another thread reads binary lists ahead of the job, and lists
+ * are delivered to the job strictly in the file order, since they are queued in the order they are read.
+ * <p>
+ * Jobs submitted as shared don't read the file by themselves, but rather attach to the single {@link SharedScan}
+ * of the file, so that the file is read once no matter how many jobs process it.
+ */
 public class FileRecordingDataReader implements RecordingDataReader {
 
     private final File file;
     private final RecordedMethodCallDataReader recordedMethodCallDataReader;
     private final ExecutorService executorService;
+    private final int readAheadDepth;
+    private final ExecutorService readAheadExecutorService;
+    private final SharedScan sharedScan;
     private boolean closed = false;
 
-    FileRecordingDataReader(File file, int threads) {
+    FileRecordingDataReader(File file, int threads, int readAheadDepth) {
         this.file = file;
         this.recordedMethodCallDataReader = new RecordedMethodCallDataReader(file);
         this.executorService = Executors.newFixedThreadPool(
@@ -40,15 +46,32 @@ public class FileRecordingDataReader implements RecordingDataReader {
                 .daemon(true)
                 .build()
         );
+        this.readAheadDepth = readAheadDepth;
+        this.readAheadExecutorService = Executors.newCachedThreadPool(
+            NamedThreadFactory.builder()
+                .name("Reader-read-ahead-" + file.toString())
+                .daemon(true)
+                .build()
+        );
+        this.sharedScan = new SharedScan(file, readAheadDepth, readAheadExecutorService);
     }
 
     @Override
     public CompletableFuture<Void> submitReaderJob(RecordingDataReaderJob job) {
-        try {
-            return CompletableFuture.runAsync(new JobRunner(job, file), executorService);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        return CompletableFuture.runAsync(new JobRunner(job), executorService);
+    }
+
+    @Override
+    public CompletableFuture<Void> submitReaderJob(RecordingDataReaderJob job, long[] listAddresses) {
+        return CompletableFuture.runAsync(new SelectiveJobRunner(job, listAddresses), executorService);
+    }
+
+    @Override
+    public CompletableFuture<Void> submitSharedReaderJob(RecordingDataReaderJob job) {
+        if (readAheadDepth == 0) {
+            return submitReaderJob(job);
         }
+        return CompletableFuture.runAsync(new SharedJobRunner(job), executorService);
     }
 
     @Override
@@ -83,10 +106,21 @@ public class FileRecordingDataReader implements RecordingDataReader {
         return file.length();
     }
 
+    @Override
+    public TableOfContents getTableOfContents() throws StorageException {
+        return TableOfContents.read(file);
+    }
+
+    @Override
+    public Backoff newTailBackoff() {
+        return new FileTailBackoff(file);
+    }
+
     @Override
     public void close() throws StorageException {
         if (!closed) {
             executorService.shutdownNow();
+            readAheadExecutorService.shutdownNow();
             try {
                 executorService.awaitTermination(5, TimeUnit.SECONDS);
             } catch (InterruptedException e) {
@@ -101,86 +135,138 @@ public class FileRecordingDataReader implements RecordingDataReader {
         }
     }
 
-    private static class JobRunner implements Runnable {
+    private class SelectiveJobRunner implements Runnable {
 
-        private final File file;
         private final RecordingDataReaderJob job;
+        private final long[] listAddresses;
 
-        private JobRunner(RecordingDataReaderJob job, File file) throws IOException {
-            this.file = file;
+        private SelectiveJobRunner(RecordingDataReaderJob job, long[] listAddresses) {
             this.job = job;
+            this.listAddresses = listAddresses;
         }
 
         @SneakyThrows
         @Override
         public void run() {
-            try (BinaryListFileReader reader = new BinaryListFileReader(file)) {
-                job.onStart();
-
-                while (!Thread.currentThread().isInterrupted()) {
+            job.onStart();
 
-                    try {
-                        BinaryListWithAddress data = reader.readWithAddress();
-
-                        if (data == null) {
-                            if (job.continueOnNoData()) {
-                                continue;
-                            } else {
-                                return;
-                            }
-                        }
-
-                        switch (data.getBytes().id()) {
-                            case ProcessMetadata.WIRE_ID:
-                                onProcessMetadata(data.getBytes());
-                                break;
-                            case RecordingMetadata.WIRE_ID:
-                                onRecordingMetadata(data.getBytes());
-                                break;
-                            case SerializedTypeList.WIRE_ID:
-                                onTypes(data.getBytes());
-                                break;
-                            case SerializedMethodList.WIRE_ID:
-                                onMethods(data.getBytes());
-                                break;
-                            case SerializedRecordedMethodCallList.WIRE_ID:
-                                onRecordedCalls(data);
-                                break;
-                            case RecordingCompleteMark.WIRE_ID:
-                                return;
-                            default:
-                                throw new StorageException("Unknown binary data id " + data.getBytes().id());
-                        }
-                    } catch (Exception err) {
-                        throw new RuntimeException(err);
+            try (BinaryListFileReader reader = new BinaryListFileReader(file)) {
+                for (long listAddress : listAddresses) {
+                    if (job.isCancelled() || Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                    reader.moveTo(listAddress);
+                    BinaryListWithAddress data = reader.readWithAddress();
+                    if (data == null) {
+                        throw new StorageException("No binary list at address " + listAddress + " of " + file);
+                    }
+                    if (DecodedList.decode(data, reader.address()).deliverTo(job)) {
+                        return;
                     }
                 }
             }
+            job.onEnd(false);
         }
+    }
+
+    private class SharedJobRunner implements Runnable {
+
+        private final RecordingDataReaderJob job;
 
-        private void onProcessMetadata(InputBytesList in) {
-            job.onProcessMetadata(ProcessMetadataSerializer.instance.deserialize(in.iterator().next()));
+        private SharedJobRunner(RecordingDataReaderJob job) {
+            this.job = job;
         }
 
-        protected void onRecordingMetadata(InputBytesList in) {
-            job.onRecordingMetadata(RecordingMetadataSerializer.instance.deserialize(in.iterator().next()));
+        @SneakyThrows
+        @Override
+        public void run() {
+            sharedScan.run(job);
         }
+    }
+
+    private class JobRunner implements Runnable {
+
+        private final RecordingDataReaderJob job;
 
-        private void onTypes(InputBytesList typesList) {
-            for (BytesIn input : typesList) {
-                job.onType(TypeSerializer.instance.deserialize(input));
+        private JobRunner(RecordingDataReaderJob job) {
+            this.job = job;
+        }
+
+        @SneakyThrows
+        @Override
+        public void run() {
+            job.onStart();
+
+            if (readAheadDepth > 0) {
+                runPipelined();
+            } else {
+                runSequentially();
             }
         }
 
-        private void onMethods(InputBytesList methodList) {
-            for (BytesIn input : methodList) {
-                job.onMethod(MethodSerializer.instance.deserialize(input));
+        private void runSequentially() throws Exception {
+            try (BinaryListFileReader reader = new BinaryListFileReader(file, job.startAddress())) {
+                while (!Thread.currentThread().isInterrupted()) {
+                    if (job.isCancelled()) {
+                        job.onEnd(false);
+                        return;
+                    }
+                    BinaryListWithAddress data = reader.readWithAddress();
+
+                    if (data == null) {
+                        if (job.continueOnNoData()) {
+                            continue;
+                        } else {
+                            job.onEnd(false);
+                            return;
+                        }
+                    }
+
+                    if (DecodedList.decode(data, reader.address()).deliverTo(job)) {
+                        return;
+                    }
+                }
             }
         }
 
-        private void onRecordedCalls(BinaryListWithAddress data) {
-            RecordedMethodCalls calls = new RecordedMethodCalls(data.getBytes());
-            job.onRecordedCalls(data.getAddress(), calls);
+        private void runPipelined() throws Throwable {
+            BlockingQueue<CompletableFuture<DecodedList>> readAheadQueue = new ArrayBlockingQueue<>(readAheadDepth);
+            SynchronousQueue<Boolean> continueOnNoData = new SynchronousQueue<>();
+            long startAddress = job.startAddress();
+            Future<?> readAhead = readAheadExecutorService.submit(
+                new ReadAhead(file, startAddress, readAheadQueue, continueOnNoData)
+            );
+
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    if (job.isCancelled()) {
+                        job.onEnd(false);
+                        return;
+                    }
+                    DecodedList list;
+                    try {
+                        list = readAheadQueue.take().join();
+                    } catch (CompletionException e) {
+                        throw e.getCause();
+                    }
+
+                    if (list == DecodedList.NO_DATA) {
+                        boolean continueReading = job.continueOnNoData();
+                        continueOnNoData.put(continueReading);
+                        if (!continueReading) {
+                            job.onEnd(false);
+                            return;
+                        }
+                        continue;
+                    }
+
+                    if (list.deliverTo(job)) {
+                        return;
+                    }
+                }
+            } finally {
+                readAhead.cancel(true);
+            }
         }
     }
 }
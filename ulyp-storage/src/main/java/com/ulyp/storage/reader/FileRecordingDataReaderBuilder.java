@@ -6,12 +6,22 @@ public class FileRecordingDataReaderBuilder {
 
     private final File file;
     private int threads = Runtime.getRuntime().availableProcessors();
+    private int readAheadDepth = 16;
 
     public FileRecordingDataReaderBuilder(File file) {
         this.file = file;
     }
 
+    /**
+     * Sets how many binary lists can be read ahead of every reader job. If set to 0, the file is
+     * read and decoded by the job thread
+     */
+    public FileRecordingDataReaderBuilder setReadAheadDepth(int readAheadDepth) {
+        this.readAheadDepth = readAheadDepth;
+        return this;
+    }
+
     public FileRecordingDataReader build() {
-        return new FileRecordingDataReader(file, threads);
+        return new FileRecordingDataReader(file, threads, readAheadDepth);
     }
 }
@@ -0,0 +1,69 @@
+package com.ulyp.storage.reader;
+
+import com.ulyp.core.RecordingCompleteMark;
+import com.ulyp.storage.util.BinaryListFileReader;
+
+import java.io.File;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.SynchronousQueue;
+
+/**
+ * Reads binary lists of the file sequentially and queues them in the file order. Recorded calls are not decoded
+ * here, since jobs read them with {@link RecordedMethodCallCursor} which only decodes what's needed.
+ * <p>
+ * Once there is no data to read, {@link DecodedList#NO_DATA} is queued and reading is only continued
+ * if the consumer puts true to the continue queue.
+ */
+class ReadAhead implements Runnable {
+
+    private final File file;
+    private final long startAddress;
+    private final BlockingQueue<CompletableFuture<DecodedList>> queue;
+    private final SynchronousQueue<Boolean> continueOnNoData;
+
+    ReadAhead(
+            File file,
+            long startAddress,
+            BlockingQueue<CompletableFuture<DecodedList>> queue,
+            SynchronousQueue<Boolean> continueOnNoData) {
+        this.file = file;
+        this.startAddress = startAddress;
+        this.queue = queue;
+        this.continueOnNoData = continueOnNoData;
+    }
+
+    @Override
+    public void run() {
+        try (BinaryListFileReader reader = new BinaryListFileReader(file, startAddress)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                BinaryListWithAddress data = reader.readWithAddress();
+
+                if (data == null) {
+                    queue.put(CompletableFuture.completedFuture(DecodedList.NO_DATA));
+                    if (continueOnNoData.take()) {
+                        continue;
+                    } else {
+                        return;
+                    }
+                }
+
+                DecodedList list = DecodedList.decode(data, reader.address());
+                queue.put(CompletableFuture.completedFuture(list));
+                if (list.wireId == RecordingCompleteMark.WIRE_ID) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            CompletableFuture<DecodedList> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                queue.put(failed);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
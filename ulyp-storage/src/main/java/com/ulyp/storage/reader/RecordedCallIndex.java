@@ -0,0 +1,53 @@
+package com.ulyp.storage.reader;
+
+import com.ulyp.core.CallIndexEntry;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.serializers.CallIndexEntrySerializer;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+
+/**
+ * Call index entries of a single recorded calls list, see {@link SerializedCallIndexList}
+ */
+public class RecordedCallIndex implements Iterable<CallIndexEntry> {
+
+    private final InputBytesList bytesIn;
+    @Getter
+    private final int recordingId;
+
+    public RecordedCallIndex(InputBytesList bytesIn) {
+        this.bytesIn = bytesIn;
+        if (bytesIn.id() != SerializedCallIndexList.WIRE_ID) {
+            throw new IllegalArgumentException("Invalid wire id");
+        }
+        BytesIn firstEntry = bytesIn.iterator().next();
+        this.recordingId = firstEntry.readInt();
+    }
+
+    public int size() {
+        return bytesIn.size() - 1;
+    }
+
+    @NotNull
+    @Override
+    public Iterator<CallIndexEntry> iterator() {
+        Iterator<BytesIn> iterator = bytesIn.iterator();
+        iterator.next();
+
+        return new Iterator<CallIndexEntry>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public CallIndexEntry next() {
+                return CallIndexEntrySerializer.instance.deserialize(iterator.next());
+            }
+        };
+    }
+}
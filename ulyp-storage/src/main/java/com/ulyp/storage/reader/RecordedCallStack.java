@@ -0,0 +1,218 @@
+package com.ulyp.storage.reader;
+
+import org.agrona.collections.Int2IntHashMap;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * Calls of a single recording which are entered, but not exited yet. Jobs which go through recorded calls with
+ * {@link RecordedMethodCallCursor} and need call ids, durations or self time of calls track them with the stack.
+ * <p>
+ * Call ids of enter calls are not recorded, they are assigned sequentially in the order of enter calls, starting from 1.
+ * Some calls are never exited (e.g. if an exception is thrown from a constructor), they are popped once some call
+ * which is entered before them exits. Durations of such calls are not known.
+ * <p>
+ * Every call on the stack may have a tag which is free for use by the job, e.g. a node of some aggregated tree
+ */
+@NotThreadSafe
+public class RecordedCallStack {
+
+    // Number of calls of every method which are currently on the stack, null if recursion is not tracked
+    private final Int2IntHashMap activeCalls;
+    private int nextCallId = 1;
+    private long lastNanoTime = -1L;
+    private long exitNanoTime = -1L;
+    private int depth = 0;
+    private int[] callIds = new int[16];
+    private int[] methodIds = new int[16];
+    private long[] enterNanoTimes = new long[16];
+    // Sum of durations of the children of every call on the stack
+    private long[] childrenNanos = new long[16];
+    private long[] tags = new long[16];
+    private boolean[] tagged = new boolean[16];
+
+    public RecordedCallStack() {
+        this(false);
+    }
+
+    /**
+     * @param trackRecursion if {@link #isOutermost()} should be supported. Costs a map lookup for every call
+     */
+    public RecordedCallStack(boolean trackRecursion) {
+        this.activeCalls = trackRecursion ? new Int2IntHashMap(0) : null;
+    }
+
+    /**
+     * Pushes the enter call to the stack
+     *
+     * @return call id of the call
+     */
+    public int enter(int methodId, long nanoTime) {
+        if (depth == callIds.length) {
+            callIds = Arrays.copyOf(callIds, depth * 2);
+            methodIds = Arrays.copyOf(methodIds, depth * 2);
+            enterNanoTimes = Arrays.copyOf(enterNanoTimes, depth * 2);
+            childrenNanos = Arrays.copyOf(childrenNanos, depth * 2);
+            tags = Arrays.copyOf(tags, depth * 2);
+            tagged = Arrays.copyOf(tagged, depth * 2);
+        }
+        int callId = nextCallId++;
+        callIds[depth] = callId;
+        methodIds[depth] = methodId;
+        enterNanoTimes[depth] = nanoTime;
+        childrenNanos[depth] = 0L;
+        tags[depth] = 0L;
+        tagged[depth] = false;
+        depth++;
+        if (activeCalls != null) {
+            activeCalls.put(methodId, activeCalls.get(methodId) + 1);
+        }
+        onTime(nanoTime);
+        return callId;
+    }
+
+    /**
+     * Moves the stack to the exit call. Calls which are entered after the exited one are never exited, so they are
+     * popped. The exited call itself stays on the stack until {@link #pop()} is called, so that it can be inspected.
+     *
+     * @return true if the exited call is on top of the stack, false if it's not on the stack at all
+     * (e.g. it's entered before the job started reading)
+     */
+    public boolean exit(int callId, long nanoTime) {
+        onTime(nanoTime);
+        while (depth > 0 && callIds[depth - 1] > callId) {
+            popUnexited();
+        }
+        exitNanoTime = nanoTime;
+        return depth > 0 && callIds[depth - 1] == callId;
+    }
+
+    /**
+     * Pops the top call which exit is passed to {@link #exit}. Its duration is added to the children time of its caller
+     */
+    public void pop() {
+        long durationNanos = durationNanos();
+        remove();
+        if (depth > 0 && durationNanos >= 0) {
+            childrenNanos[depth - 1] += durationNanos;
+        }
+    }
+
+    /**
+     * Pops the top call which is never exited, e.g. if the recording is not finished
+     */
+    public void popUnexited() {
+        remove();
+    }
+
+    private void remove() {
+        depth--;
+        exitNanoTime = -1L;
+        if (activeCalls != null) {
+            int methodId = methodIds[depth];
+            int active = activeCalls.get(methodId) - 1;
+            if (active > 0) {
+                activeCalls.put(methodId, active);
+            } else {
+                activeCalls.remove(methodId);
+            }
+        }
+    }
+
+    private void onTime(long nanoTime) {
+        if (nanoTime > 0) {
+            lastNanoTime = nanoTime;
+        }
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * @return number of calls entered so far, which is also the id of the last entered call
+     */
+    public int callCount() {
+        return nextCallId - 1;
+    }
+
+    /**
+     * @return the latest timestamp of all calls pushed or exited so far or -1 if calls have no timestamps
+     */
+    public long lastNanoTime() {
+        return lastNanoTime;
+    }
+
+    public int callId() {
+        return callIds[depth - 1];
+    }
+
+    public int methodId() {
+        return methodIds[depth - 1];
+    }
+
+    /**
+     * @return enter timestamp of the top call or a non-positive value if timestamps are not recorded
+     */
+    public long enterNanoTime() {
+        return enterNanoTimes[depth - 1];
+    }
+
+    /**
+     * @return number of calls in the subtree of the top call entered so far, including the call itself
+     */
+    public int subtreeSize() {
+        return nextCallId - callIds[depth - 1];
+    }
+
+    /**
+     * @return duration of the exited top call or -1 if it's not known
+     */
+    public long durationNanos() {
+        long enterNanoTime = enterNanoTimes[depth - 1];
+        return enterNanoTime > 0 && exitNanoTime > 0 ? exitNanoTime - enterNanoTime : -1L;
+    }
+
+    /**
+     * @return time spent in the exited top call excluding its children or -1 if it's not known
+     */
+    public long selfNanos() {
+        long durationNanos = durationNanos();
+        return durationNanos >= 0 ? Math.max(0L, durationNanos - childrenNanos[depth - 1]) : -1L;
+    }
+
+    /**
+     * @return true if no other call of the method of the top call is on the stack, i.e. the call is not recursive.
+     * Only supported if recursion is tracked
+     */
+    public boolean isOutermost() {
+        if (activeCalls == null) {
+            throw new IllegalStateException("Recursion is not tracked");
+        }
+        return activeCalls.get(methodIds[depth - 1]) == 1;
+    }
+
+    /**
+     * @return true if the tag of the top call is set with {@link #setTag}
+     */
+    public boolean hasTag() {
+        return tagged[depth - 1];
+    }
+
+    public long tag() {
+        return tags[depth - 1];
+    }
+
+    /**
+     * @param index index of the call starting from the bottom of the stack
+     */
+    public long tag(int index) {
+        return tags[index];
+    }
+
+    public void setTag(long tag) {
+        tags[depth - 1] = tag;
+        tagged[depth - 1] = true;
+    }
+}
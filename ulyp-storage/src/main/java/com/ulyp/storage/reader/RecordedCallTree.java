@@ -0,0 +1,50 @@
+package com.ulyp.storage.reader;
+
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import lombok.Getter;
+
+import java.util.Iterator;
+
+/**
+ * Nodes of the calling context tree of the recording which changed since the previous list, see
+ * {@link SerializedCallTreeList}
+ */
+public class RecordedCallTree {
+
+    private final InputBytesList bytesIn;
+    @Getter
+    private final int recordingId;
+
+    public RecordedCallTree(InputBytesList bytesIn) {
+        this.bytesIn = bytesIn;
+        if (bytesIn.id() != SerializedCallTreeList.WIRE_ID) {
+            throw new IllegalArgumentException("Invalid wire id");
+        }
+        BytesIn firstEntry = bytesIn.iterator().next();
+        this.recordingId = firstEntry.readInt();
+    }
+
+    public int size() {
+        return bytesIn.size() - 1;
+    }
+
+    /**
+     * Passes all nodes to the visitor in the order they are written, no objects are allocated per node
+     */
+    public void forEachNode(NodeVisitor visitor) {
+        Iterator<BytesIn> iterator = bytesIn.iterator();
+        iterator.next();
+        while (iterator.hasNext()) {
+            BytesIn in = iterator.next();
+            visitor.visit(in.readInt(), in.readInt(), in.readInt(), in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+
+    @FunctionalInterface
+    public interface NodeVisitor {
+
+        void visit(int node, int parent, int methodId, long callCount, long totalNanos, long selfNanos);
+    }
+}
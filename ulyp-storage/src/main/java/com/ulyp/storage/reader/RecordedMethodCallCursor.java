@@ -0,0 +1,298 @@
+package com.ulyp.storage.reader;
+
+import com.ulyp.core.RecordedMethodCall;
+import com.ulyp.core.Type;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.recorders.ObjectRecord;
+import com.ulyp.core.recorders.ObjectRecorder;
+import com.ulyp.core.recorders.ObjectRecorderRegistry;
+import com.ulyp.core.repository.ReadableRepository;
+import com.ulyp.core.serializers.RecordedEnterMethodCallSerializer;
+import com.ulyp.core.serializers.RecordedExitMethodCallSerializer;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Flyweight over recorded calls of some list. The cursor points to one call at a time and reads its fixed fields
+ * right from the bytes of the list, while objects (arguments, callee and return value) are only decoded if they
+ * are requested. Moving the cursor doesn't allocate anything, which makes it suitable for jobs which go through
+ * all recorded calls but only need some of them (or only need method ids and addresses like tree building).
+ * <p>
+ * Values returned by the cursor are only valid until it's moved to the next call
+ */
+@NotThreadSafe
+public class RecordedMethodCallCursor {
+
+    private final BytesIn in;
+    private int nextRecordPosition;
+    private int recordPosition = -1;
+
+    private boolean enter;
+    private int methodId;
+    private int callId;
+    private boolean thrown;
+    private long nanoTime;
+    private int argCount;
+    // Position of the object which follows the fixed fields, i.e. the first argument or the return value
+    private int objectsPosition;
+    // Allows reading arguments one after another without decoding the previous ones again
+    private int nextArgIndex;
+    private int nextArgPosition;
+
+    RecordedMethodCallCursor(InputBytesList bytesList) {
+        this.in = bytesList.view();
+        // The first record is the recording id
+        this.nextRecordPosition = InputBytesList.HEADER_LENGTH + InputBytesList.RECORD_HEADER_LENGTH +
+            in.readIntAt(InputBytesList.HEADER_LENGTH);
+    }
+
+    public boolean hasNext() {
+        return nextRecordPosition < in.available() && in.readIntAt(nextRecordPosition) > 0;
+    }
+
+    /**
+     * Moves the cursor to the next recorded call
+     */
+    public RecordedMethodCallCursor next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int length = in.readIntAt(nextRecordPosition);
+        recordPosition = nextRecordPosition + InputBytesList.RECORD_HEADER_LENGTH;
+        nextRecordPosition = recordPosition + length;
+        readFixedFields();
+        return this;
+    }
+
+    private void readFixedFields() {
+        in.moveTo(recordPosition);
+        enter = in.readByte() == SerializedRecordedMethodCallList.ENTER_METHOD_CALL_ID;
+        if (enter) {
+            methodId = in.readVarInt();
+            nanoTime = in.readLong();
+            argCount = in.readVarInt();
+            callId = -1;
+            thrown = false;
+        } else {
+            callId = in.readVarInt();
+            thrown = in.readBoolean();
+            nanoTime = in.readLong();
+            methodId = -1;
+            argCount = 0;
+        }
+        objectsPosition = in.getPosition();
+        nextArgIndex = 0;
+        nextArgPosition = objectsPosition;
+    }
+
+    /**
+     * @return address of the current call relative to the list, the same as the one returned by
+     * {@link RecordedMethodCalls#iterator}
+     */
+    public long address() {
+        return recordPosition;
+    }
+
+    public boolean isEnter() {
+        return enter;
+    }
+
+    /**
+     * @return method id, only available for enter calls
+     */
+    public int methodId() {
+        checkEnter(true);
+        return methodId;
+    }
+
+    /**
+     * @return call id, only available for exit calls. Call ids of enter calls are not recorded, they are assigned
+     * sequentially in the order of enter calls of the recording
+     */
+    public int callId() {
+        checkEnter(false);
+        return callId;
+    }
+
+    public long nanoTime() {
+        return nanoTime;
+    }
+
+    /**
+     * @return the number of arguments, only available for enter calls
+     */
+    public int argCount() {
+        checkEnter(true);
+        return argCount;
+    }
+
+    public boolean thrown() {
+        checkEnter(false);
+        return thrown;
+    }
+
+    /**
+     * Decodes the argument. Arguments which precede it are skipped, length prefixed ones without decoding
+     */
+    public ObjectRecord argument(int index, ReadableRepository<Integer, Type> typeRepository) {
+        checkEnter(true);
+        if (index < 0 || index >= argCount) {
+            throw new IndexOutOfBoundsException("Argument index " + index + ", arguments count " + argCount);
+        }
+        if (index < nextArgIndex) {
+            nextArgIndex = 0;
+            nextArgPosition = objectsPosition;
+        }
+        in.moveTo(nextArgPosition);
+        while (nextArgIndex < index) {
+            skipObject(typeRepository);
+            nextArgIndex++;
+        }
+        ObjectRecord argument = readObject(typeRepository);
+        nextArgIndex++;
+        nextArgPosition = in.getPosition();
+        return argument;
+    }
+
+    public ObjectRecord callee(ReadableRepository<Integer, Type> typeRepository) {
+        checkEnter(true);
+        in.moveTo(nextArgPosition);
+        while (nextArgIndex < argCount) {
+            skipObject(typeRepository);
+            nextArgIndex++;
+        }
+        nextArgPosition = in.getPosition();
+        return readObject(typeRepository);
+    }
+
+    public ObjectRecord returnValue(ReadableRepository<Integer, Type> typeRepository) {
+        checkEnter(false);
+        in.moveTo(objectsPosition);
+        return readObject(typeRepository);
+    }
+
+    /**
+     * @return the number of objects of the call. Enter call has its arguments and the callee, while exit call
+     * only has the return value
+     */
+    public int objectCount() {
+        checkPointsToCall();
+        return enter ? argCount + 1 : 1;
+    }
+
+    /**
+     * Decodes the object by its index, see {@link #objectCount()}
+     */
+    public ObjectRecord object(int index, ReadableRepository<Integer, Type> typeRepository) {
+        checkPointsToCall();
+        if (enter) {
+            return index < argCount ? argument(index, typeRepository) : callee(typeRepository);
+        }
+        if (index != 0) {
+            throw new IndexOutOfBoundsException("Object index " + index + " of exit call");
+        }
+        return returnValue(typeRepository);
+    }
+
+    /**
+     * Finds the first object of the call (starting from the given index) whose raw bytes are accepted by the predicate.
+     * Raw value is only passed for strings and length prefixed values. Nothing is decoded unless some object
+     * which precedes the match has to be skipped and isn't length prefixed
+     *
+     * @return index of the object or -1 if no object is accepted
+     */
+    public int findObject(int fromIndex, ObjectBytesPredicate predicate, ReadableRepository<Integer, Type> typeRepository) {
+        int count = objectCount();
+        int position = objectsPosition;
+        for (int index = 0; index < count; index++) {
+            in.moveTo(position);
+            int typeId = in.readVarInt();
+            byte recorderId = in.readByte();
+            ObjectRecorder recorder = ObjectRecorderRegistry.recorderForId(recorderId);
+
+            int offset;
+            int length;
+            if (ObjectRecorderRegistry.isLengthPrefixed(recorderId)) {
+                length = in.readInt();
+                offset = in.getPosition();
+                position = offset + length;
+            } else if (recorder == ObjectRecorderRegistry.STRING_RECORDER.getInstance()) {
+                length = in.readVarInt();
+                offset = in.getPosition();
+                position = offset + Math.max(length, 0);
+            } else {
+                length = -1;
+                offset = -1;
+                if (index + 1 < count) {
+                    in.moveTo(position);
+                    skipObject(typeRepository);
+                    position = in.getPosition();
+                }
+            }
+
+            if (index >= fromIndex && predicate.test(typeId, recorder, in, offset, length)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the whole call
+     */
+    public RecordedMethodCall materialize(ReadableRepository<Integer, Type> typeRepository) {
+        in.moveTo(recordPosition + Byte.BYTES);
+        if (enter) {
+            return RecordedEnterMethodCallSerializer.deserialize(in, typeRepository);
+        } else {
+            return RecordedExitMethodCallSerializer.deserialize(in, typeRepository);
+        }
+    }
+
+    private ObjectRecord readObject(ReadableRepository<Integer, Type> typeRepository) {
+        return in.readObject(id -> typeOf(id, typeRepository));
+    }
+
+    private void skipObject(ReadableRepository<Integer, Type> typeRepository) {
+        in.skipObject(id -> typeOf(id, typeRepository));
+    }
+
+    private static Type typeOf(int typeId, ReadableRepository<Integer, Type> typeRepository) {
+        return Optional.ofNullable(typeRepository.get(typeId)).orElse(Type.unknown());
+    }
+
+    private void checkPointsToCall() {
+        if (recordPosition < 0) {
+            throw new IllegalStateException("Cursor doesn't point to any call");
+        }
+    }
+
+    private void checkEnter(boolean expected) {
+        checkPointsToCall();
+        if (enter != expected) {
+            throw new IllegalStateException(enter ? "Not available for enter call" : "Not available for exit call");
+        }
+    }
+
+    /**
+     * Predicate over raw bytes of some recorded object
+     */
+    @FunctionalInterface
+    public interface ObjectBytesPredicate {
+
+        /**
+         * @param typeId   type id of the object
+         * @param recorder recorder which has written the object
+         * @param in       bytes of the call, the value may be read with {@link BytesIn#readByteAt}
+         * @param offset   offset where the value starts. For strings it's the UTF-8 bytes, for length prefixed
+         *                 values it's their whole (encoded) value
+         * @param length   length of the value or -1 if the value is not available (null string or a value which
+         *                 is neither a string nor length prefixed)
+         */
+        boolean test(int typeId, ObjectRecorder recorder, BytesIn in, int offset, int length);
+    }
+}
@@ -7,8 +7,6 @@ import com.ulyp.core.bytes.BytesIn;
 import com.ulyp.core.mem.InputBytesList;
 import com.ulyp.core.mem.SerializedRecordedMethodCallList;
 import com.ulyp.core.repository.ReadableRepository;
-import com.ulyp.core.serializers.RecordedEnterMethodCallSerializer;
-import com.ulyp.core.serializers.RecordedExitMethodCallSerializer;
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
 
@@ -35,30 +33,33 @@ public class RecordedMethodCalls {
         return bytesIn.size() - 1;
     }
 
+    /**
+     * @return cursor which reads calls without decoding them. Every cursor has its own position, so that
+     * calls of the same list can be read by several threads
+     */
+    @NotNull
+    public RecordedMethodCallCursor cursor() {
+        return new RecordedMethodCallCursor(bytesIn);
+    }
+
     @NotNull
     public AddressableItemIterator<RecordedMethodCall> iterator(ReadableRepository<Integer, Type> typeResolver) {
-        AddressableItemIterator<BytesIn> iterator = bytesIn.iterator();
-        iterator.next();
+        RecordedMethodCallCursor cursor = cursor();
 
         return new AddressableItemIterator<RecordedMethodCall>() {
             @Override
             public long address() {
-                return iterator.address();
+                return cursor.address();
             }
 
             @Override
             public boolean hasNext() {
-                return iterator.hasNext();
+                return cursor.hasNext();
             }
 
             @Override
             public RecordedMethodCall next() {
-                BytesIn in = iterator.next();
-                if (in.readByte() == SerializedRecordedMethodCallList.ENTER_METHOD_CALL_ID) {
-                    return RecordedEnterMethodCallSerializer.deserialize(in, typeResolver);
-                } else {
-                    return RecordedExitMethodCallSerializer.deserialize(in, typeResolver);
-                }
+                return cursor.next().materialize(typeResolver);
             }
         };
     }
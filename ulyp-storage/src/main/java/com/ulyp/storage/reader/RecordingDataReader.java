@@ -4,9 +4,14 @@ import com.ulyp.core.ProcessMetadata;
 import com.ulyp.core.RecordedEnterMethodCall;
 import com.ulyp.core.RecordedExitMethodCall;
 import com.ulyp.core.Type;
+import com.ulyp.core.util.Backoff;
+import com.ulyp.core.util.FixedDelayBackoff;
 import com.ulyp.core.repository.ReadableRepository;
 import com.ulyp.storage.StorageException;
+import com.ulyp.storage.toc.TableOfContents;
+import org.jetbrains.annotations.Nullable;
 
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -16,6 +21,22 @@ public interface RecordingDataReader extends AutoCloseable {
 
     CompletableFuture<Void> submitReaderJob(RecordingDataReaderJob job);
 
+    /**
+     * Submits the job which shares a single pass over the recorded data with other shared jobs, so that the data
+     * is read and decoded once. A job which is submitted late catches up with others. Jobs which need the data
+     * as fast as possible regardless of other jobs should be submitted with {@link #submitReaderJob}
+     */
+    default CompletableFuture<Void> submitSharedReaderJob(RecordingDataReaderJob job) {
+        return submitReaderJob(job);
+    }
+
+    /**
+     * Submits the job which only reads binary lists located at the given addresses (i.e. offsets of lists in the file,
+     * as {@link RecordingDataReaderJob#startAddress()}) in the given order. Allows reading only the lists some index
+     * points to. {@link RecordingDataReaderJob#startAddress()} is not used
+     */
+    CompletableFuture<Void> submitReaderJob(RecordingDataReaderJob job, long[] listAddresses);
+
     RecordedEnterMethodCall readEnterMethodCall(long address, ReadableRepository<Integer, Type> typeRepository);
 
     RecordedExitMethodCall readExitMethodCall(long address, ReadableRepository<Integer, Type> typeRepository);
@@ -24,5 +45,21 @@ public interface RecordingDataReader extends AutoCloseable {
 
     long bytesAvailable();
 
+    /**
+     * @return table of contents of the recorded data, null if the data is not complete or written without it
+     */
+    @Nullable
+    default TableOfContents getTableOfContents() throws StorageException {
+        return null;
+    }
+
+    /**
+     * @return backoff which waits until more data is possibly written. Used by jobs which keep reading recorded data
+     * once there is no data left (see {@link RecordingDataReaderJob#continueOnNoData()}). The caller must close it
+     */
+    default Backoff newTailBackoff() {
+        return new FixedDelayBackoff(Duration.ofMillis(100));
+    }
+
     void close() throws StorageException;
 }
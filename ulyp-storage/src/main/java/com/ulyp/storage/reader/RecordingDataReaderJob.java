@@ -9,6 +9,14 @@ public interface RecordingDataReaderJob {
 
     default void onStart() {}
 
+    /**
+     * @return address in the file to start reading from. Must point to the beginning of some binary list. Allows
+     * resuming jobs which previously processed some part of the file. Called once the job is started
+     */
+    default long startAddress() {
+        return 0L;
+    }
+
     void onProcessMetadata(ProcessMetadata processMetadata);
 
     void onRecordingMetadata(RecordingMetadata recordingMetadata);
@@ -19,5 +27,37 @@ public interface RecordingDataReaderJob {
 
     void onRecordedCalls(long address, RecordedMethodCalls recordedMethodCalls);
 
+    /**
+     * Called for call index which is written by the agent right after the recorded calls list if call index is enabled.
+     * The index refers to recorded calls lists of the recording by their ordinals
+     */
+    default void onCallIndex(long address, RecordedCallIndex callIndex) {}
+
+    /**
+     * Called for calling context tree which is written by the agent instead of recorded calls if calls are aggregated
+     */
+    default void onCallTree(long address, RecordedCallTree callTree) {}
+
+    /**
+     * Called once a binary list is processed.
+     *
+     * @param nextAddress address in the file where the next binary list starts
+     */
+    default void onListProcessed(long nextAddress) {}
+
     boolean continueOnNoData();
+
+    /**
+     * Checked before every binary list. Once the job is cancelled, it stops reading and {@link #onEnd} is called
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * Called when the job stops reading, since there is no more data to read or the job is cancelled.
+     *
+     * @param recordingComplete if the recording file is complete and is not going to be written anymore
+     */
+    default void onEnd(boolean recordingComplete) {}
 }
@@ -0,0 +1,317 @@
+package com.ulyp.storage.reader;
+
+import com.ulyp.core.RecordingCompleteMark;
+import com.ulyp.core.util.SystemPropertyUtil;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.util.BinaryListFileReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single pass over the recording file which is shared by several reader jobs. The file is read
+ * once by the scanner, decoded lists are published to the cache keyed by their file offsets, and every attached
+ * job consumes lists from the cache in the file order at its own pace.
+ * <p>
+ * The cache is bounded by the (encoded) size of lists. The oldest lists are evicted once the cache is full, unless
+ * some job hasn't consumed them yet, in which case the scanner waits for the slowest job. A job which attaches late
+ * (or starts from an address which is already evicted) reads the file by itself until it catches up with the cache.
+ */
+class SharedScan {
+
+    private static final long MAX_CACHE_BYTES = SystemPropertyUtil.getInt("ulyp.reader.shared-scan.cache-size-mb", 128) * 1024L * 1024L;
+    private static final long AWAIT_TIMEOUT_MILLIS = 100;
+
+    private final File file;
+    private final int readAheadDepth;
+    private final ExecutorService readAheadExecutorService;
+    private final ConcurrentSkipListMap<Long, DecodedList> cache = new ConcurrentSkipListMap<>();
+    private final Set<Cursor> cursors = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition updated = lock.newCondition();
+
+    // All fields below are guarded by the lock
+    private long cacheBytes = 0L;
+    private boolean scanStarted = false;
+    /**
+     * Address of the next list the scanner is going to publish
+     */
+    private long scanOffset = 0L;
+    private boolean scanComplete = false;
+    private Throwable scanFailure = null;
+    /**
+     * Incremented every time the scanner reaches the end of the file
+     */
+    private long noDataCount = 0L;
+    private boolean continueRequested = false;
+
+    SharedScan(File file, int readAheadDepth, ExecutorService readAheadExecutorService) {
+        this.file = file;
+        this.readAheadDepth = readAheadDepth;
+        this.readAheadExecutorService = readAheadExecutorService;
+    }
+
+    void run(RecordingDataReaderJob job) throws Exception {
+        job.onStart();
+
+        Cursor cursor = attach(job.startAddress());
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                DecodedList list = next(cursor, job);
+
+                if (job.isCancelled()) {
+                    job.onEnd(false);
+                    return;
+                }
+                if (list == null) {
+                    if (job.continueOnNoData()) {
+                        requestContinue();
+                        continue;
+                    } else {
+                        job.onEnd(false);
+                        return;
+                    }
+                }
+
+                boolean complete = list.deliverTo(job);
+                cursor.offset = list.nextAddress;
+                if (cursor.blocksScanner) {
+                    signalUpdated();
+                }
+                if (complete) {
+                    return;
+                }
+            }
+        } finally {
+            detach(cursor);
+        }
+    }
+
+    private Cursor attach(long startAddress) {
+        Cursor cursor = new Cursor(startAddress);
+        lock.lock();
+        try {
+            cursors.add(cursor);
+            if (!scanStarted) {
+                scanStarted = true;
+                scanOffset = startAddress;
+                readAheadExecutorService.execute(this::scan);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return cursor;
+    }
+
+    private void detach(Cursor cursor) throws IOException {
+        cursors.remove(cursor);
+        signalUpdated();
+        cursor.closeCatchUpReader();
+    }
+
+    /**
+     * @return the next list for the cursor or null if there is no data to read at the moment (or the job is cancelled)
+     */
+    private DecodedList next(Cursor cursor, RecordingDataReaderJob job) throws Exception {
+        while (!Thread.currentThread().isInterrupted()) {
+            if (job.isCancelled()) {
+                return null;
+            }
+            DecodedList list = cache.get(cursor.offset);
+            if (list != null) {
+                return list;
+            }
+
+            lock.lock();
+            try {
+                list = cache.get(cursor.offset);
+                if (list != null) {
+                    return list;
+                }
+                if (cursor.offset >= scanOffset) {
+                    if (scanFailure != null) {
+                        throw new StorageException("Shared scan of " + file + " failed", scanFailure);
+                    }
+                    if (scanComplete || cursor.noDataCount != noDataCount) {
+                        cursor.noDataCount = noDataCount;
+                        return null;
+                    }
+                    updated.await(AWAIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // The list is already evicted (or is located before the scan start), so the job reads it by itself
+            return cursor.catchUp(file);
+        }
+        throw new InterruptedException();
+    }
+
+    private void requestContinue() {
+        lock.lock();
+        try {
+            continueRequested = true;
+            updated.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signalUpdated() {
+        lock.lock();
+        try {
+            updated.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scan() {
+        BlockingQueue<CompletableFuture<DecodedList>> queue = new ArrayBlockingQueue<>(readAheadDepth);
+        SynchronousQueue<Boolean> continueOnNoData = new SynchronousQueue<>();
+        long startAddress;
+        lock.lock();
+        try {
+            startAddress = scanOffset;
+        } finally {
+            lock.unlock();
+        }
+        Future<?> readAhead = readAheadExecutorService.submit(
+            new ReadAhead(file, startAddress, queue, continueOnNoData)
+        );
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                DecodedList list = queue.take().join();
+
+                if (list == DecodedList.NO_DATA) {
+                    awaitContinueRequest();
+                    continueOnNoData.put(true);
+                    continue;
+                }
+
+                publish(list);
+                if (list.wireId == RecordingCompleteMark.WIRE_ID) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CompletionException e) {
+            fail(e.getCause());
+        } catch (Throwable e) {
+            fail(e);
+        } finally {
+            readAhead.cancel(true);
+        }
+    }
+
+    private void awaitContinueRequest() throws InterruptedException {
+        lock.lock();
+        try {
+            noDataCount++;
+            continueRequested = false;
+            updated.signalAll();
+            // The scanner is parked at the end of the file until some job wants to read further
+            while (!continueRequested) {
+                updated.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void publish(DecodedList list) throws InterruptedException {
+        lock.lock();
+        try {
+            while (cacheBytes + list.length() > MAX_CACHE_BYTES && !cache.isEmpty()) {
+                Map.Entry<Long, DecodedList> oldest = cache.firstEntry();
+                Cursor blockingCursor = null;
+                for (Cursor cursor : cursors) {
+                    if (cursor.offset == oldest.getKey()) {
+                        blockingCursor = cursor;
+                        break;
+                    }
+                }
+                if (blockingCursor == null) {
+                    cache.pollFirstEntry();
+                    cacheBytes -= oldest.getValue().length();
+                } else {
+                    blockingCursor.blocksScanner = true;
+                    updated.await(AWAIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    blockingCursor.blocksScanner = false;
+                }
+            }
+
+            cache.put(list.fileOffset(), list);
+            cacheBytes += list.length();
+            scanOffset = list.nextAddress;
+            if (list.wireId == RecordingCompleteMark.WIRE_ID) {
+                scanComplete = true;
+            }
+            updated.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fail(Throwable e) {
+        lock.lock();
+        try {
+            scanFailure = e;
+            updated.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Position of some job in the shared scan
+     */
+    private static class Cursor {
+
+        private volatile long offset;
+        private volatile boolean blocksScanner = false;
+        private long noDataCount = 0L;
+        private BinaryListFileReader catchUpReader;
+
+        private Cursor(long offset) {
+            this.offset = offset;
+        }
+
+        private DecodedList catchUp(File file) throws IOException {
+            if (catchUpReader == null || catchUpReader.address() != offset) {
+                closeCatchUpReader();
+                catchUpReader = new BinaryListFileReader(file, offset);
+            }
+            BinaryListWithAddress data = catchUpReader.readWithAddress();
+            if (data == null) {
+                throw new StorageException("Could not read binary list at " + offset + " which is already scanned");
+            }
+            return DecodedList.decode(data, catchUpReader.address());
+        }
+
+        private void closeCatchUpReader() throws IOException {
+            if (catchUpReader != null) {
+                catchUpReader.close();
+                catchUpReader = null;
+            }
+        }
+    }
+}
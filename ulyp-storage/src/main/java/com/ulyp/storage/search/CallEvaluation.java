@@ -0,0 +1,107 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.core.Type;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.recorders.ObjectRecorder;
+import com.ulyp.core.repository.ReadableRepository;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
+
+/**
+ * State of a single call which {@link CallQuery} is evaluated against. The query is evaluated once on the enter
+ * call and, if the result is unknown at that point, once again on the exit call. Results of predicates which are
+ * evaluated on the enter call are kept, so that objects of the enter call are not needed on exit.
+ * <p>
+ * Not thread-safe, every thread has its own evaluation which is reused for all calls
+ */
+class CallEvaluation implements RecordedMethodCallCursor.ObjectBytesPredicate {
+
+    private final ReadableRepository<Integer, Type> types;
+    private RecordedMethodCallCursor cursor;
+    private boolean exit;
+    private long methodResults;
+    private long enterResults;
+    private long durationNanos;
+    private int subtreeSize;
+    private int foundTypeId;
+
+    CallEvaluation(ReadableRepository<Integer, Type> types) {
+        this.types = types;
+    }
+
+    /**
+     * @param methodResults results of method predicates which are evaluated once per method, see {@link CallPredicate#index()}
+     */
+    void onEnter(RecordedMethodCallCursor cursor, long methodResults) {
+        this.cursor = cursor;
+        this.exit = false;
+        this.methodResults = methodResults;
+        this.enterResults = 0L;
+        this.durationNanos = -1L;
+        this.subtreeSize = -1;
+    }
+
+    /**
+     * @param enterResults  results of predicates which are evaluated on the enter call, see {@link #enterResults()}
+     * @param durationNanos duration of the call or -1 if it's not known
+     * @param subtreeSize   number of calls in the subtree of the call
+     */
+    void onExit(RecordedMethodCallCursor cursor, long enterResults, long durationNanos, int subtreeSize) {
+        this.cursor = cursor;
+        this.exit = true;
+        this.enterResults = enterResults;
+        this.durationNanos = durationNanos;
+        this.subtreeSize = subtreeSize;
+    }
+
+    RecordedMethodCallCursor cursor() {
+        return cursor;
+    }
+
+    ReadableRepository<Integer, Type> types() {
+        return types;
+    }
+
+    boolean isExit() {
+        return exit;
+    }
+
+    boolean methodResult(int index) {
+        return (methodResults & (1L << index)) != 0;
+    }
+
+    boolean enterResult(int index) {
+        return (enterResults & (1L << index)) != 0;
+    }
+
+    void setEnterResult(int index, boolean result) {
+        if (result) {
+            enterResults |= 1L << index;
+        }
+    }
+
+    /**
+     * @return type id of the object of the current call, the object itself is not decoded
+     */
+    int objectTypeId(int objectIndex) {
+        cursor.findObject(objectIndex, this, types);
+        return foundTypeId;
+    }
+
+    @Override
+    public boolean test(int typeId, ObjectRecorder recorder, BytesIn in, int offset, int length) {
+        foundTypeId = typeId;
+        return true;
+    }
+
+    long enterResults() {
+        return enterResults;
+    }
+
+    long durationNanos() {
+        return durationNanos;
+    }
+
+    int subtreeSize() {
+        return subtreeSize;
+    }
+}
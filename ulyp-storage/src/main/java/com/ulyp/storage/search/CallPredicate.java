@@ -0,0 +1,399 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.Type;
+import com.ulyp.core.util.MethodMatcher;
+import com.ulyp.core.util.StringUtils;
+import com.ulyp.core.util.TypeMatcher;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
+
+import java.util.Optional;
+
+/**
+ * Single predicate of {@link CallQuery}. Every predicate is evaluated at some phase: method predicates only need
+ * the method, so they are evaluated once per method, enter predicates need the enter call and exit predicates need
+ * the exit call. Exit predicates are unknown on enter call, while results of method and enter predicates are kept
+ * until the exit call by their index
+ */
+abstract class CallPredicate extends CallQuery.Node {
+
+    enum Phase {
+        METHOD,
+        ENTER,
+        EXIT
+    }
+
+    enum Comparison {
+        EQ, NE, GT, GE, LT, LE;
+
+        boolean test(long left, long right) {
+            switch (this) {
+                case EQ:
+                    return left == right;
+                case NE:
+                    return left != right;
+                case GT:
+                    return left > right;
+                case GE:
+                    return left >= right;
+                case LT:
+                    return left < right;
+                default:
+                    return left <= right;
+            }
+        }
+    }
+
+    enum TextOperator {
+        EQUALS,
+        MATCHES,
+        CONTAINS
+    }
+
+    // Costs of evaluation, cheaper predicates are evaluated first
+    static final int COST_METHOD = 0;
+    static final int COST_FIXED_FIELD = 1;
+    static final int COST_OBJECT_TYPE = 2;
+    static final int COST_OBJECT_VALUE = 3;
+
+    private int index = -1;
+
+    abstract Phase phase();
+
+    /**
+     * Evaluates the predicate against the call the evaluation currently points to. Never called for method predicates
+     */
+    abstract boolean test(CallEvaluation evaluation);
+
+    /**
+     * @return index of the predicate among method and enter predicates of the query, -1 for exit predicates
+     */
+    int index() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
+    @Override
+    final int evaluate(CallEvaluation evaluation) {
+        switch (phase()) {
+            case EXIT:
+                if (!evaluation.isExit()) {
+                    return CallQuery.UNKNOWN;
+                }
+                return test(evaluation) ? CallQuery.TRUE : CallQuery.FALSE;
+            case METHOD:
+                if (evaluation.isExit()) {
+                    return evaluation.enterResult(index) ? CallQuery.TRUE : CallQuery.FALSE;
+                }
+                boolean methodResult = evaluation.methodResult(index);
+                evaluation.setEnterResult(index, methodResult);
+                return methodResult ? CallQuery.TRUE : CallQuery.FALSE;
+            default:
+                if (evaluation.isExit()) {
+                    return evaluation.enterResult(index) ? CallQuery.TRUE : CallQuery.FALSE;
+                }
+                boolean result = test(evaluation);
+                evaluation.setEnterResult(index, result);
+                return result ? CallQuery.TRUE : CallQuery.FALSE;
+        }
+    }
+
+    private static boolean test(TextOperator operator, String value, String text) {
+        switch (operator) {
+            case EQUALS:
+                return value.equals(text);
+            case CONTAINS:
+                return StringUtils.containsIgnoreCase(value, text);
+            default:
+                throw new IllegalStateException("Operator " + operator + " is not supported");
+        }
+    }
+
+    /**
+     * Predicate over the method (or the type which declares it) of the call
+     */
+    abstract static class MethodPredicate extends CallPredicate {
+
+        abstract boolean matches(Method method);
+
+        @Override
+        Phase phase() {
+            return Phase.METHOD;
+        }
+
+        @Override
+        boolean test(CallEvaluation evaluation) {
+            throw new IllegalStateException("Method predicates are evaluated once per method");
+        }
+
+        @Override
+        int cost() {
+            return COST_METHOD;
+        }
+    }
+
+    static class MethodNamePredicate extends MethodPredicate {
+
+        private final TextOperator operator;
+        private final String text;
+        private final MethodMatcher matcher;
+
+        MethodNamePredicate(TextOperator operator, String text) {
+            this.operator = operator;
+            this.text = text;
+            this.matcher = operator == TextOperator.MATCHES ? MethodMatcher.parse(text) : null;
+        }
+
+        @Override
+        boolean matches(Method method) {
+            if (operator == TextOperator.MATCHES) {
+                return matcher.matches(method);
+            }
+            String name = operator == TextOperator.EQUALS && text.indexOf('.') < 0 ?
+                method.getName() :
+                method.getType().getName() + "." + method.getName();
+            return CallPredicate.test(operator, name, text);
+        }
+    }
+
+    static class DeclaringTypePredicate extends MethodPredicate {
+
+        private final TypePredicate typePredicate;
+
+        DeclaringTypePredicate(TextOperator operator, String text) {
+            this.typePredicate = new TypePredicate(operator, text);
+        }
+
+        @Override
+        boolean matches(Method method) {
+            return typePredicate.matches(method.getType());
+        }
+    }
+
+    static class ArgCountPredicate extends CallPredicate {
+
+        private final Comparison comparison;
+        private final long count;
+
+        ArgCountPredicate(Comparison comparison, long count) {
+            this.comparison = comparison;
+            this.count = count;
+        }
+
+        @Override
+        Phase phase() {
+            return Phase.ENTER;
+        }
+
+        @Override
+        boolean test(CallEvaluation evaluation) {
+            return comparison.test(evaluation.cursor().argCount(), count);
+        }
+
+        @Override
+        int cost() {
+            return COST_FIXED_FIELD;
+        }
+    }
+
+    static class ThrownPredicate extends CallPredicate {
+
+        @Override
+        Phase phase() {
+            return Phase.EXIT;
+        }
+
+        @Override
+        boolean test(CallEvaluation evaluation) {
+            return evaluation.cursor().thrown();
+        }
+
+        @Override
+        int cost() {
+            return COST_FIXED_FIELD;
+        }
+    }
+
+    static class DurationPredicate extends CallPredicate {
+
+        private final Comparison comparison;
+        private final long nanos;
+
+        DurationPredicate(Comparison comparison, long nanos) {
+            this.comparison = comparison;
+            this.nanos = nanos;
+        }
+
+        @Override
+        Phase phase() {
+            return Phase.EXIT;
+        }
+
+        @Override
+        boolean test(CallEvaluation evaluation) {
+            // Calls without timing never match
+            return evaluation.durationNanos() >= 0 && comparison.test(evaluation.durationNanos(), nanos);
+        }
+
+        @Override
+        int cost() {
+            return COST_FIXED_FIELD;
+        }
+    }
+
+    static class SubtreeSizePredicate extends CallPredicate {
+
+        private final Comparison comparison;
+        private final long size;
+
+        SubtreeSizePredicate(Comparison comparison, long size) {
+            this.comparison = comparison;
+            this.size = size;
+        }
+
+        @Override
+        Phase phase() {
+            return Phase.EXIT;
+        }
+
+        @Override
+        boolean test(CallEvaluation evaluation) {
+            return comparison.test(evaluation.subtreeSize(), size);
+        }
+
+        @Override
+        int cost() {
+            return COST_FIXED_FIELD;
+        }
+    }
+
+    /**
+     * Object of the call which a predicate is applied to: an argument (by index), the callee or the return value
+     */
+    static class ObjectReference {
+
+        static final int CALLEE = -1;
+        static final int RETURN_VALUE = -2;
+
+        private final int argIndex;
+
+        ObjectReference(int argIndex) {
+            this.argIndex = argIndex;
+        }
+
+        Phase phase() {
+            return argIndex == RETURN_VALUE ? Phase.EXIT : Phase.ENTER;
+        }
+
+        /**
+         * @return index of the object in the call (see {@link RecordedMethodCallCursor#objectCount()}) or -1 if the
+         * call doesn't have it
+         */
+        int objectIndex(RecordedMethodCallCursor cursor) {
+            if (argIndex == RETURN_VALUE) {
+                return 0;
+            }
+            if (argIndex == CALLEE) {
+                return cursor.argCount();
+            }
+            return argIndex < cursor.argCount() ? argIndex : -1;
+        }
+    }
+
+    /**
+     * Matches the type of an object. Only the type id is read from the object, the value is not decoded
+     */
+    static class ObjectTypePredicate extends CallPredicate {
+
+        private final ObjectReference reference;
+        private final TypePredicate typePredicate;
+
+        ObjectTypePredicate(ObjectReference reference, TextOperator operator, String text) {
+            this.reference = reference;
+            this.typePredicate = new TypePredicate(operator, text);
+        }
+
+        @Override
+        Phase phase() {
+            return reference.phase();
+        }
+
+        @Override
+        boolean test(CallEvaluation evaluation) {
+            RecordedMethodCallCursor cursor = evaluation.cursor();
+            int objectIndex = reference.objectIndex(cursor);
+            if (objectIndex < 0) {
+                return false;
+            }
+            Type type = Optional.ofNullable(evaluation.types().get(evaluation.objectTypeId(objectIndex))).orElse(Type.unknown());
+            return typePredicate.matches(type);
+        }
+
+        @Override
+        int cost() {
+            return COST_OBJECT_TYPE;
+        }
+    }
+
+    /**
+     * Matches the value of an object, which is decoded and compared by its text representation
+     */
+    static class ObjectValuePredicate extends CallPredicate {
+
+        private final ObjectReference reference;
+        private final TextOperator operator;
+        private final String text;
+
+        ObjectValuePredicate(ObjectReference reference, TextOperator operator, String text) {
+            if (operator == TextOperator.MATCHES) {
+                throw new IllegalArgumentException("Operator ~ is only supported for methods and types");
+            }
+            this.reference = reference;
+            this.operator = operator;
+            this.text = text;
+        }
+
+        @Override
+        Phase phase() {
+            return reference.phase();
+        }
+
+        @Override
+        boolean test(CallEvaluation evaluation) {
+            RecordedMethodCallCursor cursor = evaluation.cursor();
+            int objectIndex = reference.objectIndex(cursor);
+            if (objectIndex < 0) {
+                return false;
+            }
+            return CallPredicate.test(operator, cursor.object(objectIndex, evaluation.types()).toString(), text);
+        }
+
+        @Override
+        int cost() {
+            return COST_OBJECT_VALUE;
+        }
+    }
+
+    static class TypePredicate {
+
+        private final TextOperator operator;
+        private final String text;
+        private final TypeMatcher matcher;
+
+        TypePredicate(TextOperator operator, String text) {
+            this.operator = operator;
+            this.text = text;
+            this.matcher = operator == TextOperator.MATCHES ? TypeMatcher.parse(text) : null;
+        }
+
+        boolean matches(Type type) {
+            if (operator == TextOperator.MATCHES) {
+                return matcher.matches(type);
+            }
+            return CallPredicate.test(operator, type.getName(), text);
+        }
+    }
+}
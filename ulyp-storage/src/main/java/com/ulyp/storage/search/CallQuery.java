@@ -0,0 +1,175 @@
+package com.ulyp.storage.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Structured query over recorded calls, e.g.
+ * <pre>
+ * method ~ '**.Repository.*' and duration &gt; 50ms and arg[0].type == 'java.lang.String' and thrown
+ * </pre>
+ * Query is a boolean expression of predicates combined with {@code and}, {@code or}, {@code not} and parentheses.
+ * Supported predicates:
+ * <pre>
+ * method   (==|!=|~|contains) 'text'    method, '==' compares either the name or type.name, '~' takes a method matcher
+ * class    (==|!=|~|contains) 'text'    type which declares the method, '~' takes an ant pattern of the type
+ * args     (==|!=|&gt;|&gt;=|&lt;|&lt;=) number    number of arguments
+ * arg[i]   (==|!=|contains) 'text'      value of an argument, also callee and return
+ * arg[i].type (==|!=|~|contains) 'text' type of an argument, also callee.type and return.type
+ * thrown                                call has thrown an exception
+ * duration (==|!=|&gt;|&gt;=|&lt;|&lt;=) 10ms      duration of the call, units are ns, us, ms and s
+ * calls    (==|!=|&gt;|&gt;=|&lt;|&lt;=) number    number of calls in the subtree of the call including itself
+ * </pre>
+ * Predicates are evaluated in the order of their cost, so that method predicates (which are evaluated once per method)
+ * and fixed fields of calls go first, and objects are only decoded if the result still depends on them.
+ * <p>
+ * Query is immutable and may be evaluated by many threads
+ */
+public class CallQuery {
+
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+    static final int UNKNOWN = 2;
+
+    // Enter call results of predicates are kept in a long
+    static final int MAX_ENTER_PREDICATES = Long.SIZE;
+
+    private final String text;
+    private final Node root;
+    private final CallPredicate[] predicates;
+
+    CallQuery(String text, Node root, CallPredicate[] predicates) {
+        this.text = text;
+        this.root = root;
+        this.predicates = predicates;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query has syntax errors
+     */
+    public static CallQuery parse(String text) throws IllegalArgumentException {
+        return new CallQueryParser(text).parse();
+    }
+
+    /**
+     * Evaluates the query with Kleene's three-valued logic, i.e. the result of a call may be unknown on its enter
+     * call if it depends on predicates which are only evaluated on exit call
+     *
+     * @return {@link #TRUE}, {@link #FALSE} or {@link #UNKNOWN}
+     */
+    int evaluate(CallEvaluation evaluation) {
+        return root.evaluate(evaluation);
+    }
+
+    CallPredicate[] predicates() {
+        return predicates;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    abstract static class Node {
+
+        abstract int evaluate(CallEvaluation evaluation);
+
+        /**
+         * @return relative cost of evaluating the node, cheaper nodes of an expression are evaluated first
+         */
+        abstract int cost();
+    }
+
+    static class And extends Node {
+
+        private final Node[] operands;
+
+        And(Node[] operands) {
+            this.operands = sortedByCost(operands);
+        }
+
+        @Override
+        int evaluate(CallEvaluation evaluation) {
+            int result = TRUE;
+            for (Node operand : operands) {
+                int value = operand.evaluate(evaluation);
+                if (value == FALSE) {
+                    return FALSE;
+                }
+                if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int cost() {
+            return maxCost(operands);
+        }
+    }
+
+    static class Or extends Node {
+
+        private final Node[] operands;
+
+        Or(Node[] operands) {
+            this.operands = sortedByCost(operands);
+        }
+
+        @Override
+        int evaluate(CallEvaluation evaluation) {
+            int result = FALSE;
+            for (Node operand : operands) {
+                int value = operand.evaluate(evaluation);
+                if (value == TRUE) {
+                    return TRUE;
+                }
+                if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int cost() {
+            return maxCost(operands);
+        }
+    }
+
+    static class Not extends Node {
+
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        int evaluate(CallEvaluation evaluation) {
+            int value = operand.evaluate(evaluation);
+            return value == UNKNOWN ? UNKNOWN : TRUE - value;
+        }
+
+        @Override
+        int cost() {
+            return operand.cost();
+        }
+    }
+
+    private static Node[] sortedByCost(Node[] operands) {
+        Node[] sorted = operands.clone();
+        // Sort is stable, so operands of the same cost keep the query order
+        Arrays.sort(sorted, Comparator.comparingInt(Node::cost));
+        return sorted;
+    }
+
+    private static int maxCost(Node[] operands) {
+        int cost = 0;
+        for (Node operand : operands) {
+            cost = Math.max(cost, operand.cost());
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,310 @@
+package com.ulyp.storage.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Recursive descent parser of {@link CallQuery}. Grammar:
+ * <pre>
+ * or        := and ('or' and)*
+ * and       := unary ('and' unary)*
+ * unary     := 'not' unary | '(' or ')' | predicate
+ * predicate := 'thrown'
+ *            | ('method' | 'class') textOp string
+ *            | ('args' | 'calls') comparison number
+ *            | 'duration' comparison duration
+ *            | object ['.' 'type'] textOp string
+ * object    := 'arg' '[' number ']' | 'callee' | 'return'
+ * </pre>
+ * Keywords are case-insensitive, {@code &&}, {@code ||} and {@code !} may be used instead of {@code and}, {@code or}
+ * and {@code not}. Strings are quoted with either single or double quotes.
+ */
+class CallQueryParser {
+
+    private final String text;
+    private final List<CallPredicate> predicates = new ArrayList<>();
+    private int position = 0;
+
+    CallQueryParser(String text) {
+        this.text = text;
+    }
+
+    CallQuery parse() throws IllegalArgumentException {
+        CallQuery.Node root = parseOr();
+        skipWhitespace();
+        if (position < text.length()) {
+            throw error("Unexpected '" + text.charAt(position) + "'");
+        }
+
+        int enterPredicates = 0;
+        for (CallPredicate predicate : predicates) {
+            if (predicate.phase() != CallPredicate.Phase.EXIT) {
+                predicate.setIndex(enterPredicates++);
+            }
+        }
+        if (enterPredicates > CallQuery.MAX_ENTER_PREDICATES) {
+            throw new IllegalArgumentException("Query has too many predicates, at most " + CallQuery.MAX_ENTER_PREDICATES +
+                " predicates which don't depend on exit calls are supported");
+        }
+        return new CallQuery(text, root, predicates.toArray(new CallPredicate[0]));
+    }
+
+    private CallQuery.Node parseOr() {
+        List<CallQuery.Node> operands = new ArrayList<>();
+        operands.add(parseAnd());
+        while (acceptKeyword("or") || accept("||")) {
+            operands.add(parseAnd());
+        }
+        return operands.size() == 1 ? operands.get(0) : new CallQuery.Or(operands.toArray(new CallQuery.Node[0]));
+    }
+
+    private CallQuery.Node parseAnd() {
+        List<CallQuery.Node> operands = new ArrayList<>();
+        operands.add(parseUnary());
+        while (acceptKeyword("and") || accept("&&")) {
+            operands.add(parseUnary());
+        }
+        return operands.size() == 1 ? operands.get(0) : new CallQuery.And(operands.toArray(new CallQuery.Node[0]));
+    }
+
+    private CallQuery.Node parseUnary() {
+        if (acceptKeyword("not") || (!peek("!=") && accept("!"))) {
+            return new CallQuery.Not(parseUnary());
+        }
+        if (accept("(")) {
+            CallQuery.Node node = parseOr();
+            expect(")");
+            return node;
+        }
+        return parsePredicate();
+    }
+
+    private CallQuery.Node parsePredicate() {
+        int start = position;
+        String field = identifier();
+        switch (field) {
+            case "thrown":
+                return add(new CallPredicate.ThrownPredicate());
+            case "method":
+                return parseTextPredicate(op -> new CallPredicate.MethodNamePredicate(op, string()));
+            case "class":
+                return parseTextPredicate(op -> new CallPredicate.DeclaringTypePredicate(op, string()));
+            case "args": {
+                CallPredicate.Comparison comparison = comparison();
+                return add(new CallPredicate.ArgCountPredicate(comparison, number()));
+            }
+            case "calls": {
+                CallPredicate.Comparison comparison = comparison();
+                return add(new CallPredicate.SubtreeSizePredicate(comparison, number()));
+            }
+            case "duration": {
+                CallPredicate.Comparison comparison = comparison();
+                return add(new CallPredicate.DurationPredicate(comparison, durationNanos()));
+            }
+            case "arg": {
+                expect("[");
+                long index = number();
+                expect("]");
+                return parseObjectPredicate(new CallPredicate.ObjectReference((int) index));
+            }
+            case "callee":
+                return parseObjectPredicate(new CallPredicate.ObjectReference(CallPredicate.ObjectReference.CALLEE));
+            case "return":
+                return parseObjectPredicate(new CallPredicate.ObjectReference(CallPredicate.ObjectReference.RETURN_VALUE));
+            default:
+                position = start;
+                throw error("Unknown field '" + field + "'");
+        }
+    }
+
+    private CallQuery.Node parseObjectPredicate(CallPredicate.ObjectReference reference) {
+        if (accept(".")) {
+            int start = position;
+            if (!identifier().equals("type")) {
+                position = start;
+                throw error("Expected 'type'");
+            }
+            return parseTextPredicate(op -> new CallPredicate.ObjectTypePredicate(reference, op, string()));
+        }
+        return parseTextPredicate(op -> new CallPredicate.ObjectValuePredicate(reference, op, string()));
+    }
+
+    private CallQuery.Node parseTextPredicate(PredicateFactory factory) {
+        boolean negated = false;
+        CallPredicate.TextOperator operator;
+        if (accept("==")) {
+            operator = CallPredicate.TextOperator.EQUALS;
+        } else if (accept("!=")) {
+            operator = CallPredicate.TextOperator.EQUALS;
+            negated = true;
+        } else if (accept("~")) {
+            operator = CallPredicate.TextOperator.MATCHES;
+        } else if (acceptKeyword("contains")) {
+            operator = CallPredicate.TextOperator.CONTAINS;
+        } else {
+            throw error("Expected one of ==, !=, ~, contains");
+        }
+        int start = position;
+        CallPredicate predicate;
+        try {
+            predicate = factory.create(operator);
+        } catch (IllegalArgumentException e) {
+            if (e instanceof QuerySyntaxError) {
+                throw e;
+            }
+            position = start;
+            throw error(e.getMessage());
+        }
+        add(predicate);
+        return negated ? new CallQuery.Not(predicate) : predicate;
+    }
+
+    private CallPredicate add(CallPredicate predicate) {
+        predicates.add(predicate);
+        return predicate;
+    }
+
+    private CallPredicate.Comparison comparison() {
+        if (accept("==")) {
+            return CallPredicate.Comparison.EQ;
+        } else if (accept("!=")) {
+            return CallPredicate.Comparison.NE;
+        } else if (accept(">=")) {
+            return CallPredicate.Comparison.GE;
+        } else if (accept(">")) {
+            return CallPredicate.Comparison.GT;
+        } else if (accept("<=")) {
+            return CallPredicate.Comparison.LE;
+        } else if (accept("<")) {
+            return CallPredicate.Comparison.LT;
+        }
+        throw error("Expected one of ==, !=, >, >=, <, <=");
+    }
+
+    private String identifier() {
+        skipWhitespace();
+        int start = position;
+        while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+            position++;
+        }
+        if (start == position) {
+            throw error("Expected a field");
+        }
+        return text.substring(start, position).toLowerCase(Locale.ROOT);
+    }
+
+    private long number() {
+        skipWhitespace();
+        int start = position;
+        while (position < text.length() && Character.isDigit(text.charAt(position))) {
+            position++;
+        }
+        if (start == position) {
+            throw error("Expected a number");
+        }
+        try {
+            return Long.parseLong(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("Number is too large");
+        }
+    }
+
+    private long durationNanos() {
+        long value = number();
+        int start = position;
+        while (position < text.length() && Character.isLetter(text.charAt(position))) {
+            position++;
+        }
+        String unit = text.substring(start, position).toLowerCase(Locale.ROOT);
+        switch (unit) {
+            case "ns":
+                return value;
+            case "us":
+                return value * 1000L;
+            case "":
+            case "ms":
+                return value * 1000_000L;
+            case "s":
+                return value * 1000_000_000L;
+            default:
+                position = start;
+                throw error("Unknown duration unit '" + unit + "', expected one of ns, us, ms, s");
+        }
+    }
+
+    private String string() {
+        skipWhitespace();
+        if (position >= text.length() || (text.charAt(position) != '\'' && text.charAt(position) != '"')) {
+            throw error("Expected a quoted string");
+        }
+        char quote = text.charAt(position++);
+        StringBuilder value = new StringBuilder();
+        while (position < text.length() && text.charAt(position) != quote) {
+            char c = text.charAt(position++);
+            if (c == '\\' && position < text.length()) {
+                c = text.charAt(position++);
+            }
+            value.append(c);
+        }
+        if (position >= text.length()) {
+            throw error("String is not terminated");
+        }
+        position++;
+        return value.toString();
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        skipWhitespace();
+        int end = position + keyword.length();
+        if (text.regionMatches(true, position, keyword, 0, keyword.length()) &&
+            (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)))) {
+            position = end;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean peek(String token) {
+        skipWhitespace();
+        return text.startsWith(token, position);
+    }
+
+    private boolean accept(String token) {
+        if (peek(token)) {
+            position += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private QuerySyntaxError error(String message) {
+        return new QuerySyntaxError(message + " at position " + position + " of query: " + text);
+    }
+
+    @FunctionalInterface
+    private interface PredicateFactory {
+
+        CallPredicate create(CallPredicate.TextOperator operator);
+    }
+
+    private static class QuerySyntaxError extends IllegalArgumentException {
+
+        QuerySyntaxError(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package com.ulyp.storage.search;
 
 import com.ulyp.core.Method;
-import com.ulyp.core.RecordedEnterMethodCall;
-import com.ulyp.core.RecordedExitMethodCall;
 import com.ulyp.core.Type;
 import com.ulyp.core.repository.ReadableRepository;
 import com.ulyp.core.util.StringUtils;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
 
 public class PlainTextSearchQuery implements SearchQuery {
 
@@ -16,20 +15,27 @@ public class PlainTextSearchQuery implements SearchQuery {
     }
 
     @Override
-    public boolean matches(
-            RecordedEnterMethodCall methodCall,
+    public boolean matchesEnter(
+            RecordedMethodCallCursor methodCall,
             ReadableRepository<Integer, Type> types,
             ReadableRepository<Integer, Method> methods) {
-        return StringUtils.containsIgnoreCase(methodCall.getCallee().toString(), textToSearch)
-                || methodCall.getArguments().stream().anyMatch(arg -> StringUtils.containsIgnoreCase(arg.toString(), textToSearch))
-                || StringUtils.containsIgnoreCase(methods.get(methodCall.getMethodId()).getName(), textToSearch);
+        // Method name is checked first, since it doesn't require decoding any objects
+        if (StringUtils.containsIgnoreCase(methods.get(methodCall.methodId()).getName(), textToSearch)) {
+            return true;
+        }
+        for (int i = 0; i < methodCall.argCount(); i++) {
+            if (StringUtils.containsIgnoreCase(methodCall.argument(i, types).toString(), textToSearch)) {
+                return true;
+            }
+        }
+        return StringUtils.containsIgnoreCase(methodCall.callee(types).toString(), textToSearch);
     }
 
     @Override
-    public boolean matches(
-            RecordedExitMethodCall methodCall,
-            ReadableRepository<Integer, Type> typeResolver,
+    public boolean matchesExit(
+            RecordedMethodCallCursor methodCall,
+            ReadableRepository<Integer, Type> types,
             ReadableRepository<Integer, Method> methods) {
-        return StringUtils.containsIgnoreCase(methodCall.getReturnValue().toString(), textToSearch);
+        return StringUtils.containsIgnoreCase(methodCall.returnValue(types).toString(), textToSearch);
     }
 }
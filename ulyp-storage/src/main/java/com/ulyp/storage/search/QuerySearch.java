@@ -0,0 +1,227 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.core.*;
+import com.ulyp.core.repository.InMemoryRepository;
+import com.ulyp.storage.reader.RecordedCallStack;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
+import com.ulyp.storage.reader.RecordedMethodCalls;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.reader.RecordingDataReaderJob;
+import com.ulyp.storage.util.PartitionedExecutor;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Search of calls which match {@link CallQuery}. The file is read by a single reader job, while lists of recorded calls
+ * are matched by worker threads. Lists are routed to workers by recording id, since predicates over exit calls
+ * (like duration) need the enter call of the same recording, so recordings are matched in parallel.
+ * <p>
+ * Predicates are pushed down to the binary format. Method predicates are evaluated once when methods are read,
+ * then fixed fields of a call are checked, and objects are only decoded if the result still depends on them.
+ * Calls whose result is decided on the enter call are not evaluated any further, while the rest wait for their exit
+ * calls on the stack of the recording (see {@link RecordedCallStack}) tagged with results of their enter predicates.
+ * Duration and subtree size of a call are derived from nano times and call ids, so no index is needed.
+ * <p>
+ * Every matching call is passed to the listener once: with its enter call if the match is decided on the enter call,
+ * otherwise with its exit call. The listener is called by one thread at a time. Search stops once the result limit
+ * is reached or once it's cancelled.
+ */
+public class QuerySearch {
+
+    private static final long NO_METHOD_RESULTS = 0L;
+
+    private final CallQuery query;
+    private final int resultLimit;
+    private final SearchResultListener listener;
+    private final PartitionedExecutor executor;
+    private final InMemoryRepository<Integer, Type> types = new InMemoryRepository<>();
+    // Results of method predicates by method id
+    private final Map<Integer, Long> methodResults = new ConcurrentHashMap<>();
+    private final Map<Integer, RecordingMatcher> recordings = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> completeFuture = new CompletableFuture<>();
+    private volatile boolean cancelled = false;
+    // Guarded by the listener
+    private volatile int resultCount = 0;
+
+    QuerySearch(CallQuery query, int resultLimit, SearchResultListener listener, int threads) {
+        this.query = query;
+        this.resultLimit = resultLimit;
+        this.listener = listener;
+        this.executor = new PartitionedExecutor("QuerySearch", threads, threads * 4);
+    }
+
+    void start(RecordingDataReader reader) {
+        synchronized (listener) {
+            listener.onStart();
+        }
+
+        reader.submitSharedReaderJob(new Job()).whenComplete((result, readFailure) -> {
+            try {
+                executor.awaitCompletion();
+            } catch (Throwable e) {
+                if (readFailure == null) {
+                    readFailure = e;
+                }
+            } finally {
+                executor.close();
+            }
+
+            synchronized (listener) {
+                listener.onEnd();
+            }
+            if (readFailure != null) {
+                completeFuture.completeExceptionally(readFailure);
+            } else {
+                completeFuture.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Stops the search. Matches which are already found may still be passed to the listener until it's notified
+     * with {@link SearchResultListener#onEnd()}
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getResultCount() {
+        return resultCount;
+    }
+
+    /**
+     * @return future which is completed once the search is done (or is cancelled) and the listener is notified
+     */
+    public CompletableFuture<Void> getCompleteFuture() {
+        return completeFuture;
+    }
+
+    private void onMatch(int recordingId, RecordedMethodCall methodCall) {
+        synchronized (listener) {
+            if (cancelled) {
+                return;
+            }
+            if (methodCall instanceof RecordedEnterMethodCall) {
+                listener.onMatch(recordingId, (RecordedEnterMethodCall) methodCall);
+            } else {
+                listener.onMatch(recordingId, (RecordedExitMethodCall) methodCall);
+            }
+            resultCount++;
+            if (resultCount >= resultLimit) {
+                cancel();
+            }
+        }
+    }
+
+    /**
+     * Matches calls of a single recording, so it's only used by the worker thread the recording is routed to
+     */
+    private class RecordingMatcher {
+
+        private final int recordingId;
+        private final CallEvaluation evaluation = new CallEvaluation(types);
+        // Calls whose result is not decided on the enter call are tagged with their enter results
+        private final RecordedCallStack stack = new RecordedCallStack();
+
+        private RecordingMatcher(int recordingId) {
+            this.recordingId = recordingId;
+        }
+
+        private void match(RecordedMethodCalls recordedMethodCalls) {
+            RecordedMethodCallCursor cursor = recordedMethodCalls.cursor();
+            while (cursor.hasNext() && !cancelled) {
+                cursor.next();
+                if (cursor.isEnter()) {
+                    onEnter(cursor);
+                } else {
+                    onExit(cursor);
+                }
+            }
+        }
+
+        private void onEnter(RecordedMethodCallCursor cursor) {
+            stack.enter(cursor.methodId(), cursor.nanoTime());
+            evaluation.onEnter(cursor, methodResults.getOrDefault(cursor.methodId(), NO_METHOD_RESULTS));
+            int result = query.evaluate(evaluation);
+            if (result == CallQuery.TRUE) {
+                onMatch(recordingId, cursor.materialize(types));
+            } else if (result == CallQuery.UNKNOWN) {
+                stack.setTag(evaluation.enterResults());
+            }
+        }
+
+        private void onExit(RecordedMethodCallCursor cursor) {
+            if (!stack.exit(cursor.callId(), cursor.nanoTime())) {
+                return;
+            }
+            boolean decided = !stack.hasTag();
+            long enterResults = stack.tag();
+            long durationNanos = stack.durationNanos();
+            // All calls entered after this one are in its subtree
+            int subtreeSize = stack.subtreeSize();
+            stack.pop();
+            if (decided) {
+                return;
+            }
+            evaluation.onExit(cursor, enterResults, durationNanos, subtreeSize);
+            if (query.evaluate(evaluation) == CallQuery.TRUE) {
+                onMatch(recordingId, cursor.materialize(types));
+            }
+        }
+    }
+
+    private class Job implements RecordingDataReaderJob {
+
+        @Override
+        public void onProcessMetadata(ProcessMetadata processMetadata) {
+
+        }
+
+        @Override
+        public void onRecordingMetadata(RecordingMetadata recordingMetadata) {
+
+        }
+
+        @Override
+        public void onType(Type type) {
+            types.store(type.getId(), type);
+        }
+
+        @Override
+        public void onMethod(Method method) {
+            long results = 0L;
+            for (CallPredicate predicate : query.predicates()) {
+                if (predicate instanceof CallPredicate.MethodPredicate && ((CallPredicate.MethodPredicate) predicate).matches(method)) {
+                    results |= 1L << predicate.index();
+                }
+            }
+            methodResults.put(method.getId(), results);
+        }
+
+        @Override
+        public void onRecordedCalls(long address, RecordedMethodCalls recordedMethodCalls) {
+            if (recordedMethodCalls.isEmpty() || cancelled) {
+                return;
+            }
+            int recordingId = recordedMethodCalls.getRecordingId();
+            RecordingMatcher matcher = recordings.computeIfAbsent(recordingId, RecordingMatcher::new);
+            executor.execute(recordingId, () -> matcher.match(recordedMethodCalls));
+        }
+
+        @Override
+        public boolean continueOnNoData() {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
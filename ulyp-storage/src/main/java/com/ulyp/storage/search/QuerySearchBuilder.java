@@ -0,0 +1,39 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.storage.reader.RecordingDataReader;
+
+public class QuerySearchBuilder {
+
+    private final RecordingDataReader reader;
+    private final CallQuery query;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int resultLimit = Integer.MAX_VALUE;
+
+    public QuerySearchBuilder(RecordingDataReader reader, CallQuery query) {
+        this.reader = reader;
+        this.query = query;
+    }
+
+    /**
+     * Sets how many threads match recorded calls. Calls of the same recording are always matched by the same thread.
+     * If set to 1, calls are matched by the reader job thread
+     */
+    public QuerySearchBuilder setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets the number of matches after which the search stops
+     */
+    public QuerySearchBuilder setResultLimit(int resultLimit) {
+        this.resultLimit = resultLimit;
+        return this;
+    }
+
+    public QuerySearch start(SearchResultListener listener) {
+        QuerySearch search = new QuerySearch(query, resultLimit, listener, threads);
+        search.start(reader);
+        return search;
+    }
+}
@@ -3,6 +3,7 @@ package com.ulyp.storage.search;
 import com.ulyp.core.*;
 import com.ulyp.core.repository.InMemoryRepository;
 import com.ulyp.core.repository.Repository;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
 import com.ulyp.storage.reader.RecordedMethodCalls;
 import com.ulyp.storage.reader.RecordingDataReaderJob;
 
@@ -49,21 +50,18 @@ public class SearchDataReaderJob implements RecordingDataReaderJob {
             return;
         }
 
-        AddressableItemIterator<RecordedMethodCall> it = recordedMethodCalls.iterator(types);
-        while (it.hasNext()) {
-            RecordedMethodCall methodCall = it.next();
+        RecordedMethodCallCursor cursor = recordedMethodCalls.cursor();
+        while (cursor.hasNext()) {
+            cursor.next();
 
-            if (methodCall instanceof RecordedEnterMethodCall) {
-                RecordedEnterMethodCall enterMethodCall = (RecordedEnterMethodCall) methodCall;
-
-                if (query.matches(enterMethodCall, types, methods)) {
-                    resultListener.onMatch(recordedMethodCalls.getRecordingId(), enterMethodCall);
+            // Calls are only decoded if they match
+            if (cursor.isEnter()) {
+                if (query.matchesEnter(cursor, types, methods)) {
+                    resultListener.onMatch(recordedMethodCalls.getRecordingId(), (RecordedEnterMethodCall) cursor.materialize(types));
                 }
             } else {
-                RecordedExitMethodCall exitMethodCall = (RecordedExitMethodCall) methodCall;
-
-                if (query.matches(exitMethodCall, types, methods)) {
-                    resultListener.onMatch(recordedMethodCalls.getRecordingId(), exitMethodCall);
+                if (query.matchesExit(cursor, types, methods)) {
+                    resultListener.onMatch(recordedMethodCalls.getRecordingId(), (RecordedExitMethodCall) cursor.materialize(types));
                 }
             }
         }
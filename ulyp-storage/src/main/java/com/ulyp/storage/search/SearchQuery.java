@@ -1,22 +1,25 @@
 package com.ulyp.storage.search;
 
 import com.ulyp.core.Method;
-import com.ulyp.core.RecordedEnterMethodCall;
-import com.ulyp.core.RecordedExitMethodCall;
 import com.ulyp.core.Type;
 import com.ulyp.core.repository.ReadableRepository;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
 
+/**
+ * Query which is matched against recorded calls. Calls are passed as a cursor, so that the query only decodes
+ * objects it needs (and doesn't decode anything if a match can be decided by the method)
+ */
 public interface SearchQuery {
 
-    boolean matches(
-            RecordedEnterMethodCall recordedEnterMethodCall,
+    boolean matchesEnter(
+            RecordedMethodCallCursor enterMethodCall,
             ReadableRepository<Integer, Type> types,
             ReadableRepository<Integer, Method> methods
     );
 
-    boolean matches(
-            RecordedExitMethodCall recordedExitMethodCall,
-            ReadableRepository<Integer, Type> typeResolver,
+    boolean matchesExit(
+            RecordedMethodCallCursor exitMethodCall,
+            ReadableRepository<Integer, Type> types,
             ReadableRepository<Integer, Method> methods
     );
 }
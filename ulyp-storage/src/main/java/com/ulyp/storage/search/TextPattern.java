@@ -0,0 +1,92 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Case insensitive text pattern which can be matched against UTF-8 bytes without decoding them. The pattern is
+ * case folded once. ASCII patterns are matched byte by byte, which is safe since bytes of multibyte UTF-8 characters
+ * never look like ASCII. All other patterns fall back to decoding the bytes into a string.
+ */
+class TextPattern {
+
+    private final String text;
+    // Lower case bytes of the pattern or null if the pattern is not ASCII
+    private final byte[] folded;
+
+    TextPattern(String text) {
+        this.text = text;
+        this.folded = isAscii(text) ? text.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII) : null;
+    }
+
+    boolean matches(String value) {
+        return StringUtils.containsIgnoreCase(value, text);
+    }
+
+    boolean matches(BytesIn in, int offset, int length) {
+        if (folded == null) {
+            byte[] value = new byte[length];
+            for (int i = 0; i < length; i++) {
+                value[i] = in.readByteAt(offset + i);
+            }
+            return matches(new String(value, StandardCharsets.UTF_8));
+        }
+
+        if (folded.length == 0) {
+            return true;
+        }
+        byte first = folded[0];
+        int last = offset + length - folded.length;
+        outer:
+        for (int i = offset; i <= last; i++) {
+            if (fold(in.readByteAt(i)) != first) {
+                continue;
+            }
+            for (int j = 1; j < folded.length; j++) {
+                if (fold(in.readByteAt(i + j)) != folded[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return distinct trigrams of the pattern which consist of ASCII bytes only, since only ASCII letters are case
+     * folded in the index, see {@link TrigramIndex}
+     */
+    int[] trigrams() {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int[] trigrams = new int[Math.max(bytes.length - 2, 0)];
+        int size = 0;
+        for (int i = 0; i + 2 < bytes.length; i++) {
+            if (bytes[i] >= 0 && bytes[i + 1] >= 0 && bytes[i + 2] >= 0) {
+                trigrams[size++] = TrigramIndex.trigram(bytes[i], bytes[i + 1], bytes[i + 2]);
+            }
+        }
+        return Arrays.stream(trigrams, 0, size).sorted().distinct().toArray();
+    }
+
+    static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
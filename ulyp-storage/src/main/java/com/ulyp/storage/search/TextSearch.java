@@ -0,0 +1,250 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.core.*;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.recorders.ObjectRecorder;
+import com.ulyp.core.recorders.ObjectRecorderRegistry;
+import com.ulyp.core.repository.InMemoryRepository;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
+import com.ulyp.storage.reader.RecordedMethodCalls;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.reader.RecordingDataReaderJob;
+import com.ulyp.storage.util.PartitionedExecutor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Text search over the recording file. The file is read by a single reader job, while lists of recorded calls
+ * are matched by worker threads in parallel.
+ * <p>
+ * Matching is done on raw bytes. Method names are matched once when methods are read. Among recorded objects only
+ * strings and length prefixed values (which may contain strings) are looked at, and no object records are built for
+ * them. A length prefixed value is only decoded if its bytes contain the text, in order to confirm the match.
+ * <p>
+ * If the file has {@link TrigramIndex}, only type and method lists and the chunks the index points to are read
+ * from the indexed part of the file. The rest of the file (which is written after the index was built) is read as usual.
+ * <p>
+ * Results are passed to the listener as soon as they are found, which is not necessarily the file order. The listener
+ * is called by one thread at a time. Search stops once the result limit is reached or once it's cancelled.
+ */
+public class TextSearch {
+
+    private final TextPattern pattern;
+    private final int resultLimit;
+    private final SearchResultListener listener;
+    private final PartitionedExecutor executor;
+    @Nullable
+    private final TrigramIndex trigramIndex;
+    private final InMemoryRepository<Integer, Type> types = new InMemoryRepository<>();
+    private final Set<Integer> matchingMethodIds = ConcurrentHashMap.newKeySet();
+    private final CompletableFuture<Void> completeFuture = new CompletableFuture<>();
+    private volatile boolean cancelled = false;
+    // Guarded by the listener
+    private volatile int resultCount = 0;
+    private int partition = 0;
+
+    TextSearch(String text, int resultLimit, SearchResultListener listener, int threads, @Nullable TrigramIndex trigramIndex) {
+        this.pattern = new TextPattern(text);
+        this.resultLimit = resultLimit;
+        this.listener = listener;
+        this.executor = new PartitionedExecutor("Search", threads, threads * 4);
+        this.trigramIndex = trigramIndex;
+    }
+
+    void start(RecordingDataReader reader) {
+        synchronized (listener) {
+            listener.onStart();
+        }
+
+        long[] candidateChunks = trigramIndex != null ? trigramIndex.candidateChunks(pattern) : null;
+        CompletableFuture<Void> reading;
+        if (candidateChunks != null) {
+            long[] lists = mergeSorted(trigramIndex.metadataLists(), candidateChunks);
+            long indexedAddress = trigramIndex.getIndexedAddress();
+            reading = reader.submitReaderJob(new Job(0L), lists)
+                .thenCompose(result -> reader.submitReaderJob(new Job(indexedAddress)));
+        } else {
+            reading = reader.submitSharedReaderJob(new Job(0L));
+        }
+
+        reading.whenComplete((result, readFailure) -> {
+            try {
+                executor.awaitCompletion();
+            } catch (Throwable e) {
+                if (readFailure == null) {
+                    readFailure = e;
+                }
+            } finally {
+                executor.close();
+            }
+
+            synchronized (listener) {
+                listener.onEnd();
+            }
+            if (readFailure != null) {
+                completeFuture.completeExceptionally(readFailure);
+            } else {
+                completeFuture.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Stops the search. Matches which are already found may still be passed to the listener until it's notified
+     * with {@link SearchResultListener#onEnd()}
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getResultCount() {
+        return resultCount;
+    }
+
+    /**
+     * @return future which is completed once the search is done (or is cancelled) and the listener is notified
+     */
+    public CompletableFuture<Void> getCompleteFuture() {
+        return completeFuture;
+    }
+
+    private static long[] mergeSorted(long[] left, long[] right) {
+        long[] result = new long[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < left.length || j < right.length) {
+            if (j == right.length || (i < left.length && left[i] < right[j])) {
+                result[k++] = left[i++];
+            } else {
+                result[k++] = right[j++];
+            }
+        }
+        return result;
+    }
+
+    private void match(int recordingId, RecordedMethodCalls recordedMethodCalls) {
+        CallMatcher matcher = new CallMatcher();
+        RecordedMethodCallCursor cursor = recordedMethodCalls.cursor();
+        while (cursor.hasNext() && !cancelled) {
+            cursor.next();
+            if (matcher.matches(cursor)) {
+                onMatch(recordingId, cursor.materialize(types));
+            }
+        }
+    }
+
+    private void onMatch(int recordingId, RecordedMethodCall methodCall) {
+        synchronized (listener) {
+            if (cancelled) {
+                return;
+            }
+            if (methodCall instanceof RecordedEnterMethodCall) {
+                listener.onMatch(recordingId, (RecordedEnterMethodCall) methodCall);
+            } else {
+                listener.onMatch(recordingId, (RecordedExitMethodCall) methodCall);
+            }
+            resultCount++;
+            if (resultCount >= resultLimit) {
+                cancel();
+            }
+        }
+    }
+
+    /**
+     * Matches calls of a single list, so it's only used by one thread
+     */
+    private class CallMatcher implements RecordedMethodCallCursor.ObjectBytesPredicate {
+
+        private ObjectRecorder matchedRecorder;
+
+        private boolean matches(RecordedMethodCallCursor cursor) {
+            if (cursor.isEnter() && matchingMethodIds.contains(cursor.methodId())) {
+                return true;
+            }
+            int index = 0;
+            while ((index = cursor.findObject(index, this, types)) >= 0) {
+                if (matchedRecorder == ObjectRecorderRegistry.STRING_RECORDER.getInstance()) {
+                    return true;
+                }
+                // Length prefixed value holds not only strings, so the match is confirmed on the decoded value
+                if (pattern.matches(cursor.object(index, types).toString())) {
+                    return true;
+                }
+                index++;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean test(int typeId, ObjectRecorder recorder, BytesIn in, int offset, int length) {
+            if (length >= 0 && pattern.matches(in, offset, length)) {
+                matchedRecorder = recorder;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private class Job implements RecordingDataReaderJob {
+
+        private final long startAddress;
+
+        private Job(long startAddress) {
+            this.startAddress = startAddress;
+        }
+
+        @Override
+        public long startAddress() {
+            return startAddress;
+        }
+
+        @Override
+        public void onProcessMetadata(ProcessMetadata processMetadata) {
+
+        }
+
+        @Override
+        public void onRecordingMetadata(RecordingMetadata recordingMetadata) {
+
+        }
+
+        @Override
+        public void onType(Type type) {
+            types.store(type.getId(), type);
+        }
+
+        @Override
+        public void onMethod(Method method) {
+            if (pattern.matches(method.getName())) {
+                matchingMethodIds.add(method.getId());
+            }
+        }
+
+        @Override
+        public void onRecordedCalls(long address, RecordedMethodCalls recordedMethodCalls) {
+            if (recordedMethodCalls.isEmpty() || cancelled) {
+                return;
+            }
+            int recordingId = recordedMethodCalls.getRecordingId();
+            executor.execute(partition++, () -> match(recordingId, recordedMethodCalls));
+        }
+
+        @Override
+        public boolean continueOnNoData() {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
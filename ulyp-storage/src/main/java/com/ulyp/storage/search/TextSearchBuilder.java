@@ -0,0 +1,48 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.storage.reader.RecordingDataReader;
+import org.jetbrains.annotations.Nullable;
+
+public class TextSearchBuilder {
+
+    private final RecordingDataReader reader;
+    private final String text;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int resultLimit = Integer.MAX_VALUE;
+    private TrigramIndex trigramIndex = null;
+
+    public TextSearchBuilder(RecordingDataReader reader, String text) {
+        this.reader = reader;
+        this.text = text;
+    }
+
+    /**
+     * Sets how many threads match recorded calls. If set to 1, calls are matched by the reader job thread
+     */
+    public TextSearchBuilder setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets the number of matches after which the search stops
+     */
+    public TextSearchBuilder setResultLimit(int resultLimit) {
+        this.resultLimit = resultLimit;
+        return this;
+    }
+
+    /**
+     * Sets the index which narrows down the part of the file which is read, see {@link TrigramIndex#open}
+     */
+    public TextSearchBuilder setTrigramIndex(@Nullable TrigramIndex trigramIndex) {
+        this.trigramIndex = trigramIndex;
+        return this;
+    }
+
+    public TextSearch start(SearchResultListener listener) {
+        TextSearch search = new TextSearch(text, resultLimit, listener, threads, trigramIndex);
+        search.start(reader);
+        return search;
+    }
+}
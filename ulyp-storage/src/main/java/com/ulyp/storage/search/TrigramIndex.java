@@ -0,0 +1,240 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.core.bytes.DirectBytesIn;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.util.RecordingFileChecksum;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Trigram inverted index over string values, method names and type names of recorded calls. The index is stored
+ * next to the recording file, i.e. index of recording.dat is stored in recording.dat.trigrams file, and is memory
+ * mapped once opened. It's built by {@link TrigramIndexBuilder}.
+ * <p>
+ * Every trigram points to recorded calls lists (chunks) which contain it. A chunk which contains the text always
+ * contains all its trigrams, so the index only gives candidate chunks, and matches still have to be verified.
+ * Trigrams are taken from UTF-8 bytes, ASCII letters are case folded.
+ * <p>
+ * File layout:
+ * <pre>
+ * header       magic, version, indexed address, recording file checksum, counts of each section below
+ * chunks       addresses of recorded calls lists (longs, ascending)
+ * metadata     addresses of type and method lists (longs, ascending)
+ * trigrams     trigram, offset of its posting list, posting list size (ints, sorted by trigram)
+ * postings     ordinals of chunks in the chunks section, delta coded as var ints
+ * </pre>
+ */
+@Slf4j
+public class TrigramIndex {
+
+    public static final String FILE_SUFFIX = ".trigrams";
+
+    static final long MAGIC = 0x756C7970_54524947L;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES + 4 * Integer.BYTES;
+    static final int TRIGRAM_ENTRY_SIZE = 3 * Integer.BYTES;
+
+    private final UnsafeBuffer buffer;
+    /**
+     * Address in the recording file up to which the file is indexed
+     */
+    @Getter
+    private final long indexedAddress;
+    private final int chunkCount;
+    private final int metadataCount;
+    private final int trigramCount;
+    private final int chunksOffset;
+    private final int metadataOffset;
+    private final int trigramsOffset;
+    private final int postingsOffset;
+
+    private TrigramIndex(UnsafeBuffer buffer) {
+        this.buffer = buffer;
+        this.indexedAddress = buffer.getLong(Long.BYTES + Integer.BYTES);
+        int countsOffset = Long.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES;
+        this.chunkCount = buffer.getInt(countsOffset);
+        this.metadataCount = buffer.getInt(countsOffset + Integer.BYTES);
+        this.trigramCount = buffer.getInt(countsOffset + 2 * Integer.BYTES);
+        this.chunksOffset = HEADER_SIZE;
+        this.metadataOffset = chunksOffset + chunkCount * Long.BYTES;
+        this.trigramsOffset = metadataOffset + metadataCount * Long.BYTES;
+        this.postingsOffset = trigramsOffset + trigramCount * TRIGRAM_ENTRY_SIZE;
+    }
+
+    public static Path fileOf(File recordingFile) {
+        return recordingFile.toPath().resolveSibling(recordingFile.getName() + FILE_SUFFIX);
+    }
+
+    /**
+     * Opens the index of the recording file
+     *
+     * @return the index or null if there is no index or it doesn't match the recording file
+     */
+    @Nullable
+    public static TrigramIndex open(File recordingFile) throws StorageException {
+        Path indexFile = fileOf(recordingFile);
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                log.info("Trigram index {} has unsupported format and will be rebuilt", indexFile);
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            UnsafeBuffer buffer = new UnsafeBuffer(mapped);
+            if (buffer.getLong(0) != MAGIC || buffer.getInt(Long.BYTES) != VERSION) {
+                log.info("Trigram index {} has unsupported format and will be rebuilt", indexFile);
+                return null;
+            }
+            TrigramIndex index = new TrigramIndex(buffer);
+            long checksum = buffer.getLong(Long.BYTES + Integer.BYTES + Long.BYTES);
+            if (recordingFile.length() < index.indexedAddress ||
+                RecordingFileChecksum.of(recordingFile, index.indexedAddress) != checksum) {
+                log.info("Recording file {} doesn't match trigram index, index will be rebuilt", recordingFile);
+                return null;
+            }
+            return index;
+        } catch (IOException e) {
+            throw new StorageException("Could not open trigram index " + indexFile, e);
+        }
+    }
+
+    /**
+     * @return addresses of chunks which may contain the text or null if the index can't narrow the search down
+     * (e.g. the text is too short)
+     */
+    @Nullable
+    long[] candidateChunks(TextPattern pattern) {
+        int[] trigrams = pattern.trigrams();
+        if (trigrams.length == 0) {
+            return null;
+        }
+
+        int[] entries = new int[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            entries[i] = findTrigram(trigrams[i]);
+            if (entries[i] < 0) {
+                return new long[0];
+            }
+        }
+        // Intersection starts from the shortest posting list
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = entries[i];
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(postingListSize(a), postingListSize(b)));
+
+        int[] candidates = readPostingList(order[0]);
+        for (int i = 1; i < order.length && candidates.length > 0; i++) {
+            candidates = intersect(candidates, readPostingList(order[i]));
+        }
+
+        long[] chunkAddresses = new long[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            chunkAddresses[i] = buffer.getLong(chunksOffset + candidates[i] * Long.BYTES);
+        }
+        return chunkAddresses;
+    }
+
+    /**
+     * @return addresses of type and method lists which must be read before any chunk
+     */
+    long[] metadataLists() {
+        long[] addresses = new long[metadataCount];
+        for (int i = 0; i < metadataCount; i++) {
+            addresses[i] = buffer.getLong(metadataOffset + i * Long.BYTES);
+        }
+        return addresses;
+    }
+
+    long[] chunks() {
+        long[] addresses = new long[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            addresses[i] = buffer.getLong(chunksOffset + i * Long.BYTES);
+        }
+        return addresses;
+    }
+
+    int trigramCount() {
+        return trigramCount;
+    }
+
+    int trigramAt(int entry) {
+        return buffer.getInt(trigramsOffset + entry * TRIGRAM_ENTRY_SIZE);
+    }
+
+    int[] readPostingList(int entry) {
+        int entryOffset = trigramsOffset + entry * TRIGRAM_ENTRY_SIZE;
+        int offset = buffer.getInt(entryOffset + Integer.BYTES);
+        int size = buffer.getInt(entryOffset + 2 * Integer.BYTES);
+
+        DirectBytesIn in = new DirectBytesIn(buffer);
+        in.moveTo(postingsOffset + offset);
+        int[] ordinals = new int[size];
+        int ordinal = 0;
+        for (int i = 0; i < size; i++) {
+            ordinal += in.readVarInt();
+            ordinals[i] = ordinal;
+        }
+        return ordinals;
+    }
+
+    private int postingListSize(int entry) {
+        return buffer.getInt(trigramsOffset + entry * TRIGRAM_ENTRY_SIZE + 2 * Integer.BYTES);
+    }
+
+    private int findTrigram(int trigram) {
+        int low = 0;
+        int high = trigramCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = trigramAt(mid);
+            if (value < trigram) {
+                low = mid + 1;
+            } else if (value > trigram) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+        int[] result = new int[Math.min(left.length, right.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[size++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @return trigram of three UTF-8 bytes, ASCII letters are case folded
+     */
+    static int trigram(byte b0, byte b1, byte b2) {
+        return ((TextPattern.fold(b0) & 0xFF) << 16) | ((TextPattern.fold(b1) & 0xFF) << 8) | (TextPattern.fold(b2) & 0xFF);
+    }
+}
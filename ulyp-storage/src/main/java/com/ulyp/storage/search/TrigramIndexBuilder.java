@@ -0,0 +1,276 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.core.*;
+import com.ulyp.core.bytes.BufferBytesOut;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.recorders.ObjectRecorder;
+import com.ulyp.core.repository.InMemoryRepository;
+import com.ulyp.core.serializers.MethodSerializer;
+import com.ulyp.core.serializers.TypeSerializer;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
+import com.ulyp.storage.reader.RecordedMethodCalls;
+import com.ulyp.storage.reader.RecordingDataReaderJob;
+import com.ulyp.storage.util.BinaryListFileReader;
+import com.ulyp.storage.util.RecordingFileChecksum;
+import lombok.extern.slf4j.Slf4j;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.IntHashSet;
+import org.agrona.collections.LongArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Builds {@link TrigramIndex} of the recording file. The builder is a reader job, so it can either be run offline
+ * or be submitted as a shared job along with the call record tree, in which case the file is read once for both.
+ * <p>
+ * If the recording file already has a valid index, building is resumed from the indexed address. The index
+ * file is (re)written once the job stops reading.
+ */
+@Slf4j
+public class TrigramIndexBuilder implements RecordingDataReaderJob {
+
+    private final File recordingFile;
+    private final InMemoryRepository<Integer, Type> types = new InMemoryRepository<>();
+    private final Int2ObjectHashMap<int[]> typeTrigrams = new Int2ObjectHashMap<>();
+    private final Int2ObjectHashMap<int[]> methodTrigrams = new Int2ObjectHashMap<>();
+    private final LongArrayList chunks = new LongArrayList();
+    private final LongArrayList metadataLists = new LongArrayList();
+    private final Int2ObjectHashMap<IntArrayList> postings = new Int2ObjectHashMap<>();
+    private final IntHashSet chunkTrigrams = new IntHashSet();
+    private final RecordedMethodCallCursor.ObjectBytesPredicate objectTrigrams = this::addObjectTrigrams;
+    private long startAddress = 0L;
+    // Address of the list which is currently processed
+    private long listAddress = 0L;
+    private boolean metadataList = false;
+
+    public TrigramIndexBuilder(File recordingFile) {
+        this.recordingFile = recordingFile;
+    }
+
+    @Override
+    public void onStart() {
+        TrigramIndex index = TrigramIndex.open(recordingFile);
+        if (index != null) {
+            restore(index);
+        }
+        listAddress = startAddress;
+    }
+
+    @Override
+    public long startAddress() {
+        return startAddress;
+    }
+
+    @Override
+    public void onProcessMetadata(ProcessMetadata processMetadata) {
+
+    }
+
+    @Override
+    public void onRecordingMetadata(RecordingMetadata recordingMetadata) {
+
+    }
+
+    @Override
+    public void onType(Type type) {
+        types.store(type.getId(), type);
+        typeTrigrams.put(type.getId(), trigramsOf(type.getName()));
+        metadataList = true;
+    }
+
+    @Override
+    public void onMethod(Method method) {
+        methodTrigrams.put(method.getId(), trigramsOf(method.getName()));
+        metadataList = true;
+    }
+
+    @Override
+    public void onRecordedCalls(long address, RecordedMethodCalls recordedMethodCalls) {
+        if (recordedMethodCalls.isEmpty()) {
+            return;
+        }
+        int ordinal = chunks.size();
+        chunks.addLong(address - BinaryListFileReader.HEADER_SIZE);
+
+        chunkTrigrams.clear();
+        RecordedMethodCallCursor cursor = recordedMethodCalls.cursor();
+        while (cursor.hasNext()) {
+            cursor.next();
+            if (cursor.isEnter()) {
+                addAll(methodTrigrams.get(cursor.methodId()));
+            }
+            cursor.findObject(0, objectTrigrams, types);
+        }
+
+        IntHashSet.IntIterator iterator = chunkTrigrams.iterator();
+        while (iterator.hasNext()) {
+            int trigram = iterator.nextValue();
+            IntArrayList postingList = postings.get(trigram);
+            if (postingList == null) {
+                postingList = new IntArrayList();
+                postings.put(trigram, postingList);
+            }
+            postingList.addInt(ordinal);
+        }
+    }
+
+    @Override
+    public void onListProcessed(long nextAddress) {
+        if (metadataList) {
+            metadataLists.addLong(listAddress);
+            metadataList = false;
+        }
+        listAddress = nextAddress;
+    }
+
+    @Override
+    public boolean continueOnNoData() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(boolean recordingComplete) {
+        write();
+    }
+
+    private boolean addObjectTrigrams(int typeId, ObjectRecorder recorder, BytesIn in, int offset, int length) {
+        addAll(typeTrigrams.get(typeId));
+        if (length >= 3) {
+            byte b0 = in.readByteAt(offset);
+            byte b1 = in.readByteAt(offset + 1);
+            for (int i = offset + 2; i < offset + length; i++) {
+                byte b2 = in.readByteAt(i);
+                chunkTrigrams.add(TrigramIndex.trigram(b0, b1, b2));
+                b0 = b1;
+                b1 = b2;
+            }
+        }
+        // All objects are visited
+        return false;
+    }
+
+    private void addAll(int[] trigrams) {
+        if (trigrams != null) {
+            for (int trigram : trigrams) {
+                chunkTrigrams.add(trigram);
+            }
+        }
+    }
+
+    private static int[] trigramsOf(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int[] trigrams = new int[Math.max(bytes.length - 2, 0)];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = TrigramIndex.trigram(bytes[i], bytes[i + 1], bytes[i + 2]);
+        }
+        return Arrays.stream(trigrams).distinct().toArray();
+    }
+
+    private void restore(TrigramIndex index) {
+        for (long chunk : index.chunks()) {
+            chunks.addLong(chunk);
+        }
+        for (int entry = 0; entry < index.trigramCount(); entry++) {
+            IntArrayList postingList = new IntArrayList();
+            for (int ordinal : index.readPostingList(entry)) {
+                postingList.addInt(ordinal);
+            }
+            postings.put(index.trigramAt(entry), postingList);
+        }
+
+        // Names of types and methods which are already indexed are still needed for chunks which are not
+        try (BinaryListFileReader reader = new BinaryListFileReader(recordingFile)) {
+            for (long address : index.metadataLists()) {
+                metadataLists.addLong(address);
+                reader.moveTo(address);
+                InputBytesList list = reader.read();
+                if (list == null) {
+                    throw new StorageException("No binary list at address " + address + " of " + recordingFile);
+                }
+                for (BytesIn in : list) {
+                    if (list.id() == SerializedTypeList.WIRE_ID) {
+                        onType(TypeSerializer.instance.deserialize(in));
+                    } else if (list.id() == SerializedMethodList.WIRE_ID) {
+                        onMethod(MethodSerializer.instance.deserialize(in));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new StorageException("Could not read recording file " + recordingFile, e);
+        }
+        metadataList = false;
+        startAddress = index.getIndexedAddress();
+    }
+
+    private void write() throws StorageException {
+        int[] trigrams = new int[postings.size()];
+        int count = 0;
+        for (Integer trigram : postings.keySet()) {
+            trigrams[count++] = trigram;
+        }
+        Arrays.sort(trigrams);
+
+        ExpandableDirectByteBuffer postingsBuffer = new ExpandableDirectByteBuffer(64 * 1024);
+        BufferBytesOut postingsOut = new BufferBytesOut(postingsBuffer);
+        int[] postingOffsets = new int[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            postingOffsets[i] = postingsOut.position();
+            IntArrayList postingList = postings.get(trigrams[i]);
+            int previous = 0;
+            for (int j = 0; j < postingList.size(); j++) {
+                int ordinal = postingList.getInt(j);
+                postingsOut.writeVarInt(ordinal - previous);
+                previous = ordinal;
+            }
+        }
+
+        Path indexFile = TrigramIndex.fileOf(recordingFile);
+        try {
+            ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(64 * 1024);
+            BufferBytesOut out = new BufferBytesOut(buffer);
+            out.write(TrigramIndex.MAGIC);
+            out.write(TrigramIndex.VERSION);
+            out.write(listAddress);
+            out.write(RecordingFileChecksum.of(recordingFile, listAddress));
+            out.write(chunks.size());
+            out.write(metadataLists.size());
+            out.write(trigrams.length);
+            out.write(postingsOut.position());
+            for (int i = 0; i < chunks.size(); i++) {
+                out.write(chunks.getLong(i));
+            }
+            for (int i = 0; i < metadataLists.size(); i++) {
+                out.write(metadataLists.getLong(i));
+            }
+            for (int i = 0; i < trigrams.length; i++) {
+                out.write(trigrams[i]);
+                out.write(postingOffsets[i]);
+                out.write(postings.get(trigrams[i]).size());
+            }
+
+            byte[] bytes = new byte[out.position() + postingsOut.position()];
+            buffer.getBytes(0, bytes, 0, out.position());
+            postingsBuffer.getBytes(0, bytes, out.position(), postingsOut.position());
+
+            // The index is replaced atomically, so that it's never left partially written
+            Path tmpFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            Files.write(tmpFile, bytes);
+            Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Trigram index of {} is written, {} chunks, {} trigrams", recordingFile, chunks.size(), trigrams.length);
+        } catch (IOException e) {
+            throw new StorageException("Could not write trigram index to " + indexFile, e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.ulyp.storage.toc;
+
+import com.ulyp.core.RecordingMetadata;
+import lombok.Getter;
+import org.agrona.collections.LongArrayList;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Binary lists of a single recording (recording metadata, recorded calls and call index lists) and the time range
+ * the lists were written in, as listed by {@link TableOfContents}
+ */
+@Getter
+public class RecordingContents {
+
+    private final int recordingId;
+    /**
+     * The latest metadata of the recording
+     */
+    @Nullable
+    private RecordingMetadata metadata;
+    /**
+     * Epoch millis the first list of the recording was written at
+     */
+    private long firstWriteMillis = Long.MAX_VALUE;
+    /**
+     * Epoch millis the last list of the recording was written at
+     */
+    private long lastWriteMillis = Long.MIN_VALUE;
+    /**
+     * Addresses (i.e. offsets in the file) of lists in the file order
+     */
+    private final LongArrayList listAddresses = new LongArrayList();
+
+    RecordingContents(int recordingId) {
+        this.recordingId = recordingId;
+    }
+
+    /**
+     * @return true if lists of the recording were written within the given time range (inclusive), i.e. the recording
+     * was active in the range
+     */
+    public boolean isActiveBetween(long fromMillis, long toMillis) {
+        return !listAddresses.isEmpty() && firstWriteMillis <= toMillis && lastWriteMillis >= fromMillis;
+    }
+
+    void onList(long address, long writeMillis) {
+        listAddresses.addLong(address);
+        onWriteTimeRange(writeMillis, writeMillis);
+    }
+
+    void onWriteTimeRange(long firstWriteMillis, long lastWriteMillis) {
+        this.firstWriteMillis = Math.min(this.firstWriteMillis, firstWriteMillis);
+        this.lastWriteMillis = Math.max(this.lastWriteMillis, lastWriteMillis);
+    }
+
+    void onMetadata(RecordingMetadata metadata) {
+        this.metadata = metadata;
+    }
+
+    /**
+     * Appends lists of the recording which are written later
+     */
+    void merge(RecordingContents later) {
+        if (later.metadata != null) {
+            metadata = later.metadata;
+        }
+        for (int i = 0; i < later.listAddresses.size(); i++) {
+            listAddresses.addLong(later.listAddresses.getLong(i));
+        }
+        onWriteTimeRange(later.firstWriteMillis, later.lastWriteMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "RecordingContents{" +
+            "recordingId=" + recordingId +
+            ", lists=" + listAddresses.size() +
+            ", firstWriteMillis=" + firstWriteMillis +
+            ", lastWriteMillis=" + lastWriteMillis +
+            '}';
+    }
+}
@@ -0,0 +1,180 @@
+package com.ulyp.storage.toc;
+
+import com.ulyp.core.RecordingCompleteMark;
+import com.ulyp.core.bytes.BufferBytesOut;
+import com.ulyp.core.bytes.DirectBytesIn;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.OutputBytesList;
+import com.ulyp.core.util.BitUtil;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.reader.BinaryListWithAddress;
+import com.ulyp.storage.util.BinaryListFileReader;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.collections.LongArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Maps recordings to binary lists of the recording file, so that recordings are listed without reading the whole
+ * file and a single recording is read without reading lists of other recordings (which are interleaved in the file).
+ * <p>
+ * The table is made of {@link TocFrame} frames which the writer writes periodically. Once the file is closed, the
+ * recording complete mark (i.e. the footer) has the address of the last frame. The table is only available for
+ * complete files, files which are still written (or were not closed properly) have to be read from the beginning.
+ */
+public class TableOfContents {
+
+    /**
+     * Size of the recording complete mark list which has the address of the last frame
+     */
+    static final int FOOTER_SIZE = BinaryListFileReader.HEADER_SIZE + OutputBytesList.HEADER_LENGTH + InputBytesList.RECORD_HEADER_LENGTH + Long.BYTES;
+
+    private final LongArrayList globalListAddresses = new LongArrayList();
+    private final Map<Integer, RecordingContents> recordings = new TreeMap<>();
+
+    private TableOfContents() {
+    }
+
+    /**
+     * @return recording complete mark which is written at the end of the file and points to the last frame
+     */
+    public static OutputBytesList footer(long lastFrameAddress) {
+        OutputBytesList out = new OutputBytesList(RecordingCompleteMark.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()));
+        out.add(bytes -> bytes.write(lastFrameAddress));
+        return out;
+    }
+
+    /**
+     * @return table of contents of the file or null if the file is not complete or written without table of contents
+     */
+    @Nullable
+    public static TableOfContents read(File file) throws StorageException {
+        try {
+            long lastFrameAddress = readLastFrameAddress(file);
+            if (lastFrameAddress < 0) {
+                return null;
+            }
+
+            // Frames are read from the last to the first one, but merged in the file order
+            List<TocFrame> frames = new ArrayList<>();
+            try (BinaryListFileReader reader = new BinaryListFileReader(file)) {
+                long frameAddress = lastFrameAddress;
+                while (frameAddress >= 0) {
+                    reader.moveTo(frameAddress);
+                    BinaryListWithAddress data = reader.readWithAddress();
+                    if (data == null || data.getBytes().id() != TocFrame.WIRE_ID) {
+                        throw new StorageException("No table of contents frame at address " + frameAddress + " of " + file);
+                    }
+                    TocFrame frame = TocFrame.deserialize(data.getBytes());
+                    frames.add(frame);
+                    frameAddress = frame.getPreviousFrameAddress();
+                }
+            }
+
+            TableOfContents toc = new TableOfContents();
+            for (int i = frames.size() - 1; i >= 0; i--) {
+                toc.merge(frames.get(i));
+            }
+            return toc;
+        } catch (IOException e) {
+            throw new StorageException("Could not read table of contents of " + file, e);
+        }
+    }
+
+    private static long readLastFrameAddress(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            long length = randomAccessFile.length();
+            if (length < FOOTER_SIZE) {
+                return -1L;
+            }
+            byte[] footer = new byte[FOOTER_SIZE];
+            randomAccessFile.seek(length - FOOTER_SIZE);
+            randomAccessFile.readFully(footer);
+
+            // Older files have an empty complete mark, so the footer may be in the middle of some list
+            if (footer[0] == 0 || BitUtil.bytesToInt(footer, 1) != FOOTER_SIZE - BinaryListFileReader.HEADER_SIZE) {
+                return -1L;
+            }
+            UnsafeBuffer buffer = new UnsafeBuffer(footer, BinaryListFileReader.HEADER_SIZE, FOOTER_SIZE - BinaryListFileReader.HEADER_SIZE);
+            InputBytesList in;
+            try {
+                in = new InputBytesList(new DirectBytesIn(buffer));
+            } catch (IllegalArgumentException e) {
+                return -1L;
+            }
+            if (in.id() != RecordingCompleteMark.WIRE_ID || in.size() != 1) {
+                return -1L;
+            }
+            return in.iterator().next().readLong();
+        }
+    }
+
+    private void merge(TocFrame frame) {
+        LongArrayList frameGlobalListAddresses = frame.getGlobalListAddresses();
+        for (int i = 0; i < frameGlobalListAddresses.size(); i++) {
+            globalListAddresses.addLong(frameGlobalListAddresses.getLong(i));
+        }
+        for (RecordingContents contents : frame.getRecordings()) {
+            RecordingContents merged = recordings.get(contents.getRecordingId());
+            if (merged == null) {
+                recordings.put(contents.getRecordingId(), contents);
+            } else {
+                merged.merge(contents);
+            }
+        }
+    }
+
+    /**
+     * @return all recordings of the file sorted by id
+     */
+    public List<RecordingContents> getRecordings() {
+        return new ArrayList<>(recordings.values());
+    }
+
+    @Nullable
+    public RecordingContents getRecording(int recordingId) {
+        return recordings.get(recordingId);
+    }
+
+    /**
+     * @return recordings which were written between the given epoch millis (inclusive), sorted by the time the recording
+     * was first written at
+     */
+    public List<RecordingContents> getRecordingsActiveBetween(long fromMillis, long toMillis) {
+        return recordings.values()
+            .stream()
+            .filter(contents -> contents.isActiveBetween(fromMillis, toMillis))
+            .sorted(Comparator.comparingLong(RecordingContents::getFirstWriteMillis))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return addresses of lists which must be read to read the recording, i.e. lists of the recording itself as well
+     * as process metadata, types and methods, in the file order. Can be passed to
+     * {@link com.ulyp.storage.reader.RecordingDataReader#submitReaderJob(com.ulyp.storage.reader.RecordingDataReaderJob, long[])}
+     */
+    public long[] getListAddresses(int recordingId) {
+        RecordingContents contents = recordings.get(recordingId);
+        int recordingListsCount = contents != null ? contents.getListAddresses().size() : 0;
+        long[] addresses = new long[globalListAddresses.size() + recordingListsCount];
+        for (int i = 0; i < globalListAddresses.size(); i++) {
+            addresses[i] = globalListAddresses.getLong(i);
+        }
+        for (int i = 0; i < recordingListsCount; i++) {
+            addresses[globalListAddresses.size() + i] = contents.getListAddresses().getLong(i);
+        }
+        Arrays.sort(addresses);
+        return addresses;
+    }
+}
@@ -0,0 +1,129 @@
+package com.ulyp.storage.toc;
+
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.bytes.BufferBytesOut;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.bytes.BytesOut;
+import com.ulyp.core.mem.InputBytesList;
+import com.ulyp.core.mem.OutputBytesList;
+import com.ulyp.core.serializers.RecordingMetadataSerializer;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.collections.LongArrayList;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A frame of the table of contents. The writer periodically writes a frame with addresses of all binary lists written
+ * since the previous frame. Every frame points to the previous one, so that the table of contents is read by following
+ * frames backwards starting from the last one, which the footer of the file points to.
+ * <p>
+ * The first item of the list is the address of the previous frame followed by addresses of lists which don't belong
+ * to any recording (process metadata, types and methods). Then every recording has an item with its lists and time
+ * range, optionally followed by an item with the latest recording metadata.
+ */
+public class TocFrame {
+
+    public static final int WIRE_ID = 6;
+
+    private final long previousFrameAddress;
+    private final LongArrayList globalListAddresses = new LongArrayList();
+    private final Map<Integer, RecordingContents> recordings = new LinkedHashMap<>();
+
+    public TocFrame(long previousFrameAddress) {
+        this.previousFrameAddress = previousFrameAddress;
+    }
+
+    /**
+     * @return address of the previous frame or -1 if it's the first frame of the file
+     */
+    public long getPreviousFrameAddress() {
+        return previousFrameAddress;
+    }
+
+    LongArrayList getGlobalListAddresses() {
+        return globalListAddresses;
+    }
+
+    Collection<RecordingContents> getRecordings() {
+        return recordings.values();
+    }
+
+    public void onGlobalList(long address) {
+        globalListAddresses.addLong(address);
+    }
+
+    public void onRecordingList(int recordingId, long address, long writeMillis) {
+        recordings.computeIfAbsent(recordingId, RecordingContents::new).onList(address, writeMillis);
+    }
+
+    public void onRecordingMetadata(RecordingMetadata metadata, long address, long writeMillis) {
+        RecordingContents contents = recordings.computeIfAbsent(metadata.getId(), RecordingContents::new);
+        contents.onList(address, writeMillis);
+        // Metadata is mutable, so it's copied
+        contents.onMetadata(metadata.withCompleteTime(metadata.getRecordingFinishedMillis()));
+    }
+
+    public boolean isEmpty() {
+        return globalListAddresses.isEmpty() && recordings.isEmpty();
+    }
+
+    public OutputBytesList toBytes() {
+        OutputBytesList out = new OutputBytesList(WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()));
+        out.add(bytes -> {
+            bytes.write(previousFrameAddress);
+            writeAddresses(bytes, globalListAddresses);
+        });
+        for (RecordingContents contents : recordings.values()) {
+            out.add(bytes -> {
+                bytes.write(contents.getRecordingId());
+                bytes.write(contents.getFirstWriteMillis());
+                bytes.write(contents.getLastWriteMillis());
+                bytes.write(contents.getMetadata() != null);
+                writeAddresses(bytes, contents.getListAddresses());
+            });
+            if (contents.getMetadata() != null) {
+                out.add(bytes -> RecordingMetadataSerializer.instance.serialize(bytes, contents.getMetadata()));
+            }
+        }
+        return out;
+    }
+
+    public static TocFrame deserialize(InputBytesList in) {
+        Iterator<BytesIn> iterator = in.iterator();
+        BytesIn header = iterator.next();
+        TocFrame frame = new TocFrame(header.readLong());
+        readAddresses(header, frame.globalListAddresses);
+
+        while (iterator.hasNext()) {
+            BytesIn item = iterator.next();
+            RecordingContents contents = new RecordingContents(item.readInt());
+            long firstWriteMillis = item.readLong();
+            long lastWriteMillis = item.readLong();
+            boolean hasMetadata = item.readBoolean();
+            readAddresses(item, contents.getListAddresses());
+            contents.onWriteTimeRange(firstWriteMillis, lastWriteMillis);
+            if (hasMetadata) {
+                contents.onMetadata(RecordingMetadataSerializer.instance.deserialize(iterator.next()));
+            }
+            frame.recordings.put(contents.getRecordingId(), contents);
+        }
+        return frame;
+    }
+
+    private static void writeAddresses(BytesOut out, LongArrayList addresses) {
+        out.write(addresses.size());
+        for (int i = 0; i < addresses.size(); i++) {
+            out.write(addresses.getLong(i));
+        }
+    }
+
+    private static void readAddresses(BytesIn in, LongArrayList addresses) {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            addresses.addLong(in.readLong());
+        }
+    }
+}
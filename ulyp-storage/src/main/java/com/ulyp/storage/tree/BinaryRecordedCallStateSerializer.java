@@ -15,9 +15,13 @@ public class BinaryRecordedCallStateSerializer implements Serializer<CallRecordI
         long enterCallRecordAddress = input.readLong();
         int subtreeSize = input.readInt();
         long exitCallRecordAddress = input.readLong();
-        int childrenCallCount = input.readInt();
-        LongArrayList childrenCallIds = new LongArrayList(childrenCallCount, Long.MIN_VALUE);
-        for (int i = 0; i < childrenCallCount; i++) {
+        long enterNanoTime = input.readLong();
+        long nanosDuration = input.readLong();
+        long childrenNanosDuration = input.readLong();
+        int childrenCount = input.readInt();
+        int childrenCallIdCount = input.readInt();
+        LongArrayList childrenCallIds = new LongArrayList(childrenCallIdCount, Long.MIN_VALUE);
+        for (int i = 0; i < childrenCallIdCount; i++) {
             childrenCallIds.add(input.readLong());
         }
         return CallRecordIndexState.builder()
@@ -25,7 +29,11 @@ public class BinaryRecordedCallStateSerializer implements Serializer<CallRecordI
                 .enterMethodCallAddress(enterCallRecordAddress)
                 .subtreeSize(subtreeSize)
                 .exitMethodCallAddr(exitCallRecordAddress)
+                .enterNanoTime(enterNanoTime)
+                .nanosDuration(nanosDuration)
+                .childrenNanosDuration(childrenNanosDuration)
                 .childrenCallIds(childrenCallIds)
+                .childrenCount(childrenCallIdCount == childrenCount ? -1 : childrenCount)
                 .build();
     }
 
@@ -35,8 +43,12 @@ public class BinaryRecordedCallStateSerializer implements Serializer<CallRecordI
         out.write(value.getEnterMethodCallAddress());
         out.write(value.getSubtreeSize());
         out.write(value.getExitMethodCallAddr());
+        out.write(value.getEnterNanoTime());
+        out.write(value.getNanosDuration());
+        out.write(value.getChildrenNanosDuration());
         LongArrayList childrenCallIds = value.getChildrenCallIds();
         int childrenCallIdCount = childrenCallIds.size();
+        out.write(value.getChildrenCount());
         out.write(childrenCallIdCount);
         for (int i = 0; i < childrenCallIdCount; i++) {
             out.write(childrenCallIds.getLong(i));
@@ -42,12 +42,18 @@ public class CallRecord {
     private final int subtreeSize;
     @Getter
     private final long nanosDuration;
+    /**
+     * Time spent in the call excluding its children, -1 if not known
+     */
+    @Getter
+    @Builder.Default
+    private final long selfNanos = -1L;
     @Getter
     private final Method method;
     @Getter
     private final List<ObjectRecord> args;
     @Getter
-    private final LongArrayList childrenCallIds;
+    private final int childrenCount;
     private final RecordingState recordingState;
     @Builder.Default
     private final ObjectRecord callee = NotRecordedObjectRecord.getInstance();
@@ -56,8 +62,6 @@ public class CallRecord {
     @Builder.Default
     private final ObjectRecord returnValue = NotRecordedObjectRecord.getInstance();
 
-    private List<CallRecord> children;
-
     @NotNull
     public ObjectRecord getCallee() {
         if (method.isConstructor()) {
@@ -80,12 +84,21 @@ public class CallRecord {
         return thrown;
     }
 
-    public List<CallRecord> getChildren() throws StorageException {
-        if (children != null) {
-            return children;
-        }
+    /**
+     * Children ids are not kept by the record as calls may have millions of children. Use
+     * {@link Recording#getChildrenCallIds(long, int, int)} in order to read a range of them
+     *
+     * @return ids of all children of the call
+     */
+    public LongArrayList getChildrenCallIds() throws StorageException {
+        return recordingState.getChildrenCallIds(callId, 0, childrenCount);
+    }
 
-        return children = childrenCallIds.stream()
+    /**
+     * Children are not kept by the record, they are looked up every time, see {@link CallRecordCache}
+     */
+    public List<CallRecord> getChildren() throws StorageException {
+        return getChildrenCallIds().stream()
                 .map(recordingState::getCallRecord)
                 .collect(Collectors.toList());
     }
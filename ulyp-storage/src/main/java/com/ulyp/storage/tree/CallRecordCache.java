@@ -0,0 +1,180 @@
+package com.ulyp.storage.tree;
+
+import com.ulyp.core.recorders.ObjectRecord;
+import com.ulyp.core.recorders.basic.StringObjectRecord;
+import lombok.Builder;
+import lombok.Value;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded cache of call records which is shared by all recordings of a {@link CallRecordTree}. Records are
+ * keyed by unique call id. Only records of completed calls are cached, since they never change.
+ * <p>
+ * Records are evicted with CLOCK (second chance) policy which approximates LRU. Lookups never block and only mark
+ * the record as recently used. Records are evicted in insertion order, but a record which is used since it was checked
+ * last time is kept for another round. Only one thread evicts records at a time, other threads never wait for it.
+ * <p>
+ * Size of a record is estimated from its content, so the bound is approximate. It may also be exceeded for a short time
+ * while some records are being added concurrently
+ */
+public class CallRecordCache {
+
+    private static final int CALL_RECORD_OVERHEAD = 128;
+    private static final int OBJECT_RECORD_OVERHEAD = 32;
+
+    private final long maxBytes;
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    // Clock hand goes through entries in insertion order. Entries which are referenced are moved to the tail
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes maximum estimated size of all cached records, if 0 then records are never cached
+     */
+    public CallRecordCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Nullable
+    public CallRecord get(long callId) {
+        Entry entry = entries.get(callId);
+        if (entry != null) {
+            hits.increment();
+            // Avoid writing to the entry if it's already marked, since it's read by many threads
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            return entry.callRecord;
+        } else {
+            misses.increment();
+            return null;
+        }
+    }
+
+    public void put(long callId, CallRecord callRecord) {
+        int size = estimateSize(callRecord);
+        if (size > maxBytes) {
+            return;
+        }
+        Entry entry = new Entry(callId, callRecord, size);
+        // Records never change, so if some other thread has already cached the record, then there is nothing to do
+        if (entries.putIfAbsent(callId, entry) != null) {
+            return;
+        }
+        clock.add(entry);
+        bytes.addAndGet(size);
+
+        // If some other thread is evicting, it checks the size once again after it's done
+        while (bytes.get() > maxBytes && evictionLock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void evict() {
+        // Records which are used all the time get only one second chance, so that the hand doesn't go round forever
+        int secondChances = entries.size();
+        while (bytes.get() > maxBytes) {
+            Entry entry = clock.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entry.referenced && secondChances > 0) {
+                entry.referenced = false;
+                secondChances--;
+                clock.add(entry);
+            } else if (entries.remove(entry.callId, entry)) {
+                bytes.addAndGet(-entry.size);
+                evictions.increment();
+            }
+        }
+    }
+
+    public void clear() {
+        evictionLock.lock();
+        try {
+            Entry entry;
+            while ((entry = clock.poll()) != null) {
+                if (entries.remove(entry.callId, entry)) {
+                    bytes.addAndGet(-entry.size);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        return Stats.builder()
+            .maxBytes(maxBytes)
+            .bytes(bytes.get())
+            .entries(entries.size())
+            .hits(hits.sum())
+            .misses(misses.sum())
+            .evictions(evictions.sum())
+            .build();
+    }
+
+    private static int estimateSize(CallRecord callRecord) {
+        long size = CALL_RECORD_OVERHEAD;
+        for (ObjectRecord arg : callRecord.getArgs()) {
+            size += estimateSize(arg);
+        }
+        size += estimateSize(callRecord.getCallee());
+        size += estimateSize(callRecord.getReturnValue());
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    private static long estimateSize(ObjectRecord objectRecord) {
+        if (objectRecord instanceof StringObjectRecord) {
+            String value = ((StringObjectRecord) objectRecord).value();
+            return OBJECT_RECORD_OVERHEAD + (value != null ? 2L * value.length() : 0L);
+        }
+        return OBJECT_RECORD_OVERHEAD;
+    }
+
+    private static class Entry {
+
+        private final long callId;
+        private final CallRecord callRecord;
+        private final int size;
+        private volatile boolean referenced;
+
+        private Entry(long callId, CallRecord callRecord, int size) {
+            this.callId = callId;
+            this.callRecord = callRecord;
+            this.size = size;
+        }
+    }
+
+    @Value
+    @Builder
+    public static class Stats {
+
+        long maxBytes;
+        long bytes;
+        int entries;
+        long hits;
+        long misses;
+        long evictions;
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests > 0 ? hits * 1.0d / requests : 0.0d;
+        }
+    }
+}
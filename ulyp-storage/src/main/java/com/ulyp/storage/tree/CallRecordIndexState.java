@@ -15,11 +15,112 @@ public class CallRecordIndexState {
     private final long enterMethodCallAddress;
     @Builder.Default
     private final LongArrayList childrenCallIds = new LongArrayList();
+    // Count of children if their ids are not loaded into childrenCallIds, -1 if all ids are loaded.
+    // See Index#getWithoutChildren
+    @Builder.Default
+    private final int childrenCount = -1;
     @Builder.Default
     private int subtreeSize = 1;
     @Builder.Default
     @Setter
     private long exitMethodCallAddr = -1;
+    // Nano time of enter method call, only needed until the call is completed
+    @Builder.Default
+    private long enterNanoTime = -1;
+    // Duration of the call, -1 if the call is not completed yet or timing is not recorded
+    @Builder.Default
+    private long nanosDuration = -1;
+    // Sum of durations of completed children calls, -1 if duration of some child is not known
+    @Builder.Default
+    private long childrenNanosDuration = 0;
+
+    public int getChildrenCount() {
+        return childrenCount >= 0 ? childrenCount : childrenCallIds.size();
+    }
+
+    /**
+     * @return true if ids of all children are loaded into {@link #getChildrenCallIds()}
+     */
+    public boolean isChildrenLoaded() {
+        return childrenCount < 0;
+    }
+
+    /**
+     * @return copy of children ids in range [fromIndex, toIndex), the range is clamped to the loaded children
+     */
+    public LongArrayList getChildrenCallIds(int fromIndex, int toIndex) {
+        int from = Math.max(0, fromIndex);
+        int to = Math.min(toIndex, childrenCallIds.size());
+        LongArrayList result = new LongArrayList(Math.max(0, to - from), Long.MIN_VALUE);
+        for (int i = from; i < to; i++) {
+            result.addLong(childrenCallIds.getLong(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return time spent in the call itself excluding its children or -1 if duration of the call or of any of its
+     * children is not known
+     */
+    public long getSelfNanos() {
+        if (nanosDuration < 0 || childrenNanosDuration < 0) {
+            return -1L;
+        }
+        return Math.max(0L, nanosDuration - childrenNanosDuration);
+    }
+
+    public void onExit(long exitNanoTime) {
+        if (enterNanoTime > 0 && exitNanoTime > 0) {
+            nanosDuration = exitNanoTime - enterNanoTime;
+        }
+    }
+
+    /**
+     * @param nanosDuration duration of the completed child call or -1 if it's not known
+     */
+    public void addChildrenNanosDuration(long nanosDuration) {
+        if (nanosDuration < 0) {
+            childrenNanosDuration = -1L;
+        } else if (childrenNanosDuration >= 0) {
+            childrenNanosDuration += nanosDuration;
+        }
+    }
+
+    /**
+     * @return copy of the state with the given children ids. Used to publish calls which are not completed yet,
+     * see {@link RecordingState}
+     */
+    CallRecordIndexState copy(LongArrayList childrenCallIds) {
+        return new CallRecordIndexState(
+            id,
+            enterMethodCallAddress,
+            childrenCallIds,
+            -1,
+            subtreeSize,
+            exitMethodCallAddr,
+            enterNanoTime,
+            nanosDuration,
+            childrenNanosDuration
+        );
+    }
+
+    /**
+     * @return copy of the state which only keeps the count of children. Used by indices which store children ids
+     * separately from the state
+     */
+    CallRecordIndexState withoutChildren() {
+        return new CallRecordIndexState(
+            id,
+            enterMethodCallAddress,
+            new LongArrayList(),
+            getChildrenCount(),
+            subtreeSize,
+            exitMethodCallAddr,
+            enterNanoTime,
+            nanosDuration,
+            childrenNanosDuration
+        );
+    }
 
     public void incrementSubtreeSize() {
         subtreeSize++;
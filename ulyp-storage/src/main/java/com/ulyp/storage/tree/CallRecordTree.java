@@ -5,17 +5,24 @@ import com.ulyp.core.ProcessMetadata;
 import com.ulyp.core.RecordingMetadata;
 import com.ulyp.core.Type;
 import com.ulyp.core.repository.InMemoryRepository;
-import com.ulyp.core.repository.Repository;
 import com.ulyp.core.util.Backoff;
-import com.ulyp.core.util.FixedDelayBackoff;
+import com.ulyp.core.util.SystemPropertyUtil;
 import com.ulyp.storage.StorageException;
+import com.ulyp.storage.reader.RecordedCallIndex;
 import com.ulyp.storage.reader.RecordedMethodCalls;
 import com.ulyp.storage.reader.RecordingDataReader;
 import com.ulyp.storage.reader.RecordingDataReaderJob;
+import com.ulyp.storage.toc.TableOfContents;
+import com.ulyp.storage.util.PartitionedExecutor;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -24,17 +31,42 @@ import java.util.stream.Collectors;
 
 /**
  * Primary call tree implementation which is used by tests and UI (thus is located here)
+ * <p>
+ * The recording file is read by a single thread, which also handles types, methods and recording metadata. Recorded calls
+ * are then routed to builder threads by recording id, since every recording is built independently. Calls of the same
+ * recording are always processed by the same builder thread in the file order.
  */
+@Slf4j
 public class CallRecordTree implements AutoCloseable {
 
+    private static final long CHECKPOINT_INTERVAL_BYTES = SystemPropertyUtil.getInt("ulyp.index.checkpoint-interval-mb", 256) * 1024L * 1024L;
+    // Limits memory used by chunks which are already read, but not yet processed by builder threads
+    private static final int MAX_CHUNKS_IN_FLIGHT = SystemPropertyUtil.getInt("ulyp.tree.max-chunks-in-flight", 64);
+    static final Duration DEFAULT_UPDATE_INTERVAL = Duration.ofMillis(SystemPropertyUtil.getInt("ulyp.tree.update-interval-ms", 16));
+
     private final RecordingDataReader dataReader;
     private final boolean readContinuously;
     @Getter
     private final CompletableFuture<Void> completeFuture;
     private final InMemoryRepository<Integer, Type> types = new InMemoryRepository<>();
-    private final Repository<Integer, Method> methods = new InMemoryRepository<>();
+    private final InMemoryRepository<Integer, Method> methods = new InMemoryRepository<>();
     private final InMemoryRepository<Integer, RecordingState> recordings = new InMemoryRepository<>();
     private final Index index;
+    @Nullable
+    private final IndexSidecar indexSidecar;
+    private final PartitionedExecutor builders;
+    private final boolean methodPostings;
+    /**
+     * Call records of all recordings which are cached, hit rate is shown in the UI
+     */
+    @Getter
+    private final CallRecordCache callRecordCache;
+    private final RecordingUpdateCoalescer updates;
+    /**
+     * Id of the only recording which is built or -1 if all recordings of the file are built
+     */
+    private final int recordingId;
+    private final CallRecordTreeBuildingJob buildingJob;
     private volatile RecordingListener recordingListener;
     private final Lock listenerLock = new ReentrantLock();
 
@@ -42,11 +74,37 @@ public class CallRecordTree implements AutoCloseable {
                    RecordingListener recordingListener,
                    Supplier<Index> indexSupplier,
                    boolean readContinuously) {
+        this(dataReader, recordingListener, indexSupplier, null, readContinuously, 1, true, new CallRecordCache(0), Duration.ZERO, -1);
+    }
+
+    CallRecordTree(RecordingDataReader dataReader,
+                   RecordingListener recordingListener,
+                   Supplier<Index> indexSupplier,
+                   @Nullable IndexSidecar indexSidecar,
+                   boolean readContinuously,
+                   int buildThreads,
+                   boolean methodPostings,
+                   CallRecordCache callRecordCache,
+                   Duration updateInterval,
+                   int recordingId) {
         this.recordingListener = recordingListener;
         this.index = indexSupplier.get();
+        this.indexSidecar = indexSidecar;
+        this.builders = new PartitionedExecutor("CallRecordTree-builder", buildThreads, MAX_CHUNKS_IN_FLIGHT);
         this.dataReader = dataReader;
         this.readContinuously = readContinuously;
-        this.completeFuture = this.dataReader.submitReaderJob(new CallRecordTreeBuildingJob());
+        this.methodPostings = methodPostings;
+        this.callRecordCache = callRecordCache;
+        this.updates = new RecordingUpdateCoalescer(updateInterval, this::publishUpdates);
+        this.recordingId = recordingId;
+        this.buildingJob = new CallRecordTreeBuildingJob();
+        // A single recording of a complete file is built by reading only its lists if the file has table of contents
+        TableOfContents tableOfContents = recordingId >= 0 && !readContinuously ? dataReader.getTableOfContents() : null;
+        if (tableOfContents != null) {
+            this.completeFuture = this.dataReader.submitReaderJob(buildingJob, tableOfContents.getListAddresses(recordingId));
+        } else {
+            this.completeFuture = this.dataReader.submitSharedReaderJob(buildingJob);
+        }
     }
 
     public List<Recording> getRecordings() {
@@ -57,6 +115,54 @@ public class CallRecordTree implements AutoCloseable {
             .collect(Collectors.toList());
     }
 
+    /**
+     * @return all calls of the method in all published recordings. Calls are looked up by method postings, so it
+     * takes time proportional to the number of calls found rather than the size of recordings
+     * @throws StorageException if method postings are not maintained
+     */
+    public List<CallRecord> getCallsOfMethod(int methodId) throws StorageException {
+        List<CallRecord> calls = new ArrayList<>();
+        for (RecordingState recordingState : recordings.values()) {
+            if (!recordingState.isPublished()) {
+                continue;
+            }
+            long[] callIds = recordingState.getCallIdsOfMethod(methodId);
+            if (callIds == null) {
+                throw new StorageException("Method postings are not maintained for recording " + recordingState.getId());
+            }
+            for (long callId : callIds) {
+                CallRecord callRecord = recordingState.getCallRecord(callId);
+                // Calls which are only read, but not yet processed by the tree may not have a state yet
+                if (callRecord != null) {
+                    calls.add(callRecord);
+                }
+            }
+        }
+        return calls;
+    }
+
+    /**
+     * @return number of calls of the method by recording id, only published recordings which called the method
+     * are included
+     * @throws StorageException if method postings are not maintained
+     */
+    public Map<Integer, Integer> getCallCountsOfMethod(int methodId) throws StorageException {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (RecordingState recordingState : recordings.values()) {
+            if (!recordingState.isPublished()) {
+                continue;
+            }
+            int count = recordingState.getCallCountOfMethod(methodId);
+            if (count < 0) {
+                throw new StorageException("Method postings are not maintained for recording " + recordingState.getId());
+            }
+            if (count > 0) {
+                counts.put(recordingState.getId(), count);
+            }
+        }
+        return counts;
+    }
+
     public ProcessMetadata getProcessMetadata() {
         return dataReader.getProcessMetadata();
     }
@@ -66,7 +172,23 @@ public class CallRecordTree implements AutoCloseable {
         try {
             dataReader.close();
         } finally {
+            buildingJob.closeBackoff();
+            builders.close();
+            updates.close();
             index.close();
+            callRecordCache.clear();
+        }
+    }
+
+    private void publishUpdates(List<RecordingState> updated, long address) {
+        listenerLock.lock();
+        try {
+            for (RecordingState recording : updated) {
+                recordingListener.onRecordingUpdated(recording.toRecording());
+            }
+            recordingListener.onProgressUpdated(address * 1.0d / dataReader.bytesAvailable());
+        } finally {
+            listenerLock.unlock();
         }
     }
 
@@ -86,7 +208,30 @@ public class CallRecordTree implements AutoCloseable {
 
     private class CallRecordTreeBuildingJob implements RecordingDataReaderJob {
 
-        private final Backoff backoff = new FixedDelayBackoff(Duration.ofMillis(100));
+        // Live recordings are tailed, so that new calls are read as soon as they are written
+        @Nullable
+        private final Backoff backoff = readContinuously ? dataReader.newTailBackoff() : null;
+        private long address = 0L;
+        private long lastCheckpointAddress = 0L;
+        private boolean recordingComplete = false;
+
+        @Override
+        public void onStart() {
+            IndexCheckpoint checkpoint = indexSidecar != null ? indexSidecar.getCheckpoint() : null;
+            if (checkpoint != null && methodPostings && !checkpoint.hasMethodPostings()) {
+                // Postings can only be built by reading all calls, so the file is read from the start
+                log.info("Index checkpoint has no method postings, index will be rebuilt");
+                checkpoint = null;
+            }
+            if (checkpoint != null) {
+                restore(checkpoint);
+            }
+        }
+
+        @Override
+        public long startAddress() {
+            return address;
+        }
 
         @Override
         public void onProcessMetadata(ProcessMetadata processMetadata) {
@@ -95,6 +240,10 @@ public class CallRecordTree implements AutoCloseable {
 
         @Override
         public void onRecordingMetadata(RecordingMetadata recordingMetadata) {
+            // Calls of recordings which are not built are skipped since there is no state for them
+            if (recordingId >= 0 && recordingMetadata.getId() != recordingId) {
+                return;
+            }
             RecordingState recordingState = recordings.computeIfAbsent(
                 recordingMetadata.getId(),
                 () -> new RecordingState(
@@ -102,7 +251,9 @@ public class CallRecordTree implements AutoCloseable {
                     index,
                     dataReader,
                     methods,
-                    types)
+                    types,
+                    methodPostings,
+                    callRecordCache)
             );
             recordingState.update(recordingMetadata);
         }
@@ -119,34 +270,58 @@ public class CallRecordTree implements AutoCloseable {
 
         @Override
         public void onRecordedCalls(long address, RecordedMethodCalls recordedMethodCalls) {
-            if (recordedMethodCalls.isEmpty()) {
-                return;
-            }
             int recordingId = recordedMethodCalls.getRecordingId();
             RecordingState recording = recordings.get(recordingId);
             if (recording == null) {
                 return;
             }
-            listenerLock.lock();
-            try {
+            if (recording.isCallIndexed()) {
+                // Index refers to chunks by ordinals, so even empty chunks are tracked. The tree is updated with the index
+                builders.execute(recordingId, () -> recording.onNewRecordedCallsChunk(address, recordedMethodCalls));
+                return;
+            }
+            if (recordedMethodCalls.isEmpty()) {
+                return;
+            }
+            builders.execute(recordingId, () -> {
                 recording.onNewRecordedCalls(address, recordedMethodCalls);
-                if (recording.isPublished()) {
-                    recordingListener.onRecordingUpdated(recording.toRecording());
-                } else {
-                    Recording converted = recording.toRecording();
-                    if (recording.getRoot() != null && true/*settings.getFilter().shouldPublish(converted)*/ && recording.publish()) {
-                        recordingListener.onRecordingUpdated(converted);
-                    }
+                onRecordingUpdated(recording, address);
+            });
+        }
+
+        @Override
+        public void onCallIndex(long address, RecordedCallIndex callIndex) {
+            RecordingState recording = recordings.get(callIndex.getRecordingId());
+            if (recording == null) {
+                return;
+            }
+            builders.execute(callIndex.getRecordingId(), () -> {
+                recording.onNewCallIndex(callIndex);
+                onRecordingUpdated(recording, address);
+            });
+        }
+
+        private void onRecordingUpdated(RecordingState recording, long address) {
+            // Recordings are published right away, only listener notifications are coalesced
+            if (!recording.isPublished()) {
+                if (recording.getRoot() == null || !true/*settings.getFilter().shouldPublish(recording.toRecording())*/ || !recording.publish()) {
+                    return;
                 }
-                recordingListener.onProgressUpdated(address * 1.0d / dataReader.bytesAvailable());
-            } finally {
-                listenerLock.unlock();
+            }
+            updates.onUpdated(recording, address);
+        }
+
+        @Override
+        public void onListProcessed(long nextAddress) {
+            address = nextAddress;
+            if (indexSidecar != null && address - lastCheckpointAddress >= CHECKPOINT_INTERVAL_BYTES) {
+                checkpoint();
             }
         }
 
         @Override
         public boolean continueOnNoData() {
-            if (readContinuously) {
+            if (backoff != null && !recordingComplete) {
                 try {
                     backoff.await();
                 } catch (InterruptedException e) {
@@ -158,5 +333,82 @@ public class CallRecordTree implements AutoCloseable {
                 return false;
             }
         }
+
+        @Override
+        public void onEnd(boolean recordingComplete) {
+            this.recordingComplete |= recordingComplete;
+            closeBackoff();
+            // The job (and thus the tree building) is only complete once all chunks which are read are processed
+            builders.awaitCompletion();
+            // Listener must see the last updates by the time the tree is complete
+            updates.publish();
+            if (indexSidecar != null) {
+                checkpoint();
+            }
+        }
+
+        private void closeBackoff() {
+            if (backoff != null) {
+                backoff.close();
+            }
+        }
+
+        private void checkpoint() {
+            // All chunks before the checkpoint address must be processed
+            builders.awaitCompletion();
+            // States must be durable before the checkpoint which references them is stored
+            index.flush();
+
+            List<IndexCheckpoint.RecordingCheckpoint> recordingCheckpoints = new ArrayList<>();
+            for (RecordingState recordingState : recordings.values()) {
+                recordingCheckpoints.add(recordingState.checkpoint());
+            }
+            indexSidecar.saveCheckpoint(
+                IndexCheckpoint.builder()
+                    .address(address)
+                    .completed(recordingComplete)
+                    .types(new ArrayList<>(types.values()))
+                    .methods(new ArrayList<>(methods.values()))
+                    .recordings(recordingCheckpoints)
+                    .build()
+            );
+            lastCheckpointAddress = address;
+        }
+
+        private void restore(IndexCheckpoint checkpoint) {
+            for (Type type : checkpoint.getTypes()) {
+                types.store(type.getId(), type);
+            }
+            for (Method method : checkpoint.getMethods()) {
+                methods.store(method.getId(), method);
+            }
+
+            listenerLock.lock();
+            try {
+                for (IndexCheckpoint.RecordingCheckpoint recordingCheckpoint : checkpoint.getRecordings()) {
+                    RecordingState recordingState = new RecordingState(
+                        recordingCheckpoint.getMetadata(),
+                        index,
+                        dataReader,
+                        methods,
+                        types,
+                        methodPostings,
+                        callRecordCache
+                    );
+                    recordingState.restore(recordingCheckpoint);
+                    recordings.store(recordingState.getId(), recordingState);
+                    if (recordingState.isPublished()) {
+                        recordingListener.onRecordingUpdated(recordingState.toRecording());
+                    }
+                }
+                recordingListener.onProgressUpdated(checkpoint.getAddress() * 1.0d / dataReader.bytesAvailable());
+            } finally {
+                listenerLock.unlock();
+            }
+
+            address = checkpoint.getAddress();
+            lastCheckpointAddress = checkpoint.getAddress();
+            recordingComplete = checkpoint.isCompleted();
+        }
     }
 }
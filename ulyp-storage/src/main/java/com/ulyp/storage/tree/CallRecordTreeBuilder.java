@@ -1,15 +1,29 @@
 package com.ulyp.storage.tree;
 
+import com.ulyp.core.util.SystemPropertyUtil;
 import com.ulyp.storage.reader.RecordingDataReader;
 
+import java.time.Duration;
 import java.util.function.Supplier;
 
 public class CallRecordTreeBuilder {
 
+    private static final int DEFAULT_BUILD_THREADS = SystemPropertyUtil.getInt(
+        "ulyp.tree.build-threads",
+        Math.min(4, Runtime.getRuntime().availableProcessors())
+    );
+    private static final long DEFAULT_CALL_RECORD_CACHE_BYTES = SystemPropertyUtil.getInt("ulyp.tree.call-record-cache-mb", 64) * 1024L * 1024L;
+
     private final RecordingDataReader dataReader;
     private boolean readInfinitely = true;
     private RecordingListener recordingListener = RecordingListener.empty();
     private Supplier<Index> indexSupplier = InMemoryIndex::new;
+    private IndexSidecar indexSidecar = null;
+    private int buildThreads = DEFAULT_BUILD_THREADS;
+    private boolean methodPostings = true;
+    private long callRecordCacheBytes = DEFAULT_CALL_RECORD_CACHE_BYTES;
+    private Duration updateInterval = CallRecordTree.DEFAULT_UPDATE_INTERVAL;
+    private int recordingId = -1;
 
     public CallRecordTreeBuilder(RecordingDataReader dataReader) {
         this.dataReader = dataReader;
@@ -30,7 +44,77 @@ public class CallRecordTreeBuilder {
         return this;
     }
 
+    /**
+     * Allows to resume building the tree from the last checkpoint of the sidecar. The index supplier must
+     * supply the persistent index located in {@link IndexSidecar#getIndexDirectory()}
+     */
+    public CallRecordTreeBuilder setIndexSidecar(IndexSidecar indexSidecar) {
+        this.indexSidecar = indexSidecar;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads which build recordings. Recordings are built independently, so
+     * files with many recordings (i.e. recorded in many threads) are built faster. If set to 1,
+     * the tree is built by the thread which reads the file
+     */
+    public CallRecordTreeBuilder setBuildThreads(int buildThreads) {
+        this.buildThreads = buildThreads;
+        return this;
+    }
+
+    /**
+     * Sets whether call ids of every method are maintained, see {@link CallRecordTree#getCallsOfMethod}. Postings
+     * take about a byte per call. If the agent writes the call index, maintaining postings requires recorded calls
+     * to be decoded, which otherwise isn't needed
+     */
+    public CallRecordTreeBuilder setMethodPostings(boolean methodPostings) {
+        this.methodPostings = methodPostings;
+        return this;
+    }
+
+    /**
+     * Sets the maximum estimated size of call records which are cached, see {@link CallRecordCache}. If set to 0,
+     * call records are always read from the file
+     */
+    public CallRecordTreeBuilder setCallRecordCacheBytes(long callRecordCacheBytes) {
+        this.callRecordCacheBytes = callRecordCacheBytes;
+        return this;
+    }
+
+    /**
+     * Sets how often the recording listener is notified at most. Updates of recordings made within the interval
+     * are coalesced, so that every updated recording is passed to the listener once per interval. Defaults to 16 ms
+     * (i.e. a frame at 60 FPS). If set to zero, the listener is notified on every update by builder threads
+     */
+    public CallRecordTreeBuilder setUpdateInterval(Duration updateInterval) {
+        this.updateInterval = updateInterval;
+        return this;
+    }
+
+    /**
+     * Restricts the tree to a single recording. If the file is complete and has the table of contents
+     * (see {@link com.ulyp.storage.toc.TableOfContents}) and the tree is not read infinitely, only lists of the recording
+     * are read, otherwise lists of other recordings are skipped while the whole file is read. The index sidecar is not
+     * used for a single recording
+     */
+    public CallRecordTreeBuilder setRecordingId(int recordingId) {
+        this.recordingId = recordingId;
+        return this;
+    }
+
     public CallRecordTree build() {
-        return new CallRecordTree(dataReader, recordingListener, indexSupplier, readInfinitely);
+        return new CallRecordTree(
+            dataReader,
+            recordingListener,
+            indexSupplier,
+            recordingId >= 0 ? null : indexSidecar,
+            readInfinitely,
+            buildThreads,
+            methodPostings,
+            new CallRecordCache(callRecordCacheBytes),
+            updateInterval,
+            recordingId
+        );
     }
 }
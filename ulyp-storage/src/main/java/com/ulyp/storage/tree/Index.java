@@ -1,5 +1,9 @@
 package com.ulyp.storage.tree;
 
+import org.agrona.collections.LongArrayList;
+
+import java.util.List;
+
 /**
  * Index is used to store record call states tree. Every state usually includes enter and exit record calls addresses
  * (address is relative position in the recording file), children ids and subtree size.
@@ -9,7 +13,45 @@ public interface Index extends AutoCloseable {
 
     CallRecordIndexState get(long id);
 
+    /**
+     * Reads the state without necessarily reading ids of its children. Calls may have millions of children,
+     * so implementations which store children separately only return their count, see
+     * {@link CallRecordIndexState#getChildrenCount()}
+     */
+    default CallRecordIndexState getWithoutChildren(long id) {
+        return get(id);
+    }
+
+    /**
+     * @return ids of children of the call in range [fromIndex, toIndex), the range is clamped to the children count.
+     * Implementations which store children in chunks only read chunks which intersect with the range
+     */
+    default LongArrayList getChildrenCallIds(long id, int fromIndex, int toIndex) {
+        CallRecordIndexState callState = get(id);
+        if (callState == null) {
+            return new LongArrayList();
+        }
+        return callState.getChildrenCallIds(fromIndex, toIndex);
+    }
+
     void store(long id, CallRecordIndexState callState);
 
+    /**
+     * Stores all states at once. Every state is stored by its id. Disk based implementations should
+     * apply the whole batch in a single write which is much cheaper than storing states one by one.
+     */
+    default void storeAll(List<CallRecordIndexState> callStates) {
+        for (CallRecordIndexState callState : callStates) {
+            store(callState.getId(), callState);
+        }
+    }
+
+    /**
+     * Makes all stored states durable. Only makes sense for persistent indices which are reopened later,
+     * see {@link IndexSidecar}
+     */
+    default void flush() {
+    }
+
     void close() throws RuntimeException;
 }
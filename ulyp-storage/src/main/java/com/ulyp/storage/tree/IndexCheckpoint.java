@@ -0,0 +1,68 @@
+package com.ulyp.storage.tree;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Everything which is needed to resume building a call record tree from some address of the recording file,
+ * except for the call states which are already stored to the persistent index.
+ */
+@Getter
+@Builder
+public class IndexCheckpoint {
+
+    /**
+     * Address of the next binary list to read. All binary lists before this address are indexed
+     */
+    private final long address;
+    /**
+     * Whether the recording file is complete, i.e. there is nothing to read after the address
+     */
+    private final boolean completed;
+    private final List<Type> types;
+    private final List<Method> methods;
+    private final List<RecordingCheckpoint> recordings;
+
+    /**
+     * @return true if method postings of all recordings are stored with the checkpoint
+     */
+    boolean hasMethodPostings() {
+        for (RecordingCheckpoint recording : recordings) {
+            if (recording.getMethodPostings() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Getter
+    @Builder
+    public static class RecordingCheckpoint {
+
+        private final RecordingMetadata metadata;
+        private final int nextCallId;
+        private final long rootUniqueId;
+        private final boolean published;
+        /**
+         * Calls which are not yet completed (from the bottom to the top of the call stack)
+         */
+        private final List<CallRecordIndexState> callStack;
+        /**
+         * Addresses of recorded calls lists of the recording, only present if call index is written by the agent
+         */
+        private final long[] chunkAddresses;
+        /**
+         * Call ids by method id, null if postings are not maintained
+         */
+        @Nullable
+        @Getter(AccessLevel.PACKAGE)
+        private final MethodPostings methodPostings;
+    }
+}
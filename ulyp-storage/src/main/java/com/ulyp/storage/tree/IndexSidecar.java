@@ -0,0 +1,216 @@
+package com.ulyp.storage.tree;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.bytes.BufferBytesOut;
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.bytes.BytesOut;
+import com.ulyp.core.bytes.DirectBytesIn;
+import com.ulyp.core.serializers.MethodSerializer;
+import com.ulyp.core.serializers.RecordingMetadataSerializer;
+import com.ulyp.core.serializers.TypeSerializer;
+import com.ulyp.core.util.FileUtil;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.util.RecordingFileChecksum;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent index which is stored next to the recording file, i.e. index of recording.dat is stored
+ * in recording.dat.idx directory. Once the recording file is opened again, building the call record tree
+ * is resumed from the last checkpoint rather than from the beginning of the file.
+ * <p>
+ * Besides the index itself, the directory contains the last checkpoint. Its header contains the length of the
+ * indexed part of the recording file and its checksum. If the recording file doesn't match the header (i.e. it's
+ * been rewritten), the whole directory is dropped and the index is built from scratch.
+ */
+@Slf4j
+public class IndexSidecar {
+
+    public static final String DIRECTORY_SUFFIX = ".idx";
+
+    private static final long MAGIC = 0x756C7970_49445853L;
+    private static final int VERSION = 5;
+    private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES + Byte.BYTES;
+
+    private final File recordingFile;
+    private final Path checkpointFile;
+    @Getter
+    private final Path indexDirectory;
+    @Nullable
+    @Getter
+    private final IndexCheckpoint checkpoint;
+    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(64 * 1024);
+
+    private IndexSidecar(File recordingFile, Path directory, @Nullable IndexCheckpoint checkpoint) {
+        this.recordingFile = recordingFile;
+        this.checkpointFile = directory.resolve("checkpoint");
+        this.indexDirectory = directory.resolve("index");
+        this.checkpoint = checkpoint;
+    }
+
+    public static Path directoryOf(File recordingFile) {
+        return recordingFile.toPath().resolveSibling(recordingFile.getName() + DIRECTORY_SUFFIX);
+    }
+
+    /**
+     * Opens the sidecar of the recording file. Creates the directory if it doesn't exist yet or if the existing
+     * index doesn't match the recording file.
+     */
+    public static IndexSidecar open(File recordingFile) throws StorageException {
+        Path directory = directoryOf(recordingFile);
+        try {
+            IndexCheckpoint checkpoint = null;
+            Path checkpointFile = directory.resolve("checkpoint");
+            if (Files.exists(checkpointFile)) {
+                checkpoint = readCheckpoint(recordingFile, checkpointFile);
+            }
+            if (checkpoint == null) {
+                // Index without a valid checkpoint may contain states which don't belong to the recording file
+                FileUtil.deleteDirectory(directory);
+            }
+            Files.createDirectories(directory.resolve("index"));
+            return new IndexSidecar(recordingFile, directory, checkpoint);
+        } catch (IOException e) {
+            throw new StorageException("Could not open index directory " + directory, e);
+        }
+    }
+
+    /**
+     * Stores the checkpoint. All call states popped before the checkpoint address must already be flushed
+     * to the index
+     */
+    synchronized void saveCheckpoint(IndexCheckpoint checkpoint) throws StorageException {
+        try {
+            BufferBytesOut out = new BufferBytesOut(buffer);
+            out.write(MAGIC);
+            out.write(VERSION);
+            out.write(checkpoint.getAddress());
+            out.write(RecordingFileChecksum.of(recordingFile, checkpoint.getAddress()));
+            out.write(checkpoint.isCompleted());
+            writeBody(out, checkpoint);
+
+            byte[] bytes = new byte[out.position()];
+            buffer.getBytes(0, bytes);
+
+            // Checkpoint is replaced atomically, so that the index is never left with a partially written one
+            Path tmpFile = checkpointFile.resolveSibling("checkpoint.tmp");
+            Files.write(tmpFile, bytes);
+            Files.move(tmpFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new StorageException("Could not save index checkpoint to " + checkpointFile, e);
+        }
+    }
+
+    @Nullable
+    private static IndexCheckpoint readCheckpoint(File recordingFile, Path checkpointFile) throws IOException {
+        BytesIn in = new DirectBytesIn(Files.readAllBytes(checkpointFile));
+        if (in.available() < HEADER_SIZE || in.readLong() != MAGIC || in.readInt() != VERSION) {
+            log.info("Index checkpoint {} has unsupported format and will be rebuilt", checkpointFile);
+            return null;
+        }
+        long address = in.readLong();
+        long checksum = in.readLong();
+        boolean completed = in.readBoolean();
+        if (recordingFile.length() < address || RecordingFileChecksum.of(recordingFile, address) != checksum) {
+            log.info("Recording file {} doesn't match index checkpoint, index will be rebuilt", recordingFile);
+            return null;
+        }
+        try {
+            return readBody(in, address, completed);
+        } catch (RuntimeException e) {
+            log.warn("Index checkpoint " + checkpointFile + " is corrupted and will be rebuilt", e);
+            return null;
+        }
+    }
+
+    private static void writeBody(BytesOut out, IndexCheckpoint checkpoint) {
+        out.write(checkpoint.getTypes().size());
+        for (Type type : checkpoint.getTypes()) {
+            TypeSerializer.instance.serialize(out, type);
+        }
+        out.write(checkpoint.getMethods().size());
+        for (Method method : checkpoint.getMethods()) {
+            MethodSerializer.instance.serialize(out, method);
+        }
+        out.write(checkpoint.getRecordings().size());
+        for (IndexCheckpoint.RecordingCheckpoint recording : checkpoint.getRecordings()) {
+            RecordingMetadataSerializer.instance.serialize(out, recording.getMetadata());
+            out.write(recording.getNextCallId());
+            out.write(recording.getRootUniqueId());
+            out.write(recording.isPublished());
+            out.write(recording.getCallStack().size());
+            for (CallRecordIndexState state : recording.getCallStack()) {
+                BinaryRecordedCallStateSerializer.instance.serialize(out, state);
+            }
+            out.write(recording.getChunkAddresses().length);
+            for (long chunkAddress : recording.getChunkAddresses()) {
+                out.write(chunkAddress);
+            }
+            out.write(recording.getMethodPostings() != null);
+            if (recording.getMethodPostings() != null) {
+                recording.getMethodPostings().writeTo(out);
+            }
+        }
+    }
+
+    private static IndexCheckpoint readBody(BytesIn in, long address, boolean completed) {
+        int typeCount = in.readInt();
+        List<Type> types = new ArrayList<>(typeCount);
+        for (int i = 0; i < typeCount; i++) {
+            types.add(TypeSerializer.instance.deserialize(in));
+        }
+        int methodCount = in.readInt();
+        List<Method> methods = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            methods.add(MethodSerializer.instance.deserialize(in));
+        }
+        int recordingCount = in.readInt();
+        List<IndexCheckpoint.RecordingCheckpoint> recordings = new ArrayList<>(recordingCount);
+        for (int i = 0; i < recordingCount; i++) {
+            RecordingMetadata metadata = RecordingMetadataSerializer.instance.deserialize(in);
+            int nextCallId = in.readInt();
+            long rootUniqueId = in.readLong();
+            boolean published = in.readBoolean();
+            int stackSize = in.readInt();
+            List<CallRecordIndexState> callStack = new ArrayList<>(stackSize);
+            for (int j = 0; j < stackSize; j++) {
+                callStack.add(BinaryRecordedCallStateSerializer.instance.deserialize(in));
+            }
+            long[] chunkAddresses = new long[in.readInt()];
+            for (int j = 0; j < chunkAddresses.length; j++) {
+                chunkAddresses[j] = in.readLong();
+            }
+            MethodPostings methodPostings = in.readBoolean() ? MethodPostings.readFrom(in) : null;
+            recordings.add(
+                IndexCheckpoint.RecordingCheckpoint.builder()
+                    .metadata(metadata)
+                    .nextCallId(nextCallId)
+                    .rootUniqueId(rootUniqueId)
+                    .published(published)
+                    .callStack(callStack)
+                    .chunkAddresses(chunkAddresses)
+                    .methodPostings(methodPostings)
+                    .build()
+            );
+        }
+        return IndexCheckpoint.builder()
+            .address(address)
+            .completed(completed)
+            .types(types)
+            .methods(methods)
+            .recordings(recordings)
+            .build();
+    }
+}
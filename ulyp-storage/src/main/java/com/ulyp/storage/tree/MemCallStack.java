@@ -3,8 +3,10 @@ package com.ulyp.storage.tree;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -46,4 +48,23 @@ public class MemCallStack {
     public CallRecordIndexState peek() {
         return deque.peekLast();
     }
+
+    /**
+     * @return all states from the bottom to the top of the stack
+     */
+    public List<CallRecordIndexState> states() {
+        return new ArrayList<>(deque);
+    }
+
+    /**
+     * Replaces the whole stack with the states (from bottom to top) previously returned by {@link #states()}
+     */
+    public void restore(List<CallRecordIndexState> states) {
+        deque.clear();
+        lookupIndex.clear();
+        for (CallRecordIndexState state : states) {
+            deque.add(state);
+            lookupIndex.put(state.getId(), state);
+        }
+    }
 }
@@ -0,0 +1,152 @@
+package com.ulyp.storage.tree;
+
+import com.ulyp.core.bytes.BytesIn;
+import com.ulyp.core.bytes.BytesOut;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntHashSet;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Postings of a single recording, i.e. ids of calls of every method in the order of enter calls. Call ids
+ * of a recording are ascending, so every posting list is stored as var int coded deltas, which usually takes
+ * a single byte per call.
+ * <p>
+ * Postings are only modified by the builder under the lock of the recording state. Readers never take the lock,
+ * they only see postings up to the count of calls of every list which the builder publishes along with
+ * the snapshot of the recording state. Bytes are only appended, so published lists share arrays
+ * with the lists which are being built, and never read past their watermark.
+ */
+class MethodPostings {
+
+    private final Int2ObjectHashMap<PostingList> postings = new Int2ObjectHashMap<>();
+    // Methods which are called since postings were published last time
+    private final IntHashSet changedMethods = new IntHashSet();
+    private final Map<Integer, PublishedPostingList> published = new ConcurrentHashMap<>();
+
+    void add(int methodId, int callId) {
+        PostingList postingList = postings.get(methodId);
+        if (postingList == null) {
+            postingList = new PostingList();
+            postings.put(methodId, postingList);
+        }
+        postingList.add(callId);
+        changedMethods.add(methodId);
+    }
+
+    /**
+     * Makes all calls added so far visible to readers. Only called by the builder
+     */
+    void publish() {
+        IntHashSet.IntIterator iterator = changedMethods.iterator();
+        while (iterator.hasNext()) {
+            int methodId = iterator.nextValue();
+            PostingList postingList = postings.get(methodId);
+            published.put(methodId, new PublishedPostingList(postingList.bytes, postingList.count));
+        }
+        changedMethods.clear();
+    }
+
+    /**
+     * @return number of published calls of the method
+     */
+    int count(int methodId) {
+        PublishedPostingList postingList = published.get(methodId);
+        return postingList != null ? postingList.count : 0;
+    }
+
+    /**
+     * @return published call ids of the method in ascending order
+     */
+    int[] callIds(int methodId) {
+        PublishedPostingList postingList = published.get(methodId);
+        return postingList != null ? decode(postingList.bytes, postingList.count) : new int[0];
+    }
+
+    void writeTo(BytesOut out) {
+        out.write(postings.size());
+        for (Integer methodId : postings.keySet()) {
+            PostingList postingList = postings.get(methodId);
+            out.write((int) methodId);
+            out.write(postingList.count);
+            out.write(postingList.lastCallId);
+            out.write(postingList.size);
+            for (int i = 0; i < postingList.size; i++) {
+                out.write(postingList.bytes[i]);
+            }
+        }
+    }
+
+    static MethodPostings readFrom(BytesIn in) {
+        MethodPostings methodPostings = new MethodPostings();
+        int methodCount = in.readInt();
+        for (int i = 0; i < methodCount; i++) {
+            int methodId = in.readInt();
+            PostingList postingList = new PostingList();
+            postingList.count = in.readInt();
+            postingList.lastCallId = in.readInt();
+            postingList.size = in.readInt();
+            postingList.bytes = new byte[Math.max(postingList.size, 8)];
+            for (int j = 0; j < postingList.size; j++) {
+                postingList.bytes[j] = in.readByte();
+            }
+            methodPostings.postings.put(methodId, postingList);
+            methodPostings.changedMethods.add(methodId);
+        }
+        return methodPostings;
+    }
+
+    private static int[] decode(byte[] bytes, int count) {
+        int[] callIds = new int[count];
+        int position = 0;
+        int callId = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            callId += delta;
+            callIds[i] = callId;
+        }
+        return callIds;
+    }
+
+    private static class PublishedPostingList {
+
+        private final byte[] bytes;
+        private final int count;
+
+        private PublishedPostingList(byte[] bytes, int count) {
+            this.bytes = bytes;
+            this.count = count;
+        }
+    }
+
+    private static class PostingList {
+
+        private byte[] bytes = new byte[8];
+        private int size = 0;
+        private int count = 0;
+        private int lastCallId = 0;
+
+        void add(int callId) {
+            if (bytes.length - size < 5) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int delta = callId - lastCallId;
+            while ((delta & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[size++] = (byte) delta;
+            lastCallId = callId;
+            count++;
+        }
+    }
+}
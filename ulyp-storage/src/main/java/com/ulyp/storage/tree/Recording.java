@@ -1,9 +1,12 @@
 package com.ulyp.storage.tree;
 
 import com.ulyp.core.RecordingMetadata;
+import org.agrona.collections.LongArrayList;
 import org.jetbrains.annotations.NotNull;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
 * Recording class represents a particular recorded method call along with all its child subcalls. There are
@@ -43,6 +46,29 @@ public class Recording {
         return recordingState.getCallRecord(callId);
     }
 
+    /**
+     * Reads call records in a batch. The lock of the recording is not held for the whole batch, so that the index
+     * could still be updated while a large batch is read
+     */
+    public List<CallRecord> getCallRecords(LongArrayList callIds) {
+        List<CallRecord> callRecords = new ArrayList<>(callIds.size());
+        for (int i = 0; i < callIds.size(); i++) {
+            callRecords.add(recordingState.getCallRecord(callIds.getLong(i)));
+        }
+        return callRecords;
+    }
+
+    public int getChildrenCount(long callId) {
+        return recordingState.getChildrenCount(callId);
+    }
+
+    /**
+     * @return ids of children of the call in range [fromIndex, toIndex), see {@link RecordingState#getChildrenCallIds(long, int, int)}
+     */
+    public LongArrayList getChildrenCallIds(long callId, int fromIndex, int toIndex) {
+        return recordingState.getChildrenCallIds(callId, fromIndex, toIndex);
+    }
+
     public Duration getLifetime() {
         return recordingState.getLifetime();
     }
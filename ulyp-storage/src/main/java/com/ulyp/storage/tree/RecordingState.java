@@ -3,20 +3,51 @@ package com.ulyp.storage.tree;
 import com.ulyp.core.*;
 import com.ulyp.core.repository.ReadableRepository;
 import com.ulyp.core.util.BitUtil;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.reader.RecordedCallIndex;
+import com.ulyp.storage.reader.RecordedMethodCallCursor;
 import com.ulyp.storage.reader.RecordedMethodCalls;
 import com.ulyp.storage.reader.RecordingDataReader;
 import lombok.Getter;
+import org.agrona.collections.LongArrayList;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * State of a single recording which is being built. Calls are only processed by the builder thread, which mutates
+ * the call stack under the lock of this object. Readers (i.e. UI) never take the lock. The builder publishes an
+ * immutable snapshot of calls on the stack after every batch of calls, and all other calls are read from the index.
+ * Calls which are popped from the stack are always stored to the index before the snapshot which doesn't have
+ * them is published. Method postings are published along with the snapshot, see {@link MethodPostings}.
+ */
 public class RecordingState {
 
     private final RecordingDataReader recordingDataReader;
     private final Index index;
     private final MemCallStack memCallStack = new MemCallStack();
+    // Call states which are popped from the stack while processing a single batch of calls. They are stored to index at once
+    private final List<CallRecordIndexState> poppedStates = new ArrayList<>();
     private final ReadableRepository<Integer, Method> methodRepository;
     private final ReadableRepository<Integer, Type> typeRepository;
     private final RecordingMetadata metadata;
+    private final CallRecordCache callRecordCache;
+    // Addresses of all recorded calls lists (chunks) of the recording, only tracked if call index is written by the agent
+    private final LongArrayList chunkAddresses = new LongArrayList();
+    // Children of calls which are not completed yet, only tracked if call index is written by the agent
+    private final Map<Long, LongArrayList> childrenOfOpenCalls = new HashMap<>();
+    // Call ids by method id, null if postings are disabled
+    @Nullable
+    private MethodPostings methodPostings;
+    // Copies of children lists of calls on the stack, only used by the builder to publish snapshots
+    private final Map<Long, PublishedChildren> publishedChildren = new HashMap<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
     @Getter
     private volatile boolean published = false;
 
@@ -29,7 +60,30 @@ public class RecordingState {
             RecordingDataReader recordingDataReader,
             ReadableRepository<Integer, Method> methodRepository,
             ReadableRepository<Integer, Type> typeRepository) {
+        this(metadata, index, recordingDataReader, methodRepository, typeRepository, false);
+    }
+
+    public RecordingState(
+            RecordingMetadata metadata,
+            Index index,
+            RecordingDataReader recordingDataReader,
+            ReadableRepository<Integer, Method> methodRepository,
+            ReadableRepository<Integer, Type> typeRepository,
+            boolean methodPostings) {
+        this(metadata, index, recordingDataReader, methodRepository, typeRepository, methodPostings, new CallRecordCache(0));
+    }
+
+    public RecordingState(
+            RecordingMetadata metadata,
+            Index index,
+            RecordingDataReader recordingDataReader,
+            ReadableRepository<Integer, Method> methodRepository,
+            ReadableRepository<Integer, Type> typeRepository,
+            boolean methodPostings,
+            CallRecordCache callRecordCache) {
         this.index = index;
+        this.callRecordCache = callRecordCache;
+        this.methodPostings = methodPostings ? new MethodPostings() : null;
         this.metadata = metadata;
         this.recordingDataReader = recordingDataReader;
         this.methodRepository = methodRepository;
@@ -37,25 +91,39 @@ public class RecordingState {
     }
 
     synchronized void onNewRecordedCalls(long fileAddr, RecordedMethodCalls recordedMethodCalls) {
-        AddressableItemIterator<RecordedMethodCall> iterator = recordedMethodCalls.iterator(typeRepository);
-        while (iterator.hasNext()) {
-            RecordedMethodCall value = iterator.next();
-            long relativeAddress = iterator.address();
+        try {
+            processRecordedCalls(fileAddr, recordedMethodCalls);
+        } finally {
+            index.storeAll(poppedStates);
+            poppedStates.clear();
+            publishSnapshot();
+        }
+    }
+
+    private void processRecordedCalls(long fileAddr, RecordedMethodCalls recordedMethodCalls) {
+        RecordedMethodCallCursor cursor = recordedMethodCalls.cursor();
+        while (cursor.hasNext()) {
+            cursor.next();
+            long relativeAddress = cursor.address();
 
-            if (value instanceof RecordedEnterMethodCall) {
-                long uniqueId = BitUtil.longFromInts(metadata.getId(), nextCallId++);
+            if (cursor.isEnter()) {
+                int callId = nextCallId++;
+                if (methodPostings != null) {
+                    methodPostings.add(cursor.methodId(), callId);
+                }
+                long uniqueId = BitUtil.longFromInts(metadata.getId(), callId);
                 if (rootUniqueId < 0) {
                     rootUniqueId = uniqueId;
                 }
                 CallRecordIndexState callState = CallRecordIndexState.builder()
                     .id(uniqueId)
                     .enterMethodCallAddress(fileAddr + relativeAddress)
+                    .enterNanoTime(cursor.nanoTime())
                     .build();
                 memCallStack.push(callState);
             } else {
 
-                RecordedExitMethodCall exitMethodCall = (RecordedExitMethodCall) value;
-                long uniqueId = BitUtil.longFromInts(metadata.getId(), (int) exitMethodCall.getCallId());
+                long uniqueId = BitUtil.longFromInts(metadata.getId(), cursor.callId());
                 CallRecordIndexState lastCallState = memCallStack.peek();
                 if (lastCallState == null || lastCallState.getId() != uniqueId) {
 /*
@@ -68,11 +136,145 @@ public class RecordingState {
 
                 memCallStack.pop();
                 lastCallState.setExitMethodCallAddr(fileAddr + relativeAddress);
-                index.store(lastCallState.getId(), lastCallState);
+                lastCallState.onExit(cursor.nanoTime());
+                CallRecordIndexState parentCallState = memCallStack.peek();
+                if (parentCallState != null) {
+                    parentCallState.addChildrenNanosDuration(lastCallState.getNanosDuration());
+                }
+                poppedStates.add(lastCallState);
+            }
+        }
+    }
+
+    /**
+     * Only called for recordings with call index. Calls are not decoded unless method postings are maintained,
+     * the address is only remembered so that the index could refer to the chunk. Call ids of enter calls are
+     * assigned by the agent sequentially, so postings are built by counting enter calls
+     */
+    synchronized void onNewRecordedCallsChunk(long fileAddr, RecordedMethodCalls recordedMethodCalls) {
+        chunkAddresses.addLong(fileAddr);
+        if (methodPostings != null) {
+            RecordedMethodCallCursor cursor = recordedMethodCalls.cursor();
+            while (cursor.hasNext()) {
+                cursor.next();
+                if (cursor.isEnter()) {
+                    methodPostings.add(cursor.methodId(), nextCallId++);
+                }
             }
         }
     }
 
+    /**
+     * Updates call states with the call index written by the agent for the last recorded calls chunk. Completed calls
+     * are stored to the index, while calls which are still open replace the call stack
+     */
+    synchronized void onNewCallIndex(RecordedCallIndex callIndex) {
+        List<CallRecordIndexState> openStates = new ArrayList<>();
+        try {
+            for (CallIndexEntry entry : callIndex) {
+                long uniqueId = BitUtil.longFromInts(metadata.getId(), entry.getCallId());
+                if (entry.getParentCallId() == 0) {
+                    rootUniqueId = uniqueId;
+                } else {
+                    addChild(BitUtil.longFromInts(metadata.getId(), entry.getParentCallId()), uniqueId);
+                }
+
+                LongArrayList children = entry.isCompleted() ? childrenOfOpenCalls.remove(uniqueId) : childrenOfOpenCalls.get(uniqueId);
+                if (children == null) {
+                    children = new LongArrayList();
+                    if (!entry.isCompleted()) {
+                        childrenOfOpenCalls.put(uniqueId, children);
+                    }
+                }
+                CallRecordIndexState callState = CallRecordIndexState.builder()
+                    .id(uniqueId)
+                    .enterMethodCallAddress(chunkAddresses.getLong(entry.getEnterChunk()) + entry.getEnterOffset())
+                    .childrenCallIds(children)
+                    .subtreeSize(entry.getSubtreeSize())
+                    .exitMethodCallAddr(entry.isCompleted() ? chunkAddresses.getLong(entry.getExitChunk()) + entry.getExitOffset() : -1)
+                    .build();
+                if (entry.isCompleted()) {
+                    poppedStates.add(callState);
+                } else {
+                    openStates.add(callState);
+                }
+            }
+            memCallStack.restore(openStates);
+        } finally {
+            index.storeAll(poppedStates);
+            poppedStates.clear();
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Publishes copies of all calls on the stack. Children lists are copied incrementally, since calls on the
+     * bottom of the stack may have millions of children
+     */
+    private void publishSnapshot() {
+        List<CallRecordIndexState> states = memCallStack.states();
+        Map<Long, CallRecordIndexState> openStates = new HashMap<>(states.size() * 2);
+        for (CallRecordIndexState callState : states) {
+            PublishedChildren children = publishedChildren.computeIfAbsent(callState.getId(), id -> new PublishedChildren());
+            openStates.put(callState.getId(), callState.copy(children.update(callState.getChildrenCallIds())));
+        }
+        publishedChildren.keySet().retainAll(openStates.keySet());
+        if (methodPostings != null) {
+            methodPostings.publish();
+        }
+        snapshot = new Snapshot(openStates, rootUniqueId, methodPostings);
+    }
+
+    private void addChild(long parentId, long childId) {
+        LongArrayList children = childrenOfOpenCalls.computeIfAbsent(parentId, id -> new LongArrayList());
+        // Open calls are listed in every index until they complete, but they are always the last children of their parents
+        if (children.isEmpty() || children.getLong(children.size() - 1) != childId) {
+            children.addLong(childId);
+        }
+    }
+
+    synchronized boolean isCallIndexed() {
+        return metadata.isCallIndexed();
+    }
+
+    synchronized IndexCheckpoint.RecordingCheckpoint checkpoint() {
+        return IndexCheckpoint.RecordingCheckpoint.builder()
+                .metadata(metadata)
+                .nextCallId(nextCallId)
+                .rootUniqueId(rootUniqueId)
+                .published(published)
+                .callStack(memCallStack.states())
+                .chunkAddresses(chunkAddresses.toLongArray())
+                .methodPostings(methodPostings)
+                .build();
+    }
+
+    synchronized void restore(IndexCheckpoint.RecordingCheckpoint checkpoint) {
+        nextCallId = checkpoint.getNextCallId();
+        rootUniqueId = checkpoint.getRootUniqueId();
+        published = checkpoint.isPublished();
+        memCallStack.restore(checkpoint.getCallStack());
+        chunkAddresses.clear();
+        for (long chunkAddress : checkpoint.getChunkAddresses()) {
+            chunkAddresses.addLong(chunkAddress);
+        }
+        if (methodPostings != null) {
+            // Checkpoints without postings are never restored if postings are maintained, see CallRecordTree
+            if (checkpoint.getMethodPostings() == null) {
+                throw new StorageException("Checkpoint of recording " + metadata.getId() + " has no method postings");
+            }
+            methodPostings = checkpoint.getMethodPostings();
+        }
+        childrenOfOpenCalls.clear();
+        if (metadata.isCallIndexed()) {
+            for (CallRecordIndexState callState : checkpoint.getCallStack()) {
+                childrenOfOpenCalls.put(callState.getId(), callState.getChildrenCallIds());
+            }
+        }
+        publishedChildren.clear();
+        publishSnapshot();
+    }
+
     public synchronized boolean publish() {
         if (!published) {
             published = true;
@@ -81,44 +283,117 @@ public class RecordingState {
         return false;
     }
 
-    public synchronized Recording toRecording() {
+    public Recording toRecording() {
         return new Recording(this);
     }
 
-    public synchronized CallRecordIndexState getState(long callId) {
-        CallRecordIndexState callState = memCallStack.get(callId);
+    /**
+     * @return state of the call from the last published snapshot or the index. States are never modified once
+     * they are returned
+     */
+    public CallRecordIndexState getState(long callId) {
+        CallRecordIndexState callState = snapshot.openStates.get(callId);
         if (callState != null) {
             return callState;
         }
         return index.get(callId);
     }
 
-    public synchronized int getId() {
+    /**
+     * @return state of the call like {@link #getState(long)}, but children ids may not be loaded,
+     * see {@link Index#getWithoutChildren(long)}
+     */
+    private CallRecordIndexState getStateWithoutChildren(long callId) {
+        CallRecordIndexState callState = snapshot.openStates.get(callId);
+        if (callState != null) {
+            return callState;
+        }
+        return index.getWithoutChildren(callId);
+    }
+
+    public int getId() {
         return metadata.getId();
     }
 
-    public synchronized void update(RecordingMetadata metadata) {
+    public void update(RecordingMetadata metadata) {
         if (metadata.getRecordingFinishedMillis() > 0) {
-            this.metadata.setRecordingFinishedMillis(metadata.getRecordingFinishedMillis());
+            synchronized (this.metadata) {
+                this.metadata.setRecordingFinishedMillis(metadata.getRecordingFinishedMillis());
+            }
         }
     }
 
-    public synchronized CallRecord getRoot() {
-        return getCallRecord(rootUniqueId);
+    /**
+     * @return number of calls of the method in the recording or -1 if method postings are not maintained
+     */
+    public int getCallCountOfMethod(int methodId) {
+        MethodPostings methodPostings = snapshot.methodPostings;
+        return methodPostings != null ? methodPostings.count(methodId) : -1;
     }
 
-    public synchronized CallRecord getCallRecord(long callId) {
+    /**
+     * @return unique ids of calls of the method in the order of enter calls or null if method postings are not maintained
+     */
+    @Nullable
+    public long[] getCallIdsOfMethod(int methodId) {
+        MethodPostings methodPostings = snapshot.methodPostings;
+        if (methodPostings == null) {
+            return null;
+        }
+        int[] callIds = methodPostings.callIds(methodId);
+        long[] uniqueIds = new long[callIds.length];
+        for (int i = 0; i < callIds.length; i++) {
+            uniqueIds[i] = BitUtil.longFromInts(metadata.getId(), callIds[i]);
+        }
+        return uniqueIds;
+    }
+
+    /**
+     * @return number of children of the call or 0 if the call is not known
+     */
+    public int getChildrenCount(long callId) {
+        CallRecordIndexState callState = getStateWithoutChildren(callId);
+        return callState != null ? callState.getChildrenCount() : 0;
+    }
+
+    /**
+     * @return ids of children of the call in range [fromIndex, toIndex) of the children list. The range is truncated
+     * if the call has fewer children. Only the part of the children list which intersects with the range is read
+     * from the index, see {@link Index#getChildrenCallIds(long, int, int)}
+     */
+    public LongArrayList getChildrenCallIds(long callId, int fromIndex, int toIndex) {
+        CallRecordIndexState callState = snapshot.openStates.get(callId);
+        if (callState != null) {
+            return callState.getChildrenCallIds(fromIndex, toIndex);
+        }
+        return index.getChildrenCallIds(callId, fromIndex, toIndex);
+    }
+
+    public CallRecord getRoot() {
+        return getCallRecord(snapshot.rootUniqueId);
+    }
+
+    public CallRecord getCallRecord(long callId) {
         if (callId < 0) {
             return null;
         }
+        CallRecord cachedCallRecord = callRecordCache.get(callId);
+        if (cachedCallRecord != null) {
+            return cachedCallRecord;
+        }
 
-        CallRecordIndexState callState = getState(callId);
+        CallRecordIndexState callState = getStateWithoutChildren(callId);
+        if (callState == null) {
+            return null;
+        }
         RecordedEnterMethodCall enterMethodCall = recordingDataReader.readEnterMethodCall(callState.getEnterMethodCallAddress(), typeRepository);
 
         CallRecord.CallRecordBuilder builder = CallRecord.builder()
                 .callId(callState.getId())
                 .subtreeSize(callState.getSubtreeSize())
-                .childrenCallIds(callState.getChildrenCallIds())
+                .childrenCount(callState.getChildrenCount())
+                .nanosDuration(Math.max(0L, callState.getNanosDuration()))
+                .selfNanos(callState.getSelfNanos())
                 .method(methodRepository.get(enterMethodCall.getMethodId()))
                 .callee(enterMethodCall.getCallee())
                 .args(enterMethodCall.getArguments())
@@ -127,7 +402,8 @@ public class RecordingState {
         if (callState.getExitMethodCallAddr() > 0) {
             RecordedExitMethodCall exitMethodCall = recordingDataReader.readExitMethodCall(callState.getExitMethodCallAddr(), typeRepository);
 
-            if (exitMethodCall.getNanoTime() > 0) {
+            // Durations are not known while building the index from the call index written by the agent
+            if (callState.getNanosDuration() < 0 && exitMethodCall.getNanoTime() > 0) {
                 long nanosDuration = exitMethodCall.getNanoTime() - enterMethodCall.getNanoTime();
                 builder = builder.nanosDuration(nanosDuration);
             }
@@ -137,23 +413,73 @@ public class RecordingState {
                     .returnValue(exitMethodCall.getReturnValue());
         }
 
-        return builder.build();
+        CallRecord callRecord = builder.build();
+        // Calls which are not completed yet still get new children
+        if (callState.getExitMethodCallAddr() > 0) {
+            callRecordCache.put(callId, callRecord);
+        }
+        return callRecord;
     }
 
-    public synchronized RecordingMetadata getMetadata() {
+    public RecordingMetadata getMetadata() {
         return metadata;
     }
 
-    public synchronized Duration getLifetime() {
-        RecordingMetadata metadata = getMetadata();
-        if (metadata.getRecordingFinishedMillis() > 0) {
-            return Duration.ofMillis(metadata.getRecordingFinishedMillis() - metadata.getRecordingStartedMillis());
-        } else {
-            return Duration.ofSeconds(0);
+    public Duration getLifetime() {
+        synchronized (metadata) {
+            if (metadata.getRecordingFinishedMillis() > 0) {
+                return Duration.ofMillis(metadata.getRecordingFinishedMillis() - metadata.getRecordingStartedMillis());
+            } else {
+                return Duration.ofSeconds(0);
+            }
+        }
+    }
+
+    public int callCount() {
+        Snapshot snapshot = this.snapshot;
+        if (snapshot.rootUniqueId < 0) {
+            return 0;
         }
+        CallRecordIndexState rootState = getStateWithoutChildren(snapshot.rootUniqueId);
+        return rootState != null ? rootState.getSubtreeSize() : 0;
     }
 
-    public synchronized int callCount() {
-        return rootUniqueId >= 0 ? getRoot().getSubtreeSize() : 0;
+    private static class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptyMap(), -1, null);
+
+        private final Map<Long, CallRecordIndexState> openStates;
+        private final long rootUniqueId;
+        // Postings are replaced once the state is restored from a checkpoint, so they are published along with the snapshot
+        @Nullable
+        private final MethodPostings methodPostings;
+
+        private Snapshot(Map<Long, CallRecordIndexState> openStates, long rootUniqueId, @Nullable MethodPostings methodPostings) {
+            this.openStates = openStates;
+            this.rootUniqueId = rootUniqueId;
+            this.methodPostings = methodPostings;
+        }
+    }
+
+    /**
+     * Copy of children ids of a call on the stack. Ids are only appended, so lists of older snapshots may share the
+     * array with newer ones, since they never access ids past their size
+     */
+    private static class PublishedChildren {
+
+        private long[] callIds = new long[4];
+        private int count = 0;
+
+        private LongArrayList update(LongArrayList childrenCallIds) {
+            int size = childrenCallIds.size();
+            if (size > callIds.length) {
+                callIds = Arrays.copyOf(callIds, Math.max(size, callIds.length * 2));
+            }
+            for (int i = count; i < size; i++) {
+                callIds[i] = childrenCallIds.getLong(i);
+            }
+            count = size;
+            return new LongArrayList(callIds, count, Long.MIN_VALUE);
+        }
     }
 }
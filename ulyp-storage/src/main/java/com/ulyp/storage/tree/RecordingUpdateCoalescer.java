@@ -0,0 +1,112 @@
+package com.ulyp.storage.tree;
+
+import com.ulyp.core.util.NamedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces updates of recordings which builder threads make, so that the listener (i.e. UI) is notified at most
+ * once per interval no matter how fast the file is read. A batch has every recording updated since the previous batch
+ * once, and the latest read address for progress. If nothing was published for the interval, an update is published
+ * right away, so that live recordings are shown without delay.
+ * <p>
+ * If the interval is zero, every update is published by the thread which makes it.
+ */
+@Slf4j
+class RecordingUpdateCoalescer implements AutoCloseable {
+
+    interface Publisher {
+
+        void publish(List<RecordingState> updated, long address);
+    }
+
+    private final long intervalNanos;
+    private final Publisher publisher;
+    @Nullable
+    private final ScheduledExecutorService scheduler;
+    private final Map<Integer, RecordingState> updated = new LinkedHashMap<>();
+    private final Object publishLock = new Object();
+    private long address = 0L;
+    private boolean publishScheduled = false;
+    private long lastPublishNanos;
+
+    RecordingUpdateCoalescer(Duration interval, Publisher publisher) {
+        this.intervalNanos = interval.toNanos();
+        this.publisher = publisher;
+        this.scheduler = intervalNanos > 0
+            ? Executors.newSingleThreadScheduledExecutor(NamedThreadFactory.builder().name("CallRecordTree-updates").daemon(true).build())
+            : null;
+        this.lastPublishNanos = System.nanoTime() - intervalNanos;
+    }
+
+    void onUpdated(RecordingState recording, long address) {
+        synchronized (updated) {
+            updated.put(recording.getId(), recording);
+            this.address = Math.max(this.address, address);
+            if (scheduler != null) {
+                if (!publishScheduled) {
+                    publishScheduled = true;
+                    long delayNanos = Math.max(0L, lastPublishNanos + intervalNanos - System.nanoTime());
+                    try {
+                        scheduler.schedule(this::publishScheduled, delayNanos, TimeUnit.NANOSECONDS);
+                    } catch (RejectedExecutionException e) {
+                        // Closed, the update is dropped
+                        publishScheduled = false;
+                    }
+                }
+                return;
+            }
+        }
+        publish();
+    }
+
+    private void publishScheduled() {
+        try {
+            publish();
+        } catch (Throwable e) {
+            log.error("Failed to publish recording updates", e);
+        }
+    }
+
+    /**
+     * Publishes pending updates right away
+     */
+    void publish() {
+        synchronized (publishLock) {
+            List<RecordingState> batch;
+            long batchAddress;
+            synchronized (updated) {
+                publishScheduled = false;
+                lastPublishNanos = System.nanoTime();
+                if (updated.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(updated.values());
+                batchAddress = address;
+                updated.clear();
+            }
+            publisher.publish(batch, batchAddress);
+        }
+    }
+
+    /**
+     * Publishes pending updates and stops publishing
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        publish();
+    }
+}
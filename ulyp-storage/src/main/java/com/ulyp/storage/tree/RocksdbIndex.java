@@ -3,45 +3,165 @@ package com.ulyp.storage.tree;
 import com.ulyp.core.bytes.BufferBytesOut;
 import com.ulyp.core.bytes.DirectBytesIn;
 import com.ulyp.core.util.BitUtil;
+import com.ulyp.core.util.SystemPropertyUtil;
 import com.ulyp.storage.StorageException;
 import org.agrona.ExpandableDirectByteBuffer;
-import org.agrona.MutableDirectBuffer;
-import org.rocksdb.Options;
-import org.rocksdb.RocksDB;
-import org.rocksdb.RocksDBException;
-import org.rocksdb.WriteOptions;
+import org.agrona.collections.LongArrayList;
+import org.rocksdb.*;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Disk based index. Every key is a unique call id which starts with recording id (see {@link BitUtil#longFromInts}),
+ * so the first {@link #KEY_PREFIX_LENGTH} bytes of every key are used as a prefix.
+ * <p>
+ * The index supports two modes of writing. The default one applies every batch of states with a single
+ * {@link WriteBatch}. Bulk load mode is only suitable for files which are fully written. Call states are accumulated in memory,
+ * then sorted and written to SST files which are ingested into the db directly, bypassing memtables and
+ * compaction of L0 files.
+ * <p>
+ * Calls may have millions of children. Children ids are kept in the state value only if there are at most
+ * {@link #CHILDREN_CHUNK_SIZE} of them. Otherwise, the value only keeps the count of children, while ids are stored
+ * in chunks keyed by call id followed by the chunk number. Chunk keys of a call sort right after its state key,
+ * so they can be written to SST files in order. A range of children is read with only the chunks it intersects.
+ */
 public class RocksdbIndex implements Index {
 
+    private static final int KEY_PREFIX_LENGTH = Integer.BYTES;
+    static final int CHILDREN_CHUNK_SIZE = 1024;
+    private static final int DEFAULT_BULK_LOAD_BATCH_SIZE = SystemPropertyUtil.getInt("ulyp.index.bulk-load.batch-size", 512 * 1024);
+
+    private final Path indexFolder;
+    private final BloomFilter bloomFilter;
+    private final Options options;
     private final RocksDB db;
     private final WriteOptions writeOptions;
-    private final ThreadLocal<MutableDirectBuffer> tempBuffer = ThreadLocal.withInitial(() -> new ExpandableDirectByteBuffer(64 * 1024));
-    private final ThreadLocal<byte[]> keyBuffer = ThreadLocal.withInitial(() -> new byte[Long.BYTES]);
+    private final boolean bulkLoad;
+    private final int bulkLoadBatchSize;
+    // States which are not yet ingested to the db, only used in bulk load mode
+    private final Map<Long, CallRecordIndexState> notIngestedStates = new ConcurrentHashMap<>();
+    private final Object ingestLock = new Object();
+    private int sstFilesWritten = 0;
+    private final ThreadLocal<ExpandableDirectByteBuffer> valueBuffer = ThreadLocal.withInitial(() -> new ExpandableDirectByteBuffer(64 * 1024));
+    private final ThreadLocal<ByteBuffer> keyBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(Long.BYTES));
+    private final ThreadLocal<byte[]> keyBytes = ThreadLocal.withInitial(() -> new byte[Long.BYTES]);
+    private final ThreadLocal<ByteBuffer> chunkKeyBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(Long.BYTES + Integer.BYTES));
+    private final ThreadLocal<ByteBuffer> chunkValueBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHILDREN_CHUNK_SIZE * Long.BYTES));
+    private final ThreadLocal<byte[]> chunkKeyBytes = ThreadLocal.withInitial(() -> new byte[Long.BYTES + Integer.BYTES]);
 
     public RocksdbIndex(Path indexFolder) throws StorageException {
-        try {
-            Options options = new Options();
-            options.setCreateIfMissing(true);
+        this(indexFolder, false);
+    }
 
-            db = RocksDB.open(options, indexFolder.toAbsolutePath().toString());
+    public RocksdbIndex(Path indexFolder, boolean bulkLoad) throws StorageException {
+        this(indexFolder, bulkLoad, DEFAULT_BULK_LOAD_BATCH_SIZE);
+    }
 
-            writeOptions = new WriteOptions();
-            writeOptions.setSync(false);
-            writeOptions.setDisableWAL(true);
+    RocksdbIndex(Path indexFolder, boolean bulkLoad, int bulkLoadBatchSize) throws StorageException {
+        this.indexFolder = indexFolder;
+        this.bulkLoad = bulkLoad;
+        this.bulkLoadBatchSize = bulkLoadBatchSize;
+        this.bloomFilter = new BloomFilter(10);
+        // Table config is a plain Java object, only the filter policy and options own native handles
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig()
+                .setFilterPolicy(bloomFilter)
+                .setWholeKeyFiltering(true);
+
+        this.options = new Options()
+                .setCreateIfMissing(true)
+                .useFixedLengthPrefixExtractor(KEY_PREFIX_LENGTH)
+                .setTableFormatConfig(tableConfig)
+                .setWriteBufferSize(64L * 1024 * 1024)
+                .setMaxWriteBufferNumber(4)
+                .setMaxBackgroundJobs(4)
+                // Lower levels are rewritten by compaction often, so there is no point compressing them
+                .setCompressionPerLevel(Arrays.asList(
+                        CompressionType.NO_COMPRESSION,
+                        CompressionType.NO_COMPRESSION,
+                        CompressionType.LZ4_COMPRESSION,
+                        CompressionType.LZ4_COMPRESSION,
+                        CompressionType.LZ4_COMPRESSION,
+                        CompressionType.LZ4_COMPRESSION,
+                        CompressionType.LZ4_COMPRESSION
+                ));
+
+        try {
+            db = RocksDB.open(options, indexFolder.toAbsolutePath().toString());
         } catch (RocksDBException ioException) {
+            options.close();
+            bloomFilter.close();
             throw new StorageException("Could not create RocksDB index", ioException);
         }
+
+        writeOptions = new WriteOptions();
+        writeOptions.setSync(false);
+        writeOptions.setDisableWAL(true);
     }
 
     @Override
     public CallRecordIndexState get(long id) {
-        byte[] keyBytes = keyBuffer.get();
-        BitUtil.longToBytes(id, keyBytes, 0);
+        CallRecordIndexState callState = getWithoutChildren(id);
+        if (callState == null || callState.isChildrenLoaded()) {
+            return callState;
+        }
+        return callState.copy(readChildren(id, 0, callState.getChildrenCount()));
+    }
+
+    @Override
+    public LongArrayList getChildrenCallIds(long id, int fromIndex, int toIndex) {
+        CallRecordIndexState callState = getWithoutChildren(id);
+        if (callState == null) {
+            return new LongArrayList();
+        }
+        if (callState.isChildrenLoaded()) {
+            return callState.getChildrenCallIds(fromIndex, toIndex);
+        }
+        return readChildren(id, Math.max(0, fromIndex), Math.min(toIndex, callState.getChildrenCount()));
+    }
+
+    private LongArrayList readChildren(long id, int fromIndex, int toIndex) {
+        LongArrayList childrenCallIds = new LongArrayList(Math.max(0, toIndex - fromIndex), Long.MIN_VALUE);
+        byte[] key = chunkKeyBytes.get();
+        BitUtil.longToBytes(id, key, 0);
+        byte[] chunk = null;
+        for (int i = fromIndex; i < toIndex; i++) {
+            int offset = (i % CHILDREN_CHUNK_SIZE) * Long.BYTES;
+            if (chunk == null || offset == 0) {
+                BitUtil.intToBytes(i / CHILDREN_CHUNK_SIZE, key, Long.BYTES);
+                try {
+                    chunk = db.get(key);
+                } catch (RocksDBException e) {
+                    throw new StorageException("Could not read", e);
+                }
+            }
+            if (chunk == null || offset + Long.BYTES > chunk.length) {
+                throw new StorageException("Children of call " + id + " are not found at index " + i);
+            }
+            childrenCallIds.addLong(BitUtil.bytesToLong(chunk, offset));
+        }
+        return childrenCallIds;
+    }
+
+    @Override
+    public CallRecordIndexState getWithoutChildren(long id) {
+        if (bulkLoad) {
+            CallRecordIndexState notIngested = notIngestedStates.get(id);
+            if (notIngested != null) {
+                return notIngested;
+            }
+        }
+        byte[] key = keyBytes.get();
+        BitUtil.longToBytes(id, key, 0);
         byte[] bytes;
         try {
-            bytes = db.get(keyBytes);
+            bytes = db.get(key);
         } catch (RocksDBException e) {
             throw new StorageException("Could not read", e);
         }
@@ -53,25 +173,178 @@ public class RocksdbIndex implements Index {
 
     @Override
     public void store(long id, CallRecordIndexState value) {
-        MutableDirectBuffer buffer = tempBuffer.get();
-        BufferBytesOut binaryOutput = new BufferBytesOut(buffer);
-        BinaryRecordedCallStateSerializer.instance.serialize(binaryOutput, value);
-
-        byte[] keyBytes = keyBuffer.get();
-        BitUtil.longToBytes(id, keyBytes, 0);
+        if (bulkLoad) {
+            notIngestedStates.put(id, value);
+            ingestIfNeeded();
+            return;
+        }
 
-        int bytesWritten = binaryOutput.position();
-        byte[] valueBytes = new byte[bytesWritten];
-        buffer.getBytes(0, valueBytes);
-        try {
-            db.put(writeOptions, keyBytes, 0, keyBytes.length, valueBytes, 0, bytesWritten);
+        if (!isChunked(value)) {
+            try {
+                db.put(writeOptions, key(id), value(value));
+            } catch (RocksDBException e) {
+                throw new StorageException("Could not write", e);
+            }
+            return;
+        }
+        try (WriteBatch batch = new WriteBatch()) {
+            put(batch, value);
+            db.write(writeOptions, batch);
         } catch (RocksDBException e) {
             throw new StorageException("Could not write", e);
         }
     }
 
+    @Override
+    public void storeAll(List<CallRecordIndexState> callStates) {
+        if (callStates.isEmpty()) {
+            return;
+        }
+        if (bulkLoad) {
+            for (CallRecordIndexState callState : callStates) {
+                notIngestedStates.put(callState.getId(), callState);
+            }
+            ingestIfNeeded();
+            return;
+        }
+
+        try (WriteBatch batch = new WriteBatch()) {
+            for (CallRecordIndexState callState : callStates) {
+                put(batch, callState);
+            }
+            db.write(writeOptions, batch);
+        } catch (RocksDBException e) {
+            throw new StorageException("Could not write batch of " + callStates.size() + " states", e);
+        }
+    }
+
+    private void ingestIfNeeded() {
+        if (notIngestedStates.size() < bulkLoadBatchSize) {
+            return;
+        }
+        synchronized (ingestLock) {
+            if (notIngestedStates.size() >= bulkLoadBatchSize) {
+                ingest();
+            }
+        }
+    }
+
+    private void ingest() {
+        long[] ids = notIngestedStates.keySet().stream().mapToLong(Long::longValue).toArray();
+        // SST file must be sorted with the bytewise comparator, i.e. keys are compared as unsigned longs
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] ^= Long.MIN_VALUE;
+        }
+        Arrays.sort(ids);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] ^= Long.MIN_VALUE;
+        }
+
+        String sstFile = indexFolder.resolve("bulk-load-" + (sstFilesWritten++) + ".sst").toAbsolutePath().toString();
+        try (EnvOptions envOptions = new EnvOptions();
+             SstFileWriter writer = new SstFileWriter(envOptions, options);
+             IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions()) {
+            writer.open(sstFile);
+            for (long id : ids) {
+                CallRecordIndexState callState = notIngestedStates.get(id);
+                writer.put(key(id), value(callState));
+                if (isChunked(callState)) {
+                    LongArrayList childrenCallIds = callState.getChildrenCallIds();
+                    for (int chunk = 0; chunk * CHILDREN_CHUNK_SIZE < childrenCallIds.size(); chunk++) {
+                        writer.put(chunkKey(id, chunk), chunkValue(childrenCallIds, chunk));
+                    }
+                }
+            }
+            writer.finish();
+
+            ingestOptions.setMoveFiles(true);
+            db.ingestExternalFile(Collections.singletonList(sstFile), ingestOptions);
+        } catch (RocksDBException e) {
+            throw new StorageException("Could not bulk load " + ids.length + " states", e);
+        }
+
+        // States are removed only after they are visible in the db, so readers always see them
+        for (long id : ids) {
+            notIngestedStates.remove(id);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (bulkLoad) {
+            synchronized (ingestLock) {
+                if (!notIngestedStates.isEmpty()) {
+                    ingest();
+                }
+            }
+        }
+        // WAL is disabled, so memtables must be flushed to make states durable
+        try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+            db.flush(flushOptions);
+        } catch (RocksDBException e) {
+            throw new StorageException("Could not flush index", e);
+        }
+    }
+
+    private void put(WriteBatch batch, CallRecordIndexState callState) throws RocksDBException {
+        batch.put(key(callState.getId()), value(callState));
+        if (isChunked(callState)) {
+            LongArrayList childrenCallIds = callState.getChildrenCallIds();
+            for (int chunk = 0; chunk * CHILDREN_CHUNK_SIZE < childrenCallIds.size(); chunk++) {
+                batch.put(chunkKey(callState.getId(), chunk), chunkValue(childrenCallIds, chunk));
+            }
+        }
+    }
+
+    private static boolean isChunked(CallRecordIndexState callState) {
+        return callState.getChildrenCallIds().size() > CHILDREN_CHUNK_SIZE;
+    }
+
+    private ByteBuffer chunkKey(long id, int chunk) {
+        ByteBuffer key = chunkKeyBuffer.get();
+        ((Buffer) key).clear();
+        key.putLong(id);
+        key.putInt(chunk);
+        ((Buffer) key).flip();
+        return key;
+    }
+
+    private ByteBuffer chunkValue(LongArrayList childrenCallIds, int chunk) {
+        ByteBuffer value = chunkValueBuffer.get();
+        ((Buffer) value).clear();
+        int to = Math.min(childrenCallIds.size(), (chunk + 1) * CHILDREN_CHUNK_SIZE);
+        for (int i = chunk * CHILDREN_CHUNK_SIZE; i < to; i++) {
+            value.putLong(childrenCallIds.getLong(i));
+        }
+        ((Buffer) value).flip();
+        return value;
+    }
+
+    private ByteBuffer key(long id) {
+        ByteBuffer key = keyBuffer.get();
+        ((Buffer) key).clear();
+        key.putLong(id);
+        ((Buffer) key).flip();
+        return key;
+    }
+
+    private ByteBuffer value(CallRecordIndexState value) {
+        ExpandableDirectByteBuffer buffer = valueBuffer.get();
+        BufferBytesOut binaryOutput = new BufferBytesOut(buffer);
+        BinaryRecordedCallStateSerializer.instance.serialize(binaryOutput, isChunked(value) ? value.withoutChildren() : value);
+
+        // buffer may have been expanded, so byte buffer is requested after serialization
+        ByteBuffer byteBuffer = buffer.byteBuffer();
+        ((Buffer) byteBuffer).clear();
+        ((Buffer) byteBuffer).limit(binaryOutput.position());
+        return byteBuffer;
+    }
+
     @Override
     public void close() throws RuntimeException {
         db.close();
+        writeOptions.close();
+        options.close();
+        bloomFilter.close();
     }
 }
@@ -17,45 +17,90 @@ public class BinaryListFileReader implements AutoCloseable {
     public static final int HEADER_SIZE = Byte.BYTES + Integer.BYTES;
 
     private final RandomAccessFile randomAccessFile;
-    private long address = 0;
+    private final byte[] header = new byte[HEADER_SIZE];
+    private long address;
+    private long knownLength = 0L;
 
     public BinaryListFileReader(File file) throws IOException {
+        this(file, 0L);
+    }
+
+    public BinaryListFileReader(File file, long startAddress) throws IOException {
         this.randomAccessFile = new RandomAccessFile(file, "r");
+        this.address = startAddress;
+    }
+
+    /**
+     * @return address of the next binary list to read
+     */
+    public long address() {
+        return address;
+    }
+
+    /**
+     * Sets the address of the next binary list to read. Must point to the beginning of some binary list
+     */
+    public void moveTo(long address) {
+        this.address = address;
     }
 
     public BinaryListWithAddress readWithAddress() throws IOException {
-        long desired = address + HEADER_SIZE;
-        if (randomAccessFile.length() < desired) {
+        long address = this.address;
+        byte[] data = readContent();
+        if (data == null) {
             return null;
         }
+        UnsafeBuffer buffer = new UnsafeBuffer();
+        buffer.wrap(data, 0, data.length);
+        InputBytesList in = new InputBytesList(new DirectBytesIn(buffer));
+        return BinaryListWithAddress.builder()
+                .address(address + HEADER_SIZE)
+                .bytes(in)
+                .build();
+    }
 
-        byte[] buf = new byte[HEADER_SIZE];
+    /**
+     * Reads the next binary list as is, i.e. without the header, so that it can be copied to another file without
+     * decoding, see {@link BinaryListFileWriter#write(byte[])}
+     *
+     * @return content of the list or null if there is no fully written list at the address
+     */
+    public byte[] readContent() throws IOException {
+        if (!isAvailable(address + HEADER_SIZE)) {
+            return null;
+        }
 
-        randomAccessFile.seek(address);
-        randomAccessFile.read(buf);
+        // The file is read sequentially, so seek is only needed if the last list was not complete or the reader is moved
+        if (randomAccessFile.getFilePointer() != address) {
+            randomAccessFile.seek(address);
+        }
+        randomAccessFile.readFully(header);
 
-        if (buf[0] == 0) {
+        if (header[0] == 0) {
             return null;
         }
 
-        long length = BitUtil.bytesToInt(buf, 1);
-        int bytesToRead = (int) (length + HEADER_SIZE);
-        long address = this.address;
-        randomAccessFile.seek(address);
-        byte[] data = new byte[bytesToRead];
-        int bytesRead = randomAccessFile.read(data);
+        int length = BitUtil.bytesToInt(header, 1);
+        int bytesToRead = length + HEADER_SIZE;
         Preconditions.checkState(
-                bytesRead == bytesToRead,
+                isAvailable(address + bytesToRead),
                 "Binary list marked as fully written, but reader was not able to read " + bytesToRead +
-                        " bytes. Read " + bytesRead + " bytes");
-        UnsafeBuffer buffer = new UnsafeBuffer();
-        buffer.wrap(data, HEADER_SIZE, bytesToRead - HEADER_SIZE);
-        InputBytesList in = new InputBytesList(new DirectBytesIn(buffer));
-        this.address += bytesRead;
-        return BinaryListWithAddress.builder()
-                .address(address + HEADER_SIZE)
-                .bytes(in)
-                .build();
+                        " bytes. Available " + (knownLength - address) + " bytes");
+        // The header is already read, so the list is read right after it
+        byte[] data = new byte[length];
+        randomAccessFile.readFully(data);
+        this.address += bytesToRead;
+        return data;
+    }
+
+    /**
+     * The file only grows, so its length is only requested once the part of it which is known to be written is read
+     */
+    private boolean isAvailable(long end) throws IOException {
+        if (knownLength < end) {
+            knownLength = randomAccessFile.length();
+        }
+        return knownLength >= end;
     }
 
     public InputBytesList read() throws IOException {
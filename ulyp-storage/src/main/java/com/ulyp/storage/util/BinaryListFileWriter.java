@@ -1,8 +1,10 @@
 package com.ulyp.storage.util;
 
+import com.ulyp.core.bytes.BytesOutputSink;
 import com.ulyp.core.mem.OutputBytesList;
 import com.ulyp.core.util.BitUtil;
 import com.ulyp.storage.StorageException;
+import org.agrona.concurrent.UnsafeBuffer;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -21,6 +23,13 @@ public class BinaryListFileWriter implements AutoCloseable {
         this.byAddressFileWriter = new ByAddressFileWriter(file);
     }
 
+    /**
+     * @return address (i.e. offset in the file) the next binary list is written at
+     */
+    public long address() {
+        return address;
+    }
+
     public void moveToBeginning() throws StorageException {
         try {
             this.byAddressFileWriter.close();
@@ -35,6 +44,20 @@ public class BinaryListFileWriter implements AutoCloseable {
     }
 
     public void write(OutputBytesList values) throws StorageException {
+        write(values::writeTo);
+    }
+
+    /**
+     * Writes a binary list which is already serialized, e.g. read from another file by {@link BinaryListFileReader#readContent()}
+     */
+    public void write(byte[] content) throws StorageException {
+        write(sink -> {
+            sink.write(new UnsafeBuffer(content), content.length);
+            return content.length;
+        });
+    }
+
+    private void write(Content content) throws StorageException {
         try {
             long startAddr = address;
             outputStream.write((byte) 0);
@@ -42,7 +65,7 @@ public class BinaryListFileWriter implements AutoCloseable {
                 outputStream.write((byte) 1);
             }
 
-            int bytesWritten = values.writeTo(this.outputStream);
+            int bytesWritten = content.writeTo(this.outputStream);
             address += (bytesWritten + Byte.BYTES + Integer.BYTES);
             outputStream.flush();
 
@@ -69,4 +92,12 @@ public class BinaryListFileWriter implements AutoCloseable {
             throw new StorageException("Errr while closing writer", e);
         }
     }
+
+    private interface Content {
+
+        /**
+         * @return number of bytes written
+         */
+        int writeTo(BytesOutputSink sink) throws IOException;
+    }
 }
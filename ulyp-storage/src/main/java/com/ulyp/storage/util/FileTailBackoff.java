@@ -0,0 +1,141 @@
+package com.ulyp.storage.util;
+
+import com.ulyp.core.util.Backoff;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits until the file is written. Changes are watched with {@link WatchService} (i.e. inotify on Linux), so that
+ * the reader is woken up within a few milliseconds after data is written. Events may be delayed or not supported at all
+ * (some platforms poll the file system every few seconds), so the file length is also checked with adaptive delay
+ * which starts from 1 ms and doubles up to 100 ms while the file doesn't change.
+ */
+@Slf4j
+public class FileTailBackoff implements Backoff {
+
+    private static final long MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final File file;
+    private final Path fileName;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    @Nullable
+    private volatile WatchService watchService;
+    private long delayNanos;
+    private long lastLength;
+
+    public FileTailBackoff(File file) {
+        this(file, MIN_DELAY_NANOS, MAX_DELAY_NANOS);
+    }
+
+    FileTailBackoff(File file, long minDelayNanos, long maxDelayNanos) {
+        this.minDelayNanos = minDelayNanos;
+        this.maxDelayNanos = maxDelayNanos;
+        this.delayNanos = minDelayNanos;
+        this.file = file.getAbsoluteFile();
+        this.fileName = this.file.toPath().getFileName();
+        this.watchService = watch(this.file);
+        this.lastLength = this.file.length();
+    }
+
+    @Nullable
+    private static WatchService watch(File file) {
+        WatchService watchService = null;
+        try {
+            Path directory = file.toPath().getParent();
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            return watchService;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Could not watch file {}, will only check file length", file, e);
+            closeQuietly(watchService);
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the backoff is woken up by file system events
+     */
+    public boolean isWatching() {
+        return watchService != null;
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        boolean changed = false;
+        WatchService watchService = this.watchService;
+        if (watchService != null) {
+            try {
+                changed = awaitEvent(watchService, delayNanos);
+            } catch (ClosedWatchServiceException e) {
+                this.watchService = null;
+            }
+        } else {
+            TimeUnit.NANOSECONDS.sleep(delayNanos);
+        }
+
+        long length = file.length();
+        if (changed || length != lastLength) {
+            delayNanos = minDelayNanos;
+        } else {
+            delayNanos = Math.min(delayNanos * 2, maxDelayNanos);
+        }
+        lastLength = length;
+    }
+
+    /**
+     * @return true if the file is changed, false if timed out
+     */
+    private boolean awaitEvent(WatchService watchService, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        long remainingNanos = timeoutNanos;
+        while (remainingNanos > 0) {
+            WatchKey key = watchService.poll(remainingNanos, TimeUnit.NANOSECONDS);
+            if (key == null) {
+                return false;
+            }
+            // The whole directory is watched, so events of other files are skipped
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                    changed = true;
+                }
+            }
+            key.reset();
+            if (changed) {
+                return true;
+            }
+            remainingNanos = deadline - System.nanoTime();
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        WatchService watchService = this.watchService;
+        this.watchService = null;
+        closeQuietly(watchService);
+    }
+
+    private static void closeQuietly(@Nullable WatchService watchService) {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.debug("Could not close watch service", e);
+        }
+    }
+}
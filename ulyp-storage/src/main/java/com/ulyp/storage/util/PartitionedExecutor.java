@@ -0,0 +1,99 @@
+package com.ulyp.storage.util;
+
+import com.ulyp.core.util.NamedThreadFactory;
+import com.ulyp.storage.StorageException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes tasks on a fixed number of single threaded executors. All tasks of the same partition are executed
+ * by the same thread in the order of submission, while tasks of different partitions run in parallel.
+ * <p>
+ * The number of submitted but not yet completed tasks is bounded, so that the submitting thread doesn't
+ * run too far ahead. If there is only one thread, tasks are executed by the submitting thread right away.
+ * The first failure of any task is rethrown to the submitting thread.
+ */
+public class PartitionedExecutor implements AutoCloseable {
+
+    private final ExecutorService[] executors;
+    private final int maxTasksInFlight;
+    private final Semaphore permits;
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    public PartitionedExecutor(String name, int threads, int maxTasksInFlight) {
+        this.executors = new ExecutorService[threads > 1 ? threads : 0];
+        for (int i = 0; i < executors.length; i++) {
+            executors[i] = Executors.newSingleThreadExecutor(
+                NamedThreadFactory.builder()
+                    .name(name + "-" + i)
+                    .daemon(true)
+                    .build()
+            );
+        }
+        this.maxTasksInFlight = maxTasksInFlight;
+        this.permits = new Semaphore(maxTasksInFlight);
+    }
+
+    public void execute(int partition, Runnable task) throws StorageException {
+        if (executors.length == 0) {
+            task.run();
+            return;
+        }
+        checkError();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted", e);
+        }
+        try {
+            executors[Math.floorMod(partition, executors.length)].execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw new StorageException("Executor is already closed", e);
+        }
+    }
+
+    /**
+     * Waits until all submitted tasks are completed
+     */
+    public void awaitCompletion() throws StorageException {
+        if (executors.length == 0) {
+            return;
+        }
+        try {
+            permits.acquire(maxTasksInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted", e);
+        }
+        permits.release(maxTasksInFlight);
+        checkError();
+    }
+
+    private void checkError() {
+        Throwable e = error.get();
+        if (e != null) {
+            throw new StorageException("Task failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+    }
+}
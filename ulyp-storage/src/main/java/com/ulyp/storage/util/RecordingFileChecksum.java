@@ -0,0 +1,37 @@
+package com.ulyp.storage.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+/**
+ * Checksum which allows to detect that the recording file has been rewritten since some data derived from it
+ * (e.g. an index) was stored. Only some regions of the file are used, otherwise opening a large file would
+ * take too long
+ */
+public class RecordingFileChecksum {
+
+    private static final int REGION_SIZE = 64 * 1024;
+
+    /**
+     * Calculates checksum of the first and the last (i.e. right before the address) regions of the file content.
+     * Recording files are only appended to, so it's enough to detect that the file has been rewritten
+     */
+    public static long of(File recordingFile, long address) throws IOException {
+        CRC32 crc = new CRC32();
+        try (RandomAccessFile file = new RandomAccessFile(recordingFile, "r")) {
+            byte[] region = new byte[(int) Math.min(REGION_SIZE, address)];
+            file.seek(0);
+            file.readFully(region);
+            crc.update(region);
+
+            long lastRegionStart = Math.max(region.length, address - REGION_SIZE);
+            region = new byte[(int) (address - lastRegionStart)];
+            file.seek(lastRegionStart);
+            file.readFully(region);
+            crc.update(region);
+        }
+        return crc.getValue();
+    }
+}
@@ -2,6 +2,8 @@ package com.ulyp.storage.writer;
 
 import com.ulyp.core.ProcessMetadata;
 import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
 import com.ulyp.core.mem.SerializedMethodList;
 import com.ulyp.core.mem.SerializedRecordedMethodCallList;
 import com.ulyp.core.mem.SerializedTypeList;
@@ -68,6 +70,16 @@ public class AsyncFileRecordingDataWriter implements RecordingDataWriter {
         writeAsync(() -> delegate.write(callRecords));
     }
 
+    @Override
+    public void write(SerializedCallIndexList callIndex) {
+        writeAsync(() -> delegate.write(callIndex));
+    }
+
+    @Override
+    public void write(SerializedCallTreeList callTree) {
+        writeAsync(() -> delegate.write(callTree));
+    }
+
     @Override
     public long estimateBytesWritten() {
         return delegate.estimateBytesWritten();
@@ -2,6 +2,8 @@ package com.ulyp.storage.writer;
 
 import com.ulyp.core.ProcessMetadata;
 import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
 import com.ulyp.core.mem.SerializedMethodList;
 import com.ulyp.core.mem.SerializedRecordedMethodCallList;
 import com.ulyp.core.mem.SerializedTypeList;
@@ -41,6 +43,16 @@ public class BlackholeRecordingDataWriter implements RecordingDataWriter {
 
     }
 
+    @Override
+    public void write(SerializedCallIndexList callIndex) throws StorageException {
+
+    }
+
+    @Override
+    public void write(SerializedCallTreeList callTree) throws StorageException {
+
+    }
+
     @Override
     public long estimateBytesWritten() {
         return 0;
@@ -1,17 +1,21 @@
 package com.ulyp.storage.writer;
 
 import com.ulyp.core.ProcessMetadata;
-import com.ulyp.core.RecordingCompleteMark;
 import com.ulyp.core.RecordingMetadata;
 import com.ulyp.core.bytes.BufferBytesOut;
 import com.ulyp.core.mem.OutputBytesList;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
 import com.ulyp.core.mem.SerializedMethodList;
 import com.ulyp.core.mem.SerializedRecordedMethodCallList;
 import com.ulyp.core.mem.SerializedTypeList;
 import com.ulyp.core.serializers.ProcessMetadataSerializer;
 import com.ulyp.core.serializers.RecordingMetadataSerializer;
 import com.ulyp.core.util.LoggingSettings;
+import com.ulyp.core.util.SystemPropertyUtil;
 import com.ulyp.storage.StorageException;
+import com.ulyp.storage.toc.TableOfContents;
+import com.ulyp.storage.toc.TocFrame;
 import com.ulyp.storage.util.BinaryListFileWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.agrona.ExpandableDirectByteBuffer;
@@ -21,15 +25,33 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.function.Consumer;
 
+/**
+ * Writes binary lists to the recording file. Every 16 MB (by default) a table of contents frame is written,
+ * which has addresses of lists written since the previous frame, see {@link TableOfContents}. Once closed, the last
+ * frame and the recording complete mark which points to it are written.
+ */
 @Slf4j
 public class FileRecordingDataWriter implements RecordingDataWriter {
 
+    public static final long DEFAULT_TOC_INTERVAL_BYTES = SystemPropertyUtil.getInt("ulyp.storage.toc-interval-mb", 16) * 1024L * 1024L;
+
     private final File file;
+    private final long tocIntervalBytes;
     private ProcessMetadata processMetadata;
     private BinaryListFileWriter fileWriter;
+    private TocFrame tocFrame = new TocFrame(-1L);
+    private long lastTocFrameAddress = -1L;
 
     public FileRecordingDataWriter(File file) throws StorageException {
+        this(file, DEFAULT_TOC_INTERVAL_BYTES);
+    }
+
+    /**
+     * @param tocIntervalBytes how many bytes are written between table of contents frames
+     */
+    public FileRecordingDataWriter(File file, long tocIntervalBytes) throws StorageException {
         this.file = file;
+        this.tocIntervalBytes = tocIntervalBytes;
     }
 
     private void write(Consumer<BinaryListFileWriter> writer) {
@@ -46,9 +68,34 @@ public class FileRecordingDataWriter implements RecordingDataWriter {
         writer.accept(fileWriter);
     }
 
+    /**
+     * Writes the list to the file, the list is then listed in the table of contents by the callback
+     */
+    private void write(OutputBytesList bytes, TocCallback tocCallback) {
+        write(writer -> {
+            long address = writer.address();
+            writer.write(bytes);
+            tocCallback.onWritten(address, System.currentTimeMillis());
+            if (writer.address() - Math.max(lastTocFrameAddress, 0L) >= tocIntervalBytes) {
+                writeTocFrame(writer);
+            }
+        });
+    }
+
+    private void writeTocFrame(BinaryListFileWriter writer) {
+        long address = writer.address();
+        try (OutputBytesList bytes = tocFrame.toBytes()) {
+            writer.write(bytes);
+        }
+        lastTocFrameAddress = address;
+        tocFrame = new TocFrame(address);
+    }
+
     @Override
     public void reset(ResetRequest resetRequest) throws StorageException {
         write(BinaryListFileWriter::moveToBeginning);
+        tocFrame = new TocFrame(-1L);
+        lastTocFrameAddress = -1L;
         write(resetRequest.getProcessMetadata());
         write(resetRequest.getTypes());
         write(resetRequest.getMethods());
@@ -65,28 +112,24 @@ public class FileRecordingDataWriter implements RecordingDataWriter {
             this.processMetadata = processMetadata;
             return;
         }
-        write(writer -> {
-            try (OutputBytesList bytes = new OutputBytesList(ProcessMetadata.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()))) {
-                bytes.add(out -> ProcessMetadataSerializer.instance.serialize(out, processMetadata));
-                writer.write(bytes);
-                if (LoggingSettings.DEBUG_ENABLED) {
-                    log.debug("Has written {} to storage", processMetadata);
-                }
+        try (OutputBytesList bytes = new OutputBytesList(ProcessMetadata.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()))) {
+            bytes.add(out -> ProcessMetadataSerializer.instance.serialize(out, processMetadata));
+            write(bytes, (address, writeMillis) -> tocFrame.onGlobalList(address));
+            if (LoggingSettings.DEBUG_ENABLED) {
+                log.debug("Has written {} to storage", processMetadata);
             }
-        });
+        }
     }
 
     @Override
     public synchronized void write(RecordingMetadata recordingMetadata) {
-        write(writer -> {
-            try (OutputBytesList bytesOut = new OutputBytesList(RecordingMetadata.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()))) {
-                bytesOut.add(out -> RecordingMetadataSerializer.instance.serialize(out, recordingMetadata));
-                writer.write(bytesOut);
-                if (LoggingSettings.DEBUG_ENABLED) {
-                    log.debug("Has written {} to storage", processMetadata);
-                }
+        try (OutputBytesList bytesOut = new OutputBytesList(RecordingMetadata.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()))) {
+            bytesOut.add(out -> RecordingMetadataSerializer.instance.serialize(out, recordingMetadata));
+            write(bytesOut, (address, writeMillis) -> tocFrame.onRecordingMetadata(recordingMetadata, address, writeMillis));
+            if (LoggingSettings.DEBUG_ENABLED) {
+                log.debug("Has written {} to storage", processMetadata);
             }
-        });
+        }
     }
 
     @Override
@@ -95,7 +138,7 @@ public class FileRecordingDataWriter implements RecordingDataWriter {
             return;
         }
         try (OutputBytesList bytes = types.getBytes()) {
-            write(writer -> writer.write(bytes));
+            write(bytes, (address, writeMillis) -> tocFrame.onGlobalList(address));
         }
     }
 
@@ -105,12 +148,27 @@ public class FileRecordingDataWriter implements RecordingDataWriter {
             if (bytes.isEmpty()) {
                 return;
             }
-            write(writer -> {
-                writer.write(bytes);
+            write(bytes, (address, writeMillis) -> tocFrame.onRecordingList(callRecords.getRecordingId(), address, writeMillis));
             /*if (LoggingSettings.DEBUG_ENABLED) {
                 log.debug("Has written {} recorded calls, {} bytes", callsBytes.size(), callsBytes.byteLength());
             }*/
-            });
+        }
+    }
+
+    @Override
+    public synchronized void write(SerializedCallIndexList callIndex) {
+        try (OutputBytesList bytes = callIndex.toBytes()) {
+            write(bytes, (address, writeMillis) -> tocFrame.onRecordingList(callIndex.getRecordingId(), address, writeMillis));
+        }
+    }
+
+    @Override
+    public synchronized void write(SerializedCallTreeList callTree) {
+        try (OutputBytesList bytes = callTree.toBytes()) {
+            if (callTree.isEmpty()) {
+                return;
+            }
+            write(bytes, (address, writeMillis) -> tocFrame.onRecordingList(callTree.getRecordingId(), address, writeMillis));
         }
     }
 
@@ -125,7 +183,7 @@ public class FileRecordingDataWriter implements RecordingDataWriter {
             return;
         }
         try (OutputBytesList bytes = methods.getBytes()) {
-            write(writer -> writer.write(bytes));
+            write(bytes, (address, writeMillis) -> tocFrame.onGlobalList(address));
         }
     }
 
@@ -137,9 +195,16 @@ public class FileRecordingDataWriter implements RecordingDataWriter {
     @Override
     public synchronized void close() {
         if (fileWriter != null) {
-            fileWriter.write(new OutputBytesList(RecordingCompleteMark.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer())));
+            // The last frame is always written, so that the footer points to some frame
+            writeTocFrame(fileWriter);
+            fileWriter.write(TableOfContents.footer(lastTocFrameAddress));
             fileWriter.close();
             fileWriter = null;
         }
     }
+
+    private interface TocCallback {
+
+        void onWritten(long address, long writeMillis);
+    }
 }
@@ -1,6 +1,8 @@
 package com.ulyp.storage.writer;
 
 import com.ulyp.core.*;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
 import com.ulyp.core.mem.SerializedMethodList;
 import com.ulyp.core.mem.SerializedRecordedMethodCallList;
 import com.ulyp.core.mem.SerializedTypeList;
@@ -23,6 +25,8 @@ public class HeapRecordingDataWrtiter implements RecordingDataWriter {
     private final List<Method> methods = new ArrayList<>();
     @Getter
     private final List<RecordedMethodCall> callRecords = new ArrayList<>();
+    @Getter
+    private final List<SerializedCallTreeList> callTrees = new ArrayList<>();
 
     @Override
     public void reset(ResetRequest resetRequest) throws StorageException {
@@ -63,6 +67,16 @@ public class HeapRecordingDataWrtiter implements RecordingDataWriter {
         calls.iterator(types).forEachRemaining(this.callRecords::add);
     }
 
+    @Override
+    public void write(SerializedCallIndexList callIndex) throws StorageException {
+        // NOP for tests
+    }
+
+    @Override
+    public void write(SerializedCallTreeList callTree) throws StorageException {
+        callTrees.add(callTree);
+    }
+
     @Override
     public long estimateBytesWritten() {
         return 0;
@@ -2,6 +2,8 @@ package com.ulyp.storage.writer;
 
 import com.ulyp.core.ProcessMetadata;
 import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
 import com.ulyp.core.mem.SerializedMethodList;
 import com.ulyp.core.mem.SerializedRecordedMethodCallList;
 import com.ulyp.core.mem.SerializedTypeList;
@@ -50,6 +52,16 @@ public interface RecordingDataWriter extends AutoCloseable {
 
     void write(SerializedRecordedMethodCallList callRecords) throws StorageException;
 
+    /**
+     * Writes call index of the recorded calls list which has been written right before
+     */
+    void write(SerializedCallIndexList callIndex) throws StorageException;
+
+    /**
+     * Writes calling context tree of the recording, which is written instead of recorded calls if calls are aggregated
+     */
+    void write(SerializedCallTreeList callTree) throws StorageException;
+
     long estimateBytesWritten();
 
     void close() throws StorageException;
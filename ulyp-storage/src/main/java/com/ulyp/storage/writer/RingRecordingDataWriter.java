@@ -0,0 +1,444 @@
+package com.ulyp.storage.writer;
+
+import com.ulyp.core.ProcessMetadata;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.bytes.BufferBytesOut;
+import com.ulyp.core.bytes.BytesOutputSink;
+import com.ulyp.core.mem.MemPage;
+import com.ulyp.core.mem.MemPageAllocator;
+import com.ulyp.core.mem.OutputBytesList;
+import com.ulyp.core.mem.PageConstants;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.serializers.ProcessMetadataSerializer;
+import com.ulyp.core.serializers.RecordingMetadataSerializer;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.toc.TableOfContents;
+import com.ulyp.storage.toc.TocFrame;
+import com.ulyp.storage.util.BinaryListFileWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps recording data in a fixed size ring of off-heap memory pages instead of writing it to the file (i.e. flight
+ * recorder). Once the ring is full, data of the oldest recordings is evicted. The current contents of the ring
+ * are written to a recording file by {@link #dump(File)}.
+ * <p>
+ * Process metadata, types and methods are kept on heap and never evicted, since every recording needs them to be read.
+ * Once some list of a recording is evicted, the whole recording is evicted, since it can't be read without the
+ * evicted part. Other lists of the evicted recording are not dumped, but still take space in the ring until they
+ * reach the head of the ring and are evicted as well. Lists which are written for the evicted recording later on are
+ * dropped.
+ * <p>
+ * State is only kept for recordings which have lists in the ring or are not finished yet, so memory doesn't grow
+ * with the number of recordings evicted over time.
+ */
+@Slf4j
+public class RingRecordingDataWriter implements RecordingDataWriter {
+
+    private final MemPageAllocator pageAllocator;
+    private final MemPage[] pages;
+    private final long capacity;
+    private final RingSink ringSink = new RingSink();
+    /**
+     * Lists of recordings in the order they were written
+     */
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final Int2ObjectHashMap<RecordingState> recordings = new Int2ObjectHashMap<>();
+    private final List<byte[]> globalLists = new ArrayList<>();
+    @Nullable
+    private byte[] processMetadata;
+    /**
+     * Ring position of the oldest byte which is not evicted
+     */
+    private long head = 0;
+    /**
+     * Ring position the next list is written at
+     */
+    private long tail = 0;
+    private long evictedBytes = 0;
+
+    /**
+     * @param pageCount how many pages the ring has at most. Pages are allocated once needed
+     */
+    public RingRecordingDataWriter(MemPageAllocator pageAllocator, int pageCount) {
+        if (pageCount <= 0) {
+            throw new IllegalArgumentException("Ring must have at least one page, but got " + pageCount);
+        }
+        this.pageAllocator = pageAllocator;
+        this.pages = new MemPage[pageCount];
+        this.capacity = (long) pageCount * PageConstants.PAGE_SIZE;
+    }
+
+    /**
+     * Writes all recordings which are currently in the ring to the file. The file is complete, i.e. it has the table
+     * of contents, and can be opened in UI as any other recording file. Contents of the ring are copied while the
+     * writer is locked, the file is written after that, so that writes to the ring are not blocked by the disk
+     *
+     * @return how many recordings are written
+     */
+    public int dump(File file) throws StorageException {
+        Snapshot snapshot = snapshot();
+        try (BinaryListFileWriter writer = new BinaryListFileWriter(file)) {
+            TocFrame tocFrame = new TocFrame(-1L);
+            for (byte[] content : snapshot.globalLists) {
+                tocFrame.onGlobalList(writer.address());
+                writer.write(content);
+            }
+
+            for (Entry entry : snapshot.entries) {
+                long address = writer.address();
+                if (entry.metadata != null) {
+                    try (OutputBytesList bytes = serialize(entry.metadata)) {
+                        writer.write(bytes);
+                    }
+                    tocFrame.onRecordingMetadata(entry.metadata, address, entry.writeMillis);
+                } else {
+                    writer.write(entry.content);
+                    tocFrame.onRecordingList(entry.recordingId, address, entry.writeMillis);
+                }
+            }
+
+            long tocFrameAddress = writer.address();
+            try (OutputBytesList bytes = tocFrame.toBytes()) {
+                writer.write(bytes);
+            }
+            writer.write(TableOfContents.footer(tocFrameAddress));
+        } catch (IOException e) {
+            throw new StorageException("Could not dump recordings to " + file, e);
+        }
+        log.info("Dumped {} recordings to {}, {} bytes of older recordings were evicted so far",
+            snapshot.recordingsCount,
+            file,
+            snapshot.evictedBytes);
+        return snapshot.recordingsCount;
+    }
+
+    /**
+     * @return copy of all lists which are dumped, i.e. lists of recordings which are not evicted
+     */
+    private synchronized Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        if (processMetadata != null) {
+            snapshot.globalLists.add(processMetadata);
+        }
+        snapshot.globalLists.addAll(globalLists);
+        for (Entry entry : entries) {
+            RecordingState state = recordings.get(entry.recordingId);
+            if (state.evicted) {
+                continue;
+            }
+            if (entry.metadata != null) {
+                snapshot.entries.add(entry);
+            } else {
+                snapshot.entries.add(new Entry(entry.recordingId, entry.position, entry.length, entry.writeMillis, null, read(entry.position, entry.length)));
+            }
+        }
+        for (RecordingState state : recordings.values()) {
+            if (!state.evicted && state.entries > 0) {
+                snapshot.recordingsCount++;
+            }
+        }
+        snapshot.evictedBytes = evictedBytes;
+        return snapshot;
+    }
+
+    @Override
+    public void sync(Duration duration) {
+
+    }
+
+    @Override
+    public synchronized void reset(ResetRequest resetRequest) throws StorageException {
+        while (!entries.isEmpty()) {
+            evictOldest();
+        }
+        globalLists.clear();
+        write(resetRequest.getProcessMetadata());
+        write(resetRequest.getTypes());
+        write(resetRequest.getMethods());
+    }
+
+    @Override
+    public synchronized void write(ProcessMetadata processMetadata) throws StorageException {
+        try (OutputBytesList bytes = new OutputBytesList(ProcessMetadata.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()))) {
+            bytes.add(out -> ProcessMetadataSerializer.instance.serialize(out, processMetadata));
+            this.processMetadata = toByteArray(bytes);
+        }
+    }
+
+    @Override
+    public synchronized void write(RecordingMetadata recordingMetadata) throws StorageException {
+        int recordingId = recordingMetadata.getId();
+        RecordingState state = recordings.computeIfAbsent(recordingId, id -> new RecordingState());
+        if (recordingMetadata.getRecordingFinishedMillis() > 0) {
+            state.finished = true;
+        }
+        if (state.evicted && !state.finished) {
+            return;
+        }
+        // Metadata is mutable, so it's copied. Metadata of the finished evicted recording is never dumped, but it keeps
+        // the state of the recording until it reaches the head, so that lists which are written right after it are dropped
+        RecordingMetadata metadata = recordingMetadata.withCompleteTime(recordingMetadata.getRecordingFinishedMillis());
+        addEntry(state, new Entry(recordingId, tail, 0, System.currentTimeMillis(), metadata, null));
+    }
+
+    @Override
+    public synchronized void write(SerializedTypeList types) throws StorageException {
+        if (types.size() == 0) {
+            return;
+        }
+        try (OutputBytesList bytes = types.getBytes()) {
+            globalLists.add(toByteArray(bytes));
+        }
+    }
+
+    @Override
+    public synchronized void write(SerializedMethodList methods) throws StorageException {
+        if (methods.size() == 0) {
+            return;
+        }
+        try (OutputBytesList bytes = methods.getBytes()) {
+            globalLists.add(toByteArray(bytes));
+        }
+    }
+
+    @Override
+    public synchronized void write(SerializedRecordedMethodCallList callRecords) throws StorageException {
+        try (OutputBytesList bytes = callRecords.toBytes()) {
+            if (bytes.isEmpty()) {
+                return;
+            }
+            writeToRing(callRecords.getRecordingId(), bytes);
+        }
+    }
+
+    @Override
+    public synchronized void write(SerializedCallIndexList callIndex) throws StorageException {
+        try (OutputBytesList bytes = callIndex.toBytes()) {
+            writeToRing(callIndex.getRecordingId(), bytes);
+        }
+    }
+
+    @Override
+    public synchronized void write(SerializedCallTreeList callTree) throws StorageException {
+        try (OutputBytesList bytes = callTree.toBytes()) {
+            if (callTree.isEmpty()) {
+                return;
+            }
+            writeToRing(callTree.getRecordingId(), bytes);
+        }
+    }
+
+    private void writeToRing(int recordingId, OutputBytesList bytes) {
+        RecordingState state = recordings.computeIfAbsent(recordingId, id -> new RecordingState());
+        if (state.evicted) {
+            return;
+        }
+        // Position is never less than the number of bytes written, so it's safe to evict by it
+        int maxLength = bytes.bytesWritten();
+        if (maxLength > capacity) {
+            log.warn("Recording {} is evicted since its list of {} bytes doesn't fit the ring", recordingId, maxLength);
+            state.evicted = true;
+            return;
+        }
+        while (capacity - (tail - head) < maxLength) {
+            evictOldest();
+        }
+        long position = tail;
+        try {
+            int length = bytes.writeTo(ringSink);
+            addEntry(state, new Entry(recordingId, position, length, System.currentTimeMillis(), null, null));
+        } catch (IOException e) {
+            throw new StorageException("Could not write to the ring", e);
+        }
+    }
+
+    private void addEntry(RecordingState state, Entry entry) {
+        entries.addLast(entry);
+        state.entries++;
+    }
+
+    private void evictOldest() {
+        Entry entry = entries.pollFirst();
+        if (entry == null) {
+            // Nothing to evict, so the ring is empty
+            head = tail;
+            return;
+        }
+        RecordingState state = recordings.get(entry.recordingId);
+        state.entries--;
+        if (!state.evicted) {
+            state.evicted = true;
+            if (log.isDebugEnabled()) {
+                log.debug("Evicted recording {} from the ring", entry.recordingId);
+            }
+        }
+        if (state.entries == 0 && state.finished) {
+            // Nothing is written for the finished recording anymore
+            recordings.remove(entry.recordingId);
+        }
+        Entry next = entries.peekFirst();
+        long newHead = next != null ? next.position : tail;
+        evictedBytes += newHead - head;
+        head = newHead;
+    }
+
+    private byte[] read(long position, int length) {
+        byte[] content = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long pos = position + copied;
+            int offset = (int) (pos & PageConstants.PAGE_BYTE_SIZE_MASK);
+            int count = Math.min(length - copied, PageConstants.PAGE_SIZE - offset);
+            page(pos).getBuffer().getBytes(offset, content, copied, count);
+            copied += count;
+        }
+        return content;
+    }
+
+    private MemPage page(long position) {
+        int index = (int) ((position >>> PageConstants.PAGE_BITS) % pages.length);
+        MemPage page = pages[index];
+        if (page == null) {
+            page = pageAllocator.allocate();
+            pages[index] = page;
+        }
+        return page;
+    }
+
+    private static OutputBytesList serialize(RecordingMetadata metadata) {
+        OutputBytesList bytes = new OutputBytesList(RecordingMetadata.WIRE_ID, new BufferBytesOut(new ExpandableDirectByteBuffer()));
+        bytes.add(out -> RecordingMetadataSerializer.instance.serialize(out, metadata));
+        return bytes;
+    }
+
+    private static byte[] toByteArray(OutputBytesList bytes) {
+        ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(bytes.bytesWritten());
+        int[] length = new int[1];
+        try {
+            bytes.writeTo((source, count) -> {
+                buffer.putBytes(length[0], source, 0, count);
+                length[0] += count;
+            });
+        } catch (IOException e) {
+            throw new StorageException("Could not copy list", e);
+        }
+        byte[] content = new byte[length[0]];
+        buffer.getBytes(0, content);
+        return content;
+    }
+
+    /**
+     * @return how many bytes recordings take in the ring at the moment
+     */
+    public synchronized long bytesUsed() {
+        return tail - head;
+    }
+
+    /**
+     * @return how many recordings the writer keeps state of
+     */
+    @TestOnly
+    synchronized int trackedRecordings() {
+        return recordings.size();
+    }
+
+    @Override
+    public long estimateBytesWritten() {
+        // Nothing is written to disk unless dumped
+        return 0;
+    }
+
+    @Override
+    public synchronized void close() throws StorageException {
+        entries.clear();
+        recordings.clear();
+        head = tail;
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] != null) {
+                pageAllocator.deallocate(pages[i]);
+                pages[i] = null;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RingStorageWriter";
+    }
+
+    /**
+     * Copies lists to the ring at its tail. The space must be freed before the list is copied
+     */
+    private class RingSink implements BytesOutputSink {
+
+        @Override
+        public void write(DirectBuffer buffer, int length) {
+            int copied = 0;
+            while (copied < length) {
+                int offset = (int) (tail & PageConstants.PAGE_BYTE_SIZE_MASK);
+                int count = Math.min(length - copied, PageConstants.PAGE_SIZE - offset);
+                page(tail).getBuffer().putBytes(offset, buffer, copied, count);
+                copied += count;
+                tail += count;
+            }
+        }
+    }
+
+    private static class RecordingState {
+
+        /**
+         * How many lists of the recording are in the ring, including evicted ones
+         */
+        private int entries;
+        private boolean evicted;
+        private boolean finished;
+    }
+
+    private static class Entry {
+
+        private final int recordingId;
+        private final long position;
+        private final int length;
+        private final long writeMillis;
+        @Nullable
+        private final RecordingMetadata metadata;
+        /**
+         * Content of the list copied from the ring, only set for lists of the snapshot
+         */
+        @Nullable
+        private final byte[] content;
+
+        private Entry(int recordingId, long position, int length, long writeMillis, @Nullable RecordingMetadata metadata, @Nullable byte[] content) {
+            this.recordingId = recordingId;
+            this.position = position;
+            this.length = length;
+            this.writeMillis = writeMillis;
+            this.metadata = metadata;
+            this.content = content;
+        }
+    }
+
+    private static class Snapshot {
+
+        private final List<byte[]> globalLists = new ArrayList<>();
+        private final List<Entry> entries = new ArrayList<>();
+        private int recordingsCount;
+        private long evictedBytes;
+    }
+}
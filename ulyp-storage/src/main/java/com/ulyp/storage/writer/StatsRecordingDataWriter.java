@@ -2,6 +2,8 @@ package com.ulyp.storage.writer;
 
 import com.ulyp.core.ProcessMetadata;
 import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.mem.SerializedCallIndexList;
+import com.ulyp.core.mem.SerializedCallTreeList;
 import com.ulyp.core.mem.SerializedMethodList;
 import com.ulyp.core.mem.SerializedRecordedMethodCallList;
 import com.ulyp.core.mem.SerializedTypeList;
@@ -64,6 +66,18 @@ public class StatsRecordingDataWriter implements RecordingDataWriter {
         methodCallBytesWritten.add(callRecords.bytesWritten(), callRecords.size());
     }
 
+    @Override
+    public void write(SerializedCallIndexList callIndex) throws StorageException {
+        totalBytesWritten.addAndGet(callIndex.toBytes().bytesWritten());
+        delegate.write(callIndex);
+    }
+
+    @Override
+    public void write(SerializedCallTreeList callTree) throws StorageException {
+        totalBytesWritten.addAndGet(callTree.toBytes().bytesWritten());
+        delegate.write(callTree);
+    }
+
     @Override
     public long estimateBytesWritten() {
         return totalBytesWritten.get();
@@ -0,0 +1,110 @@
+package com.ulyp.storage.analysis;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.mem.SerializedCallTreeList;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.util.TestRecordingFile;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import com.ulyp.storage.writer.RecordingDataWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallTreeAggregationTest {
+
+    private final TestRecordingFile recordingFile = new TestRecordingFile(CallTreeAggregationTest.class);
+    private final Method a = recordingFile.method(1000, "a");
+    private final Method b = recordingFile.method(1001, "b");
+    private final Method c = recordingFile.method(1002, "c");
+    private final File file = recordingFile.getFile();
+    private RecordingDataReader reader;
+    private RecordingDataWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        reader = new FileRecordingDataReaderBuilder(file).build();
+        writer = new FileRecordingDataWriter(file);
+
+        recordingFile.writeTypesAndMethods(writer);
+        writer.write(RecordingMetadata.builder().id(1).threadName("main").build());
+        writer.write(RecordingMetadata.builder().id(2).threadName("worker").build());
+
+        // a -> b, while a is not completed yet
+        SerializedCallTreeList callTree = new SerializedCallTreeList(1);
+        callTree.add(0, SerializedCallTreeList.NO_PARENT, a.getId(), 0L, 0L, 0L);
+        callTree.add(1, 0, b.getId(), 1L, 10L, 10L);
+        writer.write(callTree);
+
+        callTree = new SerializedCallTreeList(2);
+        callTree.add(0, SerializedCallTreeList.NO_PARENT, c.getId(), 5L, 50L, 50L);
+        writer.write(callTree);
+
+        // a -> (b, c) and a is completed
+        callTree = new SerializedCallTreeList(1);
+        callTree.add(1, 0, b.getId(), 1L, 5L, 5L);
+        callTree.add(0, SerializedCallTreeList.NO_PARENT, a.getId(), 1L, 50L, 33L);
+        callTree.add(2, 0, c.getId(), 1L, 20L, 20L);
+        writer.write(callTree);
+        writer.close();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reader.close();
+        writer.close();
+        recordingFile.close();
+    }
+
+    @Test
+    void testMergesCallTreesOfRecording() throws Exception {
+        CallTreeProfile profile = new CallTreeAggregationBuilder(reader)
+            .start()
+            .getCompleteFuture()
+            .get();
+
+        assertEquals(2, profile.getRecordings().size());
+
+        RecordingCallTree recording = profile.getRecording(1);
+        assertEquals("main", recording.getMetadata().getThreadName());
+        assertEquals(4, recording.getCallCount());
+        assertEquals(50L, recording.getTotalNanos());
+        assertEquals(1, recording.getRoots().size());
+
+        CallTreeNode root = recording.getRoots().get(0);
+        assertEquals("a", root.getMethod().getName());
+        assertEquals(1L, root.getCallCount());
+        assertEquals(33L, root.getSelfNanos());
+
+        // Children are sorted by total time
+        assertEquals(2, root.getChildren().size());
+        CallTreeNode first = root.getChildren().get(0);
+        assertEquals(c.getId(), first.getMethodId());
+        assertEquals(20L, first.getTotalNanos());
+        CallTreeNode second = root.getChildren().get(1);
+        assertEquals(b.getId(), second.getMethodId());
+        assertEquals(2L, second.getCallCount());
+        assertEquals(15L, second.getTotalNanos());
+        assertTrue(second.getChildren().isEmpty());
+    }
+
+    @Test
+    void testSingleRecording() throws Exception {
+        CallTreeProfile profile = new CallTreeAggregationBuilder(reader)
+            .setRecordingId(2)
+            .start()
+            .getCompleteFuture()
+            .get();
+
+        assertEquals(1, profile.getRecordings().size());
+        RecordingCallTree recording = profile.getRecordings().get(0);
+        assertEquals(2, recording.getRecordingId());
+        assertEquals(5L, recording.getCallCount());
+        assertEquals(c.getId(), recording.getRoots().get(0).getMethodId());
+    }
+}
@@ -0,0 +1,119 @@
+package com.ulyp.storage.analysis;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.util.TestRecordingFile;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import com.ulyp.storage.writer.RecordingDataWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotSpotAnalysisTest {
+
+    private static final long MILLIS = 1000_000L;
+
+    private final TestRecordingFile recordingFile = new TestRecordingFile(HotSpotAnalysisTest.class);
+    private final TypeResolver typeResolver = recordingFile.getTypeResolver();
+    private final Method a = recordingFile.method(1000, "a");
+    private final Method b = recordingFile.method(1001, "b");
+    private final Method c = recordingFile.method(1002, "c");
+    private final Object obj = recordingFile.getCallee();
+    private final File file = recordingFile.getFile();
+    private RecordingDataReader reader;
+    private RecordingDataWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        reader = new FileRecordingDataReaderBuilder(file).build();
+        writer = new FileRecordingDataWriter(file);
+
+        recordingFile.writeTypesAndMethods(writer);
+        for (int recordingId = 1; recordingId <= 2; recordingId++) {
+            writer.write(RecordingMetadata.builder().id(recordingId).build());
+
+            // a -> b -> b (recursive), then a -> c which throws
+            SerializedRecordedMethodCallList calls = recordingFile.calls(recordingId);
+            calls.addEnterMethodCall(a.getId(), typeResolver, obj, new Object[]{}, 10 * MILLIS);
+            calls.addEnterMethodCall(b.getId(), typeResolver, obj, new Object[]{}, 20 * MILLIS);
+            calls.addEnterMethodCall(b.getId(), typeResolver, obj, new Object[]{}, 30 * MILLIS);
+            calls.addExitMethodCall(3, typeResolver, "x", 40 * MILLIS);
+            writer.write(calls);
+
+            calls = recordingFile.calls(recordingId);
+            calls.addExitMethodCall(2, typeResolver, "y", 60 * MILLIS);
+            calls.addEnterMethodCall(c.getId(), typeResolver, obj, new Object[]{}, 70 * MILLIS);
+            calls.addExitMethodThrow(4, typeResolver, new RuntimeException(), 75 * MILLIS);
+            calls.addExitMethodCall(1, typeResolver, "z", 100 * MILLIS);
+            writer.write(calls);
+        }
+        writer.close();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reader.close();
+        writer.close();
+        recordingFile.close();
+    }
+
+    @Test
+    void testAggregates() throws Exception {
+        HotSpotReport report = new HotSpotAnalysisBuilder(reader)
+            .setThreads(4)
+            .start()
+            .getCompleteFuture()
+            .get();
+
+        assertEquals(3, report.getMethods().size());
+
+        List<MethodStats> bySelfTime = report.topBySelfTime(10);
+        assertEquals(a.getId(), bySelfTime.get(0).getMethodId());
+        assertEquals("a", bySelfTime.get(0).getMethod().getName());
+        assertEquals(2, bySelfTime.get(0).getCallCount());
+        assertEquals(180 * MILLIS, bySelfTime.get(0).getTotalNanos());
+        assertEquals(90 * MILLIS, bySelfTime.get(0).getSelfNanos());
+        assertEquals(90 * MILLIS, bySelfTime.get(0).getMaxNanos());
+
+        MethodStats bStats = bySelfTime.get(1);
+        assertEquals(b.getId(), bStats.getMethodId());
+        assertEquals(4, bStats.getCallCount());
+        // Recursive call is only counted once in the total time
+        assertEquals(80 * MILLIS, bStats.getTotalNanos());
+        assertEquals(80 * MILLIS, bStats.getSelfNanos());
+        assertEquals(40 * MILLIS, bStats.getMaxNanos());
+
+        MethodStats cStats = bySelfTime.get(2);
+        assertEquals(c.getId(), cStats.getMethodId());
+        assertEquals(2, cStats.getThrownCount());
+        assertEquals(10 * MILLIS, cStats.getTotalNanos());
+
+        assertEquals(b.getId(), report.topByCallCount(1).get(0).getMethodId());
+        assertEquals(1, report.topByCallCount(1).size());
+    }
+
+    @Test
+    void testSingleRecording() throws Exception {
+        HotSpotReport report = new HotSpotAnalysisBuilder(reader)
+            .setRecordingId(2)
+            .setThreads(1)
+            .start()
+            .getCompleteFuture()
+            .get();
+
+        MethodStats top = report.topByTotalTime(1).get(0);
+        assertEquals(a.getId(), top.getMethodId());
+        assertEquals(1, top.getCallCount());
+        assertEquals(90 * MILLIS, top.getTotalNanos());
+        assertEquals(45 * MILLIS, top.getSelfNanos());
+    }
+}
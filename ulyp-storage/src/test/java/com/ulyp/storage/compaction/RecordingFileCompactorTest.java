@@ -0,0 +1,211 @@
+package com.ulyp.storage.compaction;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.storage.StorageException;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.toc.RecordingContents;
+import com.ulyp.storage.toc.TableOfContents;
+import com.ulyp.storage.toc.TocFrame;
+import com.ulyp.storage.tree.CallRecordTree;
+import com.ulyp.storage.tree.CallRecordTreeBuilder;
+import com.ulyp.storage.tree.InMemoryIndex;
+import com.ulyp.storage.tree.Recording;
+import com.ulyp.storage.util.BinaryListFileReader;
+import com.ulyp.storage.util.TestRecordingFile;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordingFileCompactorTest {
+
+    private final TestRecordingFile recordingFile = new TestRecordingFile(RecordingFileCompactorTest.class);
+    private final TypeResolver typeResolver = recordingFile.getTypeResolver();
+    private final Method method = recordingFile.method(1000, "run");
+    private final Object obj = recordingFile.getCallee();
+    private final File input = recordingFile.getFile();
+    private File output;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        output = Files.createTempFile(RecordingFileCompactorTest.class.getSimpleName(), "b").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        recordingFile.close();
+        output.delete();
+    }
+
+    /**
+     * Writes three recordings, chunks of which are interleaved. Every recording has a root call with two children,
+     * every call is written as a separate chunk
+     */
+    private FileRecordingDataWriter writeRecordings() {
+        FileRecordingDataWriter writer = new FileRecordingDataWriter(input);
+        recordingFile.writeTypesAndMethods(writer);
+
+        for (int recordingId = 1; recordingId <= 3; recordingId++) {
+            writer.write(RecordingMetadata.builder().id(recordingId).threadName("thread-" + recordingId).build());
+            SerializedRecordedMethodCallList calls = recordingFile.calls(recordingId);
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{});
+            writer.write(calls);
+        }
+        for (int child = 0; child < 2; child++) {
+            for (int recordingId = 1; recordingId <= 3; recordingId++) {
+                SerializedRecordedMethodCallList calls = recordingFile.calls(recordingId);
+                calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{});
+                calls.addExitMethodCall(child + 2, typeResolver, "child");
+                writer.write(calls);
+            }
+        }
+        for (int recordingId = 1; recordingId <= 3; recordingId++) {
+            SerializedRecordedMethodCallList calls = recordingFile.calls(recordingId);
+            calls.addExitMethodCall(1, typeResolver, "root");
+            writer.write(calls);
+        }
+        return writer;
+    }
+
+    private void assertRecordingsAreContiguous(TableOfContents toc) {
+        long previousAddress = -1L;
+        for (RecordingContents contents : toc.getRecordings()) {
+            // Metadata and four chunks
+            assertEquals(5, contents.getListAddresses().size());
+            for (int i = 0; i < contents.getListAddresses().size(); i++) {
+                long address = contents.getListAddresses().getLong(i);
+                assertTrue(address > previousAddress);
+                previousAddress = address;
+            }
+        }
+    }
+
+    private void assertRecordings(File file) throws Exception {
+        try (RecordingDataReader reader = new FileRecordingDataReaderBuilder(file).build();
+             CallRecordTree tree = new CallRecordTreeBuilder(reader)
+                 .setIndexSupplier(InMemoryIndex::new)
+                 .setReadInfinitely(false)
+                 .build()) {
+            tree.getCompleteFuture().get();
+
+            List<Recording> recordings = tree.getRecordings();
+            assertEquals(3, recordings.size());
+            for (Recording recording : recordings) {
+                assertEquals("thread-" + recording.getId(), recording.getMetadata().getThreadName());
+                assertEquals(3, recording.callCount());
+                assertEquals(2, recording.getRoot().getChildren().size());
+            }
+        }
+    }
+
+    @Test
+    void testRecordingsAreCompacted() throws Exception {
+        writeRecordings().close();
+
+        CompactionResult result = new RecordingFileCompactorBuilder(input, output).build().compact();
+
+        assertEquals(3, result.getRecordings());
+        assertEquals(12, result.getChunks());
+        assertEquals(0, result.getSortedRuns());
+
+        TableOfContents toc = TableOfContents.read(output);
+        assertNotNull(toc);
+        assertEquals(3, toc.getRecordings().size());
+        assertRecordingsAreContiguous(toc);
+        assertRecordings(output);
+    }
+
+    @Test
+    void testChunksAreSortedExternally() throws Exception {
+        writeRecordings().close();
+
+        CompactionResult result = new RecordingFileCompactorBuilder(input, output)
+            .setSortBufferEntries(5)
+            // Frame is written after every list
+            .setTocIntervalBytes(1)
+            .build()
+            .compact();
+
+        assertEquals(3, result.getSortedRuns());
+
+        TableOfContents toc = TableOfContents.read(output);
+        assertNotNull(toc);
+        assertRecordingsAreContiguous(toc);
+        assertRecordings(output);
+    }
+
+    @Test
+    void testRecordingsAreReadByTableOfContents() throws Exception {
+        writeRecordings().close();
+
+        new RecordingFileCompactorBuilder(input, output)
+            // Frame is written after every list
+            .setTocIntervalBytes(1)
+            .build()
+            .compact();
+
+        TableOfContents toc = TableOfContents.read(output);
+        assertNotNull(toc);
+        try (BinaryListFileReader fileReader = new BinaryListFileReader(output)) {
+            for (int recordingId = 1; recordingId <= 3; recordingId++) {
+                // Table of contents must point to lists of the recording, never to frames
+                for (long address : toc.getListAddresses(recordingId)) {
+                    fileReader.moveTo(address);
+                    assertNotEquals(TocFrame.WIRE_ID, fileReader.readWithAddress().getBytes().id());
+                }
+            }
+        }
+
+        for (int recordingId = 1; recordingId <= 3; recordingId++) {
+            // Tree closes the reader
+            try (CallRecordTree tree = new CallRecordTreeBuilder(new FileRecordingDataReaderBuilder(output).build())
+                .setIndexSupplier(InMemoryIndex::new)
+                .setReadInfinitely(false)
+                .setRecordingId(recordingId)
+                .build()) {
+                tree.getCompleteFuture().get();
+
+                List<Recording> recordings = tree.getRecordings();
+                assertEquals(1, recordings.size());
+                Recording recording = recordings.get(0);
+                assertEquals(recordingId, recording.getId());
+                assertEquals(3, recording.callCount());
+                assertEquals(2, recording.getRoot().getChildren().size());
+            }
+        }
+    }
+
+    @Test
+    void testCompactWithoutTableOfContents() throws Exception {
+        writeRecordings().close();
+
+        new RecordingFileCompactorBuilder(input, output)
+            .setTableOfContents(false)
+            .build()
+            .compact();
+
+        assertNull(TableOfContents.read(output));
+        assertRecordings(output);
+    }
+
+    @Test
+    void testIncompleteFileIsNotCompacted() {
+        FileRecordingDataWriter writer = writeRecordings();
+        try {
+            assertThrows(StorageException.class, () -> new RecordingFileCompactorBuilder(input, output).build().compact());
+        } finally {
+            writer.close();
+        }
+    }
+}
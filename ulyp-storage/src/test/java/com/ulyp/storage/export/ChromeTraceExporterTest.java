@@ -0,0 +1,119 @@
+package com.ulyp.storage.export;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.util.TestRecordingFile;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChromeTraceExporterTest {
+
+    private static final long MILLIS = 1000_000L;
+
+    private final TestRecordingFile recordingFile = new TestRecordingFile(ChromeTraceExporterTest.class);
+    private final TypeResolver typeResolver = recordingFile.getTypeResolver();
+    private final Type type = recordingFile.getType();
+    private final Method a = recordingFile.method(1000, "a");
+    private final Method b = recordingFile.method(1001, "b");
+    private final Object obj = recordingFile.getCallee();
+    private final File file = recordingFile.getFile();
+    private RecordingDataReader reader;
+    private FileRecordingDataWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        reader = new FileRecordingDataReaderBuilder(file).build();
+        writer = new FileRecordingDataWriter(file);
+
+        recordingFile.writeTypesAndMethods(writer);
+        writer.write(RecordingMetadata.builder().id(1).threadName("main \"thread\"").build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reader.close();
+        writer.close();
+        recordingFile.close();
+    }
+
+    @Test
+    void testTimedCalls() {
+        // a -> (b, b), the second b is never exited
+        SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(a.getId(), typeResolver, obj, new Object[]{}, 10 * MILLIS);
+        calls.addEnterMethodCall(b.getId(), typeResolver, obj, new Object[]{}, 20 * MILLIS);
+        calls.addExitMethodThrow(2, typeResolver, new RuntimeException(), 20 * MILLIS + 1500);
+        calls.addEnterMethodCall(b.getId(), typeResolver, obj, new Object[]{}, 30 * MILLIS);
+        writer.write(calls);
+        writer.close();
+
+        StringWriter out = new StringWriter();
+        ExportResult result = new ChromeTraceExporterBuilder(reader).build().export(out);
+        String trace = out.toString();
+
+        assertTrue(trace.startsWith("{\"traceEvents\":["));
+        assertTrue(trace.contains("\"args\":{\"name\":\"main \\\"thread\\\" (recording 1)\"}"));
+        assertTrue(trace.contains("\"name\":\"" + type.getName() + ".b\",\"cat\":\"call\",\"ph\":\"X\",\"pid\":1,\"tid\":1,\"ts\":10000.000,\"dur\":1.500,\"args\":{\"thrown\":true}}"));
+        // Calls which are not exited end at the last timestamp of the recording
+        assertTrue(trace.contains("\"ts\":0.000,\"dur\":20000.000}"));
+        assertTrue(trace.contains("\"ts\":20000.000,\"dur\":0.000}"));
+        assertTrue(result.isTimed());
+        // Thread name and 3 calls
+        assertEquals(4, result.getRecords());
+    }
+
+    @Test
+    void testShortCallsAreSkipped() {
+        SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(a.getId(), typeResolver, obj, new Object[]{}, 10 * MILLIS);
+        calls.addEnterMethodCall(b.getId(), typeResolver, obj, new Object[]{}, 20 * MILLIS);
+        calls.addExitMethodCall(2, typeResolver, "b", 21 * MILLIS);
+        calls.addExitMethodCall(1, typeResolver, "a", 40 * MILLIS);
+        writer.write(calls);
+        writer.close();
+
+        StringWriter out = new StringWriter();
+        ExportResult result = new ChromeTraceExporterBuilder(reader)
+            .setMinDuration(Duration.ofMillis(5))
+            .build()
+            .export(out);
+
+        assertFalse(out.toString().contains(type.getName() + ".b"));
+        assertEquals(2, result.getRecords());
+    }
+
+    @Test
+    void testCallCountIsUsedAsClockWithoutTimestamps() {
+        SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(a.getId(), typeResolver, obj, new Object[]{});
+        calls.addEnterMethodCall(b.getId(), typeResolver, obj, new Object[]{});
+        calls.addExitMethodCall(2, typeResolver, "b");
+        calls.addEnterMethodCall(b.getId(), typeResolver, obj, new Object[]{});
+        calls.addExitMethodCall(3, typeResolver, "b");
+        calls.addExitMethodCall(1, typeResolver, "a");
+        writer.write(calls);
+        writer.close();
+
+        StringWriter out = new StringWriter();
+        ExportResult result = new ChromeTraceExporterBuilder(reader).build().export(out);
+        String trace = out.toString();
+
+        assertFalse(result.isTimed());
+        assertTrue(trace.contains("\"ts\":1,\"dur\":1}"));
+        assertTrue(trace.contains("\"ts\":2,\"dur\":1}"));
+        assertTrue(trace.contains("\"ts\":0,\"dur\":3}"));
+    }
+}
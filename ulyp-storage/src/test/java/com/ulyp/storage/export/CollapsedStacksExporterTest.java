@@ -0,0 +1,140 @@
+package com.ulyp.storage.export;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.util.TestRecordingFile;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollapsedStacksExporterTest {
+
+    private static final long MILLIS = 1000_000L;
+
+    private final TestRecordingFile recordingFile = new TestRecordingFile(CollapsedStacksExporterTest.class);
+    private final TypeResolver typeResolver = recordingFile.getTypeResolver();
+    private final Type type = recordingFile.getType();
+    private final Method a = recordingFile.method(1000, "a");
+    private final Method b = recordingFile.method(1001, "b");
+    private final Method c = recordingFile.method(1002, "c");
+    private final Object obj = recordingFile.getCallee();
+    private final File file = recordingFile.getFile();
+    private RecordingDataReader reader;
+    private FileRecordingDataWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        reader = new FileRecordingDataReaderBuilder(file).build();
+        writer = new FileRecordingDataWriter(file);
+
+        recordingFile.writeTypesAndMethods(writer);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reader.close();
+        writer.close();
+        recordingFile.close();
+    }
+
+    /**
+     * a -> b -> b (recursive), then a -> c which throws. Timestamps are not recorded if {@code nanos} is false
+     */
+    private void writeRecording(int recordingId, String threadName, boolean nanos) {
+        writer.write(RecordingMetadata.builder().id(recordingId).threadName(threadName).build());
+
+        SerializedRecordedMethodCallList calls = recordingFile.calls(recordingId);
+        calls.addEnterMethodCall(a.getId(), typeResolver, obj, new Object[]{}, time(10, nanos));
+        calls.addEnterMethodCall(b.getId(), typeResolver, obj, new Object[]{}, time(20, nanos));
+        calls.addEnterMethodCall(b.getId(), typeResolver, obj, new Object[]{}, time(30, nanos));
+        calls.addExitMethodCall(3, typeResolver, "x", time(40, nanos));
+        writer.write(calls);
+
+        calls = recordingFile.calls(recordingId);
+        calls.addExitMethodCall(2, typeResolver, "y", time(60, nanos));
+        calls.addEnterMethodCall(c.getId(), typeResolver, obj, new Object[]{}, time(70, nanos));
+        calls.addExitMethodThrow(4, typeResolver, new RuntimeException(), time(75, nanos));
+        calls.addExitMethodCall(1, typeResolver, "z", time(100, nanos));
+        writer.write(calls);
+    }
+
+    private static long time(long millis, boolean nanos) {
+        return nanos ? millis * MILLIS : -1L;
+    }
+
+    private Set<String> export(CollapsedStacksExporterBuilder builder, ExportResult[] result) {
+        StringWriter out = new StringWriter();
+        result[0] = builder.build().export(out);
+        return new HashSet<>(Arrays.asList(out.toString().split("\n")));
+    }
+
+    @Test
+    void testStacksAreWeightedBySelfTime() {
+        writeRecording(1, "main", true);
+        writer.close();
+
+        ExportResult[] result = new ExportResult[1];
+        Set<String> lines = export(new CollapsedStacksExporterBuilder(reader), result);
+
+        String prefix = "main;" + type.getName() + ".a";
+        Set<String> expected = new HashSet<>(Arrays.asList(
+            prefix + " " + 45 * MILLIS,
+            prefix + ";" + type.getName() + ".b " + 30 * MILLIS,
+            prefix + ";" + type.getName() + ".b;" + type.getName() + ".b " + 10 * MILLIS,
+            prefix + ";" + type.getName() + ".c " + 5 * MILLIS
+        ));
+        assertEquals(expected, lines);
+        assertTrue(result[0].isTimed());
+        assertEquals(4, result[0].getCalls());
+        assertEquals(4, result[0].getRecords());
+    }
+
+    @Test
+    void testIdenticalStacksAreAggregatedByCallCount() {
+        writeRecording(1, "worker", false);
+        writeRecording(2, "worker", false);
+        writeRecording(3, "main", false);
+        writer.close();
+
+        ExportResult[] result = new ExportResult[1];
+        Set<String> lines = export(new CollapsedStacksExporterBuilder(reader).setThreadFrames(false), result);
+
+        String prefix = type.getName() + ".a";
+        Set<String> expected = new HashSet<>(Arrays.asList(
+            prefix + " 3",
+            prefix + ";" + type.getName() + ".b 3",
+            prefix + ";" + type.getName() + ".b;" + type.getName() + ".b 3",
+            prefix + ";" + type.getName() + ".c 3"
+        ));
+        assertEquals(expected, lines);
+        assertFalse(result[0].isTimed());
+        assertEquals(12, result[0].getCalls());
+    }
+
+    @Test
+    void testSingleRecording() {
+        writeRecording(1, "worker", false);
+        writeRecording(2, "main", false);
+        writer.close();
+
+        ExportResult[] result = new ExportResult[1];
+        Set<String> lines = export(new CollapsedStacksExporterBuilder(reader).setRecordingId(2), result);
+
+        assertTrue(lines.contains("main;" + type.getName() + ".a 1"));
+        assertEquals(4, result[0].getCalls());
+    }
+}
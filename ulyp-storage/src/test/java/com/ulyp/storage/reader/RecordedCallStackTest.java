@@ -0,0 +1,61 @@
+package com.ulyp.storage.reader;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordedCallStackTest {
+
+    @Test
+    void testDurationAndSelfTime() {
+        RecordedCallStack stack = new RecordedCallStack();
+
+        assertEquals(1, stack.enter(10, 100L));
+        assertEquals(2, stack.enter(11, 110L));
+        assertTrue(stack.exit(2, 150L));
+        assertEquals(40L, stack.durationNanos());
+        assertEquals(40L, stack.selfNanos());
+        stack.pop();
+
+        assertTrue(stack.exit(1, 200L));
+        assertEquals(100L, stack.durationNanos());
+        assertEquals(60L, stack.selfNanos());
+        assertEquals(2, stack.subtreeSize());
+        stack.pop();
+
+        assertEquals(0, stack.depth());
+        assertEquals(2, stack.callCount());
+    }
+
+    @Test
+    void testCallsWhichAreNeverExitedArePopped() {
+        RecordedCallStack stack = new RecordedCallStack(true);
+
+        stack.enter(10, 100L);
+        stack.enter(10, 110L);
+        stack.setTag(5L);
+        stack.enter(11, 120L);
+
+        // Calls 2 and 3 are never exited, their durations are not known
+        assertTrue(stack.exit(1, 200L));
+        assertEquals(1, stack.depth());
+        assertFalse(stack.hasTag());
+        assertTrue(stack.isOutermost());
+        assertEquals(100L, stack.selfNanos());
+        stack.pop();
+
+        assertFalse(stack.exit(1, 210L));
+        assertEquals(210L, stack.lastNanoTime());
+    }
+
+    @Test
+    void testDurationIsNotKnownWithoutTimestamps() {
+        RecordedCallStack stack = new RecordedCallStack();
+
+        stack.enter(10, -1L);
+        assertTrue(stack.exit(1, -1L));
+        assertEquals(-1L, stack.durationNanos());
+        assertEquals(-1L, stack.selfNanos());
+        assertEquals(-1L, stack.lastNanoTime());
+    }
+}
@@ -4,6 +4,7 @@ import com.ulyp.core.*;
 import com.ulyp.core.bytes.PagedMemBytesOut;
 import com.ulyp.core.mem.*;
 import com.ulyp.core.recorders.ObjectRecord;
+import com.ulyp.core.recorders.basic.StringObjectRecord;
 import com.ulyp.core.recorders.numeric.IntegralRecord;
 import com.ulyp.core.repository.InMemoryRepository;
 import com.ulyp.core.util.ReflectionBasedTypeResolver;
@@ -12,7 +13,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class SerializedRecordedMethodCallListTest {
 
@@ -74,6 +75,43 @@ class SerializedRecordedMethodCallListTest {
         assertEquals(1, exitCall.getCallId());
     }
 
+    @Test
+    void testCursor() {
+        OutputBytesList out = new OutputBytesList(SerializedRecordedMethodCallList.WIRE_ID, new PagedMemBytesOut(pageAllocator()));
+        SerializedRecordedMethodCallList serializedRecordedMethodCallList = new SerializedRecordedMethodCallList(333, out);
+
+        Type type = typeResolver.get(A.class);
+        Method method = Method.builder().id(5).name("convert").type(type).build();
+
+        serializedRecordedMethodCallList.addEnterMethodCall(method.getId(), typeResolver, new A(), new Object[]{5, 7});
+        serializedRecordedMethodCallList.addExitMethodCall(1, typeResolver, "ABC");
+
+        RecordedMethodCalls list = new RecordedMethodCalls(out.flip());
+        AddressableItemIterator<RecordedMethodCall> it = list.iterator(new InMemoryRepository<>());
+        RecordedMethodCallCursor cursor = list.cursor();
+
+        assertTrue(cursor.hasNext());
+        cursor.next();
+        it.next();
+        assertTrue(cursor.isEnter());
+        assertEquals(it.address(), cursor.address());
+        assertEquals(5, cursor.methodId());
+        assertEquals(2, cursor.argCount());
+        assertEquals(7, ((IntegralRecord) cursor.argument(1, new InMemoryRepository<>())).getValue());
+        assertEquals(5, ((IntegralRecord) cursor.argument(0, new InMemoryRepository<>())).getValue());
+        assertNotNull(cursor.callee(new InMemoryRepository<>()));
+
+        cursor.next();
+        it.next();
+        assertFalse(cursor.isEnter());
+        assertEquals(it.address(), cursor.address());
+        assertEquals(1, cursor.callId());
+        assertFalse(cursor.thrown());
+        assertEquals("ABC", ((StringObjectRecord) cursor.returnValue(new InMemoryRepository<>())).value());
+
+        assertFalse(cursor.hasNext());
+    }
+
     private MemPageAllocator pageAllocator() {
         return new MemPageAllocator() {
 
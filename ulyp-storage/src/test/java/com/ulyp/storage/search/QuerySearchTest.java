@@ -0,0 +1,163 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordedEnterMethodCall;
+import com.ulyp.core.RecordedExitMethodCall;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.Type;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.util.ReflectionBasedTypeResolver;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.util.TestMemPageAllocator;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import com.ulyp.storage.writer.RecordingDataWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuerySearchTest {
+
+    private static final long MILLIS = 1000_000L;
+
+    private final TypeResolver typeResolver = new ReflectionBasedTypeResolver();
+    private final Type repositoryType = typeResolver.get(OrderRepository.class);
+    private final Type serviceType = typeResolver.get(OrderService.class);
+    private final Method process = Method.builder()
+        .type(serviceType)
+        .name("process")
+        .id(1000)
+        .constructor(false)
+        .isStatic(false)
+        .returnsSomething(true)
+        .build();
+    private final Method save = Method.builder()
+        .type(repositoryType)
+        .name("save")
+        .id(1001)
+        .constructor(false)
+        .isStatic(false)
+        .returnsSomething(true)
+        .build();
+    private final OrderRepository repository = new OrderRepository();
+    private final OrderService service = new OrderService();
+    private File file;
+    private RecordingDataReader reader;
+    private RecordingDataWriter writer;
+
+    public static class OrderRepository {
+    }
+
+    public static class OrderService {
+    }
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = Files.createTempFile(QuerySearchTest.class.getSimpleName(), "a").toFile();
+        reader = new FileRecordingDataReaderBuilder(file).build();
+        writer = new FileRecordingDataWriter(file);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reader.close();
+        writer.close();
+    }
+
+    private void writeRecordings(int recordingCount) {
+        SerializedTypeList types = new SerializedTypeList();
+        types.add(repositoryType);
+        types.add(serviceType);
+        types.add(typeResolver.get(String.class));
+        types.add(typeResolver.get(Integer.class));
+        types.add(typeResolver.get(IllegalStateException.class));
+        SerializedMethodList methods = new SerializedMethodList();
+        methods.add(process);
+        methods.add(save);
+        writer.write(types);
+        writer.write(methods);
+
+        for (int recordingId = 1; recordingId <= recordingCount; recordingId++) {
+            writer.write(RecordingMetadata.builder().id(recordingId).build());
+
+            SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(recordingId, new TestMemPageAllocator());
+            calls.addEnterMethodCall(process.getId(), typeResolver, service, new Object[]{"order-1"}, 1 * MILLIS);
+            calls.addEnterMethodCall(save.getId(), typeResolver, repository, new Object[]{"order-1", 5}, 2 * MILLIS);
+            calls.addExitMethodCall(2, typeResolver, "saved", 100 * MILLIS);
+            writer.write(calls);
+
+            // Enter and exit calls are in different lists
+            calls = new SerializedRecordedMethodCallList(recordingId, new TestMemPageAllocator());
+            calls.addEnterMethodCall(save.getId(), typeResolver, repository, new Object[]{42}, 110 * MILLIS);
+            calls.addExitMethodThrow(3, typeResolver, new IllegalStateException(), 111 * MILLIS);
+            calls.addEnterMethodCall(save.getId(), typeResolver, repository, new Object[]{"x"}, 120 * MILLIS);
+            writer.write(calls);
+
+            calls = new SerializedRecordedMethodCallList(recordingId, new TestMemPageAllocator());
+            calls.addExitMethodCall(4, typeResolver, null, 190 * MILLIS);
+            calls.addExitMethodCall(1, typeResolver, "ok", 200 * MILLIS);
+            writer.write(calls);
+        }
+        writer.close();
+    }
+
+    private StubSearchResultListener search(String query) throws Exception {
+        StubSearchResultListener listener = new StubSearchResultListener();
+        new QuerySearchBuilder(reader, CallQuery.parse(query))
+            .setThreads(4)
+            .start(listener)
+            .getCompleteFuture()
+            .get();
+        return listener;
+    }
+
+    @Test
+    void testSearch() throws Exception {
+        writeRecordings(3);
+
+        assertEquals(
+            6,
+            search("method ~ '**.OrderRepository.*' and duration > 50ms and arg[0].type == 'java.lang.String'").getMatchedCalls().size()
+        );
+        assertEquals(3, search("method ~ '**.OrderRepository.*' and thrown").getMatchedCalls().size());
+        assertEquals(3, search("calls > 1").getMatchedCalls().size());
+        assertEquals(3, search("calls == 1 and return.type contains 'Exception'").getMatchedCalls().size());
+        assertEquals(3, search("arg[0] contains 'ORDER' and not (class ~ '**.OrderService')").getMatchedCalls().size());
+        assertEquals(0, search("arg[3] == 'order-1'").getMatchedCalls().size());
+        assertEquals(6, search("callee.type ~ '**.OrderRepository' && !(duration < 10ms && args >= 1)").getMatchedCalls().size());
+    }
+
+    @Test
+    void testMatchIsReportedOnceItIsDecided() throws Exception {
+        writeRecordings(1);
+
+        StubSearchResultListener listener = search("method == 'process'");
+        assertEquals(1, listener.getMatchedCalls().size());
+        assertTrue(listener.getMatchedCalls().get(0) instanceof RecordedEnterMethodCall);
+
+        listener = search("args == 2 or return == 'ok'");
+        assertEquals(2, listener.getMatchedCalls().size());
+        assertEquals(1, listener.getMatchedCalls().stream().filter(call -> call instanceof RecordedEnterMethodCall).count());
+        assertEquals(1, listener.getMatchedCalls().stream().filter(call -> call instanceof RecordedExitMethodCall).count());
+    }
+
+    @Test
+    void testSyntaxErrors() {
+        assertThrows(IllegalArgumentException.class, () -> CallQuery.parse("method"));
+        assertThrows(IllegalArgumentException.class, () -> CallQuery.parse("foo == 'x'"));
+        assertThrows(IllegalArgumentException.class, () -> CallQuery.parse("duration > 5 years"));
+        assertThrows(IllegalArgumentException.class, () -> CallQuery.parse("arg[0] ~ 'x'"));
+        assertThrows(IllegalArgumentException.class, () -> CallQuery.parse("method == 'x' and"));
+        assertThrows(IllegalArgumentException.class, () -> CallQuery.parse("(thrown"));
+        assertThrows(IllegalArgumentException.class, () -> CallQuery.parse("return == 'unterminated"));
+    }
+}
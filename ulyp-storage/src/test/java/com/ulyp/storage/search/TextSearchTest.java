@@ -0,0 +1,136 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordedEnterMethodCall;
+import com.ulyp.core.RecordedExitMethodCall;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.recorders.ObjectRecorderRegistry;
+import com.ulyp.core.recorders.arrays.ObjectArrayRecorder;
+import com.ulyp.core.recorders.basic.StringObjectRecord;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.util.TestRecordingFile;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import com.ulyp.storage.writer.RecordingDataWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextSearchTest {
+
+    private final TestRecordingFile recordingFile = new TestRecordingFile(TextSearchTest.class);
+    private final TypeResolver typeResolver = recordingFile.getTypeResolver();
+    private final Method method = recordingFile.method(1000, "run");
+    private final Method searchableMethod = recordingFile.method(1001, "findXyzOrders");
+    private final Object obj = recordingFile.getCallee();
+    private RecordingDataReader reader;
+    private RecordingDataWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        ObjectArrayRecorder arrayRecorder = (ObjectArrayRecorder) ObjectRecorderRegistry.OBJECT_ARRAY_RECORDER.getInstance();
+        arrayRecorder.setEnabled(true);
+        arrayRecorder.setMaxItemsToRecord(100);
+
+        reader = new FileRecordingDataReaderBuilder(recordingFile.getFile()).build();
+        writer = new FileRecordingDataWriter(recordingFile.getFile());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reader.close();
+        writer.close();
+        recordingFile.close();
+    }
+
+    private void writeRecording(int lists) {
+        writer.write(RecordingMetadata.builder().id(1).build());
+        recordingFile.writeTypesAndMethods(writer, String.class, Object[].class);
+        for (int i = 0; i < lists; i++) {
+            SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"abc", 5, "some xyz value"});
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{new Object[]{"a", "XYZ"}});
+            calls.addEnterMethodCall(searchableMethod.getId(), typeResolver, obj, new Object[]{"abc"});
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"X", "YZ", new Object[]{"XY", "Z"}});
+            calls.addExitMethodCall(4, typeResolver, "Xy");
+            calls.addExitMethodCall(3, typeResolver, "xYz");
+            calls.addExitMethodCall(2, typeResolver, null);
+            calls.addExitMethodCall(1, typeResolver, "XYZW");
+            writer.write(calls);
+        }
+        writer.close();
+    }
+
+    @Test
+    void testSearch() throws Exception {
+        writeRecording(10);
+
+        StubSearchResultListener listener = new StubSearchResultListener();
+        TextSearch search = new TextSearchBuilder(reader, "xyz")
+            .setThreads(4)
+            .start(listener);
+        search.getCompleteFuture().get();
+
+        // String argument, array argument, method name, and two return values in every list
+        assertEquals(50, listener.getMatchedCalls().size());
+        assertEquals(50, search.getResultCount());
+        assertEquals(
+            30,
+            listener.getMatchedCalls().stream().filter(call -> call instanceof RecordedEnterMethodCall).count()
+        );
+        for (Object call : listener.getMatchedCalls()) {
+            if (call instanceof RecordedExitMethodCall) {
+                StringObjectRecord returnValue = (StringObjectRecord) ((RecordedExitMethodCall) call).getReturnValue();
+                assertTrue(returnValue.value().equalsIgnoreCase("xyz") || returnValue.value().equals("XYZW"));
+            }
+        }
+    }
+
+    @Test
+    void testNonAsciiText() throws Exception {
+        SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"Gr\u00fc\u00dfe aus M\u00fcnchen"});
+        calls.addExitMethodCall(1, typeResolver, "M\u00fc");
+
+        writer.write(RecordingMetadata.builder().id(1).build());
+        recordingFile.writeTypesAndMethods(writer);
+        writer.write(calls);
+        writer.close();
+
+        StubSearchResultListener listener = new StubSearchResultListener();
+        new TextSearchBuilder(reader, "M\u00dcNCHEN").start(listener).getCompleteFuture().get();
+
+        assertEquals(1, listener.getMatchedCalls().size());
+    }
+
+    @Test
+    void testResultLimit() throws Exception {
+        writeRecording(100);
+
+        StubSearchResultListener listener = new StubSearchResultListener();
+        TextSearch search = new TextSearchBuilder(reader, "xyz")
+            .setThreads(4)
+            .setResultLimit(7)
+            .start(listener);
+        search.getCompleteFuture().get();
+
+        assertTrue(search.isCancelled());
+        assertEquals(7, listener.getMatchedCalls().size());
+    }
+
+    @Test
+    void testCancel() throws Exception {
+        writeRecording(100);
+
+        StubSearchResultListener listener = new StubSearchResultListener();
+        TextSearch search = new TextSearchBuilder(reader, "xyz").start(listener);
+        search.cancel();
+        search.getCompleteFuture().get();
+
+        assertTrue(listener.getMatchedCalls().size() < 500);
+    }
+}
@@ -0,0 +1,128 @@
+package com.ulyp.storage.search;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.util.TestRecordingFile;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import com.ulyp.storage.writer.RecordingDataWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    private final TestRecordingFile recordingFile = new TestRecordingFile(TrigramIndexTest.class);
+    private final TypeResolver typeResolver = recordingFile.getTypeResolver();
+    private final Method method = recordingFile.method(1000, "processOrder");
+    private final Object obj = recordingFile.getCallee();
+    private final File file = recordingFile.getFile();
+    private RecordingDataReader reader;
+    private RecordingDataWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        reader = new FileRecordingDataReaderBuilder(file).build();
+        writer = new FileRecordingDataWriter(file);
+        writer.write(RecordingMetadata.builder().id(1).build());
+        recordingFile.writeTypesAndMethods(writer);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        reader.close();
+        writer.close();
+        Files.deleteIfExists(TrigramIndex.fileOf(file));
+        recordingFile.close();
+    }
+
+    private void writeChunk(String arg, String returnValue) {
+        SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{arg});
+        calls.addExitMethodCall(1, typeResolver, returnValue);
+        writer.write(calls);
+    }
+
+    @Test
+    void testCandidateChunks() throws Exception {
+        writeChunk("alpha", "ABC");
+        writeChunk("beta", "gamma delta");
+        writeChunk("ALPHABET", "x");
+        writer.close();
+
+        reader.submitReaderJob(new TrigramIndexBuilder(file)).get();
+        TrigramIndex index = TrigramIndex.open(file);
+
+        assertNotNull(index);
+        assertEquals(3, index.chunks().length);
+        long[] chunks = index.chunks();
+        assertArrayEquals(new long[]{chunks[0], chunks[2]}, index.candidateChunks(new TextPattern("Alph")));
+        assertArrayEquals(new long[]{chunks[1]}, index.candidateChunks(new TextPattern("MA DEL")));
+        assertArrayEquals(new long[0], index.candidateChunks(new TextPattern("omega")));
+        // Method and type names are indexed as well
+        assertEquals(3, index.candidateChunks(new TextPattern("processorder")).length);
+        assertEquals(3, index.candidateChunks(new TextPattern("TrigramIndexTest")).length);
+        // Too short to narrow down the search
+        assertNull(index.candidateChunks(new TextPattern("ab")));
+    }
+
+    @Test
+    void testResumeBuilding() throws Exception {
+        writeChunk("alpha", "ABC");
+        reader.submitReaderJob(new TrigramIndexBuilder(file)).get();
+        TrigramIndex index = TrigramIndex.open(file);
+        assertNotNull(index);
+        assertEquals(1, index.chunks().length);
+
+        writeChunk("alphabet", "x");
+        writer.close();
+        reader.submitReaderJob(new TrigramIndexBuilder(file)).get();
+        index = TrigramIndex.open(file);
+
+        assertNotNull(index);
+        assertEquals(file.length(), index.getIndexedAddress());
+        assertEquals(2, index.candidateChunks(new TextPattern("alpha")).length);
+        // Method is only read before the index is resumed
+        assertEquals(2, index.candidateChunks(new TextPattern("processOrder")).length);
+    }
+
+    @Test
+    void testIndexIsDroppedIfRecordingFileIsRewritten() throws Exception {
+        writeChunk("alpha", "ABC");
+        writer.close();
+        reader.submitReaderJob(new TrigramIndexBuilder(file)).get();
+
+        Files.write(file.toPath(), new byte[(int) file.length()]);
+
+        assertNull(TrigramIndex.open(file));
+    }
+
+    @Test
+    void testSearchWithIndex() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            writeChunk("value " + i, i % 5 == 0 ? "needle " + i : "hay");
+        }
+        reader.submitReaderJob(new TrigramIndexBuilder(file)).get();
+        // Written after the index is built, so it's read without the index
+        writeChunk("needle in the tail", "hay");
+        writer.close();
+
+        StubSearchResultListener listener = new StubSearchResultListener();
+        new TextSearchBuilder(reader, "NEEDLE")
+            .setTrigramIndex(TrigramIndex.open(file))
+            .start(listener)
+            .getCompleteFuture()
+            .get();
+
+        assertEquals(5, listener.getMatchedCalls().size());
+    }
+}
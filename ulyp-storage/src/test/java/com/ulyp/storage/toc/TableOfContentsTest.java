@@ -0,0 +1,147 @@
+package com.ulyp.storage.toc;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.tree.CallRecordTree;
+import com.ulyp.storage.tree.CallRecordTreeBuilder;
+import com.ulyp.storage.tree.InMemoryIndex;
+import com.ulyp.storage.tree.Recording;
+import com.ulyp.storage.util.TestRecordingFile;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TableOfContentsTest {
+
+    private final TestRecordingFile recordingFile = new TestRecordingFile(TableOfContentsTest.class);
+    private final TypeResolver typeResolver = recordingFile.getTypeResolver();
+    private final Method method = recordingFile.method(1000, "run");
+    private final Object obj = recordingFile.getCallee();
+    private final File file = recordingFile.getFile();
+    private RecordingDataReader reader;
+
+    @BeforeEach
+    public void setUp() {
+        reader = new FileRecordingDataReaderBuilder(file).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reader.close();
+        recordingFile.close();
+    }
+
+    /**
+     * Writes two recordings, chunks of which are interleaved. The first recording has calls a -> (b, b), the second
+     * one has a single call
+     */
+    private FileRecordingDataWriter writeRecordings(long tocIntervalBytes) {
+        FileRecordingDataWriter writer = new FileRecordingDataWriter(file, tocIntervalBytes);
+        recordingFile.writeTypesAndMethods(writer);
+
+        writer.write(RecordingMetadata.builder().id(1).threadName("first").build());
+        SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{});
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{});
+        calls.addExitMethodCall(2, typeResolver, "b");
+        writer.write(calls);
+
+        writer.write(RecordingMetadata.builder().id(2).threadName("second").build());
+        calls = recordingFile.calls(2);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{});
+        calls.addExitMethodCall(1, typeResolver, "x");
+        writer.write(calls);
+
+        calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{});
+        calls.addExitMethodCall(3, typeResolver, "b");
+        calls.addExitMethodCall(1, typeResolver, "a");
+        writer.write(calls);
+        return writer;
+    }
+
+    @Test
+    void testRecordingsAreListed() {
+        // Frame is written after every list
+        writeRecordings(1).close();
+
+        TableOfContents toc = reader.getTableOfContents();
+        assertNotNull(toc);
+
+        List<RecordingContents> recordings = toc.getRecordings();
+        assertEquals(2, recordings.size());
+
+        RecordingContents first = recordings.get(0);
+        assertEquals(1, first.getRecordingId());
+        assertEquals("first", first.getMetadata().getThreadName());
+        // Metadata and two chunks
+        assertEquals(3, first.getListAddresses().size());
+
+        RecordingContents second = recordings.get(1);
+        assertEquals("second", second.getMetadata().getThreadName());
+        assertEquals(2, second.getListAddresses().size());
+        assertTrue(second.getFirstWriteMillis() >= first.getFirstWriteMillis());
+        assertTrue(first.getLastWriteMillis() >= second.getLastWriteMillis());
+
+        // Types, methods and lists of the recording in the file order
+        long[] addresses = toc.getListAddresses(2);
+        assertEquals(4, addresses.length);
+        for (int i = 1; i < addresses.length; i++) {
+            assertTrue(addresses[i - 1] < addresses[i]);
+        }
+    }
+
+    @Test
+    void testRecordingsActiveBetween() {
+        long startMillis = System.currentTimeMillis();
+        writeRecordings(1024L * 1024L).close();
+        long endMillis = System.currentTimeMillis();
+
+        TableOfContents toc = reader.getTableOfContents();
+        assertNotNull(toc);
+
+        assertEquals(2, toc.getRecordingsActiveBetween(startMillis, endMillis).size());
+        assertEquals(0, toc.getRecordingsActiveBetween(endMillis + 1, Long.MAX_VALUE).size());
+        assertEquals(0, toc.getRecordingsActiveBetween(0L, startMillis - 1).size());
+    }
+
+    @Test
+    void testNoTableOfContentsIfFileIsNotComplete() {
+        FileRecordingDataWriter writer = writeRecordings(1);
+
+        assertNull(reader.getTableOfContents());
+
+        writer.close();
+        assertNotNull(reader.getTableOfContents());
+    }
+
+    @Test
+    void testBuildSingleRecording() throws Exception {
+        writeRecordings(1).close();
+
+        try (CallRecordTree tree = new CallRecordTreeBuilder(reader)
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .setRecordingId(1)
+            .build()) {
+            tree.getCompleteFuture().get();
+
+            List<Recording> recordings = tree.getRecordings();
+            assertEquals(1, recordings.size());
+            Recording recording = recordings.get(0);
+            assertEquals(1, recording.getId());
+            assertEquals(3, recording.callCount());
+            assertEquals(2, recording.getRoot().getChildren().size());
+        }
+    }
+}
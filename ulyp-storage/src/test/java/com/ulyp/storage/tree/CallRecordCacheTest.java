@@ -0,0 +1,114 @@
+package com.ulyp.storage.tree;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.Type;
+import com.ulyp.core.recorders.basic.StringObjectRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallRecordCacheTest {
+
+    private final Method method = Method.builder()
+        .type(Type.unknown())
+        .name("run")
+        .id(1000)
+        .constructor(false)
+        .isStatic(false)
+        .returnsSomething(true)
+        .build();
+
+    private CallRecord callRecord(long callId, int argLength) {
+        char[] arg = new char[argLength];
+        return CallRecord.builder()
+            .callId(callId)
+            .method(method)
+            .args(Collections.singletonList(new StringObjectRecord(Type.unknown(), new String(arg))))
+            .build();
+    }
+
+    @Test
+    void testHitsAndMisses() {
+        CallRecordCache cache = new CallRecordCache(1024 * 1024);
+        CallRecord callRecord = callRecord(1, 10);
+
+        assertNull(cache.get(1));
+        cache.put(1, callRecord);
+        assertSame(callRecord, cache.get(1));
+        assertSame(callRecord, cache.get(1));
+
+        CallRecordCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.getEntries());
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(2.0 / 3, stats.hitRate(), 0.0001);
+    }
+
+    @Test
+    void testRecentlyUsedRecordsAreKept() {
+        // Every record takes more than 2 KB, so that only 4 records fit
+        CallRecordCache cache = new CallRecordCache(10 * 1024);
+        for (int callId = 1; callId <= 4; callId++) {
+            cache.put(callId, callRecord(callId, 1024));
+        }
+        assertNotNull(cache.get(1));
+
+        cache.put(5, callRecord(5, 1024));
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(5));
+        assertEquals(1, cache.getStats().getEvictions());
+        assertTrue(cache.getStats().getBytes() <= 10 * 1024);
+    }
+
+    @Test
+    void testConcurrentAccess() throws Exception {
+        CallRecordCache cache = new CallRecordCache(64 * 1024);
+        int threads = 4;
+        int callsPerThread = 10_000;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executorService.submit(() -> {
+                    for (int callId = 0; callId < callsPerThread; callId++) {
+                        // Every thread gets hits for the first records while it adds the new ones
+                        CallRecord callRecord = cache.get(callId % 100);
+                        if (callRecord != null) {
+                            assertEquals(callId % 100, callRecord.getId());
+                        }
+                        cache.put(callId, callRecord(callId, 100));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        CallRecordCache.Stats stats = cache.getStats();
+        assertTrue(stats.getBytes() <= 64 * 1024);
+        assertTrue(stats.getEntries() > 0);
+        assertTrue(stats.getEvictions() > 0);
+        assertEquals((long) threads * callsPerThread, stats.getHits() + stats.getMisses());
+    }
+
+    @Test
+    void testDisabledCache() {
+        CallRecordCache cache = new CallRecordCache(0);
+        cache.put(1, callRecord(1, 10));
+
+        assertNull(cache.get(1));
+        assertEquals(0, cache.getStats().getEntries());
+    }
+}
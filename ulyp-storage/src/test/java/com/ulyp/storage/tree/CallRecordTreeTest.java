@@ -1,9 +1,12 @@
 package com.ulyp.storage.tree;
 
 import com.ulyp.core.Method;
+import com.ulyp.core.RecordedEnterMethodCall;
+import com.ulyp.core.RecordedExitMethodCall;
 import com.ulyp.core.RecordingMetadata;
 import com.ulyp.core.Type;
 import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedCallIndexList;
 import com.ulyp.core.mem.SerializedMethodList;
 import com.ulyp.core.mem.SerializedRecordedMethodCallList;
 import com.ulyp.core.mem.SerializedTypeList;
@@ -11,9 +14,13 @@ import com.ulyp.core.recorders.basic.StringObjectRecord;
 import com.ulyp.core.util.ReflectionBasedTypeResolver;
 import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
 import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.search.PlainTextSearchQuery;
+import com.ulyp.storage.search.SearchDataReaderJob;
+import com.ulyp.storage.search.SearchResultListener;
 import com.ulyp.storage.util.TestMemPageAllocator;
 import com.ulyp.storage.writer.FileRecordingDataWriter;
 import com.ulyp.storage.writer.RecordingDataWriter;
+import org.agrona.collections.LongArrayList;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
@@ -23,7 +30,12 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,6 +54,7 @@ class CallRecordTreeTest {
     private final SerializedTypeList types = new SerializedTypeList();
     private final SerializedMethodList methods = new SerializedMethodList();
     private final T obj = new T();
+    private File file;
     private RecordingDataReader reader;
     private RecordingDataWriter writer;
 
@@ -53,7 +66,7 @@ class CallRecordTreeTest {
 
     @BeforeEach
     public void setUp() throws IOException {
-        File file = Files.createTempFile(CallRecordTreeTest.class.getSimpleName(), "a").toFile();
+        file = Files.createTempFile(CallRecordTreeTest.class.getSimpleName(), "a").toFile();
         reader = new FileRecordingDataReaderBuilder(file).build();
         writer = new FileRecordingDataWriter(file);
         types.add(type);
@@ -125,4 +138,429 @@ class CallRecordTreeTest {
         CallRecord root = recording.getRoot();
         assertFalse(root.isFullyRecorded());
     }
+
+    @Test
+    void testRecordingWithCallIndex() throws ExecutionException, InterruptedException {
+        SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+        SerializedCallIndexList callIndex = new SerializedCallIndexList(1);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"A"});
+        int rootEnterOffset = calls.lastCallOffset();
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"B"});
+        int firstChildEnterOffset = calls.lastCallOffset();
+        calls.addExitMethodCall(2, typeResolver, "BB");
+        callIndex.addCompletedCall(2, 1, 1, 0, firstChildEnterOffset, 0, calls.lastCallOffset());
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"C"});
+        int secondChildEnterOffset = calls.lastCallOffset();
+        callIndex.addOpenCall(1, 0, 3, 0, rootEnterOffset);
+        callIndex.addOpenCall(3, 1, 1, 0, secondChildEnterOffset);
+
+        writer.write(RecordingMetadata.builder().id(1).callIndexed(true).build());
+        writer.write(types);
+        writer.write(methods);
+        writer.write(calls);
+        writer.write(callIndex);
+
+        calls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+        callIndex = new SerializedCallIndexList(1);
+        calls.addExitMethodCall(3, typeResolver, "CC");
+        callIndex.addCompletedCall(3, 1, 1, 0, secondChildEnterOffset, 1, calls.lastCallOffset());
+        calls.addExitMethodCall(1, typeResolver, "AA");
+        callIndex.addCompletedCall(1, 0, 3, 0, rootEnterOffset, 1, calls.lastCallOffset());
+
+        writer.write(calls);
+        writer.write(callIndex);
+        writer.close();
+
+        CallRecordTree tree = new CallRecordTreeBuilder(reader)
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .build();
+        tree.getCompleteFuture().get();
+
+        CallRecord root = tree.getRecordings().get(0).getRoot();
+        assertTrue(root.isFullyRecorded());
+        assertEquals(3, root.getSubtreeSize());
+        MatcherAssert.assertThat(((StringObjectRecord) root.getReturnValue()).value(), Matchers.is("AA"));
+
+        List<CallRecord> children = root.getChildren();
+        assertEquals(2, children.size());
+        MatcherAssert.assertThat(((StringObjectRecord) children.get(0).getArgs().get(0)).value(), Matchers.is("B"));
+        MatcherAssert.assertThat(((StringObjectRecord) children.get(0).getReturnValue()).value(), Matchers.is("BB"));
+        MatcherAssert.assertThat(((StringObjectRecord) children.get(1).getArgs().get(0)).value(), Matchers.is("C"));
+        MatcherAssert.assertThat(((StringObjectRecord) children.get(1).getReturnValue()).value(), Matchers.is("CC"));
+
+        assertEquals(3, tree.getCallsOfMethod(method.getId()).size());
+    }
+
+    @Test
+    void testCallsOfMethod() throws Exception {
+        Method otherMethod = Method.builder()
+            .type(type)
+            .name("foo")
+            .id(1001)
+            .constructor(false)
+            .isStatic(false)
+            .returnsSomething(true)
+            .build();
+        methods.add(otherMethod);
+        writer.write(types);
+        writer.write(methods);
+        for (int recordingId = 1; recordingId <= 2; recordingId++) {
+            writer.write(RecordingMetadata.builder().id(recordingId).build());
+            SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(recordingId, new TestMemPageAllocator());
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"root"});
+            for (int i = 0; i < 200 * recordingId; i++) {
+                int methodId = i % 2 == 0 ? otherMethod.getId() : method.getId();
+                calls.addEnterMethodCall(methodId, typeResolver, obj, new Object[]{"A" + i});
+                calls.addExitMethodCall(i + 2, typeResolver, "B" + i);
+            }
+            calls.addExitMethodCall(1, typeResolver, "R");
+            writer.write(calls);
+        }
+        writer.close();
+
+        try (CallRecordTree tree = new CallRecordTreeBuilder(reader)
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .build()) {
+            tree.getCompleteFuture().get();
+
+            Map<Integer, Integer> expectedCounts = new HashMap<>();
+            expectedCounts.put(1, 100);
+            expectedCounts.put(2, 200);
+            assertEquals(expectedCounts, tree.getCallCountsOfMethod(otherMethod.getId()));
+
+            List<CallRecord> calls = tree.getCallsOfMethod(otherMethod.getId());
+            assertEquals(300, calls.size());
+            for (CallRecord call : calls) {
+                assertEquals(otherMethod.getId(), call.getMethod().getId());
+                assertTrue(call.isFullyRecorded());
+            }
+            // Root calls are included
+            assertEquals(302, tree.getCallsOfMethod(method.getId()).size());
+            assertTrue(tree.getCallsOfMethod(1002).isEmpty());
+        }
+    }
+
+    @Test
+    void testManyRecordingsBuiltInParallel() throws Exception {
+        int recordingCount = 20;
+        writer.write(types);
+        writer.write(methods);
+        for (int recordingId = 1; recordingId <= recordingCount; recordingId++) {
+            writer.write(RecordingMetadata.builder().id(recordingId).build());
+        }
+        // Chunks of different recordings are interleaved in the file
+        for (int recordingId = 1; recordingId <= recordingCount; recordingId++) {
+            SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(recordingId, new TestMemPageAllocator());
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"ABC"});
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"DEF"});
+            writer.write(calls);
+        }
+        for (int recordingId = 1; recordingId <= recordingCount; recordingId++) {
+            SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(recordingId, new TestMemPageAllocator());
+            calls.addExitMethodCall(2, typeResolver, "XYZ");
+            calls.addExitMethodCall(1, typeResolver, "R" + recordingId);
+            writer.write(calls);
+        }
+        writer.close();
+
+        try (CallRecordTree tree = new CallRecordTreeBuilder(reader)
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .setBuildThreads(4)
+            .build()) {
+            tree.getCompleteFuture().get();
+
+            List<Recording> recordings = tree.getRecordings();
+            assertEquals(recordingCount, recordings.size());
+            for (Recording recording : recordings) {
+                CallRecord root = recording.getRoot();
+                assertTrue(root.isFullyRecorded());
+                assertEquals(2, root.getSubtreeSize());
+                MatcherAssert.assertThat(
+                    ((StringObjectRecord) root.getReturnValue()).value(),
+                    Matchers.is("R" + recording.getId())
+                );
+            }
+        }
+    }
+
+    @Test
+    void testReadWithoutReadAhead() throws Exception {
+        SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"ABC"});
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"DEF"});
+        calls.addExitMethodCall(2, typeResolver, "XYZ");
+        calls.addExitMethodCall(1, typeResolver, "CDE");
+
+        writer.write(RecordingMetadata.builder().id(1).build());
+        writer.write(types);
+        writer.write(methods);
+        writer.write(calls);
+        writer.close();
+
+        try (CallRecordTree tree = new CallRecordTreeBuilder(new FileRecordingDataReaderBuilder(file).setReadAheadDepth(0).build())
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .build()) {
+            tree.getCompleteFuture().get();
+
+            CallRecord root = tree.getRecordings().get(0).getRoot();
+            assertEquals(2, root.getSubtreeSize());
+            MatcherAssert.assertThat(((StringObjectRecord) root.getReturnValue()).value(), Matchers.is("CDE"));
+            MatcherAssert.assertThat(((StringObjectRecord) root.getChildren().get(0).getReturnValue()).value(), Matchers.is("XYZ"));
+        }
+    }
+
+    @Test
+    void testListenerUpdatesAreCoalesced() throws Exception {
+        int batches = 100;
+        writer.write(RecordingMetadata.builder().id(1).build());
+        writer.write(types);
+        writer.write(methods);
+        SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"root"});
+        writer.write(calls);
+        for (int batch = 0; batch < batches; batch++) {
+            calls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"A"});
+            calls.addExitMethodCall(batch + 2, typeResolver, "B");
+            writer.write(calls);
+        }
+        writer.close();
+
+        AtomicInteger updates = new AtomicInteger();
+        AtomicInteger lastCallCount = new AtomicInteger();
+        try (CallRecordTree tree = new CallRecordTreeBuilder(reader)
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .setUpdateInterval(Duration.ofSeconds(10))
+            .setRecordingListener(new RecordingListener() {
+                @Override
+                public void onRecordingUpdated(Recording recording) {
+                    updates.incrementAndGet();
+                    lastCallCount.set(recording.callCount());
+                }
+
+                @Override
+                public void onProgressUpdated(double progress) {
+
+                }
+            })
+            .build()) {
+            tree.getCompleteFuture().get();
+
+            // The first update is published right away, others are published once the file is read
+            assertTrue(updates.get() >= 1 && updates.get() <= 2, "Updates published: " + updates.get());
+            assertEquals(1 + batches, lastCallCount.get());
+        }
+    }
+
+    @Test
+    void testReadWhileRecordingIsWritten() throws Exception {
+        int batches = 100;
+        int batchSize = 100;
+        writer.write(RecordingMetadata.builder().id(1).build());
+        writer.write(types);
+        writer.write(methods);
+        SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"root"});
+        writer.write(calls);
+
+        try (CallRecordTree tree = new CallRecordTree(reader, RecordingListener.empty(), InMemoryIndex::new, true)) {
+            Thread writerThread = new Thread(() -> {
+                int callId = 2;
+                for (int batch = 0; batch < batches; batch++) {
+                    SerializedRecordedMethodCallList batchCalls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+                    for (int i = 0; i < batchSize; i++) {
+                        batchCalls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"A"});
+                        batchCalls.addExitMethodCall(callId++, typeResolver, "B");
+                    }
+                    writer.write(batchCalls);
+                }
+            });
+            writerThread.start();
+
+            long deadline = System.currentTimeMillis() + 30_000;
+            int lastCallCount = 0;
+            int lastPostedCount = 0;
+            while (lastCallCount < 1 + batches * batchSize) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                List<Recording> recordings = tree.getRecordings();
+                if (recordings.isEmpty()) {
+                    continue;
+                }
+                Recording recording = recordings.get(0);
+                int callCount = recording.callCount();
+                assertTrue(callCount >= lastCallCount);
+
+                // Root is not completed, but it's read from a consistent snapshot
+                CallRecord root = recording.getRoot();
+                assertEquals(root.getSubtreeSize() - 1, root.getChildrenCount());
+                lastCallCount = callCount;
+
+                // Postings are published along with the snapshot and are read without waiting for the builder
+                int postedCount = tree.getCallCountsOfMethod(method.getId()).getOrDefault(1, 0);
+                assertTrue(postedCount >= lastPostedCount);
+                lastPostedCount = postedCount;
+            }
+            writerThread.join();
+            assertEquals(1 + batches * batchSize, (int) tree.getCallCountsOfMethod(method.getId()).get(1));
+        }
+    }
+
+    @Test
+    void testChildrenRange() throws Exception {
+        SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"root"});
+        for (int i = 0; i < 250; i++) {
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"A" + i});
+            calls.addExitMethodCall(i + 2, typeResolver, "B" + i);
+        }
+        calls.addExitMethodCall(1, typeResolver, "R");
+
+        writer.write(RecordingMetadata.builder().id(1).build());
+        writer.write(types);
+        writer.write(methods);
+        writer.write(calls);
+        writer.close();
+
+        try (CallRecordTree tree = new CallRecordTreeBuilder(reader)
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .build()) {
+            tree.getCompleteFuture().get();
+
+            Recording recording = tree.getRecordings().get(0);
+            long rootId = recording.getRoot().getId();
+            assertEquals(250, recording.getChildrenCount(rootId));
+
+            LongArrayList page = recording.getChildrenCallIds(rootId, 200, 300);
+            assertEquals(50, page.size());
+            List<CallRecord> callRecords = recording.getCallRecords(page);
+            assertEquals(50, callRecords.size());
+            MatcherAssert.assertThat(((StringObjectRecord) callRecords.get(0).getArgs().get(0)).value(), Matchers.is("A200"));
+            MatcherAssert.assertThat(((StringObjectRecord) callRecords.get(49).getReturnValue()).value(), Matchers.is("B249"));
+
+            assertTrue(recording.getChildrenCallIds(rootId, 250, 300).isEmpty());
+
+            // Records of completed calls are cached
+            assertSame(callRecords.get(0), recording.getCallRecord(page.getLong(0)));
+            assertTrue(tree.getCallRecordCache().getStats().getHits() > 0);
+        }
+    }
+
+    @Test
+    void testDurationsAreIndexed() throws Exception {
+        SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"A"}, 100L);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"B"}, 110L);
+        calls.addExitMethodCall(2, typeResolver, "BB", 130L);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"C"}, 140L);
+        calls.addExitMethodCall(3, typeResolver, "CC", 190L);
+        calls.addExitMethodCall(1, typeResolver, "AA", 200L);
+
+        writer.write(RecordingMetadata.builder().id(1).build());
+        writer.write(types);
+        writer.write(methods);
+        writer.write(calls);
+        writer.close();
+
+        try (CallRecordTree tree = new CallRecordTreeBuilder(reader)
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .build()) {
+            tree.getCompleteFuture().get();
+
+            CallRecord root = tree.getRecordings().get(0).getRoot();
+            assertEquals(100L, root.getNanosDuration());
+            assertEquals(30L, root.getSelfNanos());
+
+            List<CallRecord> children = root.getChildren();
+            assertEquals(20L, children.get(0).getNanosDuration());
+            assertEquals(20L, children.get(0).getSelfNanos());
+            assertEquals(50L, children.get(1).getNanosDuration());
+        }
+    }
+
+    @Test
+    void testSelfTimeIsUnknownIfChildDurationIsUnknown() throws Exception {
+        SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"A"}, 100L);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"B"});
+        calls.addExitMethodCall(2, typeResolver, "BB");
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"C"}, 140L);
+        calls.addExitMethodCall(3, typeResolver, "CC", 190L);
+        calls.addExitMethodCall(1, typeResolver, "AA", 200L);
+
+        writer.write(RecordingMetadata.builder().id(1).build());
+        writer.write(types);
+        writer.write(methods);
+        writer.write(calls);
+        writer.close();
+
+        try (CallRecordTree tree = new CallRecordTreeBuilder(reader)
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .build()) {
+            tree.getCompleteFuture().get();
+
+            CallRecord root = tree.getRecordings().get(0).getRoot();
+            assertEquals(100L, root.getNanosDuration());
+            assertEquals(-1L, root.getSelfNanos());
+
+            List<CallRecord> children = root.getChildren();
+            assertEquals(-1L, children.get(0).getSelfNanos());
+            assertEquals(50L, children.get(1).getSelfNanos());
+        }
+    }
+
+    @Test
+    void testSearchSharesScanWithTree() throws Exception {
+        SerializedRecordedMethodCallList calls = new SerializedRecordedMethodCallList(1, new TestMemPageAllocator());
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"ABC"});
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"DEF"});
+        calls.addExitMethodCall(2, typeResolver, "XYZ");
+        calls.addExitMethodCall(1, typeResolver, "CDE");
+
+        writer.write(RecordingMetadata.builder().id(1).build());
+        writer.write(types);
+        writer.write(methods);
+        writer.write(calls);
+        writer.close();
+
+        RecordingDataReader reader = new FileRecordingDataReaderBuilder(file).build();
+        try (CallRecordTree tree = new CallRecordTreeBuilder(reader)
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .build()) {
+            tree.getCompleteFuture().get();
+
+            // Attaches after the tree has consumed the whole file, so lists are taken from the shared cache
+            AtomicInteger matches = new AtomicInteger();
+            reader.submitSharedReaderJob(new SearchDataReaderJob(new PlainTextSearchQuery("XYZ"), new SearchResultListener() {
+                @Override
+                public void onStart() {
+                }
+
+                @Override
+                public void onMatch(int recordingId, RecordedEnterMethodCall enterMethodCall) {
+                    matches.incrementAndGet();
+                }
+
+                @Override
+                public void onMatch(int recordingId, RecordedExitMethodCall exitMethodCall) {
+                    matches.incrementAndGet();
+                }
+
+                @Override
+                public void onEnd() {
+                }
+            })).get();
+
+            assertEquals(1, matches.get());
+            assertEquals(2, tree.getRecordings().get(0).getRoot().getSubtreeSize());
+        }
+    }
 }
@@ -0,0 +1,173 @@
+package com.ulyp.storage.tree;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.recorders.basic.StringObjectRecord;
+import com.ulyp.core.util.FileUtil;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.util.TestRecordingFile;
+import com.ulyp.storage.writer.FileRecordingDataWriter;
+import com.ulyp.storage.writer.RecordingDataWriter;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexSidecarTest {
+
+    private final TestRecordingFile recordingFile = new TestRecordingFile(IndexSidecarTest.class);
+    private final TypeResolver typeResolver = recordingFile.getTypeResolver();
+    private final Method method = recordingFile.method(1000, "run");
+    private final Object obj = recordingFile.getCallee();
+    private final File file = recordingFile.getFile();
+    private RecordingDataWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        writer = new FileRecordingDataWriter(file);
+        writer.write(RecordingMetadata.builder().id(1).build());
+        recordingFile.writeTypesAndMethods(writer);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        writer.close();
+        FileUtil.deleteDirectory(IndexSidecar.directoryOf(file));
+        recordingFile.close();
+    }
+
+    @Test
+    void testResumeFromCheckpoint() throws Exception {
+        SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"ABC"});
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"DEF"});
+        calls.addExitMethodCall(2, typeResolver, "XYZ");
+        writer.write(calls);
+
+        IndexSidecar sidecar = IndexSidecar.open(file);
+        assertNull(sidecar.getCheckpoint());
+
+        try (CallRecordTree tree = buildTree(sidecar)) {
+            tree.getCompleteFuture().get();
+
+            CallRecord root = tree.getRecordings().get(0).getRoot();
+            assertFalse(root.isFullyRecorded());
+            assertEquals(2, root.getSubtreeSize());
+        }
+
+        calls = recordingFile.calls(1);
+        calls.addExitMethodCall(1, typeResolver, "CDE");
+        writer.write(calls);
+
+        sidecar = IndexSidecar.open(file);
+        IndexCheckpoint checkpoint = sidecar.getCheckpoint();
+        assertNotNull(checkpoint);
+        assertFalse(checkpoint.isCompleted());
+        assertTrue(checkpoint.getAddress() > 0 && checkpoint.getAddress() < file.length());
+
+        try (CallRecordTree tree = buildTree(sidecar)) {
+            tree.getCompleteFuture().get();
+
+            CallRecord root = tree.getRecordings().get(0).getRoot();
+            assertTrue(root.isFullyRecorded());
+            assertEquals(2, root.getSubtreeSize());
+            MatcherAssert.assertThat(((StringObjectRecord) root.getReturnValue()).value(), Matchers.is("CDE"));
+
+            CallRecord child = root.getChildren().get(0);
+            assertTrue(child.isFullyRecorded());
+            MatcherAssert.assertThat(((StringObjectRecord) child.getReturnValue()).value(), Matchers.is("XYZ"));
+
+            // Method postings are restored from the checkpoint as well
+            assertEquals(Collections.singletonMap(1, 2), tree.getCallCountsOfMethod(method.getId()));
+        }
+
+        writer.close();
+
+        sidecar = IndexSidecar.open(file);
+        try (CallRecordTree tree = buildTree(sidecar)) {
+            tree.getCompleteFuture().get();
+        }
+
+        checkpoint = IndexSidecar.open(file).getCheckpoint();
+        assertNotNull(checkpoint);
+        assertTrue(checkpoint.isCompleted());
+        assertEquals(file.length(), checkpoint.getAddress());
+    }
+
+    @Test
+    void testCheckpointIsDroppedIfFileIsRewritten() throws Exception {
+        SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"ABC"});
+        calls.addExitMethodCall(1, typeResolver, "CDE");
+        writer.write(calls);
+
+        IndexSidecar sidecar = IndexSidecar.open(file);
+        try (CallRecordTree tree = buildTree(sidecar)) {
+            tree.getCompleteFuture().get();
+        }
+        assertNotNull(IndexSidecar.open(file).getCheckpoint());
+
+        writer.close();
+        writer = new FileRecordingDataWriter(file);
+        writer.write(RecordingMetadata.builder().id(5).build());
+        calls = recordingFile.calls(5);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"ABC"});
+        writer.write(calls);
+
+        assertNull(IndexSidecar.open(file).getCheckpoint());
+    }
+
+    @Test
+    void testCheckpointWithoutMethodPostingsIsNotRestored() throws Exception {
+        SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"ABC"});
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"DEF"});
+        calls.addExitMethodCall(2, typeResolver, "XYZ");
+        writer.write(calls);
+
+        IndexSidecar sidecar = IndexSidecar.open(file);
+        try (CallRecordTree tree = buildTree(sidecar, false)) {
+            tree.getCompleteFuture().get();
+        }
+        IndexCheckpoint checkpoint = IndexSidecar.open(file).getCheckpoint();
+        assertNotNull(checkpoint);
+        assertFalse(checkpoint.hasMethodPostings());
+
+        calls = recordingFile.calls(1);
+        calls.addExitMethodCall(1, typeResolver, "CDE");
+        writer.write(calls);
+
+        // Postings are rebuilt by reading the file from the start
+        sidecar = IndexSidecar.open(file);
+        try (CallRecordTree tree = buildTree(sidecar, true)) {
+            tree.getCompleteFuture().get();
+
+            assertTrue(tree.getRecordings().get(0).getRoot().isFullyRecorded());
+            assertEquals(Collections.singletonMap(1, 2), tree.getCallCountsOfMethod(method.getId()));
+            assertEquals(2, tree.getCallsOfMethod(method.getId()).size());
+        }
+        assertTrue(IndexSidecar.open(file).getCheckpoint().hasMethodPostings());
+    }
+
+    private CallRecordTree buildTree(IndexSidecar sidecar) {
+        return buildTree(sidecar, true);
+    }
+
+    private CallRecordTree buildTree(IndexSidecar sidecar, boolean methodPostings) {
+        return new CallRecordTreeBuilder(new FileRecordingDataReaderBuilder(file).build())
+            .setIndexSupplier(() -> new RocksdbIndex(sidecar.getIndexDirectory()))
+            .setIndexSidecar(sidecar)
+            .setMethodPostings(methodPostings)
+            .setReadInfinitely(false)
+            .build();
+    }
+}
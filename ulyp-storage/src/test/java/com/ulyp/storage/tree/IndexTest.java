@@ -5,7 +5,10 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -30,6 +33,8 @@ abstract class IndexTest {
                     .exitMethodCallAddr(72)
                     .subtreeSize(1)
                     .childrenCallIds(childrenCallIds)
+                    .nanosDuration(100)
+                    .childrenNanosDuration(40)
                     .build();
             index.store(5, value);
 
@@ -41,6 +46,34 @@ abstract class IndexTest {
         }
     }
 
+    @Test
+    void testReadRangeOfManyChildren() {
+        try (Index index = buildIndex()) {
+
+            LongArrayList childrenCallIds = new LongArrayList();
+            for (int i = 0; i < 3000; i++) {
+                childrenCallIds.add(ThreadLocalRandom.current().nextLong());
+            }
+
+            CallRecordIndexState value = CallRecordIndexState.builder()
+                    .id(5)
+                    .enterMethodCallAddress(60)
+                    .subtreeSize(3001)
+                    .childrenCallIds(childrenCallIds)
+                    .build();
+            index.storeAll(Collections.singletonList(value));
+            index.flush();
+
+            Assertions.assertEquals(value, index.get(5));
+            Assertions.assertEquals(3000, index.getWithoutChildren(5).getChildrenCount());
+            Assertions.assertEquals(value.getChildrenCallIds(1000, 2100), index.getChildrenCallIds(5, 1000, 2100));
+            Assertions.assertEquals(value.getChildrenCallIds(2900, 3000), index.getChildrenCallIds(5, 2900, 5000));
+            Assertions.assertEquals(0, index.getChildrenCallIds(5, 3000, 3100).size());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Test
     public void testMultipleWrites() {
         int count = 10000;
@@ -71,6 +104,41 @@ abstract class IndexTest {
         }
     }
 
+    @Test
+    public void testBatchWrites() {
+        int count = 10000;
+        int batchSize = 300;
+
+        try (Index index = buildIndex()) {
+
+            Map<Long, CallRecordIndexState> map = new HashMap<>();
+            List<CallRecordIndexState> batch = new ArrayList<>();
+
+            for (int i = 0; i < count; i++) {
+                CallRecordIndexState value = CallRecordIndexState.builder()
+                        .id(i)
+                        .enterMethodCallAddress(ThreadLocalRandom.current().nextLong())
+                        .exitMethodCallAddr(ThreadLocalRandom.current().nextLong())
+                        .subtreeSize(ThreadLocalRandom.current().nextInt(50))
+                        .childrenCallIds(generateRandomLongList())
+                        .build();
+                map.put(Long.valueOf(i), value);
+                batch.add(value);
+                if (batch.size() == batchSize) {
+                    index.storeAll(batch);
+                    batch.clear();
+                }
+            }
+            index.storeAll(batch);
+
+            for (CallRecordIndexState valueToCheck : map.values()) {
+                Assertions.assertEquals(valueToCheck, index.get(valueToCheck.getId()));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private LongArrayList generateRandomLongList() {
         int cnt = ThreadLocalRandom.current().nextInt(5);
         LongArrayList result = new LongArrayList();
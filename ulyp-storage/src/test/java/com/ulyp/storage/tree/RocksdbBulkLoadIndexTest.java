@@ -0,0 +1,12 @@
+package com.ulyp.storage.tree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class RocksdbBulkLoadIndexTest extends IndexTest {
+    @Override
+    protected Index buildIndex() throws IOException {
+        // Small batch size, so that tests trigger several ingestions as well as read not yet ingested states
+        return new RocksdbIndex(Files.createTempDirectory("RocksdbBulkLoadIndexTest"), true, 1000);
+    }
+}
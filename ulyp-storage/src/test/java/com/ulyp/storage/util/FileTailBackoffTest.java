@@ -0,0 +1,57 @@
+package com.ulyp.storage.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FileTailBackoffTest {
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private File file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = Files.createTempFile(FileTailBackoffTest.class.getSimpleName(), "a").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        executorService.shutdownNow();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+        file.delete();
+    }
+
+    @Test
+    void shouldWakeUpOnWrite() throws Exception {
+        // The delay is much longer than the test may take, so the backoff can only return once it's woken up by the write
+        long delayNanos = TimeUnit.MINUTES.toNanos(10);
+        try (FileTailBackoff backoff = new FileTailBackoff(file, delayNanos, delayNanos)) {
+            assumeTrue(backoff.isWatching());
+
+            CountDownLatch wokenUp = new CountDownLatch(1);
+            executorService.submit(() -> {
+                backoff.await();
+                wokenUp.countDown();
+                return null;
+            });
+
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                out.write(new byte[]{1, 2, 3});
+            }
+
+            assertTrue(wokenUp.await(30, TimeUnit.SECONDS), "Backoff is not woken up by the write");
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.ulyp.storage.util;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.Type;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.SerializedMethodList;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.core.mem.SerializedTypeList;
+import com.ulyp.core.util.ReflectionBasedTypeResolver;
+import com.ulyp.storage.writer.RecordingDataWriter;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Temporary recording file for tests. Methods are declared by {@link T}, calls of them are recorded
+ * with {@link #getCallee()} as the callee. Types and methods are written with {@link #writeTypesAndMethods},
+ * then tests write recordings of calls created with {@link #calls(int)}
+ */
+@Getter
+public class TestRecordingFile implements AutoCloseable {
+
+    private final TypeResolver typeResolver = new ReflectionBasedTypeResolver();
+    private final Type type = typeResolver.get(T.class);
+    private final T callee = new T();
+    private final File file;
+    private final List<Method> methods = new ArrayList<>();
+
+    public static class T {
+    }
+
+    public TestRecordingFile(Class<?> testClass) {
+        try {
+            this.file = Files.createTempFile(testClass.getSimpleName(), "a").toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public TestRecordingFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Declares a method of {@link T}, all declared methods are written by {@link #writeTypesAndMethods}
+     */
+    public Method method(int id, String name) {
+        Method method = Method.builder()
+            .type(type)
+            .name(name)
+            .id(id)
+            .constructor(false)
+            .isStatic(false)
+            .returnsSomething(true)
+            .build();
+        methods.add(method);
+        return method;
+    }
+
+    /**
+     * Writes {@link T} along with other types whose objects are recorded and all declared methods
+     */
+    public void writeTypesAndMethods(RecordingDataWriter writer, Class<?>... recordedClasses) {
+        SerializedTypeList types = new SerializedTypeList();
+        types.add(type);
+        for (Class<?> recordedClass : recordedClasses) {
+            types.add(typeResolver.get(recordedClass));
+        }
+        SerializedMethodList methodList = new SerializedMethodList();
+        for (Method method : methods) {
+            methodList.add(method);
+        }
+        writer.write(types);
+        writer.write(methodList);
+    }
+
+    public SerializedRecordedMethodCallList calls(int recordingId) {
+        return new SerializedRecordedMethodCallList(recordingId, new TestMemPageAllocator());
+    }
+
+    @Override
+    public void close() {
+        file.delete();
+    }
+}
@@ -0,0 +1,164 @@
+package com.ulyp.storage.writer;
+
+import com.ulyp.core.Method;
+import com.ulyp.core.RecordingMetadata;
+import com.ulyp.core.TypeResolver;
+import com.ulyp.core.mem.PageConstants;
+import com.ulyp.core.mem.SerializedRecordedMethodCallList;
+import com.ulyp.storage.reader.FileRecordingDataReaderBuilder;
+import com.ulyp.storage.reader.RecordingDataReader;
+import com.ulyp.storage.toc.TableOfContents;
+import com.ulyp.storage.tree.CallRecordTree;
+import com.ulyp.storage.tree.CallRecordTreeBuilder;
+import com.ulyp.storage.tree.InMemoryIndex;
+import com.ulyp.storage.tree.Recording;
+import com.ulyp.storage.util.TestMemPageAllocator;
+import com.ulyp.storage.util.TestRecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingRecordingDataWriterTest {
+
+    private static final int CHILD_CALLS = 200;
+
+    private final TestRecordingFile recordingFile = new TestRecordingFile(RingRecordingDataWriterTest.class);
+    private final TypeResolver typeResolver = recordingFile.getTypeResolver();
+    private final Method method = recordingFile.method(1000, "run");
+    private final Object obj = recordingFile.getCallee();
+    private final File file = recordingFile.getFile();
+    private RecordingDataReader reader;
+
+    @BeforeEach
+    public void setUp() {
+        reader = new FileRecordingDataReaderBuilder(file).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reader.close();
+        recordingFile.close();
+    }
+
+    /**
+     * Writes a recording with a root call and many children calls. The root call is completed in the second chunk
+     */
+    private void writeRecording(RecordingDataWriter writer, int recordingId) {
+        writer.write(RecordingMetadata.builder().id(recordingId).threadName("thread-" + recordingId).build());
+        SerializedRecordedMethodCallList calls = recordingFile.calls(recordingId);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{});
+        for (int i = 0; i < CHILD_CALLS; i++) {
+            calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{"abc"});
+            calls.addExitMethodCall(i + 2, typeResolver, "def");
+        }
+        writer.write(calls);
+
+        writer.write(RecordingMetadata.builder()
+            .id(recordingId)
+            .threadName("thread-" + recordingId)
+            .recordingFinishedMillis(System.currentTimeMillis())
+            .build());
+        calls = recordingFile.calls(recordingId);
+        calls.addExitMethodCall(1, typeResolver, "ghi");
+        writer.write(calls);
+    }
+
+    private List<Recording> readRecordings() throws Exception {
+        try (CallRecordTree tree = new CallRecordTreeBuilder(reader)
+            .setIndexSupplier(InMemoryIndex::new)
+            .setReadInfinitely(false)
+            .build()) {
+            tree.getCompleteFuture().get();
+            return tree.getRecordings();
+        }
+    }
+
+    @Test
+    void testDump() throws Exception {
+        RingRecordingDataWriter writer = new RingRecordingDataWriter(new TestMemPageAllocator(), 16);
+        recordingFile.writeTypesAndMethods(writer);
+        writeRecording(writer, 1);
+        writeRecording(writer, 2);
+
+        assertEquals(2, writer.dump(file));
+        writer.close();
+
+        TableOfContents toc = reader.getTableOfContents();
+        assertNotNull(toc);
+        assertEquals(2, toc.getRecordings().size());
+        assertEquals("thread-1", toc.getRecording(1).getMetadata().getThreadName());
+
+        List<Recording> recordings = readRecordings();
+        assertEquals(2, recordings.size());
+        for (Recording recording : recordings) {
+            assertEquals(CHILD_CALLS + 1, recording.callCount());
+            assertEquals(CHILD_CALLS, recording.getRoot().getChildren().size());
+        }
+    }
+
+    @Test
+    void testListsOfEvictedRecordingAreDropped() throws Exception {
+        RingRecordingDataWriter writer = new RingRecordingDataWriter(new TestMemPageAllocator(), 1);
+        recordingFile.writeTypesAndMethods(writer);
+
+        // The first recording is not finished and is evicted by the following ones
+        writer.write(RecordingMetadata.builder().id(1).threadName("thread-1").build());
+        SerializedRecordedMethodCallList calls = recordingFile.calls(1);
+        calls.addEnterMethodCall(method.getId(), typeResolver, obj, new Object[]{});
+        writer.write(calls);
+        for (int recordingId = 2; recordingId <= 10; recordingId++) {
+            writeRecording(writer, recordingId);
+        }
+
+        // Rest of the evicted recording is dropped
+        writer.write(RecordingMetadata.builder().id(1).threadName("thread-1").recordingFinishedMillis(System.currentTimeMillis()).build());
+        calls = recordingFile.calls(1);
+        calls.addExitMethodCall(1, typeResolver, "x");
+        writer.write(calls);
+
+        writer.dump(file);
+        writer.close();
+
+        TableOfContents toc = reader.getTableOfContents();
+        assertNotNull(toc);
+        assertNull(toc.getRecording(1));
+        assertNotNull(toc.getRecording(10));
+    }
+
+    @Test
+    void testOldestRecordingsAreEvicted() throws Exception {
+        RingRecordingDataWriter writer = new RingRecordingDataWriter(new TestMemPageAllocator(), 1);
+        recordingFile.writeTypesAndMethods(writer);
+        int recordingsCount = 30;
+        for (int recordingId = 1; recordingId <= recordingsCount; recordingId++) {
+            writeRecording(writer, recordingId);
+            assertTrue(writer.bytesUsed() <= PageConstants.PAGE_SIZE);
+        }
+
+        int dumped = writer.dump(file);
+
+        assertTrue(dumped > 0);
+        assertTrue(dumped < recordingsCount);
+        // Finished recordings are forgotten once evicted, only the one which is partially evicted at the head is left
+        assertTrue(writer.trackedRecordings() <= dumped + 1);
+        writer.close();
+
+        TableOfContents toc = reader.getTableOfContents();
+        assertNotNull(toc);
+        assertNull(toc.getRecording(1));
+        assertNotNull(toc.getRecording(recordingsCount));
+
+        // Recordings are either dumped entirely or not dumped at all
+        List<Recording> recordings = readRecordings();
+        assertEquals(dumped, recordings.size());
+        for (Recording recording : recordings) {
+            assertEquals(CHILD_CALLS + 1, recording.callCount());
+            assertTrue(recording.getRoot().isFullyRecorded());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.ulyp.ui
+
+import com.ulyp.core.util.Duration
+import com.ulyp.storage.analysis.CallTreeAggregation
+import com.ulyp.storage.analysis.CallTreeAggregationBuilder
+import com.ulyp.storage.analysis.CallTreeNode
+import com.ulyp.storage.analysis.CallTreeProfile
+import com.ulyp.storage.analysis.RecordingCallTree
+import com.ulyp.ui.elements.recording.tree.FileRecordingTabPane
+import com.ulyp.ui.elements.recording.tree.FileRecordingsTab
+import com.ulyp.ui.reader.ReaderRegistry
+import javafx.application.Platform
+import javafx.beans.property.ReadOnlyObjectWrapper
+import javafx.beans.property.ReadOnlyStringWrapper
+import javafx.fxml.FXML
+import javafx.fxml.Initializable
+import javafx.scene.control.Label
+import javafx.scene.control.TreeItem
+import javafx.scene.control.TreeTableCell
+import javafx.scene.control.TreeTableColumn
+import javafx.scene.control.TreeTableView
+import javafx.stage.Stage
+import org.springframework.beans.factory.annotation.Autowired
+import java.net.URL
+import java.util.*
+
+/**
+ * Shows calling context trees which the agent aggregated (if started with -Dulyp.aggregate) in the
+ * selected recording file, see [CallTreeAggregation]
+ */
+class CallTreeProfileView : Initializable {
+
+    @FXML
+    lateinit var statusLabel: Label
+    @FXML
+    lateinit var tree: TreeTableView<CallTreeProfileRow>
+    @FXML
+    lateinit var methodColumn: TreeTableColumn<CallTreeProfileRow, String>
+    @FXML
+    lateinit var callCountColumn: TreeTableColumn<CallTreeProfileRow, Long>
+    @FXML
+    lateinit var totalTimeColumn: TreeTableColumn<CallTreeProfileRow, Long>
+    @FXML
+    lateinit var selfTimeColumn: TreeTableColumn<CallTreeProfileRow, Long>
+    @FXML
+    lateinit var percentColumn: TreeTableColumn<CallTreeProfileRow, String>
+    @Autowired
+    lateinit var fileRecordingTabPane: FileRecordingTabPane
+    @Autowired
+    lateinit var readerRegistry: ReaderRegistry
+
+    var stage: Stage? = null
+    private var aggregation: CallTreeAggregation? = null
+
+    override fun initialize(url: URL, rb: ResourceBundle?) {
+        methodColumn.setCellValueFactory { ReadOnlyStringWrapper(it.value.value.name) }
+        callCountColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.value.callCount) }
+        totalTimeColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.value.totalNanos) }
+        selfTimeColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.value.selfNanos) }
+        percentColumn.setCellValueFactory { ReadOnlyStringWrapper(it.value.value.percent()) }
+        listOf(totalTimeColumn, selfTimeColumn).forEach { column ->
+            column.setCellFactory {
+                object : TreeTableCell<CallTreeProfileRow, Long>() {
+                    override fun updateItem(item: Long?, empty: Boolean) {
+                        super.updateItem(item, empty)
+                        text = if (empty || item == null) null else Duration.printNanos(item)
+                    }
+                }
+            }
+        }
+        tree.isShowRoot = false
+        tree.root = TreeItem()
+
+        val selectedFileTab = fileRecordingTabPane.selectionModel.selectedItem as FileRecordingsTab?
+        val dataReader = selectedFileTab?.let { readerRegistry.getByFile(it.name.file) }
+        if (selectedFileTab == null || dataReader == null) {
+            statusLabel.text = "No recording file is opened"
+            return
+        }
+
+        statusLabel.text = "Reading call trees of ${selectedFileTab.name.file}..."
+        val aggregation = CallTreeAggregationBuilder(dataReader).start()
+        this.aggregation = aggregation
+        aggregation.completeFuture.whenComplete { profile, error ->
+            Platform.runLater {
+                if (error != null) {
+                    statusLabel.text = "Reading call trees failed: " + error.message
+                } else {
+                    show(profile)
+                }
+            }
+        }
+    }
+
+    private fun show(profile: CallTreeProfile) {
+        if (profile.isEmpty) {
+            statusLabel.text = "No aggregated call trees, the agent should be started with -Dulyp.aggregate"
+            return
+        }
+        statusLabel.text = "${profile.recordings.size} recordings"
+        tree.root.children.setAll(profile.recordings.map { recordingItem(it) })
+    }
+
+    private fun recordingItem(recording: RecordingCallTree): TreeItem<CallTreeProfileRow> {
+        val threadName = recording.metadata?.threadName ?: "unknown thread"
+        val row = CallTreeProfileRow(
+            "$threadName (recording ${recording.recordingId})",
+            recording.callCount,
+            recording.totalNanos,
+            0L,
+            recording.totalNanos
+        )
+        val item = TreeItem(row)
+        item.children.setAll(recording.roots.map { nodeItem(it, recording.totalNanos) })
+        item.isExpanded = true
+        return item
+    }
+
+    private fun nodeItem(node: CallTreeNode, recordingNanos: Long): TreeItem<CallTreeProfileRow> {
+        val row = CallTreeProfileRow(
+            node.method?.toShortString() ?: node.methodId.toString(),
+            node.callCount,
+            node.totalNanos,
+            node.selfNanos,
+            recordingNanos
+        )
+        val item = TreeItem(row)
+        // Trees may be large, so children items are only created once a node is expanded
+        if (node.children.isNotEmpty()) {
+            item.children.add(TreeItem())
+            item.expandedProperty().addListener { _, _, expanded ->
+                if (expanded && item.children.size == 1 && item.children[0].value == null) {
+                    item.children.setAll(node.children.map { nodeItem(it, recordingNanos) })
+                }
+            }
+        }
+        return item
+    }
+
+    fun close() {
+        aggregation?.cancel()
+        stage?.close()
+    }
+
+    class CallTreeProfileRow(
+        val name: String,
+        val callCount: Long,
+        val totalNanos: Long,
+        val selfNanos: Long,
+        private val recordingNanos: Long
+    ) {
+        fun percent(): String {
+            return if (recordingNanos <= 0) "" else String.format("%.1f%%", totalNanos * 100.0 / recordingNanos)
+        }
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.ComponentScan
 import org.springframework.context.annotation.Configuration
 import org.springframework.context.annotation.Lazy
+import org.springframework.context.annotation.Scope
 
 @Configuration
 @ComponentScan(value = ["com.ulyp.ui"])
@@ -82,6 +83,28 @@ open class Configuration {
         return SearchView()
     }
 
+    @Bean
+    @Lazy
+    @Scope("prototype")
+    open fun hotSpotsView(): HotSpotsView {
+        // Every view runs its own analysis of the file which is selected once the view is opened
+        return HotSpotsView()
+    }
+
+    @Bean
+    @Lazy
+    @Scope("prototype")
+    open fun callTreeProfileView(): CallTreeProfileView {
+        return CallTreeProfileView()
+    }
+
+    @Bean
+    @Lazy
+    @Scope("prototype")
+    open fun debugView(): DebugView {
+        return DebugView()
+    }
+
     @Bean
     @Lazy
     open fun fileRecordingTabPane(): FileRecordingTabPane {
@@ -0,0 +1,81 @@
+package com.ulyp.ui
+
+import com.ulyp.storage.tree.CallRecordCache
+import com.ulyp.ui.reader.ReaderRegistry
+import javafx.animation.Animation
+import javafx.animation.KeyFrame
+import javafx.animation.Timeline
+import javafx.beans.property.ReadOnlyObjectWrapper
+import javafx.beans.property.ReadOnlyStringWrapper
+import javafx.event.EventHandler
+import javafx.fxml.FXML
+import javafx.fxml.Initializable
+import javafx.scene.control.TableColumn
+import javafx.scene.control.TableView
+import javafx.stage.Stage
+import javafx.util.Duration
+import org.springframework.beans.factory.annotation.Autowired
+import java.net.URL
+import java.nio.file.Path
+import java.util.*
+
+/**
+ * Shows internal statistics of opened recording files, which are refreshed every second
+ */
+class DebugView : Initializable {
+
+    class CacheRow(val path: Path, val stats: CallRecordCache.Stats)
+
+    @FXML
+    lateinit var cacheTable: TableView<CacheRow>
+    @FXML
+    lateinit var fileColumn: TableColumn<CacheRow, String>
+    @FXML
+    lateinit var entriesColumn: TableColumn<CacheRow, Int>
+    @FXML
+    lateinit var sizeColumn: TableColumn<CacheRow, String>
+    @FXML
+    lateinit var hitRateColumn: TableColumn<CacheRow, String>
+    @FXML
+    lateinit var hitsColumn: TableColumn<CacheRow, Long>
+    @FXML
+    lateinit var missesColumn: TableColumn<CacheRow, Long>
+    @FXML
+    lateinit var evictionsColumn: TableColumn<CacheRow, Long>
+    @Autowired
+    lateinit var readerRegistry: ReaderRegistry
+
+    var stage: Stage? = null
+    private val refreshTimeline = Timeline(KeyFrame(Duration.seconds(1.0), EventHandler { refresh() }))
+
+    override fun initialize(url: URL, rb: ResourceBundle?) {
+        fileColumn.setCellValueFactory { ReadOnlyStringWrapper(it.value.path.fileName.toString()) }
+        entriesColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.stats.entries) }
+        sizeColumn.setCellValueFactory {
+            ReadOnlyStringWrapper("${it.value.stats.bytes / KB} / ${it.value.stats.maxBytes / KB} KB")
+        }
+        hitRateColumn.setCellValueFactory { ReadOnlyStringWrapper(String.format("%.1f%%", it.value.stats.hitRate() * 100)) }
+        hitsColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.stats.hits) }
+        missesColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.stats.misses) }
+        evictionsColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.stats.evictions) }
+
+        refresh()
+        refreshTimeline.cycleCount = Animation.INDEFINITE
+        refreshTimeline.play()
+    }
+
+    private fun refresh() {
+        cacheTable.items.setAll(
+            readerRegistry.getCallRecordTrees().map { (path, tree) -> CacheRow(path, tree.callRecordCache.stats) }
+        )
+    }
+
+    fun close() {
+        refreshTimeline.stop()
+        stage?.close()
+    }
+
+    companion object {
+        private const val KB = 1024
+    }
+}
@@ -0,0 +1,123 @@
+package com.ulyp.ui
+
+import com.ulyp.core.util.Duration
+import com.ulyp.storage.analysis.HotSpotAnalysis
+import com.ulyp.storage.analysis.HotSpotAnalysisBuilder
+import com.ulyp.storage.analysis.HotSpotReport
+import com.ulyp.storage.analysis.MethodStats
+import com.ulyp.ui.elements.recording.tree.FileRecordingTabPane
+import com.ulyp.ui.elements.recording.tree.FileRecordingsTab
+import com.ulyp.ui.reader.ReaderRegistry
+import javafx.application.Platform
+import javafx.beans.property.ReadOnlyObjectWrapper
+import javafx.beans.property.ReadOnlyStringWrapper
+import javafx.fxml.FXML
+import javafx.fxml.Initializable
+import javafx.scene.control.ComboBox
+import javafx.scene.control.Label
+import javafx.scene.control.TableCell
+import javafx.scene.control.TableColumn
+import javafx.scene.control.TableView
+import javafx.stage.Stage
+import org.springframework.beans.factory.annotation.Autowired
+import java.net.URL
+import java.util.*
+
+/**
+ * Shows methods of the selected recording file which take the most time, see [HotSpotAnalysis]
+ */
+class HotSpotsView : Initializable {
+
+    @FXML
+    lateinit var statusLabel: Label
+    @FXML
+    lateinit var orderComboBox: ComboBox<String>
+    @FXML
+    lateinit var table: TableView<MethodStats>
+    @FXML
+    lateinit var methodColumn: TableColumn<MethodStats, String>
+    @FXML
+    lateinit var callCountColumn: TableColumn<MethodStats, Long>
+    @FXML
+    lateinit var totalTimeColumn: TableColumn<MethodStats, Long>
+    @FXML
+    lateinit var selfTimeColumn: TableColumn<MethodStats, Long>
+    @FXML
+    lateinit var maxTimeColumn: TableColumn<MethodStats, Long>
+    @FXML
+    lateinit var thrownCountColumn: TableColumn<MethodStats, Long>
+    @Autowired
+    lateinit var fileRecordingTabPane: FileRecordingTabPane
+    @Autowired
+    lateinit var readerRegistry: ReaderRegistry
+
+    var stage: Stage? = null
+    private var analysis: HotSpotAnalysis? = null
+    private var report: HotSpotReport? = null
+
+    override fun initialize(url: URL, rb: ResourceBundle?) {
+        methodColumn.setCellValueFactory { ReadOnlyStringWrapper(it.value.method?.toShortString() ?: it.value.methodId.toString()) }
+        callCountColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.callCount) }
+        totalTimeColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.totalNanos) }
+        selfTimeColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.selfNanos) }
+        maxTimeColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.maxNanos) }
+        thrownCountColumn.setCellValueFactory { ReadOnlyObjectWrapper(it.value.thrownCount) }
+        listOf(totalTimeColumn, selfTimeColumn, maxTimeColumn).forEach { column ->
+            column.setCellFactory {
+                object : TableCell<MethodStats, Long>() {
+                    override fun updateItem(item: Long?, empty: Boolean) {
+                        super.updateItem(item, empty)
+                        text = if (empty || item == null) null else Duration.printNanos(item)
+                    }
+                }
+            }
+        }
+
+        orderComboBox.items.addAll(ORDERS.keys)
+        orderComboBox.value = ORDERS.keys.first()
+        orderComboBox.setOnAction { showTop() }
+
+        val selectedFileTab = fileRecordingTabPane.selectionModel.selectedItem as FileRecordingsTab?
+        val dataReader = selectedFileTab?.let { readerRegistry.getByFile(it.name.file) }
+        if (selectedFileTab == null || dataReader == null) {
+            statusLabel.text = "No recording file is opened"
+            return
+        }
+
+        statusLabel.text = "Analyzing ${selectedFileTab.name.file}..."
+        val analysis = HotSpotAnalysisBuilder(dataReader).start()
+        this.analysis = analysis
+        analysis.completeFuture.whenComplete { report, error ->
+            Platform.runLater {
+                if (error != null) {
+                    statusLabel.text = "Analysis failed: " + error.message
+                } else {
+                    this.report = report
+                    statusLabel.text = "${report.methods.size} methods"
+                    showTop()
+                }
+            }
+        }
+    }
+
+    private fun showTop() {
+        val report = this.report ?: return
+        table.items.setAll(report.top(TOP_SIZE, ORDERS.getValue(orderComboBox.value)))
+    }
+
+    fun close() {
+        analysis?.cancel()
+        stage?.close()
+    }
+
+    companion object {
+        private const val TOP_SIZE = 100
+        private val ORDERS: Map<String, Comparator<MethodStats>> = linkedMapOf(
+            "Self time" to HotSpotReport.BY_SELF_TIME,
+            "Total time" to HotSpotReport.BY_TOTAL_TIME,
+            "Max time" to HotSpotReport.BY_MAX_TIME,
+            "Call count" to HotSpotReport.BY_CALL_COUNT,
+            "Exceptions thrown" to HotSpotReport.BY_THROWN_COUNT
+        )
+    }
+}
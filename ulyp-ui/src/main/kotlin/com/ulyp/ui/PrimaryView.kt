@@ -113,6 +113,57 @@ class PrimaryView(
         view.stage = stage
     }
 
+    fun showHotSpotsView() {
+        val loader = FXMLLoader(UIApplication::class.java.classLoader.getResource("HotSpotsView.fxml"))
+        loader.controllerFactory = Callback { cl: Class<*>? -> applicationContext.getBean(cl) }
+        val root = loader.load<Parent>()
+        val scene = applicationContext.getBean(SceneRegistry::class.java).newScene(root)
+        val stage = Stage()
+        stage.scene = scene
+        stage.isMaximized = false
+        stage.title = "Hot spots"
+        val iconStream = UIApplication::class.java.classLoader.getResourceAsStream("icons/settings-icon.png") ?: throw UlypException("Icon not found")
+        stage.icons.add(Image(iconStream))
+        stage.show()
+        val view = loader.getController<HotSpotsView>()
+        view.stage = stage
+        stage.setOnHidden { view.close() }
+    }
+
+    fun showCallTreeProfileView() {
+        val loader = FXMLLoader(UIApplication::class.java.classLoader.getResource("CallTreeProfileView.fxml"))
+        loader.controllerFactory = Callback { cl: Class<*>? -> applicationContext.getBean(cl) }
+        val root = loader.load<Parent>()
+        val scene = applicationContext.getBean(SceneRegistry::class.java).newScene(root)
+        val stage = Stage()
+        stage.scene = scene
+        stage.isMaximized = false
+        stage.title = "Call tree profile"
+        val iconStream = UIApplication::class.java.classLoader.getResourceAsStream("icons/settings-icon.png") ?: throw UlypException("Icon not found")
+        stage.icons.add(Image(iconStream))
+        stage.show()
+        val view = loader.getController<CallTreeProfileView>()
+        view.stage = stage
+        stage.setOnHidden { view.close() }
+    }
+
+    fun showDebugView() {
+        val loader = FXMLLoader(UIApplication::class.java.classLoader.getResource("DebugView.fxml"))
+        loader.controllerFactory = Callback { cl: Class<*>? -> applicationContext.getBean(cl) }
+        val root = loader.load<Parent>()
+        val scene = applicationContext.getBean(SceneRegistry::class.java).newScene(root)
+        val stage = Stage()
+        stage.scene = scene
+        stage.isMaximized = false
+        stage.title = "Debug"
+        val iconStream = UIApplication::class.java.classLoader.getResourceAsStream("icons/settings-icon.png") ?: throw UlypException("Icon not found")
+        stage.icons.add(Image(iconStream))
+        stage.show()
+        val view = loader.getController<DebugView>()
+        view.stage = stage
+        stage.setOnHidden { view.close() }
+    }
+
     fun showSettings() {
         val loader = FXMLLoader(UIApplication::class.java.classLoader.getResource("SettingsView.fxml"))
         loader.controllerFactory = Callback { cl: Class<*>? -> applicationContext.getBean(cl) }
@@ -1,16 +1,22 @@
 package com.ulyp.ui
 
-import com.ulyp.storage.search.PlainTextSearchQuery
-import com.ulyp.storage.search.SearchDataReaderJob
+import com.ulyp.storage.search.CallQuery
+import com.ulyp.storage.search.QuerySearchBuilder
+import com.ulyp.storage.search.TextSearchBuilder
+import com.ulyp.storage.search.TrigramIndex
+import com.ulyp.ui.elements.controls.ErrorModalView
+import com.ulyp.ui.elements.misc.ExceptionAsTextView
 import com.ulyp.ui.elements.recording.tree.FileRecordingTabPane
 import com.ulyp.ui.elements.recording.tree.FileRecordingsTab
 import com.ulyp.ui.reader.ReaderRegistry
 import com.ulyp.ui.util.SearchListener
 import javafx.fxml.FXML
 import javafx.fxml.Initializable
+import javafx.scene.control.CheckBox
 import javafx.scene.control.TextField
 import javafx.stage.Stage
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.context.ApplicationContext
 import java.net.URL
 import java.util.*
 
@@ -18,12 +24,17 @@ class SearchView : Initializable {
 
     @FXML
     lateinit var searchTextField: TextField
+    @FXML
+    lateinit var queryModeCheckBox: CheckBox
     @Autowired
     lateinit var fileRecordingTabPane: FileRecordingTabPane
     @Autowired
     lateinit var readerRegistry: ReaderRegistry
+    @Autowired
+    lateinit var applicationContext: ApplicationContext
 
     var stage: Stage? = null
+    private var cancelSearch: (() -> Unit)? = null
 
     override fun initialize(url: URL, rb: ResourceBundle?) {
     }
@@ -37,9 +48,29 @@ class SearchView : Initializable {
                 return
             }
 
-            dataReader.submitReaderJob(
-                SearchDataReaderJob(PlainTextSearchQuery(searchTextField.text), SearchListener(selectedFileTab))
-            )
+            if (queryModeCheckBox.isSelected) {
+                val query = try {
+                    CallQuery.parse(searchTextField.text)
+                } catch (e: IllegalArgumentException) {
+                    val errorPopup = applicationContext.getBean(
+                        ErrorModalView::class.java,
+                        applicationContext.getBean(SceneRegistry::class.java),
+                        "Invalid query: " + e.message,
+                        ExceptionAsTextView(e)
+                    )
+                    errorPopup.show()
+                    return
+                }
+                cancelSearch?.invoke()
+                val search = QuerySearchBuilder(dataReader, query).start(SearchListener(selectedFileTab))
+                cancelSearch = { search.cancel() }
+            } else {
+                cancelSearch?.invoke()
+                val search = TextSearchBuilder(dataReader, searchTextField.text)
+                    .setTrigramIndex(TrigramIndex.open(selectedFileTab.name.file))
+                    .start(SearchListener(selectedFileTab))
+                cancelSearch = { search.cancel() }
+            }
             stage?.close()
         }
     }
@@ -2,17 +2,27 @@ package com.ulyp.ui.elements.recording.tree
 
 import com.ulyp.storage.tree.CallRecord
 import com.ulyp.ui.RenderSettings
+import com.ulyp.ui.util.Style
+import com.ulyp.ui.util.TextBuilder
 import javafx.geometry.Pos
 import javafx.scene.layout.StackPane
 import java.time.Duration
 
-class RecordedCallNodeContent(node: CallRecord, renderSettings: RenderSettings, totalNodeCountInTree: Int, rootDuration: Duration) : StackPane() {
+class RecordedCallNodeContent : StackPane {
 
-    init {
+    constructor(node: CallRecord, renderSettings: RenderSettings, totalNodeCountInTree: Int, rootDuration: Duration) : super() {
         alignment = Pos.CENTER_LEFT
         children.addAll(
                 RecordedCallWeight(renderSettings, node, totalNodeCountInTree, rootDuration),
                 RecordedCallView(node, renderSettings)
         )
     }
-}
\ No newline at end of file
+
+    /**
+     * Content of a node which is not a call, see [RecordedCallsPageTreeItem]
+     */
+    constructor(text: String) : super() {
+        alignment = Pos.CENTER_LEFT
+        children.add(TextBuilder().text(text).style(Style.CALL_TREE).style(Style.HELP_TEXT).build())
+    }
+}
@@ -3,44 +3,124 @@ package com.ulyp.ui.elements.recording.tree
 import com.ulyp.storage.tree.CallRecord
 import com.ulyp.storage.tree.Recording
 import com.ulyp.ui.RenderSettings
+import javafx.application.Platform
 import javafx.collections.ObservableList
 import javafx.event.EventHandler
 import javafx.scene.control.TreeItem
-import java.util.function.Consumer
-
-class RecordedCallTreeItem(private val recording: Recording, private val callRecordId: Long, private val renderSettings: RenderSettings) :
-        TreeItem<RecordedCallNodeContent>(
-                RecordedCallNodeContent(
-                        recording.getCallRecord(callRecordId),
-                        renderSettings,
-                        recording.callCount(),
-                        recording.rootDuration()
-                )
-        ) {
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+import java.util.function.Supplier
 
+/**
+ * Tree item of a single call. Children are loaded by pages of [PAGE_SIZE] calls, so that expanding a call with
+ * millions of children doesn't freeze the UI. Call records of a page are read in background in a batch, and
+ * the next page is prefetched once the current one is shown
+ */
+class RecordedCallTreeItem(
+        private val recording: Recording,
+        callRecord: CallRecord,
+        private val renderSettings: RenderSettings,
+        callCount: Int,
+        rootDuration: Duration) :
+        TreeItem<RecordedCallNodeContent>(RecordedCallNodeContent(callRecord, renderSettings, callCount, rootDuration)) {
+
+    constructor(recording: Recording, callRecordId: Long, renderSettings: RenderSettings) :
+            this(recording, recording.getCallRecord(callRecordId), renderSettings, recording.callCount(), recording.rootDuration())
+
+    private val callRecordId = callRecord.id
     private var loaded = false
-    private var currentCallRecord: CallRecord = recording.getCallRecord(callRecordId)
+    private var currentCallRecord: CallRecord = callRecord
+    private var renderedWeight = RecordedCallWeight.width(renderSettings, callRecord, callCount, rootDuration)
+    // Number of children calls which have tree items
+    private var loadedChildrenCount = 0
+    private var loadedPages = 0
+    private var pageInProgress = false
+    private var pageItem: RecordedCallsPageTreeItem? = null
+    private var prefetchedPage: CompletableFuture<List<CallRecord>>? = null
+    private var prefetchedPageFrom = -1
+    private var refreshInProgress = false
+    // Incremented every time children are unloaded, so that pages which are loaded afterwards are discarded
+    private var generation = 0
 
     init {
         this.addEventHandler(branchCollapsedEvent(), EventHandler<TreeModificationEvent<RecordedCallNodeContent>> {
-            val s = it.treeItem as RecordedCallTreeItem
-            s.unloadChildren()
+            val s = it.treeItem as? RecordedCallTreeItem
+            s?.unloadChildren()
         })
     }
 
+    /**
+     * Updates the call and its loaded children once the recording is updated. Only calls which are not fully recorded
+     * yet may get new children, so only they are read again. Reads are done in background, and the results are applied
+     * on the FX thread. Other calls are only re-rendered if their weight changes since the recording has grown
+     */
     fun refresh() {
-        currentCallRecord = recording.getCallRecord(callRecordId)
-        value = RecordedCallNodeContent(currentCallRecord, renderSettings, recording.callCount(), recording.rootDuration())
-
-        if (loaded) {
-            val newChildren = currentCallRecord.childrenCallIds
-            val currentLoadedChildrenCount = children.size
-            if (newChildren.size > currentLoadedChildrenCount) {
-                for (i in currentLoadedChildrenCount until newChildren.size) {
-                    children.add(RecordedCallTreeItem(recording, newChildren.getLong(i), renderSettings))
+        refresh(recording.callCount(), recording.rootDuration())
+    }
+
+    private fun refresh(callCount: Int, rootDuration: Duration) {
+        if (currentCallRecord.isFullyRecorded) {
+            render(currentCallRecord, callCount, rootDuration, false)
+        } else {
+            reload(callCount, rootDuration)
+        }
+
+        if (loaded && !pageInProgress) {
+            super.getChildren().forEach { node -> (node as? RecordedCallTreeItem)?.refresh(callCount, rootDuration) }
+        }
+    }
+
+    /**
+     * Reads the call which is still being recorded along with its new children. New children are shown right away
+     * while they fit into loaded pages
+     */
+    private fun reload(callCount: Int, rootDuration: Duration) {
+        if (refreshInProgress) {
+            return
+        }
+        refreshInProgress = true
+
+        val refreshGeneration = generation
+        val from = loadedChildrenCount
+        val shownLimit = if (loaded && !pageInProgress) loadedPages * PAGE_SIZE else 0
+        CompletableFuture.supplyAsync(Supplier {
+            val callRecord = recording.getCallRecord(callRecordId)
+            val shownCount = Math.min(callRecord.childrenCount, shownLimit)
+            val newChildren = if (shownCount > from) {
+                recording.getCallRecords(recording.getChildrenCallIds(callRecordId, from, shownCount))
+            } else {
+                emptyList()
+            }
+            Pair(callRecord, newChildren)
+        }, loader).whenComplete { result, error ->
+            Platform.runLater {
+                refreshInProgress = false
+                if (error != null) {
+                    println("Could not read call $callRecordId")
+                    error.printStackTrace()
+                    return@runLater
+                }
+
+                val (callRecord, newChildren) = result
+                currentCallRecord = callRecord
+                render(callRecord, callCount, rootDuration, true)
+                // Children may have been unloaded or loaded by pages while the call was read
+                if (refreshGeneration == generation && loaded && !pageInProgress) {
+                    if (from == loadedChildrenCount) {
+                        addChildren(newChildren)
+                    }
+                    updatePageItem()
                 }
             }
-            children.forEach(Consumer { node: TreeItem<RecordedCallNodeContent> -> (node as RecordedCallTreeItem).refresh() })
+        }
+    }
+
+    private fun render(callRecord: CallRecord, callCount: Int, rootDuration: Duration, changed: Boolean) {
+        val weight = RecordedCallWeight.width(renderSettings, callRecord, callCount, rootDuration)
+        if (changed || weight != renderedWeight) {
+            value = RecordedCallNodeContent(callRecord, renderSettings, callCount, rootDuration)
+            renderedWeight = weight
         }
     }
 
@@ -53,20 +133,97 @@ class RecordedCallTreeItem(private val recording: Recording, private val callRec
 
     override fun isLeaf(): Boolean {
         return if (loaded) {
-            children.isEmpty()
+            super.getChildren().isEmpty()
         } else {
-            currentCallRecord.childrenCallIds.isEmpty()
+            currentCallRecord.childrenCount == 0
         }
     }
 
     private fun loadChildren() {
-        val children: MutableList<RecordedCallTreeItem> = ArrayList()
-        val childrenIds = currentCallRecord.childrenCallIds
-        for (i in childrenIds.indices) {
-            children.add(RecordedCallTreeItem(recording, childrenIds.getLong(i), renderSettings))
-        }
-        super.getChildren().setAll(children)
         loaded = true
+        loadNextPage()
+    }
+
+    /**
+     * Loads the next page of children in background. The last child node shows that the page is being loaded
+     */
+    fun loadNextPage() {
+        val from = loadedChildrenCount
+        val totalCount = currentCallRecord.childrenCount
+        if (!loaded || pageInProgress || from >= totalCount) {
+            return
+        }
+
+        pageInProgress = true
+        setPageItem(RecordedCallsPageTreeItem(this, true, from, totalCount))
+
+        val pageGeneration = generation
+        val page = takePrefetchedPage(from) ?: loadPage(from)
+        page.whenComplete { callRecords, error ->
+            Platform.runLater {
+                if (pageGeneration != generation) {
+                    return@runLater
+                }
+                pageInProgress = false
+                if (error == null) {
+                    addChildren(callRecords)
+                    loadedPages++
+                } else {
+                    // The user may retry loading the page
+                    println("Could not load children of call $callRecordId starting from $from")
+                    error.printStackTrace()
+                }
+                updatePageItem()
+                prefetch(loadedChildrenCount)
+            }
+        }
+    }
+
+    private fun loadPage(from: Int): CompletableFuture<List<CallRecord>> {
+        return CompletableFuture.supplyAsync(Supplier {
+            recording.getCallRecords(recording.getChildrenCallIds(callRecordId, from, from + PAGE_SIZE))
+        }, loader)
+    }
+
+    private fun prefetch(from: Int) {
+        if (from < currentCallRecord.childrenCount) {
+            prefetchedPage = loadPage(from)
+            prefetchedPageFrom = from
+        }
+    }
+
+    private fun takePrefetchedPage(from: Int): CompletableFuture<List<CallRecord>>? {
+        val page = if (prefetchedPageFrom == from) prefetchedPage else null
+        prefetchedPage = null
+        prefetchedPageFrom = -1
+        return page
+    }
+
+    private fun addChildren(callRecords: List<CallRecord>) {
+        val callCount = recording.callCount()
+        val rootDuration = recording.rootDuration()
+        val items: MutableList<RecordedCallTreeItem> = ArrayList(callRecords.size)
+        for (callRecord in callRecords) {
+            items.add(RecordedCallTreeItem(recording, callRecord, renderSettings, callCount, rootDuration))
+        }
+        // Tree items of calls always go before the page node
+        super.getChildren().addAll(loadedChildrenCount, items)
+        loadedChildrenCount += items.size
+    }
+
+    private fun updatePageItem() {
+        val totalCount = currentCallRecord.childrenCount
+        if (loadedChildrenCount < totalCount) {
+            setPageItem(RecordedCallsPageTreeItem(this, false, loadedChildrenCount, totalCount))
+        } else {
+            setPageItem(null)
+        }
+    }
+
+    private fun setPageItem(item: RecordedCallsPageTreeItem?) {
+        pageItem?.let { super.getChildren().remove(it) }
+        pageItem = item
+        item?.let { super.getChildren().add(it) }
     }
 
     /**
@@ -95,8 +252,15 @@ class RecordedCallTreeItem(private val recording: Recording, private val callRec
     }
 
     private fun unloadChildren() {
+        generation++
         super.getChildren().setAll(ArrayList())
         loaded = false
+        loadedChildrenCount = 0
+        loadedPages = 0
+        pageInProgress = false
+        pageItem = null
+        prefetchedPage = null
+        prefetchedPageFrom = -1
     }
 
     val callRecord: CallRecord
@@ -109,4 +273,15 @@ class RecordedCallTreeItem(private val recording: Recording, private val callRec
                 "node=" + callRecord +
                 '}'
     }
-}
\ No newline at end of file
+
+    companion object {
+        const val PAGE_SIZE = 1000
+
+        // Reads of a recording are serialized anyway, so a single thread is enough
+        private val loader = Executors.newSingleThreadExecutor { runnable ->
+            val thread = Thread(runnable, "ulyp-call-record-loader")
+            thread.isDaemon = true
+            thread
+        }
+    }
+}
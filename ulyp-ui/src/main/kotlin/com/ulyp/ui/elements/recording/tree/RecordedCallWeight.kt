@@ -13,20 +13,7 @@ import java.time.Duration
  */
 class RecordedCallWeight(renderSettings: RenderSettings, node: CallRecord, totalNodeCountInTree: Int, rootDuration: Duration) : Region() {
     init {
-        // TODO move 600.0 to settings
-
-        val width: Int = when(renderSettings.recordedCallWeightType) {
-            RecordedCallWeightType.TIME ->
-                if (rootDuration.nano > 0) {
-                    (600.0 * node.nanosDuration / rootDuration.nano).toInt()
-                } else {
-                    // timestamps not enabled, do not draw rectangle
-                    0
-                }
-            RecordedCallWeightType.CALLS ->
-                (600.0 * node.subtreeSize / totalNodeCountInTree).toInt()
-        }
-
+        val width = width(renderSettings, node, totalNodeCountInTree, rootDuration)
 
         styleClass += "ulyp-call-tree-call-node"
 
@@ -34,4 +21,21 @@ class RecordedCallWeight(renderSettings: RenderSettings, node: CallRecord, total
                 "\n" +
                 String.format("-fx-max-width: %d; ", width)
     }
+
+    companion object {
+        // TODO move 600.0 to settings
+        fun width(renderSettings: RenderSettings, node: CallRecord, totalNodeCountInTree: Int, rootDuration: Duration): Int {
+            return when (renderSettings.recordedCallWeightType) {
+                RecordedCallWeightType.TIME ->
+                    if (rootDuration.nano > 0) {
+                        (600.0 * node.nanosDuration / rootDuration.nano).toInt()
+                    } else {
+                        // timestamps not enabled, do not draw rectangle
+                        0
+                    }
+                RecordedCallWeightType.CALLS ->
+                    (600.0 * node.subtreeSize / totalNodeCountInTree).toInt()
+            }
+        }
+    }
 }
\ No newline at end of file
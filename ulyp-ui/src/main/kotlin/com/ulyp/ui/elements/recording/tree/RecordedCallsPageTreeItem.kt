@@ -0,0 +1,29 @@
+package com.ulyp.ui.elements.recording.tree
+
+import javafx.scene.control.TreeItem
+
+/**
+ * The last node among children of a call which has too many children to be shown at once. Either shows that
+ * the next page of children is being loaded, or allows loading it (by double click or enter)
+ */
+class RecordedCallsPageTreeItem(private val parentCall: RecordedCallTreeItem, val loading: Boolean, shownCount: Int, totalCount: Int) :
+        TreeItem<RecordedCallNodeContent>(
+                RecordedCallNodeContent(
+                        if (loading) {
+                            "Loading calls... ($shownCount of $totalCount shown)"
+                        } else {
+                            "Load more calls ($shownCount of $totalCount shown)"
+                        }
+                )
+        ) {
+
+    fun loadMore() {
+        if (!loading) {
+            parentCall.loadNextPage()
+        }
+    }
+
+    override fun isLeaf(): Boolean {
+        return true
+    }
+}
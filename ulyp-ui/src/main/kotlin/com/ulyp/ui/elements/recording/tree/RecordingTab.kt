@@ -53,8 +53,11 @@ class RecordingTab(
         initialized = true
     }
 
-    fun getSelected(): RecordedCallTreeItem {
-        return treeView!!.selectionModel.selectedItem as RecordedCallTreeItem
+    /**
+     * @return selected call or null if nothing is selected or the selected node is not a call
+     */
+    fun getSelected(): RecordedCallTreeItem? {
+        return treeView!!.selectionModel.selectedItem as? RecordedCallTreeItem
     }
 
     fun dispose() {
@@ -13,6 +13,7 @@ import javafx.scene.control.TreeItem
 import javafx.scene.control.TreeView
 import javafx.scene.input.KeyCode
 import javafx.scene.input.KeyEvent
+import javafx.scene.input.MouseEvent
 
 class RecordingTreeView(
     recording: RecordedCallTreeItem,
@@ -31,13 +32,22 @@ class RecordingTreeView(
             if (key.code == KeyCode.MINUS) {
                 settings.recordingTreeFontSize.value -= 1
             }
+            if (key.code == KeyCode.ENTER) {
+                (selectionModel.selectedItem as? RecordedCallsPageTreeItem)?.loadMore()
+            }
+        }
+
+        onMouseClicked = EventHandler { event: MouseEvent ->
+            if (event.clickCount == 2) {
+                (selectionModel.selectedItem as? RecordedCallsPageTreeItem)?.loadMore()
+            }
         }
 
         if (settings.sourceCodeViewerEnabled.get()) {
             val sourceCodeFinder = SourceCodeFinder(processMetadata.classpath)
             selectionModel.selectedItemProperty()
                 .addListener { observable: ObservableValue<out TreeItem<RecordedCallNodeContent>?>?, oldValue: TreeItem<RecordedCallNodeContent>?, newValue: TreeItem<RecordedCallNodeContent>? ->
-                    val selectedNode = newValue as RecordedCallTreeItem?
+                    val selectedNode = newValue as? RecordedCallTreeItem
                     if (selectedNode?.callRecord != null) {
                         val sourceCodeFuture = sourceCodeFinder.find(
                             selectedNode.callRecord.method.type.name
@@ -45,8 +55,8 @@ class RecordingTreeView(
                         sourceCodeFuture.thenAccept { sourceCode: SourceCode? ->
                             Platform.runLater {
                                 val currentlySelected = selectionModel.selectedItem
-                                val currentlySelectedNode = currentlySelected as RecordedCallTreeItem
-                                if (selectedNode.callRecord.id == currentlySelectedNode.callRecord.id) {
+                                val currentlySelectedNode = currentlySelected as? RecordedCallTreeItem
+                                if (currentlySelectedNode != null && selectedNode.callRecord.id == currentlySelectedNode.callRecord.id) {
                                     sourceCodeView.setText(sourceCode, currentlySelectedNode.callRecord.method.name)
                                 }
                             }
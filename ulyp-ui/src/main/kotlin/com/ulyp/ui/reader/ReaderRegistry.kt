@@ -1,8 +1,11 @@
 package com.ulyp.ui.reader
 
 import com.ulyp.core.util.FileUtil
+import com.ulyp.core.util.SystemPropertyUtil
+import com.ulyp.storage.StorageException
 import com.ulyp.storage.reader.FileRecordingDataReaderBuilder
 import com.ulyp.storage.reader.RecordingDataReader
+import com.ulyp.storage.search.TrigramIndexBuilder
 import com.ulyp.storage.tree.*
 import com.ulyp.storage.util.RocksdbChecker
 import org.springframework.stereotype.Component
@@ -15,15 +18,28 @@ import java.util.concurrent.ConcurrentHashMap
 class ReaderRegistry(private val filterRegistry: FilterRegistry) {
 
     private val readersMap = ConcurrentHashMap<Path, RecordingDataReader>()
+    private val treesMap = ConcurrentHashMap<Path, CallRecordTree>()
+    // Sidecar directories of trees which are open. RocksDB can't be opened twice, and opening a sidecar may reset
+    // the index, so a sidecar which is in use is never opened again
+    private val sidecarsInUse = ConcurrentHashMap<CallRecordTree, Path>()
 
     @Synchronized
     fun newCallRecordTree(file: File): CallRecordTree? {
         val recordingDataReader = FileRecordingDataReaderBuilder(file).build()
 
         val rocksdbAvailable = RocksdbChecker.checkRocksdbAvailable()
-        val readerDirectory = Files.createTempDirectory("ulyp.Reader")
+        var indexSidecar = if (rocksdbAvailable.value()) openIndexSidecar(file) else null
+        var readerDirectory: Path? = null
         val index: Index = if (rocksdbAvailable.value()) {
-            RocksdbIndex(readerDirectory)
+            // The file is read only once and is not followed, so the index can be bulk loaded
+            var rocksdbIndex = indexSidecar?.let { openSidecarIndex(file, it) }
+            if (rocksdbIndex == null) {
+                // Temp directory is only used if the index can't be stored next to the recording file
+                indexSidecar = null
+                readerDirectory = Files.createTempDirectory("ulyp.Reader")
+                rocksdbIndex = RocksdbIndex(readerDirectory, true)
+            }
+            rocksdbIndex
         } else {
             InMemoryIndex()
         }
@@ -33,29 +49,78 @@ class ReaderRegistry(private val filterRegistry: FilterRegistry) {
         val callRecordTree = CallRecordTreeBuilder(recordingDataReader)
             .setReadInfinitely(false)
             .setIndexSupplier { index }
+            .setIndexSidecar(indexSidecar)
             .build()
+        if (SystemPropertyUtil.contains("ulyp.ui.trigram-index")) {
+            // Shares the scan of the file with the tree
+            recordingDataReader.submitSharedReaderJob(TrigramIndexBuilder(file))
+        }
+        treesMap[file.toPath().toAbsolutePath()] = callRecordTree
+        if (indexSidecar != null) {
+            sidecarsInUse[callRecordTree] = sidecarDirectory(file)
+        }
         CloseReaderOnExitHook.add(Pair(readerDirectory, callRecordTree))
 
         return callRecordTree
     }
 
+    private fun openIndexSidecar(file: File): IndexSidecar? {
+        if (sidecarsInUse.containsValue(sidecarDirectory(file))) {
+            println("Persistent index of $file is already in use, index will be stored in temp directory")
+            return null
+        }
+        return try {
+            IndexSidecar.open(file)
+        } catch (e: StorageException) {
+            println("Could not open persistent index of $file, index will be stored in temp directory")
+            e.printStackTrace()
+            null
+        }
+    }
+
+    /**
+     * RocksDB can't be opened if the index is locked by some other process (i.e. CLI) or is corrupted
+     */
+    private fun openSidecarIndex(file: File, indexSidecar: IndexSidecar): Index? {
+        return try {
+            RocksdbIndex(indexSidecar.indexDirectory, true)
+        } catch (e: StorageException) {
+            println("Could not open persistent index of $file, index will be stored in temp directory")
+            e.printStackTrace()
+            null
+        }
+    }
+
+    private fun sidecarDirectory(file: File): Path {
+        return IndexSidecar.directoryOf(file).toAbsolutePath()
+    }
+
     fun getByFile(file: File): RecordingDataReader? {
         return readersMap[file.toPath().toAbsolutePath()]
     }
 
+    /**
+     * @return call trees of all opened files by path
+     */
+    fun getCallRecordTrees(): Map<Path, CallRecordTree> {
+        return treesMap
+    }
+
     fun dispose(callTree: CallRecordTree) {
+        treesMap.values.remove(callTree)
+        sidecarsInUse.remove(callTree)
         CloseReaderOnExitHook.remove(callTree)
     }
 
     private object CloseReaderOnExitHook {
-        private var readers = mutableListOf<Pair<Path, CallRecordTree>>()
+        private var readers = mutableListOf<Pair<Path?, CallRecordTree>>()
 
         init {
             Runtime.getRuntime().addShutdownHook(Thread { runHooks() })
         }
 
         @Synchronized
-        fun add(readerEntry: Pair<Path, CallRecordTree>) {
+        fun add(readerEntry: Pair<Path?, CallRecordTree>) {
             readers.add(readerEntry)
         }
 
@@ -72,7 +137,7 @@ class ReaderRegistry(private val filterRegistry: FilterRegistry) {
                 } catch (e: Exception) {
                     e.printStackTrace()
                 } finally {
-                    FileUtil.deleteDirectory(it.first)
+                    it.first?.let { directory -> FileUtil.deleteDirectory(directory) }
                 }
             }
         }